@@ -0,0 +1,276 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.edugility.splain.io.MessageFactoryReader;
+
+/**
+ * Builds the message catalogs and inputs shared by the benchmarks in
+ * this module.
+ *
+ * <p>Catalogs consist of a configurable number of entries, each of
+ * which matches one exception type with a specific message at the
+ * root of a causal chain, followed by a single catch-all entry that
+ * matches any {@link Throwable}.  The catch-all entry is the worst
+ * case for selection, since every preceding entry must be
+ * considered before it is reached.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class BenchmarkFixtures {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The message produced by the catch-all entry of every catalog
+   * built by this class.
+   */
+  static final String CATCH_ALL_MESSAGE = "An unknown error occurred";
+
+  /**
+   * The exception types that entries in generated catalogs match.
+   * Each type has a constructor that accepts a single {@link String}
+   * message.
+   */
+  private static final List<Class<? extends Throwable>> TYPES;
+
+  static {
+    final List<Class<? extends Throwable>> types = new ArrayList<Class<? extends Throwable>>();
+    types.add(IllegalArgumentException.class);
+    types.add(IllegalStateException.class);
+    types.add(UnsupportedOperationException.class);
+    types.add(NullPointerException.class);
+    types.add(ArithmeticException.class);
+    types.add(ClassCastException.class);
+    types.add(IndexOutOfBoundsException.class);
+    types.add(SecurityException.class);
+    types.add(IOException.class);
+    types.add(SQLException.class);
+    types.add(java.sql.SQLRecoverableException.class);
+    types.add(java.io.FileNotFoundException.class);
+    types.add(java.net.MalformedURLException.class);
+    types.add(java.util.NoSuchElementException.class);
+    types.add(java.util.ConcurrentModificationException.class);
+    types.add(java.util.concurrent.CancellationException.class);
+    TYPES = Collections.unmodifiableList(types);
+  }
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BenchmarkFixtures}.
+   */
+  private BenchmarkFixtures() {
+    super();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the exception type matched by the entry at the supplied
+   * index.
+   *
+   * @param entry the zero-based index of an entry
+   *
+   * @return a non-{@code null} {@link Class}
+   */
+  static final Class<? extends Throwable> getType(final int entry) {
+    return TYPES.get(entry % TYPES.size());
+  }
+
+  /**
+   * Returns the message that the root exception must have in order
+   * to be matched by the entry at the supplied index.
+   *
+   * @param entry the zero-based index of an entry
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  static final String getCode(final int entry) {
+    return "code-" + entry;
+  }
+
+  /**
+   * Returns the text of a message catalog containing the supplied
+   * number of specific entries followed by a single catch-all entry.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param entries the number of specific entries; must not be
+   * negative
+   *
+   * @param templates if {@code true}, the messages of specific entries
+   * will contain an MVEL expression that refers to a variable set by
+   * their patterns; otherwise they will be plain text
+   *
+   * @return the non-{@code null} text of a message catalog
+   */
+  static final String getCatalog(final int entries, final boolean templates) {
+    if (entries < 0) {
+      throw new IllegalArgumentException("entries < 0: " + entries);
+    }
+    final String ls = System.getProperty("line.separator", "\n");
+    final StringBuilder sb = new StringBuilder(entries * 96);
+    for (int i = 0; i < entries; i++) {
+      sb.append("# Entry ").append(i).append(ls);
+      sb.append(getType(i).getName());
+      sb.append("(code = message; return code == \"").append(getCode(i)).append("\";)$").append(ls);
+      sb.append("--").append(ls);
+      sb.append("Entry ").append(i).append(" failed");
+      if (templates) {
+        sb.append(" with @{code}");
+      }
+      sb.append('.').append(ls);
+      sb.append(ls);
+    }
+    sb.append("# Catch-all entry.").append(ls);
+    sb.append("java.lang.Throwable$").append(ls);
+    sb.append("--").append(ls);
+    sb.append(CATCH_ALL_MESSAGE).append(ls);
+    return sb.toString();
+  }
+
+  /**
+   * Returns a new {@link MessageFactory} built by reading the
+   * {@linkplain #getCatalog(int, boolean) catalog} described by the
+   * supplied parameters.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param entries the number of specific entries; must not be
+   * negative
+   *
+   * @param templates whether the messages of specific entries will
+   * contain MVEL expressions
+   *
+   * @return a new, non-{@code null} {@link MessageFactory}
+   *
+   * @exception IOException if the catalog could not be read
+   *
+   * @exception ParseException if the catalog could not be parsed
+   */
+  static final MessageFactory<Object> getMessageFactory(final int entries, final boolean templates) throws IOException, ParseException {
+    final MessageFactoryReader reader = new MessageFactoryReader(new StringReader(getCatalog(entries, templates)));
+    final MessageFactory<Object> returnValue;
+    try {
+      returnValue = reader.read();
+    } finally {
+      reader.close();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a causal chain, outermost {@link Throwable} first, that
+   * consists of the supplied number of wrapping {@link
+   * RuntimeException}s followed by the supplied root {@link
+   * Throwable}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param depth the total length of the chain; must be greater than
+   * zero
+   *
+   * @param root the innermost {@link Throwable}; must not be {@code
+   * null}
+   *
+   * @return a non-{@code null}, unmodifiable {@link List} of {@link
+   * Object}s of size {@code depth}
+   */
+  static final List<Object> getCauseChain(final int depth, final Throwable root) {
+    if (depth <= 0) {
+      throw new IllegalArgumentException("depth <= 0: " + depth);
+    }
+    if (root == null) {
+      throw new IllegalArgumentException("root", new NullPointerException("root"));
+    }
+    final List<Object> chain = new ArrayList<Object>(depth);
+    Throwable cause = root;
+    chain.add(cause);
+    for (int i = 1; i < depth; i++) {
+      cause = new RuntimeException("wrapper-" + i, cause);
+      chain.add(cause);
+    }
+    Collections.reverse(chain);
+    return Collections.unmodifiableList(chain);
+  }
+
+  /**
+   * Returns a new root {@link Throwable} that will be matched by the
+   * entry at the supplied index.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param entry the zero-based index of an entry
+   *
+   * @return a new, non-{@code null} {@link Throwable}
+   *
+   * @exception ReflectiveOperationException if the {@link Throwable}
+   * could not be constructed
+   */
+  static final Throwable newRoot(final int entry) throws ReflectiveOperationException {
+    return getType(entry).getConstructor(String.class).newInstance(getCode(entry));
+  }
+
+  /**
+   * Returns a new root {@link Throwable} that will be matched only by
+   * the catch-all entry.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link Throwable}
+   */
+  static final Throwable newUnmatchedRoot() {
+    return new Exception("unmatched");
+  }
+
+}
@@ -0,0 +1,133 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.nio.ByteBuffer;
+
+import java.text.ParseException;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.splain.io.BinaryCatalogReader;
+import com.edugility.splain.io.BinaryCatalogWriter;
+import com.edugility.splain.io.MessageFactoryReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading message catalogs of varying sizes, both from text
+ * with {@link MessageFactoryReader#read()} and from the binary format
+ * with {@link BinaryCatalogReader#read()}.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogReadBenchmark {
+
+  /**
+   * The number of specific entries in the catalog, not counting the
+   * catch-all entry.
+   */
+  @Param({ "10", "100", "1000", "10000" })
+  public int entries;
+
+  /**
+   * Whether catalog messages contain MVEL expressions.
+   */
+  @Param({ "false", "true" })
+  public boolean templates;
+
+  /**
+   * The text of the catalog.
+   */
+  private String catalog;
+
+  /**
+   * The binary form of the catalog.
+   */
+  private ByteBuffer binaryCatalog;
+
+  /**
+   * Creates a new {@link CatalogReadBenchmark}.
+   */
+  public CatalogReadBenchmark() {
+    super();
+  }
+
+  /**
+   * Builds the textual and binary catalogs.
+   *
+   * @exception IOException if the catalog could not be read or
+   * written
+   *
+   * @exception ParseException if the catalog could not be parsed
+   */
+  @Setup
+  public void setUp() throws IOException, ParseException {
+    this.catalog = BenchmarkFixtures.getCatalog(this.entries, this.templates);
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new BinaryCatalogWriter().write(BenchmarkFixtures.getMessageFactory(this.entries, this.templates), bytes);
+    this.binaryCatalog = ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  @Benchmark
+  public MessageFactory<Object> readText() throws IOException, ParseException {
+    final MessageFactoryReader reader = new MessageFactoryReader(new StringReader(this.catalog));
+    try {
+      return reader.read();
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Benchmark
+  public MessageFactory<Object> readBinary() throws IOException {
+    return new BinaryCatalogReader(this.binaryCatalog).read();
+  }
+
+}
@@ -0,0 +1,143 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.text.ParseException;
+
+import java.util.List;
+import java.util.Locale;
+
+import java.util.concurrent.TimeUnit;
+
+import com.edugility.objexj.Matcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MessageFactory#format(Object, Matcher)} and {@link
+ * MessageFactory#getMessage(List, Locale)} for messages with and
+ * without MVEL expressions.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+  /**
+   * Whether catalog messages contain MVEL expressions.
+   */
+  @Param({ "false", "true" })
+  public boolean templates;
+
+  /**
+   * The depth of the causal chain supplied as input.
+   */
+  @Param({ "8" })
+  public int depth;
+
+  /**
+   * The {@link MessageFactory} under test.
+   */
+  private MessageFactory<Object> mf;
+
+  /**
+   * The input supplied to {@link MessageFactory#getMessage(List,
+   * Locale)}.
+   */
+  private List<Object> input;
+
+  /**
+   * The raw message supplied to {@link MessageFactory#format(Object,
+   * Matcher)}.
+   */
+  private Object rawMessage;
+
+  /**
+   * The {@link Matcher} supplied to {@link
+   * MessageFactory#format(Object, Matcher)}.
+   */
+  private Matcher<Object> matcher;
+
+  /**
+   * Creates a new {@link FormatBenchmark}.
+   */
+  public FormatBenchmark() {
+    super();
+  }
+
+  /**
+   * Builds the catalog and inputs.
+   *
+   * @exception IOException if the catalog could not be read
+   *
+   * @exception ParseException if the catalog could not be parsed
+   *
+   * @exception ReflectiveOperationException if an input could not be
+   * constructed
+   */
+  @Setup
+  public void setUp() throws IOException, ParseException, ReflectiveOperationException {
+    this.mf = BenchmarkFixtures.getMessageFactory(10, this.templates);
+    this.input = BenchmarkFixtures.getCauseChain(this.depth, BenchmarkFixtures.newRoot(5));
+    final MessageFactory.Selector<Object> selector = this.mf.getSelector(this.input);
+    if (selector == null) {
+      throw new IllegalStateException("No entry matched");
+    }
+    this.rawMessage = selector.getKey().getObject(Locale.getDefault());
+    this.matcher = selector.getMatcher();
+  }
+
+  @Benchmark
+  public Object format() {
+    return this.mf.format(this.rawMessage, this.matcher);
+  }
+
+  @Benchmark
+  public String getMessage() {
+    return this.mf.getMessage(this.input, Locale.getDefault());
+  }
+
+}
@@ -0,0 +1,152 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.text.ParseException;
+
+import java.util.List;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MessageFactory#getSelector(List)} against catalogs
+ * of varying sizes and causal chains of varying depths.
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectorBenchmark {
+
+  /**
+   * The number of specific entries in the catalog, not counting the
+   * catch-all entry.
+   */
+  @Param({ "10", "100", "1000", "10000" })
+  public int entries;
+
+  /**
+   * The length of each causal chain supplied as input.
+   */
+  @Param({ "1", "8", "32" })
+  public int depth;
+
+  /**
+   * The {@link MessageFactory} under test.
+   */
+  private MessageFactory<Object> mf;
+
+  /**
+   * A causal chain matched by the first entry.
+   */
+  private List<Object> first;
+
+  /**
+   * A causal chain matched by the middle entry.
+   */
+  private List<Object> middle;
+
+  /**
+   * A causal chain matched by the last specific entry.
+   */
+  private List<Object> last;
+
+  /**
+   * A causal chain matched only by the catch-all entry.
+   */
+  private List<Object> catchAll;
+
+  /**
+   * Creates a new {@link SelectorBenchmark}.
+   */
+  public SelectorBenchmark() {
+    super();
+  }
+
+  /**
+   * Builds the catalog and inputs.
+   *
+   * @exception IOException if the catalog could not be read
+   *
+   * @exception ParseException if the catalog could not be parsed
+   *
+   * @exception ReflectiveOperationException if an input could not be
+   * constructed
+   */
+  @Setup
+  public void setUp() throws IOException, ParseException, ReflectiveOperationException {
+    this.mf = BenchmarkFixtures.getMessageFactory(this.entries, false);
+    this.first = BenchmarkFixtures.getCauseChain(this.depth, BenchmarkFixtures.newRoot(0));
+    this.middle = BenchmarkFixtures.getCauseChain(this.depth, BenchmarkFixtures.newRoot(this.entries / 2));
+    this.last = BenchmarkFixtures.getCauseChain(this.depth, BenchmarkFixtures.newRoot(this.entries - 1));
+    this.catchAll = BenchmarkFixtures.getCauseChain(this.depth, BenchmarkFixtures.newUnmatchedRoot());
+    if (this.mf.getSelector(this.catchAll) == null) {
+      throw new IllegalStateException("The catch-all entry did not match");
+    }
+  }
+
+  @Benchmark
+  public Object selectFirst() {
+    return this.mf.getSelector(this.first);
+  }
+
+  @Benchmark
+  public Object selectMiddle() {
+    return this.mf.getSelector(this.middle);
+  }
+
+  @Benchmark
+  public Object selectLast() {
+    return this.mf.getSelector(this.last);
+  }
+
+  @Benchmark
+  public Object selectCatchAll() {
+    return this.mf.getSelector(this.catchAll);
+  }
+
+}
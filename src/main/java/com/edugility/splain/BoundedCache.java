@@ -0,0 +1,430 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, concurrent map that evicts approximately the least
+ * recently used entry when it is full, underlying the {@link
+ * TemplateCache}, {@link PatternCache} and {@link SelectorCache}
+ * classes.
+ *
+ * <p>Entries are held in a {@link ConcurrentHashMap}, so {@linkplain
+ * #get(Object) lookups} never lock.  Each entry records the value of
+ * a logical clock when it was last used; a lookup only reads that
+ * clock, so hits on different entries do not contend with one
+ * another.  The clock advances only when an entry is {@linkplain
+ * #putIfAbsent(Object, Object) added}, so entries used between the
+ * same two additions are considered equally recent.  When an
+ * addition makes the map too large, a batch of the least recently
+ * used entries, about an eighth of the {@linkplain #getMaximumSize()
+ * maximum size}, is evicted in a single scan, so that the cost of
+ * scanning is spread over the many additions that may follow before
+ * the next one.  Evictions are serialized by a {@link Lock}, but an
+ * addition that finds it held simply leaves the eviction to the
+ * {@link Thread} holding it, so additions never wait for one
+ * another.</p>
+ *
+ * <p>The number of {@linkplain #getHitCount() hits}, {@linkplain
+ * #getMissCount() misses} and {@linkplain #getEvictionCount()
+ * evictions} is recorded.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @param <K> the type of key
+ *
+ * @param <V> the type of value
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ */
+final class BoundedCache<K, V> {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The maximum number of entries this {@link BoundedCache} will
+   * hold.
+   */
+  private final int maximumSize;
+
+  /**
+   * The number of entries to which an eviction reduces this {@link
+   * BoundedCache}: its {@linkplain #maximumSize maximum size} less
+   * about an eighth.
+   */
+  private final int evictionTarget;
+
+  /**
+   * The entries of this {@link BoundedCache}, indexed by key.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<K, Entry<V>> entries;
+
+  /**
+   * The logical clock recording when entries were last used.  It is
+   * advanced, by two, only by additions, so its value is always even;
+   * a lookup stamps its {@link Entry} with the odd value just after
+   * it.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final AtomicLong clock;
+
+  /**
+   * The {@link Lock} serializing evictions.  It is only ever {@linkplain
+   * Lock#tryLock() tried}, never waited for.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Lock evictionLock;
+
+  /**
+   * The number of lookups that found an entry.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder hitCount;
+
+  /**
+   * The number of lookups that found no entry.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder missCount;
+
+  /**
+   * The number of entries that have been evicted.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LongAdder evictionCount;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BoundedCache}.
+   *
+   * @param maximumSize the maximum number of entries this {@link
+   * BoundedCache} will hold; if {@code 0} then nothing will be cached
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * less than {@code 0}
+   */
+  BoundedCache(final int maximumSize) {
+    super();
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    this.maximumSize = maximumSize;
+    this.evictionTarget = maximumSize - maximumSize / 8;
+    this.entries = new ConcurrentHashMap<K, Entry<V>>();
+    this.clock = new AtomicLong();
+    this.evictionLock = new ReentrantLock();
+    this.hitCount = new LongAdder();
+    this.missCount = new LongAdder();
+    this.evictionCount = new LongAdder();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the value cached under the supplied key, or {@code null}
+   * if there is none, and records a hit or a miss accordingly.
+   *
+   * <p>This method never locks.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @return the cached value, or {@code null}
+   */
+  final V get(final K key) {
+    assert key != null;
+    final Entry<V> entry = this.entries.get(key);
+    final V returnValue;
+    if (entry == null) {
+      this.missCount.increment();
+      returnValue = null;
+    } else {
+      this.hitCount.increment();
+      this.touch(entry, this.clock.get() + 1L);
+      returnValue = entry.value;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Caches the supplied value under the supplied key unless a value
+   * is already cached under it, {@linkplain #evict() evicting} least
+   * recently used entries if this {@link BoundedCache} is then too
+   * large, and returns the value that is cached under the key as a
+   * result.
+   *
+   * <p>If this {@link BoundedCache} has a {@linkplain
+   * #getMaximumSize() maximum size} of {@code 0}, nothing is cached
+   * and the supplied value is returned.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the key; must not be {@code null}
+   *
+   * @param value the value; must not be {@code null}
+   *
+   * @return the value already cached under the supplied key, or the
+   * supplied value; never {@code null}
+   */
+  final V putIfAbsent(final K key, final V value) {
+    assert key != null;
+    assert value != null;
+    V returnValue = value;
+    if (this.maximumSize > 0) {
+      // Additions advance the clock by two so that entries used since
+      // the last addition, which are stamped with an odd value, are
+      // more recent than it but less recent than the next.
+      final Entry<V> entry = new Entry<V>(value, this.clock.addAndGet(2L));
+      final Entry<V> old = this.entries.putIfAbsent(key, entry);
+      if (old == null) {
+        if (this.entries.size() > this.maximumSize) {
+          this.evict();
+        }
+      } else {
+        this.touch(old, entry.accessTime);
+        returnValue = old.value;
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Records that the supplied {@link Entry} was used at the supplied
+   * logical time.
+   *
+   * <p>The write is skipped if it would not change anything, so that
+   * frequent hits on the same {@link Entry} by many {@link Thread}s do
+   * not contend for its memory.  Writes may race; the result is only
+   * an approximation of recency in any case.</p>
+   *
+   * @param entry the {@link Entry} in question; must not be {@code
+   * null}
+   *
+   * @param time the logical time
+   */
+  private final void touch(final Entry<V> entry, final long time) {
+    assert entry != null;
+    if (entry.accessTime < time) {
+      entry.accessTime = time;
+    }
+  }
+
+  /**
+   * Evicts least recently used entries until this {@link
+   * BoundedCache} is no larger than its {@linkplain #getMaximumSize()
+   * maximum size}, unless another {@link Thread} is already doing so.
+   *
+   * <p>The {@link Thread} that holds the {@link #evictionLock} checks
+   * the size again after releasing it, so an addition made while it
+   * was evicting, whose {@link Thread} therefore did not evict, is
+   * never left unaccounted for.</p>
+   */
+  private final void evict() {
+    while (this.entries.size() > this.maximumSize && this.evictionLock.tryLock()) {
+      try {
+        this.evictBatch();
+      } finally {
+        this.evictionLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries, found in a single scan,
+   * until this {@link BoundedCache} holds no more than {@link
+   * #evictionTarget} entries.
+   *
+   * <p>Entries used or added while the scan is in progress are more
+   * recent than any it found, and so are spared.</p>
+   *
+   * <p>This method must be called only by the {@link Thread} holding
+   * the {@link #evictionLock}.</p>
+   */
+  private final void evictBatch() {
+    final long[] accessTimes = new long[this.entries.size()];
+    int size = 0;
+    for (final Entry<V> entry : this.entries.values()) {
+      if (size >= accessTimes.length) {
+        break;
+      }
+      accessTimes[size++] = entry.accessTime;
+    }
+    final int excess = size - this.evictionTarget;
+    if (excess > 0) {
+      Arrays.sort(accessTimes, 0, size);
+      final long threshold = accessTimes[excess - 1];
+      int evicted = 0;
+      for (final Map.Entry<K, Entry<V>> mapEntry : this.entries.entrySet()) {
+        if (evicted >= excess) {
+          break;
+        }
+        final Entry<V> entry = mapEntry.getValue();
+        if (entry.accessTime <= threshold && this.entries.remove(mapEntry.getKey(), entry)) {
+          this.evictionCount.increment();
+          evicted++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the maximum number of entries this {@link BoundedCache}
+   * will hold.
+   *
+   * @return the maximum size of this {@link BoundedCache}; always
+   * {@code 0} or greater
+   */
+  final int getMaximumSize() {
+    return this.maximumSize;
+  }
+
+  /**
+   * Returns the number of entries currently held by this {@link
+   * BoundedCache}.
+   *
+   * @return the size of this {@link BoundedCache}; always {@code 0}
+   * or greater
+   */
+  final int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Returns the number of lookups that found an entry.
+   *
+   * @return the hit count; always {@code 0} or greater
+   */
+  final long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * Returns the number of lookups that found no entry.
+   *
+   * @return the miss count; always {@code 0} or greater
+   */
+  final long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Returns the number of entries that have been evicted to make room
+   * for others.
+   *
+   * @return the eviction count; always {@code 0} or greater
+   */
+  final long getEvictionCount() {
+    return this.evictionCount.sum();
+  }
+
+  /**
+   * Removes all entries from this {@link BoundedCache}.  Statistics
+   * are not reset.
+   */
+  final void clear() {
+    this.entries.clear();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A cached value and the logical time at which it was last used.
+   *
+   * @param <V> the type of value
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Entry<V> {
+
+    /**
+     * The cached value.  This field is never {@code null}.
+     */
+    private final V value;
+
+    /**
+     * The logical time at which {@link #value} was last used.
+     */
+    private volatile long accessTime;
+
+    /**
+     * Creates a new {@link Entry}.
+     *
+     * @param value the value; must not be {@code null}
+     *
+     * @param accessTime the logical time at which the value was
+     * added
+     */
+    private Entry(final V value, final long accessTime) {
+      super();
+      assert value != null;
+      this.value = value;
+      this.accessTime = accessTime;
+    }
+
+  }
+
+}
@@ -0,0 +1,292 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.Serializable;
+
+import java.text.ParseException;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A reference to a {@link Pattern} that may not have been {@linkplain
+ * Pattern#compile(String) compiled} yet, and that compiles it from its
+ * source code the first time it is {@linkplain #get() requested}.
+ *
+ * <p>Compilation happens at most once per {@link LazyPattern}, no
+ * matter how many {@link Thread}s request the {@link Pattern}
+ * concurrently.  {@link Thread}s that find compilation in progress
+ * wait for it on a {@link Lock}, not a monitor, so virtual threads
+ * are not pinned while they wait.  If compilation fails, the failure
+ * is remembered and reported to every subsequent request.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * {@link Thread}s.</p>
+ *
+ * @param <T> the type of {@link Object} the {@link Pattern} matches
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#setLazyCompilation(boolean)
+ */
+final class LazyPattern<T> implements Serializable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * {@link Lock}s guarding compilation, shared by all {@link
+   * LazyPattern}s so that each need not carry its own.  This field is
+   * never {@code null}.
+   */
+  private static final Lock[] LOCKS = new Lock[32];
+
+  static {
+    for (int i = 0; i < LOCKS.length; i++) {
+      LOCKS[i] = new ReentrantLock();
+    }
+  }
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The source code of the {@link Pattern}.
+   *
+   * <p>This field may be {@code null}, but only if the {@link
+   * #pattern} field is not.</p>
+   */
+  private final String source;
+
+  /**
+   * The {@link PatternCache} used to compile the {@link Pattern}.
+   *
+   * <p>This field may be {@code null}, in which case the {@link
+   * Pattern} is compiled directly.  It is not serialized.</p>
+   */
+  private final transient PatternCache patternCache;
+
+  /**
+   * The compiled {@link Pattern}.
+   *
+   * <p>This field is {@code null} until the {@link Pattern} has been
+   * compiled.</p>
+   */
+  private volatile Pattern<T> pattern;
+
+  /**
+   * The {@link ParseException} thrown by a failed attempt to compile
+   * the {@link Pattern}.
+   *
+   * <p>This field is {@code null} unless compilation failed.</p>
+   */
+  private volatile ParseException failure;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link LazyPattern} that will compile the supplied
+   * {@code source} when first {@linkplain #get() requested}.
+   *
+   * @param source the source code of the {@link Pattern}; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code source} is {@code
+   * null}
+   *
+   * @see #LazyPattern(String, PatternCache)
+   */
+  LazyPattern(final String source) {
+    this(source, (PatternCache)null);
+  }
+
+  /**
+   * Creates a new {@link LazyPattern} that will compile the supplied
+   * {@code source} using the supplied {@link PatternCache} when first
+   * {@linkplain #get() requested}.
+   *
+   * @param source the source code of the {@link Pattern}; must not be
+   * {@code null}
+   *
+   * @param patternCache the {@link PatternCache} to use; may be
+   * {@code null} in which case the {@code source} will be compiled
+   * directly
+   *
+   * @exception IllegalArgumentException if {@code source} is {@code
+   * null}
+   */
+  LazyPattern(final String source, final PatternCache patternCache) {
+    super();
+    if (source == null) {
+      throw new IllegalArgumentException("source", new NullPointerException("source"));
+    }
+    this.source = source;
+    this.patternCache = patternCache;
+  }
+
+  /**
+   * Creates a new {@link LazyPattern} that refers to the supplied,
+   * already compiled, {@link Pattern}.
+   *
+   * @param source the source code of the {@link Pattern}; may be
+   * {@code null}
+   *
+   * @param pattern the {@link Pattern}; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code pattern} is {@code
+   * null}
+   */
+  LazyPattern(final String source, final Pattern<T> pattern) {
+    super();
+    if (pattern == null) {
+      throw new IllegalArgumentException("pattern", new NullPointerException("pattern"));
+    }
+    this.source = source;
+    this.patternCache = null;
+    this.pattern = pattern;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the source code of the {@link Pattern}, if known.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the source code of the {@link Pattern}, or {@code null}
+   */
+  final String getSource() {
+    return this.source;
+  }
+
+  /**
+   * Returns {@code true} if the {@link Pattern} has been compiled.
+   *
+   * @return {@code true} if the {@link Pattern} has been compiled;
+   * {@code false} otherwise
+   */
+  final boolean isCompiled() {
+    return this.pattern != null;
+  }
+
+  /**
+   * Returns the {@link Pattern}, compiling it first if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link Pattern}
+   *
+   * @exception IllegalStateException if the {@link Pattern} could not
+   * be compiled; its {@linkplain Throwable#getCause() cause} will be
+   * the {@link ParseException} that was thrown
+   */
+  final Pattern<T> get() {
+    Pattern<T> returnValue = this.pattern;
+    if (returnValue == null) {
+      final Lock lock = LOCKS[(System.identityHashCode(this) & Integer.MAX_VALUE) % LOCKS.length];
+      lock.lock();
+      try {
+        returnValue = this.pattern;
+        if (returnValue == null && this.failure == null) {
+          try {
+            final PatternCache patternCache = this.patternCache;
+            if (patternCache == null) {
+              returnValue = Pattern.<T>compile(this.source);
+            } else {
+              returnValue = patternCache.<T>getPattern(this.source);
+            }
+            this.pattern = returnValue;
+          } catch (final ParseException parseException) {
+            this.failure = parseException;
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (returnValue == null) {
+        throw new IllegalStateException("Could not compile pattern: " + this.source, this.failure);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the compiled {@link Pattern} if it has been compiled, or
+   * {@code null} if it has not been.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the compiled {@link Pattern}, or {@code null}
+   */
+  final Pattern<T> getIfCompiled() {
+    return this.pattern;
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link LazyPattern}: its source code if known, or the {@link
+   * String} representation of its compiled {@link Pattern}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    final String returnValue;
+    if (this.source == null) {
+      returnValue = String.valueOf(this.pattern);
+    } else {
+      returnValue = this.source;
+    }
+    return returnValue;
+  }
+
+}
@@ -0,0 +1,533 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * Opt-in instrumentation that counts, for each {@link Pattern}
+ * {@linkplain MessageFactory#setMatchMetrics(MatchMetrics) used} by a
+ * {@link MessageFactory}, how often it is evaluated, how often those
+ * evaluations match, how often it is selected and how long its
+ * evaluations take.
+ *
+ * <p>Statistics are kept per {@link Pattern} and can be {@linkplain
+ * #getKeyStatistics() aggregated} per {@link ResourceBundleKey}.
+ * They survive modifications to the {@link MessageFactory}: a {@link
+ * Pattern} is identified by its {@link ResourceBundleKey} and source
+ * code, not by identity.  A {@link MatchMetrics} may be shared by
+ * several {@link MessageFactory} instances, in which case their
+ * statistics are combined.</p>
+ *
+ * <p>Counters are {@link LongAdder}s, which are striped across
+ * {@link Thread}s, so recording a statistic does not contend with
+ * other {@link Thread}s doing the same.  Evaluation times are recorded
+ * in a histogram whose buckets are powers of two, from which
+ * percentiles are estimated.</p>
+ *
+ * <p>A {@link MatchMetrics} is an {@linkplain MatchMetricsMXBean
+ * MXBean} and can be {@linkplain #register() registered} with the
+ * platform {@link MBeanServer}.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#setMatchMetrics(MatchMetrics)
+ *
+ * @see MatchStatistics
+ */
+public final class MatchMetrics implements MatchMetricsMXBean {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The domain of the {@link ObjectName} under which instances of this
+   * class are {@linkplain #register() registered}.
+   */
+  public static final String DOMAIN = "com.edugility.splain";
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Counters} for each {@link Pattern}, indexed by its
+   * {@link ResourceBundleKey} and then by its source code.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ConcurrentMap<ResourceBundleKey, ConcurrentMap<String, Counters>> counters;
+
+  /**
+   * The {@link ObjectName} under which this {@link MatchMetrics} was
+   * {@linkplain #register() registered}.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private volatile ObjectName objectName;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MatchMetrics}.
+   */
+  public MatchMetrics() {
+    super();
+    this.counters = new ConcurrentHashMap<ResourceBundleKey, ConcurrentMap<String, Counters>>();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Counters} for the {@link Pattern} with the
+   * supplied source code indexed under the supplied {@link
+   * ResourceBundleKey}, creating them if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey}; must not be {@code null}
+   *
+   * @param pattern the source code of the {@link Pattern}, or some
+   * other {@link String} that identifies it; must not be {@code null}
+   *
+   * @return non-{@code null} {@link Counters}
+   */
+  final Counters getCounters(final ResourceBundleKey key, final String pattern) {
+    assert key != null;
+    assert pattern != null;
+    ConcurrentMap<String, Counters> patterns = this.counters.get(key);
+    if (patterns == null) {
+      patterns = new ConcurrentHashMap<String, Counters>();
+      final ConcurrentMap<String, Counters> old = this.counters.putIfAbsent(key, patterns);
+      if (old != null) {
+        patterns = old;
+      }
+    }
+    Counters returnValue = patterns.get(pattern);
+    if (returnValue == null) {
+      returnValue = new Counters();
+      final Counters old = patterns.putIfAbsent(pattern, returnValue);
+      if (old != null) {
+        returnValue = old;
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a snapshot of the statistics for each {@link Pattern}
+   * that has been considered.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link List} of {@link
+   * MatchStatistics}
+   */
+  @Override
+  public final List<MatchStatistics> getPatternStatistics() {
+    final List<MatchStatistics> returnValue = new ArrayList<MatchStatistics>();
+    for (final Entry<ResourceBundleKey, ConcurrentMap<String, Counters>> entry : this.counters.entrySet()) {
+      final String key = String.valueOf(entry.getKey());
+      for (final Entry<String, Counters> patternEntry : entry.getValue().entrySet()) {
+        returnValue.add(patternEntry.getValue().toStatistics(key, patternEntry.getKey()));
+      }
+    }
+    return Collections.unmodifiableList(returnValue);
+  }
+
+  /**
+   * Returns a snapshot of the statistics for each {@link
+   * ResourceBundleKey} whose {@link Pattern}s have been considered,
+   * aggregated over those {@link Pattern}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The {@linkplain MatchStatistics#getPattern() pattern} of each
+   * {@link MatchStatistics} returned is {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link List} of {@link
+   * MatchStatistics}
+   */
+  @Override
+  public final List<MatchStatistics> getKeyStatistics() {
+    final List<MatchStatistics> returnValue = new ArrayList<MatchStatistics>();
+    for (final Entry<ResourceBundleKey, ConcurrentMap<String, Counters>> entry : this.counters.entrySet()) {
+      final Counters total = new Counters();
+      for (final Counters counters : entry.getValue().values()) {
+        total.add(counters);
+      }
+      returnValue.add(total.toStatistics(String.valueOf(entry.getKey()), null));
+    }
+    return Collections.unmodifiableList(returnValue);
+  }
+
+  /**
+   * Returns a snapshot of the statistics for the {@link Pattern}s
+   * indexed under the supplied {@link ResourceBundleKey}, indexed by
+   * their source code.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} in question; may be
+   * {@code null} in which case an empty {@link Map} will be returned
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of {@link
+   * MatchStatistics}
+   */
+  public final Map<String, MatchStatistics> getPatternStatistics(final ResourceBundleKey key) {
+    final Map<String, MatchStatistics> returnValue;
+    final Map<String, Counters> patterns = key == null ? null : this.counters.get(key);
+    if (patterns == null || patterns.isEmpty()) {
+      returnValue = Collections.emptyMap();
+    } else {
+      final Map<String, MatchStatistics> map = new LinkedHashMap<String, MatchStatistics>();
+      final String keyString = key.toString();
+      for (final Entry<String, Counters> entry : patterns.entrySet()) {
+        map.put(entry.getKey(), entry.getValue().toStatistics(keyString, entry.getKey()));
+      }
+      returnValue = Collections.unmodifiableMap(map);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Resets all statistics to zero.
+   *
+   * <p>Statistics recorded concurrently with a call to this method
+   * may or may not be retained.</p>
+   */
+  @Override
+  public final void reset() {
+    for (final Map<String, Counters> patterns : this.counters.values()) {
+      for (final Counters counters : patterns.values()) {
+        counters.reset();
+      }
+    }
+  }
+
+  /**
+   * Registers this {@link MatchMetrics} with the {@linkplain
+   * ManagementFactory#getPlatformMBeanServer() platform
+   * <code>MBeanServer</code>} under an {@link ObjectName} in the
+   * {@link #DOMAIN} domain, and returns that {@link ObjectName}.  If
+   * this {@link MatchMetrics} is already registered, no action is
+   * taken.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link ObjectName} under which this
+   * {@link MatchMetrics} is registered
+   *
+   * @exception JMException if registration failed
+   *
+   * @see #unregister()
+   */
+  public final synchronized ObjectName register() throws JMException {
+    ObjectName returnValue = this.objectName;
+    if (returnValue == null) {
+      returnValue = new ObjectName(DOMAIN + ":type=MatchMetrics,id=" + Integer.toHexString(System.identityHashCode(this)));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, returnValue);
+      this.objectName = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Unregisters this {@link MatchMetrics} from the {@linkplain
+   * ManagementFactory#getPlatformMBeanServer() platform
+   * <code>MBeanServer</code>} if it was {@linkplain #register()
+   * registered}.
+   *
+   * @exception JMException if unregistration failed
+   *
+   * @see #register()
+   */
+  public final synchronized void unregister() throws JMException {
+    final ObjectName objectName = this.objectName;
+    if (objectName != null) {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      this.objectName = null;
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The counters recording the statistics of one {@link Pattern}.
+   *
+   * <p>Instances of this class are safe for concurrent use by
+   * multiple {@link Thread}s.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Counters {
+
+    /**
+     * The number of evaluations.
+     */
+    private final LongAdder evaluations;
+
+    /**
+     * The number of evaluations that produced a match.
+     */
+    private final LongAdder matches;
+
+    /**
+     * The number of selections.
+     */
+    private final LongAdder selections;
+
+    /**
+     * The total time spent in evaluations, in nanoseconds.
+     */
+    private final LongAdder nanos;
+
+    /**
+     * A histogram of evaluation times.  The element at index {@code
+     * i} counts evaluations that took at least 2<sup>i</sup>
+     * nanoseconds and less than 2<sup>i + 1</sup> nanoseconds; the
+     * element at index {@code 0} also counts evaluations too short to
+     * measure.
+     */
+    private final LongAdder[] histogram;
+
+    /**
+     * Creates a new {@link Counters}.
+     */
+    Counters() {
+      super();
+      this.evaluations = new LongAdder();
+      this.matches = new LongAdder();
+      this.selections = new LongAdder();
+      this.nanos = new LongAdder();
+      this.histogram = new LongAdder[Long.SIZE];
+      for (int i = 0; i < this.histogram.length; i++) {
+        this.histogram[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Records an evaluation.
+     *
+     * @param nanos the time the evaluation took, in nanoseconds
+     *
+     * @param matched whether the evaluation produced a match
+     */
+    final void recordEvaluation(final long nanos, final boolean matched) {
+      this.evaluations.increment();
+      if (matched) {
+        this.matches.increment();
+      }
+      if (nanos > 0L) {
+        this.nanos.add(nanos);
+        this.histogram[Long.SIZE - Long.numberOfLeadingZeros(nanos) - 1].increment();
+      } else {
+        this.histogram[0].increment();
+      }
+    }
+
+    /**
+     * Records a selection.
+     */
+    final void recordSelection() {
+      this.selections.increment();
+    }
+
+    /**
+     * Returns the number of evaluations recorded so far.
+     *
+     * @return the number of evaluations; never negative
+     *
+     * @see PatternIndex#reorder()
+     */
+    final long getEvaluationCount() {
+      return this.evaluations.sum();
+    }
+
+    /**
+     * Returns the total time spent in evaluations, in nanoseconds,
+     * divided by the number of evaluations that produced a match: the
+     * expected cost of finding a match by evaluating the {@link
+     * Pattern} these {@link Counters} describe.
+     *
+     * <p>Returns {@code 0.0} if there have been no evaluations, and
+     * {@link Double#POSITIVE_INFINITY} if there have been evaluations
+     * but none produced a match.</p>
+     *
+     * @return the time spent per match, in nanoseconds; never negative
+     *
+     * @see MessageFactory#setAdaptiveOrdering(boolean)
+     */
+    final double getCostPerMatch() {
+      final double returnValue;
+      if (this.evaluations.sum() <= 0L) {
+        returnValue = 0.0;
+      } else {
+        final long matches = this.matches.sum();
+        if (matches <= 0L) {
+          returnValue = Double.POSITIVE_INFINITY;
+        } else {
+          returnValue = (double)this.nanos.sum() / (double)matches;
+        }
+      }
+      return returnValue;
+    }
+
+    /**
+     * Adds the current values of the supplied {@link Counters} to
+     * these {@link Counters}.
+     *
+     * @param other the {@link Counters} to add; must not be {@code
+     * null}
+     */
+    private final void add(final Counters other) {
+      assert other != null;
+      this.evaluations.add(other.evaluations.sum());
+      this.matches.add(other.matches.sum());
+      this.selections.add(other.selections.sum());
+      this.nanos.add(other.nanos.sum());
+      for (int i = 0; i < this.histogram.length; i++) {
+        this.histogram[i].add(other.histogram[i].sum());
+      }
+    }
+
+    /**
+     * Resets these {@link Counters} to zero.
+     */
+    private final void reset() {
+      this.evaluations.reset();
+      this.matches.reset();
+      this.selections.reset();
+      this.nanos.reset();
+      for (final LongAdder bucket : this.histogram) {
+        bucket.reset();
+      }
+    }
+
+    /**
+     * Returns a {@link MatchStatistics} reflecting the current values
+     * of these {@link Counters}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param key the key to describe; may be {@code null}
+     *
+     * @param pattern the {@link Pattern} source to describe; may be
+     * {@code null}
+     *
+     * @return a new, non-{@code null} {@link MatchStatistics}
+     */
+    private final MatchStatistics toStatistics(final String key, final String pattern) {
+      final long[] buckets = new long[this.histogram.length];
+      long count = 0L;
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = this.histogram[i].sum();
+        count += buckets[i];
+      }
+      return new MatchStatistics(key,
+                                 pattern,
+                                 this.evaluations.sum(),
+                                 this.matches.sum(),
+                                 this.selections.sum(),
+                                 this.nanos.sum(),
+                                 percentile(buckets, count, 0.5),
+                                 percentile(buckets, count, 0.99));
+    }
+
+    /**
+     * Estimates a percentile from a histogram.
+     *
+     * @param buckets the histogram; must not be {@code null}
+     *
+     * @param count the total of the histogram's buckets
+     *
+     * @param fraction the percentile to estimate, as a fraction
+     * between {@code 0.0} and {@code 1.0}
+     *
+     * @return the upper bound, in nanoseconds, of the bucket in which
+     * the percentile falls, or {@code 0} if the histogram is empty
+     */
+    private static final long percentile(final long[] buckets, final long count, final double fraction) {
+      assert buckets != null;
+      if (count <= 0L) {
+        return 0L;
+      }
+      final long rank = Math.max(1L, (long)Math.ceil(count * fraction));
+      long seen = 0L;
+      for (int i = 0; i < buckets.length; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          return i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1L;
+        }
+      }
+      return Long.MAX_VALUE;
+    }
+
+  }
+
+}
@@ -0,0 +1,320 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.beans.ConstructorProperties;
+
+import java.io.Serializable;
+
+/**
+ * An immutable snapshot of the statistics gathered by {@link
+ * MatchMetrics} about one {@link com.edugility.objexj.Pattern}, or
+ * about all of the {@link com.edugility.objexj.Pattern}s indexed under
+ * one {@link ResourceBundleKey}.
+ *
+ * <p>Evaluation times are measured in nanoseconds.  Percentiles are
+ * estimated from a histogram whose buckets are powers of two, so they
+ * are accurate to within a factor of two.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MatchMetrics
+ */
+public final class MatchStatistics implements Serializable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@linkplain ResourceBundleKey#toString() string
+   * representation} of the {@link ResourceBundleKey} described.
+   *
+   * @see #getKey()
+   */
+  private final String key;
+
+  /**
+   * The source code of the {@link com.edugility.objexj.Pattern}
+   * described, or {@code null} if all of the {@linkplain #key key}'s {@link
+   * com.edugility.objexj.Pattern}s are described.
+   *
+   * @see #getPattern()
+   */
+  private final String pattern;
+
+  /**
+   * The number of times a {@link com.edugility.objexj.Pattern} was
+   * evaluated.
+   *
+   * @see #getEvaluationCount()
+   */
+  private final long evaluationCount;
+
+  /**
+   * The number of evaluations that produced a match.
+   *
+   * @see #getMatchCount()
+   */
+  private final long matchCount;
+
+  /**
+   * The number of times a {@link com.edugility.objexj.Pattern} was
+   * selected, whether or not it had to be evaluated.
+   *
+   * @see #getSelectionCount()
+   */
+  private final long selectionCount;
+
+  /**
+   * The total time spent in evaluations.
+   *
+   * @see #getTotalEvaluationNanos()
+   */
+  private final long totalEvaluationNanos;
+
+  /**
+   * The estimated median evaluation time.
+   *
+   * @see #getMedianEvaluationNanos()
+   */
+  private final long medianEvaluationNanos;
+
+  /**
+   * The estimated 99th percentile evaluation time.
+   *
+   * @see #get99thPercentileEvaluationNanos()
+   */
+  private final long ninetyNinthPercentileEvaluationNanos;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MatchStatistics}.
+   *
+   * @param key the {@linkplain ResourceBundleKey#toString() string
+   * representation} of the {@link ResourceBundleKey} described; may
+   * be {@code null}
+   *
+   * @param pattern the source code of the {@link
+   * com.edugility.objexj.Pattern} described; may be {@code null}
+   *
+   * @param evaluationCount the number of evaluations
+   *
+   * @param matchCount the number of evaluations that produced a match
+   *
+   * @param selectionCount the number of selections
+   *
+   * @param totalEvaluationNanos the total time spent in evaluations
+   *
+   * @param medianEvaluationNanos the estimated median evaluation time
+   *
+   * @param ninetyNinthPercentileEvaluationNanos the estimated 99th
+   * percentile evaluation time
+   */
+  @ConstructorProperties({ "key", "pattern", "evaluationCount", "matchCount", "selectionCount", "totalEvaluationNanos", "medianEvaluationNanos", "99thPercentileEvaluationNanos" })
+  public MatchStatistics(final String key,
+                         final String pattern,
+                         final long evaluationCount,
+                         final long matchCount,
+                         final long selectionCount,
+                         final long totalEvaluationNanos,
+                         final long medianEvaluationNanos,
+                         final long ninetyNinthPercentileEvaluationNanos) {
+    super();
+    this.key = key;
+    this.pattern = pattern;
+    this.evaluationCount = evaluationCount;
+    this.matchCount = matchCount;
+    this.selectionCount = selectionCount;
+    this.totalEvaluationNanos = totalEvaluationNanos;
+    this.medianEvaluationNanos = medianEvaluationNanos;
+    this.ninetyNinthPercentileEvaluationNanos = ninetyNinthPercentileEvaluationNanos;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@linkplain ResourceBundleKey#toString() string
+   * representation} of the {@link ResourceBundleKey} described.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the described key, or {@code null}
+   */
+  public final String getKey() {
+    return this.key;
+  }
+
+  /**
+   * Returns the source code of the {@link
+   * com.edugility.objexj.Pattern} described, or {@code null} if these
+   * statistics describe all of the {@link
+   * com.edugility.objexj.Pattern}s indexed under the {@linkplain
+   * #getKey() key}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the described {@link com.edugility.objexj.Pattern}
+   * source, or {@code null}
+   */
+  public final String getPattern() {
+    return this.pattern;
+  }
+
+  /**
+   * Returns the number of times a {@link
+   * com.edugility.objexj.Pattern} was evaluated.
+   *
+   * @return the number of evaluations; always {@code 0} or greater
+   */
+  public final long getEvaluationCount() {
+    return this.evaluationCount;
+  }
+
+  /**
+   * Returns the number of evaluations that produced a match.
+   *
+   * @return the number of matching evaluations; always {@code 0} or
+   * greater
+   */
+  public final long getMatchCount() {
+    return this.matchCount;
+  }
+
+  /**
+   * Returns the number of evaluations that did not produce a match.
+   *
+   * @return the number of fruitless evaluations; always {@code 0} or
+   * greater
+   */
+  public final long getMissCount() {
+    return Math.max(0L, this.evaluationCount - this.matchCount);
+  }
+
+  /**
+   * Returns the number of times a {@link
+   * com.edugility.objexj.Pattern} was selected, including selections
+   * that required no evaluation because the result was already known.
+   *
+   * @return the number of selections; always {@code 0} or greater
+   */
+  public final long getSelectionCount() {
+    return this.selectionCount;
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, spent in evaluations.
+   *
+   * @return the total evaluation time; always {@code 0} or greater
+   */
+  public final long getTotalEvaluationNanos() {
+    return this.totalEvaluationNanos;
+  }
+
+  /**
+   * Returns the mean time, in nanoseconds, of an evaluation, or
+   * {@code 0} if there have been no evaluations.
+   *
+   * @return the mean evaluation time; always {@code 0} or greater
+   */
+  public final long getMeanEvaluationNanos() {
+    final long returnValue;
+    if (this.evaluationCount <= 0L) {
+      returnValue = 0L;
+    } else {
+      returnValue = this.totalEvaluationNanos / this.evaluationCount;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the estimated median time, in nanoseconds, of an
+   * evaluation.
+   *
+   * @return the estimated median evaluation time; always {@code 0} or
+   * greater
+   */
+  public final long getMedianEvaluationNanos() {
+    return this.medianEvaluationNanos;
+  }
+
+  /**
+   * Returns the estimated 99th percentile time, in nanoseconds, of an
+   * evaluation.
+   *
+   * @return the estimated 99th percentile evaluation time; always
+   * {@code 0} or greater
+   */
+  public final long get99thPercentileEvaluationNanos() {
+    return this.ninetyNinthPercentileEvaluationNanos;
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link MatchStatistics}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return new StringBuilder("MatchStatistics[key=").append(this.getKey())
+      .append(", pattern=").append(this.getPattern())
+      .append(", evaluations=").append(this.getEvaluationCount())
+      .append(", matches=").append(this.getMatchCount())
+      .append(", selections=").append(this.getSelectionCount())
+      .append(", totalNanos=").append(this.getTotalEvaluationNanos())
+      .append(", medianNanos=").append(this.getMedianEvaluationNanos())
+      .append(", p99Nanos=").append(this.get99thPercentileEvaluationNanos())
+      .append("]").toString();
+  }
+
+}
@@ -0,0 +1,254 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.edugility.objexj.Matcher;
+
+import org.mvel2.UnresolveablePropertyException;
+
+import org.mvel2.integration.VariableResolver;
+
+import org.mvel2.integration.impl.BaseVariableResolverFactory;
+import org.mvel2.integration.impl.SimpleValueResolver;
+
+/**
+ * A {@link BaseVariableResolverFactory} that resolves MVEL variables
+ * directly from a {@link Matcher}, and only on demand.
+ *
+ * <p>A variable named {@code $}<em>n</em>, where <em>n</em> is a
+ * non-negative decimal integer less than the {@link Matcher}'s
+ * {@linkplain Matcher#groupCount() group count}, resolves to
+ * {@linkplain Matcher#group(int) group <em>n</em>}.  Any other
+ * variable resolves to the entry with the same name in the {@link
+ * Matcher}'s {@linkplain Matcher#getVariables() variables}, which take
+ * precedence over groups.  Variables created by a template itself
+ * take precedence over both, and never modify the {@link
+ * Matcher}.</p>
+ *
+ * <p>Nothing is copied out of the {@link Matcher} unless a template
+ * actually refers to it.</p>
+ *
+ * <p>Instances of this class are not safe for concurrent use by
+ * multiple {@link Thread}s, and are intended to be used for a single
+ * template evaluation.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#format(Object, Matcher)
+ */
+final class MatcherVariableResolverFactory extends BaseVariableResolverFactory {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain java.io.Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Matcher} from which variables are resolved.  This
+   * field is never {@code null} except after deserialization.
+   */
+  private final transient Matcher<?> matcher;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MatcherVariableResolverFactory}.
+   *
+   * @param matcher the {@link Matcher} from which variables will be
+   * resolved; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code matcher} is {@code
+   * null}
+   */
+  MatcherVariableResolverFactory(final Matcher<?> matcher) {
+    super();
+    if (matcher == null) {
+      throw new IllegalArgumentException("matcher", new NullPointerException("matcher"));
+    }
+    this.matcher = matcher;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  @Override
+  public final VariableResolver createVariable(final String name, final Object value) {
+    VariableResolver returnValue = this.variableResolvers.get(name);
+    if (returnValue == null) {
+      returnValue = new SimpleValueResolver(value);
+      this.variableResolvers.put(name, returnValue);
+    } else {
+      returnValue.setValue(value);
+    }
+    return returnValue;
+  }
+
+  @Override
+  public final VariableResolver createVariable(final String name, final Object value, final Class<?> type) {
+    return this.createVariable(name, value);
+  }
+
+  @Override
+  public final boolean isTarget(final String name) {
+    return this.variableResolvers.containsKey(name);
+  }
+
+  @Override
+  public final boolean isResolveable(final String name) {
+    return
+      this.variableResolvers.containsKey(name) ||
+      this.isMatcherVariable(name) ||
+      (this.nextFactory != null && this.nextFactory.isResolveable(name));
+  }
+
+  @Override
+  public final VariableResolver getVariableResolver(final String name) {
+    VariableResolver returnValue = this.variableResolvers.get(name);
+    if (returnValue == null) {
+      final Map<?, ?> variables = this.matcher == null ? null : this.matcher.getVariables();
+      if (variables != null && variables.containsKey(name)) {
+        returnValue = new SimpleValueResolver(variables.get(name));
+        this.variableResolvers.put(name, returnValue);
+      } else {
+        final int group = this.getGroupIndex(name);
+        if (group >= 0) {
+          returnValue = new SimpleValueResolver(this.matcher.group(group));
+          this.variableResolvers.put(name, returnValue);
+        } else if (this.nextFactory != null) {
+          returnValue = this.nextFactory.getVariableResolver(name);
+        } else {
+          throw new UnresolveablePropertyException(name);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  @Override
+  public final Set<String> getKnownVariables() {
+    final Set<String> returnValue = new HashSet<String>(this.variableResolvers.keySet());
+    if (this.matcher != null) {
+      final int groupCount = this.matcher.groupCount();
+      for (int i = 0; i < groupCount; i++) {
+        returnValue.add("$" + i);
+      }
+      final Map<?, ?> variables = this.matcher.getVariables();
+      if (variables != null) {
+        for (final Object key : variables.keySet()) {
+          if (key instanceof String) {
+            returnValue.add((String)key);
+          }
+        }
+      }
+    }
+    if (this.nextFactory != null) {
+      returnValue.addAll(this.nextFactory.getKnownVariables());
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code name} identifies
+   * either one of the {@link Matcher}'s {@linkplain
+   * Matcher#getVariables() variables} or one of its {@linkplain
+   * Matcher#group(int) groups}.
+   *
+   * @param name the name to test; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@code name} can be resolved
+   * from the {@link Matcher}
+   */
+  private final boolean isMatcherVariable(final String name) {
+    boolean returnValue = false;
+    if (name != null && this.matcher != null) {
+      final Map<?, ?> variables = this.matcher.getVariables();
+      returnValue = (variables != null && variables.containsKey(name)) || this.getGroupIndex(name) >= 0;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the index of the {@linkplain Matcher#group(int) group}
+   * identified by the supplied {@code name}, or {@code -1} if the
+   * supplied {@code name} does not identify a group that the {@link
+   * Matcher} has.
+   *
+   * @param name a variable name of the form {@code
+   * $}<em>n</em>; may be {@code null}
+   *
+   * @return the index of a group, or {@code -1}
+   */
+  private final int getGroupIndex(final String name) {
+    int returnValue = -1;
+    if (this.matcher != null && name != null) {
+      final int length = name.length();
+      // Ten digits would already exceed any plausible group count.
+      if (length > 1 && length <= 10 && name.charAt(0) == '$') {
+        int index = 0;
+        for (int i = 1; i < length; i++) {
+          final char c = name.charAt(i);
+          if (c < '0' || c > '9') {
+            index = -1;
+            break;
+          }
+          index = index * 10 + (c - '0');
+        }
+        if (index >= 0 && index < this.matcher.groupCount()) {
+          returnValue = index;
+        }
+      }
+    }
+    return returnValue;
+  }
+
+}
@@ -29,9 +29,16 @@ package com.edugility.splain;
 
 import java.io.Serializable;
 
+import java.text.ParseException;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -39,11 +46,24 @@ import java.util.Map.Entry;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.LinkedHashSet;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.function.Supplier;
 
 import com.edugility.objexj.Pattern;
 import com.edugility.objexj.Matcher;
 
+import org.mvel2.templates.CompiledTemplate;
 import org.mvel2.templates.TemplateRuntime;
 
 /**
@@ -55,8 +75,38 @@ import org.mvel2.templates.TemplateRuntime;
  * to it}.  Then pass a {@link List} of items to the {@link
  * #getMessage(List, Locale)} method.</p>
  *
+ * <p>{@link Pattern}s that are {@linkplain
+ * #addPattern(ResourceBundleKey, String) added by source code} are
+ * analyzed so that the types of objects they require can be
+ * determined.  Lookups then evaluate only those {@link Pattern}s
+ * whose required types are present in the input {@link List}.</p>
+ *
+ * <p>If {@linkplain #setAutomatonEnabled(boolean) enabled}, all
+ * analyzable {@link Pattern}s are additionally combined into a single
+ * automaton that finds their potential matches in one pass over the
+ * input {@link List}, so that lookups against large catalogs evaluate
+ * very few {@link Pattern}s individually.</p>
+ *
+ * <p>If {@linkplain #setLazyCompilation(boolean) lazy compilation} is
+ * enabled, {@link Pattern}s added by source code are not compiled
+ * until they are first evaluated, so that large catalogs load
+ * quickly and {@link Pattern}s that are never needed are never
+ * compiled.</p>
+ *
  * <p>This class is not safe for concurrent use by multiple {@link
- * Thread}s.</p>
+ * Thread}s until it has been {@linkplain #freeze() frozen}.  Once
+ * frozen, a {@link MessageFactory} can no longer be modified, and,
+ * once {@linkplain #freeze() safely published}, may be used by any
+ * number of {@link Thread}s concurrently without locking.</p>
+ *
+ * <p>Message selection and formatting never enter {@code synchronized}
+ * blocks; the caches consulted along the way are either lock-free or
+ * guarded by {@link java.util.concurrent.locks.Lock}s, so calling
+ * threads, including virtual threads, are never pinned by this class.
+ * Callers that must not block at all, because a message lookup may
+ * load a {@link ResourceBundle} or evaluate arbitrary predicates, can
+ * use the {@link #getMessageAsync(List, Locale, Executor)} method
+ * instead.</p>
  *
  * @param <T> the type of {@link Object} used by the {@link
  * #getMessage(List, Locale)} method; the type of {@link Object} used by the
@@ -72,8 +122,46 @@ public class MessageFactory<T> implements Serializable {
   /**
    * The version of this class for {@linkplain Serializable
    * serialization purposes}.
+   *
+   * <p>Version {@code 2} holds each {@link ResourceBundleKey}'s
+   * {@link Pattern}s in a {@link PatternSet} rather than a {@link
+   * Set}, and cannot read the serialized form of version {@code
+   * 1}.</p>
+   */
+  private static final long serialVersionUID = 2L;
+
+  /**
+   * A sentinel {@link Object} supplied to the {@link
+   * ResourceBundleKey#getObject(Locale, Object)} method to detect
+   * missing messages.  This field is never {@code null}.
+   *
+   * @see #warmUp(Collection, Iterable, int)
+   */
+  private static final Object MISSING = new Object();
+
+  /**
+   * Whether a given subclass of {@link MessageFactory} overrides the
+   * {@link #getMessage(List, Locale)} method, computed once per
+   * {@link Class}.  This field is never {@code null}.
+   *
+   * @see #getMessage(List, Locale, String)
+   */
+  private static final ClassValue<Boolean> overridesGetMessage = new ClassValue<Boolean>() {
+      @Override
+      protected final Boolean computeValue(final Class<?> c) {
+        return Boolean.valueOf(overrides(c, "getMessage", List.class, Locale.class));
+      }
+    };
+
+  /**
+   * The number of lookups between successive attempts to {@linkplain
+   * #reorderPatterns() reorder} the {@link Pattern}s of a {@link
+   * MessageFactory} whose {@linkplain #isAdaptiveOrdering() adaptive
+   * ordering} is enabled.
+   *
+   * @see #setAdaptiveOrdering(boolean)
    */
-  private static final long serialVersionUID = 1L;
+  private static final long ADAPTIVE_ORDERING_INTERVAL = 4096L;
 
   /**
    * A {@link Map} of {@link Set}s of {@link Pattern}s, indexed by
@@ -81,274 +169,1484 @@ public class MessageFactory<T> implements Serializable {
    *
    * <p>This field may be {@code null}.</p>
    */
-  private Map<ResourceBundleKey, Set<Pattern<T>>> patterns;
+  private Map<ResourceBundleKey, PatternSet> patterns;
 
   /**
-   * Creates a new {@link MessageFactory}.
+   * A {@link PatternIndex} built from the {@link #patterns} field.
+   * It is discarded whenever the {@link #patterns} field is modified
+   * and rebuilt when next it is needed.  Once this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen} it is never
+   * discarded.
+   *
+   * <p>This field may be {@code null}.</p>
+   *
+   * @see #getPatternIndex()
    */
-  public MessageFactory() {
-    super();
-  }
+  private transient volatile PatternIndex<T> patternIndex;
 
   /**
-   * Adds a {@link Pattern} to the {@link Set} of {@link Pattern}s
-   * indexed under the supplied {@link ResourceBundleKey} and returns
-   * the full {@link Set} of such {@link Pattern}s.  If no such {@link
-   * Set} exists, one is created whose sole contents are the supplied
-   * {@link Pattern}.
+   * Whether this {@link MessageFactory} has been {@linkplain
+   * #freeze() frozen}.
    *
-   * <p>This method never returns {@code null}.</p>
+   * @see #freeze()
    *
-   * <p>{@link Pattern}s may also be added by {@linkplain
-   * #getPatterns(ResourceBundleKey) retrieving a <code>Set</code> of
-   * <code>Pattern</code>s} and {@linkplain Set#add(Object) adding} a
-   * {@link Pattern} to it directly.</p>
+   * @see #isFrozen()
+   */
+  private volatile boolean frozen;
+
+  /**
+   * Whether lookups should use an automaton that combines all
+   * analyzable {@link Pattern}s.
    *
-   * @param key the {@link ResourceBundleKey} under which the supplied
-   * {@link Pattern} is to be indexed; must not be {@code null}
+   * @see #isAutomatonEnabled()
    *
-   * @param pattern the {@link Pattern} to add; must not be {@code
-   * null}
+   * @see #setAutomatonEnabled(boolean)
+   */
+  private boolean automatonEnabled;
+
+  /**
+   * Whether {@link Pattern}s added by source code are compiled only
+   * when they are first evaluated.
    *
-   * @return the full {@link Set} of {@link Pattern}s indexed under
-   * the supplied {@code key}; never {@code null}
+   * @see #isLazyCompilation()
    *
-   * @exception IllegalArgumentException if {@code key} or {@code
-   * pattern} is {@code null}
+   * @see #setLazyCompilation(boolean)
+   */
+  private boolean lazyCompilation;
+
+  /**
+   * Whether the {@link Pattern}s added under each {@link
+   * ResourceBundleKey} are periodically reordered by their observed
+   * cost.
    *
-   * @see Pattern
+   * @see #isAdaptiveOrdering()
    *
-   * @see ResourceBundleKey
+   * @see #setAdaptiveOrdering(boolean)
+   */
+  private boolean adaptiveOrdering;
+
+  /**
+   * The {@link MatchMetrics} in which statistics used for {@linkplain
+   * #setAdaptiveOrdering(boolean) adaptive ordering} are recorded if
+   * no {@link MatchMetrics} has been {@linkplain
+   * #setMatchMetrics(MatchMetrics) installed}.
    *
-   * @see #addPatterns(ResourceBundleKey, Iterable)
+   * <p>This field may be {@code null}.</p>
    *
-   * @see #getPatterns(ResourceBundleKey)
+   * @see #getIndexMetrics()
    */
-  public final Set<Pattern<T>> addPattern(final ResourceBundleKey key, final Pattern<T> pattern) {
-    if (key == null) {
-      throw new IllegalArgumentException("key", new NullPointerException("key"));
-    }
-    if (pattern == null) {
-      throw new IllegalArgumentException("pattern", new NullPointerException("patterns"));
-    }
-    return this.addPatterns(key, Collections.singleton(pattern));
-  }
+  private transient volatile MatchMetrics adaptiveMetrics;
 
   /**
-   * Adds the supplied {@link Iterable} of {@link Pattern}s to the
-   * {@link Set} of {@link Pattern}s indexed under the supplied {@code
-   * key} and returns the full {@link Set} of such {@link Pattern}s
-   * that results from this addition.
+   * The number of lookups performed while {@linkplain
+   * #setAdaptiveOrdering(boolean) adaptive ordering} is enabled.
    *
-   * <p>{@link Pattern}s may also be added by {@linkplain
-   * #getPatterns(ResourceBundleKey) retrieving a <code>Set</code> of
-   * <code>Pattern</code>s} and {@linkplain Set#add(Object) adding} a
-   * {@link Pattern} to it directly.</p>
+   * <p>This field may be {@code null}.</p>
    *
-   * <p>This method never returns {@code null}.</p>
+   * @see #countLookup(PatternIndex)
+   */
+  private transient volatile AtomicLong lookupCount;
+
+  /**
+   * The {@link SelectorCache} used to record the results of message
+   * selection for inputs whose result depends only on the {@link
+   * Class}es of their items.
    *
-   * @param key the {@link ResourceBundleKey} under which the {@link
-   * Pattern} is to be stored; must not be {@code null}
+   * <p>This field may be {@code null}, in which case no such results
+   * are recorded.</p>
    *
-   * @param patterns an {@link Iterable} of {@link Pattern}s to add;
-   * no references are kept to this object; must not be {@code null}
+   * @see #getSelectorCache()
    *
-   * @return the full {@link Set} of {@link Pattern}s indexed under
-   * the supplied {@code key}; never {@code null}
+   * @see #setSelectorCache(SelectorCache)
+   */
+  private transient volatile SelectorCache selectorCache;
+
+  /**
+   * The {@link PatternCache} used to compile {@link Pattern}s added by
+   * source code.
    *
-   * @exception IllegalArgumentException if either parameter is {@code
-   * null}
+   * <p>This field may be {@code null}, in which case each such {@link
+   * Pattern} is compiled afresh.</p>
    *
-   * @see Pattern
+   * @see #getPatternCache()
    *
-   * @see ResourceBundleKey
+   * @see #setPatternCache(PatternCache)
+   */
+  private transient volatile PatternCache patternCache;
+
+  /**
+   * The {@link MatchMetrics} in which statistics about each {@link
+   * Pattern} are recorded.
    *
-   * @see #getPatterns(ResourceBundleKey)
+   * <p>This field may be {@code null}, in which case no statistics
+   * are recorded.</p>
+   *
+   * @see #getMatchMetrics()
+   *
+   * @see #setMatchMetrics(MatchMetrics)
    */
-  public Set<Pattern<T>> addPatterns(final ResourceBundleKey key, final Iterable<? extends Pattern<T>> patterns) {
-    if (key == null) {
-      throw new IllegalArgumentException("key", new NullPointerException("key"));
-    }
-    if (patterns == null) {
-      throw new IllegalArgumentException("patterns", new NullPointerException("patterns"));
-    }
-    if (this.patterns == null) {
-      this.patterns = new LinkedHashMap<ResourceBundleKey, Set<Pattern<T>>>();
-    }
-    Set<Pattern<T>> patternSet = this.patterns.get(key);
-    if (patternSet == null) {
-      patternSet = new LinkedHashSet<Pattern<T>>();
-      this.patterns.put(key, patternSet);
-    }
-    for (final Pattern<T> pattern : patterns) {
-      if (pattern != null) {
-        patternSet.add(pattern);
-      }
-    }
-    return patternSet;
-  }
+  private transient volatile MatchMetrics matchMetrics;
 
   /**
-   * Returns a {@link Set} of {@link Pattern}s indexed under the
-   * supplied {@code key}, or {@code null} if there is no such {@link
-   * Set}.
+   * The {@link MessageTable} holding precomputed messages.
    *
-   * <p>The {@link Set} that is returned is the actual {@link Set}
-   * used internally by this {@link MessageFactory} and is
-   * mutable.</p>
+   * <p>This field may be {@code null}, in which case every message is
+   * resolved when it is selected.</p>
    *
-   * <p>This method may return {@code null}.</p>
+   * @see #precomputeMessages(Collection)
+   */
+  private transient volatile MessageTable messageTable;
+
+  /**
+   * The {@link TemplateCache} used to hold {@link CompiledTemplate}s
+   * produced by the {@link #format(Object, Matcher)} method.
    *
-   * @param key the {@link ResourceBundleKey} whose {@link Pattern}s
-   * are to be retrieved; must not be {@code null}
+   * <p>This field may be {@code null} after deserialization.</p>
    *
-   * @return a {@link Set} of {@link Pattern}s indexed under the
-   * supplied {@code key}, or {@code null}
+   * @see #getTemplateCache()
+   */
+  private transient TemplateCache templateCache;
+
+  /**
+   * Creates a new {@link MessageFactory}.
    *
-   * @exception IllegalArgumentException if {@code key} is {@code
-   * null}
+   * <p>This constructor calls the {@link
+   * #MessageFactory(TemplateCache)} constructor, passing {@code
+   * null}.</p>
+   *
+   * @see #MessageFactory(TemplateCache)
    */
-  public Set<Pattern<T>> getPatterns(final ResourceBundleKey key) {
-    if (key == null) {
-      throw new IllegalArgumentException("key", new NullPointerException("key"));
-    }
-    final Set<Pattern<T>> returnValue;
-    if (this.patterns != null && !this.patterns.isEmpty()) {
-      returnValue = this.patterns.get(key);
+  public MessageFactory() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@link MessageFactory}.
+   *
+   * @param templateCache the {@link TemplateCache} to use to hold
+   * {@link CompiledTemplate}s; may be shared among several {@link
+   * MessageFactory} instances; may be {@code null} in which case a
+   * new {@link TemplateCache} will be created instead
+   *
+   * @see #getTemplateCache()
+   */
+  public MessageFactory(final TemplateCache templateCache) {
+    super();
+    if (templateCache == null) {
+      this.templateCache = new TemplateCache();
     } else {
-      returnValue = null;
+      this.templateCache = templateCache;
     }
-    return returnValue;
   }
 
   /**
-   * Removes the {@link Set} of {@link Pattern}s indexed under the
-   * supplied {@code key} and returns it.
-   *
-   * <p>This method may return {@code null}.</p>
+   * Returns the {@link TemplateCache} used by the {@link
+   * #format(Object, Matcher)} method to avoid recompiling the same
+   * template text over and over.
    *
-   * @param key a {@link ResourceBundleKey} whose associated {@link
-   * Pattern}s are to be removed; must not be {@code null}
+   * <p>This method never returns {@code null}.</p>
    *
-   * @return a {@link Set} of {@link Pattern}s that was removed, or
-   * {@code null}
+   * @return a non-{@code null} {@link TemplateCache}
    *
-   * @exception IllegalArgumentException if {@code key} was {@code
-   * null}
+   * @see #MessageFactory(TemplateCache)
    */
-  public Set<Pattern<T>> removePatterns(final ResourceBundleKey key) {
-    if (key == null) {
-      throw new IllegalArgumentException("key", new NullPointerException("key"));
-    }
-    final Set<Pattern<T>> returnValue;
-    if (this.patterns == null || this.patterns.isEmpty()) {
-      returnValue = null;
-    } else {
-      returnValue = this.patterns.remove(key);
+  public final TemplateCache getTemplateCache() {
+    if (this.templateCache == null) {
+      this.templateCache = new TemplateCache();
     }
-    return returnValue;
+    return this.templateCache;
   }
 
   /**
-   * Formats or transforms the supplied {@code rawMessage} {@link
-   * Object} in some way, perhaps by using the information stored as
-   * part of the supplied {@link Matcher}, and returns the formatted
-   * or transformed {@link Object}.
+   * Freezes this {@link MessageFactory} so that it can no longer be
+   * modified, and returns it.
    *
-   * <p>This implementation checks to see if the supplied {@code
-   * rawMessage} is an instance of {@link CharSequence}.  If so, it is
-   * treated as an <a href="http://mvel.codehaus.org/">MVEL</a> <a
-   * href="http://mvel.codehaus.org/Templating+Guide">template</a>.
-   * The template is interpolated using all the {@linkplain
-   * Matcher#group(int) capture groups} and {@linkplain
-   * Matcher#getVariables() variables} that the supplied {@link
-   * Matcher} is capable of providing.</p>
+   * <p>This method never returns {@code null}.</p>
    *
-   * <p>Specifically, <a
-   * href="http://mvel.codehaus.org/MVEL+2.0+Orb+Tags">orb tags</a>
-   * may have bodies that reference the {@linkplain
-   * Matcher#getVariables() variables contained by the supplied
-   * <code>Matcher</code>}, as well as {@linkplain Matcher#group(int) its
-   * capture groups}.  Capture group variable references begin with
-   * the {@code $} character, so the following orb tag would return a
-   * {@link List} representing the full match:</p>
+   * <p>Freezing compiles the {@link Pattern}s and {@link
+   * ResourceBundleKey}s added so far into flat, ordered arrays held
+   * in {@code final} fields of a structure that subsequent lookups
+   * use directly, and that is never rebuilt; {@linkplain
+   * #reorderPatterns() adaptive ordering} changes only the order in
+   * which it tries {@link Pattern}s.  After this method returns, this
+   * {@link MessageFactory} may be shared among and used by any number
+   * of {@link Thread}s without further synchronization, provided that
+   * the reference to it is itself safely published: for example by
+   * storing it in a {@code final} or {@code volatile} field or a
+   * concurrent collection, or before starting the {@link Thread}s
+   * that use it.  Not all of its state is held in {@code final}
+   * fields, so a {@link Thread} that obtains a reference to it through
+   * a data race may not see it in its fully frozen state.</p>
    *
-   * <blockquote><code>@{$0}</code></blockquote>
+   * <p>Once this method has been called, the {@link
+   * #addPattern(ResourceBundleKey, Pattern)}, {@link
+   * #addPattern(ResourceBundleKey, String)}, {@link
+   * #addPatterns(ResourceBundleKey, Iterable)} and {@link
+   * #removePatterns(ResourceBundleKey)} methods will throw {@link
+   * UnsupportedOperationException}s, and {@link Set}s returned by the
+   * {@link #getPatterns(ResourceBundleKey)} method will be
+   * unmodifiable.</p>
    *
-   * @param rawMessage the unformatted message as returned by the
-   * {@link #getMessage(List, Locale)} method; may be {@code null}
+   * <p>Calling this method on a {@link MessageFactory} that is
+   * already frozen has no effect.</p>
    *
-   * @param matcher the {@link Matcher} that was used by the {@link
-   * #getMessage(List, Locale)} method in producing the {@code
-   * rawMessage} parameter value; may be {@code null}
+   * @return this {@link MessageFactory}, frozen; never {@code null}
    *
-   * @return a formatted version of the supplied {@code rawMessage},
-   * which may simply be the supplied {@code rawMessage} if no formatting
-   * could be performed
+   * @see #isFrozen()
+   */
+  public final MessageFactory<T> freeze() {
+    if (!this.frozen) {
+      this.getTemplateCache();
+      final PatternIndex<T> patternIndex = this.getPatternIndex();
+      assert patternIndex != null;
+      this.frozen = true;
+      // Volatile write last: publishes everything above.
+      this.patternIndex = patternIndex;
+    }
+    return this;
+  }
+
+  /**
+   * Returns {@code true} if this {@link MessageFactory} has been
+   * {@linkplain #freeze() frozen}.
    *
-   * @see TemplateRuntime
+   * @return {@code true} if this {@link MessageFactory} has been
+   * {@linkplain #freeze() frozen}; {@code false} otherwise
    *
-   * @see #getMessage(List, Locale)
+   * @see #freeze()
    */
-  protected Object format(final Object rawMessage, final Matcher<T> matcher) {
-    final Object returnValue;
-    if (rawMessage instanceof CharSequence) {
-      final String template = rawMessage.toString();
-      if (template != null && matcher != null) {
-        final Map<?, ?> matcherVariables = matcher.getVariables();
-        final int matcherVariablesSize = matcherVariables == null || matcherVariables.isEmpty() ? 0 : matcherVariables.size();
-        final int groupCount = matcher.groupCount();
-        final Map<Object, Object> variables = new HashMap<Object, Object>(matcherVariablesSize + groupCount);
-        for (int i = 0; i < groupCount; i++) {
-          variables.put(String.format("$%d", Integer.valueOf(i)), matcher.group(i));
-        }
-        if (matcherVariablesSize > 0) {
-          variables.putAll(matcherVariables);
-        }
-        returnValue = TemplateRuntime.eval(template, variables);
-      } else {
-        returnValue = rawMessage;
-      }
-    } else {
-      returnValue = null;
-    }
-    return returnValue;
+  public final boolean isFrozen() {
+    return this.frozen;
   }
 
   /**
-   * Given a {@link List} of {@link Object}s of type {@link
-   * MessageFactory T}, matches that {@link List} against all the
-   * {@link Pattern}s that have been {@linkplain
-   * #addPattern(ResourceBundleKey, Pattern) added} to this {@link
-   * MessageFactory} in insertion order, and, when one of them
-   * {@linkplain Matcher#lookingAt() has a match}, selects and
-   * {@linkplain #format(Object, Matcher) formats} the associated key,
-   * {@linkplain #convert(Object) converts it to a
-   * <code>String</code>} and returns the result.
+   * Returns {@code true} if lookups performed by this {@link
+   * MessageFactory} use an automaton that combines all analyzable
+   * {@link Pattern}s.
    *
-   * <p>This method may return {@code null}.</p>
+   * @return {@code true} if lookups use an automaton; {@code false}
+   * otherwise
    *
-   * @param input the {@link List} of {@link Object}s of type {@link
-   * MessageFactory T} to match; may be {@code null}
+   * @see #setAutomatonEnabled(boolean)
+   */
+  public final boolean isAutomatonEnabled() {
+    return this.automatonEnabled;
+  }
+
+  /**
+   * Sets whether lookups performed by this {@link MessageFactory} use
+   * an automaton that combines all analyzable {@link Pattern}s.
    *
-   * @return a {@linkplain #convert(Object) converted} and {@linkplain
-   * #format(Object, Matcher) formatted} message, or {@code null}
+   * <p>When enabled, every {@link Pattern} whose source code is
+   * understood is compiled into one nondeterministic automaton, and
+   * an input {@link List} is walked only once to find all of the
+   * {@link Pattern}s that could match it.  {@link Pattern}s that test
+   * only the types of their elements are then known to match without
+   * being evaluated; others are evaluated only if the automaton
+   * admits them.  The message selected is the same either way.  The
+   * automaton costs memory and time to build, and so pays for itself
+   * only with large catalogs.</p>
    *
-   * @see #convert(Object)
+   * @param automatonEnabled whether to use an automaton
    *
-   * @see #format(Object, Matcher)
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #isAutomatonEnabled()
    */
-  public String getMessage(final List<? extends T> input, final Locale locale) {
-    final String returnValue;
-    final Selector<T> selector = this.getSelector(input);
-    if (selector == null) {
-      returnValue = null;
-    } else {
+  public final void setAutomatonEnabled(final boolean automatonEnabled) {
+    this.checkNotFrozen();
+    if (automatonEnabled != this.automatonEnabled) {
+      this.automatonEnabled = automatonEnabled;
+      this.patternIndex = null;
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@link Pattern}s {@linkplain
+   * #addPattern(ResourceBundleKey, String) added by source code} are
+   * compiled only when they are first evaluated.
+   *
+   * @return {@code true} if compilation is deferred; {@code false}
+   * otherwise
+   *
+   * @see #setLazyCompilation(boolean)
+   */
+  public final boolean isLazyCompilation() {
+    return this.lazyCompilation;
+  }
+
+  /**
+   * Sets whether {@link Pattern}s subsequently {@linkplain
+   * #addPattern(ResourceBundleKey, String) added by source code} are
+   * compiled only when they are first evaluated.
+   *
+   * <p>When enabled, the {@link #addPattern(ResourceBundleKey,
+   * String)} method records the source code of the {@link Pattern}
+   * and its {@linkplain PatternSummary#analyze(String) analysis}, but
+   * does not compile it.  Each such {@link Pattern} is compiled at
+   * most once, by whichever {@link Thread} first needs it; other
+   * {@link Thread}s needing it at the same time wait for that
+   * compilation to finish.  Because {@link Pattern}s that require
+   * types absent from the input are never evaluated, many are never
+   * compiled at all.</p>
+   *
+   * <p>Errors in the source code of a lazily compiled {@link Pattern}
+   * are reported only when it is compiled, as an {@link
+   * IllegalStateException} wrapping the {@link ParseException}.
+   * Iterating over a {@link Set} returned by the {@link
+   * #getPatterns(ResourceBundleKey)} method compiles the {@link
+   * Pattern}s it contains.</p>
+   *
+   * @param lazyCompilation whether to defer compilation
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #isLazyCompilation()
+   */
+  public final void setLazyCompilation(final boolean lazyCompilation) {
+    this.checkNotFrozen();
+    this.lazyCompilation = lazyCompilation;
+  }
+
+  /**
+   * Returns {@code true} if the {@link Pattern}s added under each
+   * {@link ResourceBundleKey} are periodically reordered by their
+   * observed cost.
+   *
+   * @return {@code true} if adaptive ordering is enabled; {@code
+   * false} otherwise
+   *
+   * @see #setAdaptiveOrdering(boolean)
+   */
+  public final boolean isAdaptiveOrdering() {
+    return this.adaptiveOrdering;
+  }
+
+  /**
+   * Sets whether the {@link Pattern}s added under each {@link
+   * ResourceBundleKey} are periodically reordered by their observed
+   * cost.
+   *
+   * <p>All of the {@link Pattern}s added under a given {@link
+   * ResourceBundleKey} select the same message, so the order in which
+   * they are tried affects only how long a lookup takes and, when
+   * more than one of them would match, which {@link Matcher} is used
+   * to {@linkplain #format(Object, Matcher) format} the message.  When
+   * adaptive ordering is enabled, how often each {@link Pattern} is
+   * evaluated and matches, and how long its evaluations take, are
+   * recorded, in the {@linkplain #getMatchMetrics() installed
+   * <code>MatchMetrics</code>} if there is one.  Every few thousand
+   * lookups a task run by the {@linkplain ForkJoinPool#commonPool()
+   * common <code>ForkJoinPool</code>}, rather than the lookup itself,
+   * {@linkplain #reorderPatterns() reorders the
+   * <code>Pattern</code>s} so that, within each {@link
+   * ResourceBundleKey}, those with clearly the lowest evaluation time
+   * per match are tried first.  A {@link Pattern} is moved only once
+   * it and the {@link Pattern}s it would overtake have been evaluated
+   * often enough for their costs to be trusted, and only if it is
+   * cheaper by a clear margin.  The order of the {@link
+   * ResourceBundleKey}s themselves, and hence the message selected
+   * for any input, never changes.</p>
+   *
+   * @param adaptiveOrdering whether to reorder {@link Pattern}s by
+   * cost
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #isAdaptiveOrdering()
+   *
+   * @see #reorderPatterns()
+   */
+  public final void setAdaptiveOrdering(final boolean adaptiveOrdering) {
+    this.checkNotFrozen();
+    if (adaptiveOrdering != this.adaptiveOrdering) {
+      this.adaptiveOrdering = adaptiveOrdering;
+      this.patternIndex = null;
+    }
+  }
+
+  /**
+   * If {@linkplain #isAdaptiveOrdering() adaptive ordering} is
+   * enabled, reorders the {@link Pattern}s added under each {@link
+   * ResourceBundleKey} by their observed cost now, rather than
+   * waiting for the next periodic reordering, and returns {@code
+   * true} if any {@link Pattern} changed position.
+   *
+   * <p>This method may be called on a {@linkplain #freeze() frozen}
+   * {@link MessageFactory}.  The {@linkplain #getPatterns(ResourceBundleKey)
+   * <code>Pattern</code>s as added} are unaffected; only the order in
+   * which lookups try them changes, and nothing else is rebuilt, so
+   * results recorded in any {@linkplain #getSelectorCache()
+   * <code>SelectorCache</code>} remain valid.  A {@link Pattern} is
+   * moved ahead of another only if both have been evaluated often
+   * enough for their costs to be trusted and it is cheaper by a clear
+   * margin.  If another {@link Thread} is already reordering, this
+   * method returns {@code false} at once rather than waiting.</p>
+   *
+   * @return {@code true} if the order in which {@link Pattern}s are
+   * tried changed; {@code false} otherwise
+   *
+   * @see #setAdaptiveOrdering(boolean)
+   */
+  public final boolean reorderPatterns() {
+    return this.adaptiveOrdering && this.getPatternIndex().reorder();
+  }
+
+  /**
+   * Returns the {@link SelectorCache} used by this {@link
+   * MessageFactory} to record the results of message selection, or
+   * {@code null} if there is none.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link SelectorCache}, or {@code null}
+   *
+   * @see #setSelectorCache(SelectorCache)
+   */
+  public final SelectorCache getSelectorCache() {
+    return this.selectorCache;
+  }
+
+  /**
+   * Installs a {@link SelectorCache} that this {@link MessageFactory}
+   * will use to record the results of message selection.
+   *
+   * <p>A result is recorded only when every {@link Pattern} that had
+   * to be considered tests nothing but the types of the items it
+   * matches, so that the result is certain to be the same for any
+   * input whose items are of the same {@link Class}es.  Such a later
+   * input then selects its message without any {@link Pattern} being
+   * evaluated.  {@link Pattern}s added as source code are examined to
+   * determine this; {@link Pattern}s added directly are presumed to
+   * test item properties.</p>
+   *
+   * <p>No {@link SelectorCache} is installed by default.  A {@link
+   * SelectorCache} is not {@linkplain Serializable serialized} with
+   * this {@link MessageFactory}.</p>
+   *
+   * @param selectorCache the {@link SelectorCache} to use; may be
+   * {@code null} in which case no results will be recorded
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #getSelectorCache()
+   */
+  public final void setSelectorCache(final SelectorCache selectorCache) {
+    this.checkNotFrozen();
+    this.selectorCache = selectorCache;
+  }
+
+  /**
+   * Returns the {@link PatternCache} used by this {@link
+   * MessageFactory} to compile {@link Pattern}s {@linkplain
+   * #addPattern(ResourceBundleKey, String) added by source code}, or
+   * {@code null} if there is none.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link PatternCache}, or {@code null}
+   *
+   * @see #setPatternCache(PatternCache)
+   */
+  public final PatternCache getPatternCache() {
+    return this.patternCache;
+  }
+
+  /**
+   * Installs a {@link PatternCache} that this {@link MessageFactory}
+   * will use to compile {@link Pattern}s subsequently {@linkplain
+   * #addPattern(ResourceBundleKey, String) added by source code},
+   * including those compiled {@linkplain #setLazyCompilation(boolean)
+   * lazily}.
+   *
+   * <p>Installing the {@linkplain PatternCache#getInstance() shared
+   * <code>PatternCache</code>} causes identical {@link Pattern} source
+   * code to be compiled and held once, however many {@link
+   * MessageFactory} instances contain it.</p>
+   *
+   * <p>No {@link PatternCache} is installed by default, although
+   * {@link MessageFactory} instances produced by {@link
+   * com.edugility.splain.io.MessageFactoryReader} use the shared one.
+   * A {@link PatternCache} is not {@linkplain Serializable
+   * serialized} with this {@link MessageFactory}.</p>
+   *
+   * @param patternCache the {@link PatternCache} to use; may be
+   * {@code null} in which case each {@link Pattern} will be compiled
+   * afresh
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #getPatternCache()
+   */
+  public final void setPatternCache(final PatternCache patternCache) {
+    this.checkNotFrozen();
+    this.patternCache = patternCache;
+  }
+
+  /**
+   * Returns the {@link MatchMetrics} in which this {@link
+   * MessageFactory} records statistics about each of its {@link
+   * Pattern}s, or {@code null} if there is none.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link MatchMetrics}, or {@code null}
+   *
+   * @see #setMatchMetrics(MatchMetrics)
+   */
+  public final MatchMetrics getMatchMetrics() {
+    return this.matchMetrics;
+  }
+
+  /**
+   * Installs a {@link MatchMetrics} in which this {@link
+   * MessageFactory} will record how often each of its {@link
+   * Pattern}s is evaluated and selected, and how long its evaluations
+   * take.
+   *
+   * <p>No {@link MatchMetrics} is installed by default, and when none
+   * is installed no statistics are gathered and no clocks are read.
+   * A {@link MatchMetrics} is not {@linkplain Serializable serialized}
+   * with this {@link MessageFactory}.</p>
+   *
+   * @param matchMetrics the {@link MatchMetrics} to use; may be
+   * {@code null} in which case no statistics will be recorded
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #getMatchMetrics()
+   */
+  public final void setMatchMetrics(final MatchMetrics matchMetrics) {
+    this.checkNotFrozen();
+    if (matchMetrics != this.matchMetrics) {
+      this.matchMetrics = matchMetrics;
+      this.patternIndex = null;
+    }
+  }
+
+  /**
+   * Resolves, for each of the supplied {@link Locale}s, the message
+   * selected by every {@link ResourceBundleKey} under which {@link
+   * Pattern}s have been added, compiles those messages that are
+   * templates, and holds the results in a table so that later calls
+   * to the {@link #getMessage(List, Locale)} method for those {@link
+   * Locale}s need not consult any {@link ResourceBundle} or {@link
+   * TemplateCache}.  Returns the {@link ResourceBundleKey}s whose
+   * messages are missing, indexed by the {@link Locale} for which
+   * they are missing.
+   *
+   * <p>This method is typically called once, after all {@link
+   * Pattern}s have been added, with the fixed set of {@link Locale}s
+   * in which messages are rendered.  It may be called on a
+   * {@linkplain #freeze() frozen} {@link MessageFactory}.  Each call
+   * replaces the table built by the previous one; calling it with an
+   * empty {@link Collection} discards the table.</p>
+   *
+   * <p>Messages for {@link Locale}s not in the table, messages found
+   * to be missing, and messages selected by {@link ResourceBundleKey}s
+   * added after the table was built are resolved as usual.  Each
+   * message in the table is held only for the {@linkplain
+   * ResourceBundle.Control#getTimeToLive(String, Locale) time-to-live}
+   * reported by its {@link ResourceBundleKey}'s {@link
+   * ResourceBundle.Control}, after which it is resolved afresh, so
+   * changes to the underlying {@link ResourceBundle}s are reflected
+   * exactly as they would be without the table; with the default
+   * {@link ResourceBundle.Control} messages never expire.  Missing
+   * messages are not {@linkplain ResourceBundleKey#getMissCount()
+   * counted} while the table is built.  If a subclass overrides the {@link
+   * #format(Object, Matcher)} method, the table holds raw messages
+   * only and that method is still called to format them.  The table
+   * is not {@linkplain Serializable serialized} with this {@link
+   * MessageFactory}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param locales the {@link Locale}s for which messages should be
+   * precomputed; must not be {@code null}; {@code null} elements and
+   * duplicates are ignored
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of the
+   * {@link ResourceBundleKey}s whose messages are missing, indexed by
+   * {@link Locale}; {@link Locale}s for which no messages are missing
+   * are absent
+   *
+   * @exception IllegalArgumentException if {@code locales} is {@code
+   * null}
+   *
+   * @see #getPrecomputedLocales()
+   */
+  public final Map<Locale, Set<ResourceBundleKey>> precomputeMessages(final Collection<? extends Locale> locales) {
+    if (locales == null) {
+      throw new IllegalArgumentException("locales", new NullPointerException("locales"));
+    }
+    final Map<Locale, Set<ResourceBundleKey>> returnValue;
+    if (locales.isEmpty()) {
+      this.messageTable = null;
+      returnValue = Collections.emptyMap();
+    } else {
+      final MessageTable messageTable = new MessageTable(this.getPatternIndex().getDistinctKeys(), locales, this.overridesFormat() ? null : this.getTemplateCache());
+      this.messageTable = messageTable;
+      returnValue = messageTable.getMissingKeys();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns an unmodifiable {@link Set} of the {@link Locale}s for
+   * which messages have been {@linkplain
+   * #precomputeMessages(Collection) precomputed}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set} of {@link
+   * Locale}s
+   *
+   * @see #precomputeMessages(Collection)
+   */
+  public final Set<Locale> getPrecomputedLocales() {
+    final MessageTable messageTable = this.messageTable;
+    final Set<Locale> returnValue;
+    if (messageTable == null) {
+      returnValue = Collections.emptySet();
+    } else {
+      returnValue = messageTable.getLocales();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Prepares this {@link MessageFactory} to render messages in the
+   * supplied {@link Locale}s by doing ahead of time the work that
+   * would otherwise be done by the first calls to the {@link
+   * #getMessage(List, Locale)} method, and returns the {@link
+   * ResourceBundleKey}s whose messages are missing, indexed by the
+   * {@link Locale} for which they are missing.
+   *
+   * <p>This method behaves as if by calling the {@link
+   * #warmUp(Collection, Iterable, int)} method with the supplied
+   * {@link Locale}s, no sample inputs and {@code 0} iterations.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param locales the {@link Locale}s to prepare for; must not be
+   * {@code null}; {@code null} elements and duplicates are ignored
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of the
+   * {@link ResourceBundleKey}s whose messages are missing, indexed by
+   * {@link Locale}; {@link Locale}s for which no messages are missing
+   * are absent
+   *
+   * @exception IllegalArgumentException if {@code locales} is {@code
+   * null}
+   *
+   * @exception IllegalStateException if a {@linkplain
+   * #setLazyCompilation(boolean) lazily compiled} {@link Pattern}
+   * could not be compiled
+   *
+   * @see #warmUp(Collection, Iterable, int)
+   */
+  public final Map<Locale, Set<ResourceBundleKey>> warmUp(final Collection<? extends Locale> locales) {
+    return this.warmUp(locales, null, 0);
+  }
+
+  /**
+   * Prepares this {@link MessageFactory} to render messages in the
+   * supplied {@link Locale}s by doing ahead of time the work that
+   * would otherwise be done by the first calls to the {@link
+   * #getMessage(List, Locale)} method, and returns the {@link
+   * ResourceBundleKey}s whose messages are missing, indexed by the
+   * {@link Locale} for which they are missing.
+   *
+   * <p>Specifically, this method:</p>
+   *
+   * <ol>
+   *
+   * <li>builds the index used to select {@link Pattern}s and
+   * {@linkplain #setLazyCompilation(boolean) compiles} any {@link
+   * Pattern}s that have not yet been compiled;</li>
+   *
+   * <li>for each {@link Locale}, resolves the message selected by
+   * every {@link ResourceBundleKey} under which {@link Pattern}s have
+   * been added, which loads and caches the underlying {@link
+   * ResourceBundle}s;</li>
+   *
+   * <li>compiles every such message that is a template into the
+   * {@linkplain #getTemplateCache() <code>TemplateCache</code>};
+   * and</li>
+   *
+   * <li>{@code iterations} times for each of the supplied sample
+   * inputs and each {@link Locale}, selects, resolves and {@linkplain
+   * #format(Object, Matcher) formats} a message as the {@link
+   * #getMessage(List, Locale)} method would, so that matching,
+   * predicate evaluation and formatting have been exercised before
+   * real traffic arrives.</li>
+   *
+   * </ol>
+   *
+   * <p>This method is typically called once, after all {@link
+   * Pattern}s have been added, and may be called on a {@linkplain
+   * #freeze() frozen} {@link MessageFactory}.  Unlike the {@link
+   * #precomputeMessages(Collection)} method it retains nothing of its
+   * own; it only fills the caches that the {@link #getMessage(List,
+   * Locale)} method already uses.  It records nothing that describes
+   * real traffic: missing messages are not {@linkplain
+   * ResourceBundleKey#getMissCount() counted}, no statistics are
+   * recorded in any {@linkplain #getMatchMetrics()
+   * <code>MatchMetrics</code>}, and sample inputs do not count
+   * towards {@linkplain #setAdaptiveOrdering(boolean) adaptive
+   * ordering}.  Any exception thrown while processing a sample input
+   * is propagated, since it would equally be thrown for real
+   * traffic.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param locales the {@link Locale}s to prepare for; must not be
+   * {@code null}; {@code null} elements and duplicates are ignored
+   *
+   * @param sampleInputs representative inputs to match; may be {@code
+   * null}; {@code null} elements are matched as-is
+   *
+   * @param iterations the number of times each sample input is to be
+   * matched for each {@link Locale}; must not be negative
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of the
+   * {@link ResourceBundleKey}s whose messages are missing, indexed by
+   * {@link Locale}; {@link Locale}s for which no messages are missing
+   * are absent
+   *
+   * @exception IllegalArgumentException if {@code locales} is {@code
+   * null} or {@code iterations} is negative
+   *
+   * @exception IllegalStateException if a {@linkplain
+   * #setLazyCompilation(boolean) lazily compiled} {@link Pattern}
+   * could not be compiled
+   *
+   * @see #precomputeMessages(Collection)
+   */
+  public final Map<Locale, Set<ResourceBundleKey>> warmUp(final Collection<? extends Locale> locales, final Iterable<? extends List<? extends T>> sampleInputs, final int iterations) {
+    if (locales == null) {
+      throw new IllegalArgumentException("locales", new NullPointerException("locales"));
+    }
+    if (iterations < 0) {
+      throw new IllegalArgumentException("iterations < 0: " + iterations);
+    }
+    final Set<Locale> localeSet = new LinkedHashSet<Locale>(locales);
+    localeSet.remove(null);
+
+    final PatternIndex<T> patternIndex = this.getPatternIndex();
+    assert patternIndex != null;
+    patternIndex.compile();
+
+    final TemplateCache templateCache;
+    if (this.overridesFormat()) {
+      templateCache = null;
+    } else {
+      templateCache = this.getTemplateCache();
+    }
+    final ResourceBundleKey[] keys = patternIndex.getDistinctKeys();
+    final Map<Locale, Set<ResourceBundleKey>> returnValue = new LinkedHashMap<Locale, Set<ResourceBundleKey>>();
+    for (final Locale locale : localeSet) {
+      Set<ResourceBundleKey> missing = null;
+      for (final ResourceBundleKey key : keys) {
+        assert key != null;
+        final Object rawMessage = key.getUncountedObject(locale, MISSING);
+        if (rawMessage == MISSING) {
+          if (missing == null) {
+            missing = new LinkedHashSet<ResourceBundleKey>();
+          }
+          missing.add(key);
+        } else if (templateCache != null && rawMessage instanceof CharSequence) {
+          final String template = rawMessage.toString();
+          if (TemplateCache.isTemplate(template)) {
+            templateCache.getCompiledTemplate(template);
+          }
+        }
+      }
+      if (missing != null) {
+        returnValue.put(locale, Collections.unmodifiableSet(missing));
+      }
+    }
+
+    if (sampleInputs != null) {
+      for (int i = 0; i < iterations; i++) {
+        for (final List<? extends T> input : sampleInputs) {
+          for (final Locale locale : localeSet) {
+            this.warmUp(patternIndex, input, locale);
+          }
+        }
+      }
+    }
+    return Collections.unmodifiableMap(returnValue);
+  }
+
+  /**
+   * Selects, resolves and {@linkplain #format(Object, Matcher)
+   * formats} the message for the supplied sample {@code input} as the
+   * {@link #getMessage(List, Locale)} method would, but without
+   * recording statistics, counting the lookup towards {@linkplain
+   * #setAdaptiveOrdering(boolean) adaptive ordering} or {@linkplain
+   * ResourceBundleKey#getMissCount() counting} a missing message,
+   * which is simply skipped.
+   *
+   * @param patternIndex the {@link PatternIndex} to select with;
+   * must not be {@code null}
+   *
+   * @param input the sample input; may be {@code null}
+   *
+   * @param locale the {@link Locale} in question; may be {@code null}
+   *
+   * @see #warmUp(Collection, Iterable, int)
+   */
+  private final void warmUp(final PatternIndex<T> patternIndex, final List<? extends T> input, final Locale locale) {
+    assert patternIndex != null;
+    final Selector<T> selector = patternIndex.select(input, this.selectorCache, false);
+    if (selector != null) {
+      final ResourceBundleKey key = selector.getKey();
+      if (key == null) {
+        this.convert(this.format(null, selector.getMatcher()));
+      } else {
+        final MessageTable.Cell cell = this.getPrecomputedMessage(selector, locale);
+        if (cell == null) {
+          final Object rawMessage = key.getUncountedObject(locale, MISSING);
+          if (rawMessage != MISSING) {
+            this.convert(this.format(rawMessage, selector.getMatcher()));
+          }
+        } else {
+          this.convert(this.format(cell, selector.getMatcher()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the {@link #format(Object, Matcher)}
+   * method has been overridden by a subclass.
+   *
+   * @return {@code true} if the {@link #format(Object, Matcher)}
+   * method has been overridden; {@code false} otherwise
+   */
+  private final boolean overridesFormat() {
+    return overrides(this.getClass(), "format", Object.class, Matcher.class);
+  }
+
+  /**
+   * Returns the {@linkplain #precomputeMessages(Collection)
+   * precomputed} {@link MessageTable.Cell} holding the message
+   * selected by the supplied {@link Selector} for the supplied {@link
+   * Locale}, or {@code null} if there is none.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param selector the {@link Selector} in question; must not be
+   * {@code null}
+   *
+   * @param locale the {@link Locale} in question; may be {@code null}
+   *
+   * @return a {@link MessageTable.Cell}, or {@code null}
+   */
+  private final MessageTable.Cell getPrecomputedMessage(final Selector<T> selector, final Locale locale) {
+    assert selector != null;
+    final MessageTable messageTable = this.messageTable;
+    final MessageTable.Cell returnValue;
+    if (messageTable == null) {
+      returnValue = null;
+    } else {
+      returnValue = messageTable.getCell(locale, selector.getKeyOrdinal(), selector.getKey());
+    }
+    return returnValue;
+  }
+
+  /**
+   * {@linkplain #format(Object, Matcher) Formats} the message held by
+   * the supplied {@link MessageTable.Cell}, using its compiled
+   * template directly if it has one.
+   *
+   * @param cell the {@link MessageTable.Cell} holding the message;
+   * must not be {@code null}
+   *
+   * @param matcher the {@link Matcher} that selected the message;
+   * must not be {@code null}
+   *
+   * @return a formatted message, or {@code null}
+   */
+  private final Object format(final MessageTable.Cell cell, final Matcher<T> matcher) {
+    assert cell != null;
+    assert matcher != null;
+    final Object returnValue;
+    final CompiledTemplate compiledTemplate = cell.getCompiledTemplate();
+    if (compiledTemplate == null) {
+      returnValue = this.format(cell.getRawMessage(), matcher);
+    } else {
+      returnValue = TemplateRuntime.execute(compiledTemplate, null, new MatcherVariableResolverFactory(matcher));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Throws an {@link UnsupportedOperationException} if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}.
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   */
+  private final void checkNotFrozen() {
+    if (this.frozen) {
+      throw new UnsupportedOperationException("frozen");
+    }
+  }
+
+  /**
+   * Adds a {@link Pattern} to the {@link Set} of {@link Pattern}s
+   * indexed under the supplied {@link ResourceBundleKey} and returns
+   * the full {@link Set} of such {@link Pattern}s.  If no such {@link
+   * Set} exists, one is created whose sole contents are the supplied
+   * {@link Pattern}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>{@link Pattern}s may also be added by {@linkplain
+   * #getPatterns(ResourceBundleKey) retrieving a <code>Set</code> of
+   * <code>Pattern</code>s} and {@linkplain Set#add(Object) adding} a
+   * {@link Pattern} to it directly.</p>
+   *
+   * @param key the {@link ResourceBundleKey} under which the supplied
+   * {@link Pattern} is to be indexed; must not be {@code null}
+   *
+   * @param pattern the {@link Pattern} to add; must not be {@code
+   * null}
+   *
+   * @return the full {@link Set} of {@link Pattern}s indexed under
+   * the supplied {@code key}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code key} or {@code
+   * pattern} is {@code null}
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see Pattern
+   *
+   * @see ResourceBundleKey
+   *
+   * @see #addPatterns(ResourceBundleKey, Iterable)
+   *
+   * @see #getPatterns(ResourceBundleKey)
+   */
+  public final Set<Pattern<T>> addPattern(final ResourceBundleKey key, final Pattern<T> pattern) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    if (pattern == null) {
+      throw new IllegalArgumentException("pattern", new NullPointerException("patterns"));
+    }
+    return this.addPatterns(key, Collections.singleton(pattern));
+  }
+
+  /**
+   * {@linkplain Pattern#compile(String) Compiles} the supplied {@code
+   * source} into a {@link Pattern}, adds it to the {@link Set} of
+   * {@link Pattern}s indexed under the supplied {@link
+   * ResourceBundleKey} and returns the full {@link Set} of such {@link
+   * Pattern}s.
+   *
+   * <p>Unlike {@link Pattern}s added directly, {@link Pattern}s added
+   * by this method are {@linkplain PatternSummary#analyze(String)
+   * analyzed} so that the types of the objects they require can be
+   * indexed, so that the {@link #getMessage(List, Locale)} method need
+   * not evaluate them against input that cannot possibly match.</p>
+   *
+   * <p>If {@linkplain #isLazyCompilation() lazy compilation} is
+   * enabled, the supplied {@code source} is not compiled until the
+   * resulting {@link Pattern} is first evaluated, and this method
+   * does not throw a {@link ParseException}.</p>
+   *
+   * <p>If a {@link PatternCache} has been {@linkplain
+   * #setPatternCache(PatternCache) installed}, it is used to compile
+   * the supplied {@code source}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} under which the new
+   * {@link Pattern} is to be indexed; must not be {@code null}
+   *
+   * @param source the source code of the {@link Pattern} to add; must
+   * not be {@code null}
+   *
+   * @return the full {@link Set} of {@link Pattern}s indexed under
+   * the supplied {@code key}; never {@code null}
+   *
+   * @exception IllegalArgumentException if {@code key} or {@code
+   * source} is {@code null}
+   *
+   * @exception ParseException if {@code source} could not be
+   * {@linkplain Pattern#compile(String) compiled}
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #addPattern(ResourceBundleKey, Pattern)
+   */
+  public final Set<Pattern<T>> addPattern(final ResourceBundleKey key, final String source) throws ParseException {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    if (source == null) {
+      throw new IllegalArgumentException("source", new NullPointerException("source"));
+    }
+    this.checkNotFrozen();
+    final PatternCache patternCache = this.getPatternCache();
+    final Set<Pattern<T>> returnValue;
+    if (this.lazyCompilation) {
+      final PatternSet patternSet = this.getOrCreatePatternSet(key);
+      assert patternSet != null;
+      patternSet.add(new LazyPattern<T>(source, patternCache), PatternSummary.analyze(source));
+      returnValue = patternSet;
+    } else if (patternCache == null) {
+      returnValue = this.addPattern(key, source, Pattern.<T>compile(source));
+    } else {
+      returnValue = this.addPattern(key, source, patternCache.<T>getPattern(source));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Adds an already {@linkplain Pattern#compile(String) compiled}
+   * {@link Pattern} to the {@link Set} of {@link Pattern}s indexed
+   * under the supplied {@link ResourceBundleKey}, recording the
+   * supplied {@code source} as the source code from which it was
+   * compiled, and returns the full {@link Set} of such {@link
+   * Pattern}s.
+   *
+   * <p>This method behaves like the {@link
+   * #addPattern(ResourceBundleKey, String)} method, but does not
+   * compile the supplied {@code source} itself.  It is intended for
+   * use by tools that obtain compiled {@link Pattern}s some other
+   * way.  Callers must ensure that the supplied {@code pattern} was
+   * in fact compiled from the supplied {@code source}.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} under which the supplied
+   * {@link Pattern} is to be indexed; must not be {@code null}
+   *
+   * @param source the source code from which the supplied {@code
+   * pattern} was compiled; must not be {@code null}
+   *
+   * @param pattern the {@link Pattern} to add; must not be {@code
+   * null}
+   *
+   * @return the full {@link Set} of {@link Pattern}s indexed under
+   * the supplied {@code key}; never {@code null}
+   *
+   * @exception IllegalArgumentException if any parameter is {@code
+   * null}
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see #addPattern(ResourceBundleKey, String)
+   */
+  public final Set<Pattern<T>> addPattern(final ResourceBundleKey key, final String source, final Pattern<T> pattern) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    if (source == null) {
+      throw new IllegalArgumentException("source", new NullPointerException("source"));
+    }
+    if (pattern == null) {
+      throw new IllegalArgumentException("pattern", new NullPointerException("pattern"));
+    }
+    this.checkNotFrozen();
+    final PatternSet patternSet = this.getOrCreatePatternSet(key);
+    assert patternSet != null;
+    patternSet.add(pattern, PatternSummary.analyze(source));
+    return patternSet;
+  }
+
+  /**
+   * Adds the supplied {@link Iterable} of {@link Pattern}s to the
+   * {@link Set} of {@link Pattern}s indexed under the supplied {@code
+   * key} and returns the full {@link Set} of such {@link Pattern}s
+   * that results from this addition.
+   *
+   * <p>{@link Pattern}s may also be added by {@linkplain
+   * #getPatterns(ResourceBundleKey) retrieving a <code>Set</code> of
+   * <code>Pattern</code>s} and {@linkplain Set#add(Object) adding} a
+   * {@link Pattern} to it directly.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} under which the {@link
+   * Pattern} is to be stored; must not be {@code null}
+   *
+   * @param patterns an {@link Iterable} of {@link Pattern}s to add;
+   * no references are kept to this object; must not be {@code null}
+   *
+   * @return the full {@link Set} of {@link Pattern}s indexed under
+   * the supplied {@code key}; never {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   *
+   * @see Pattern
+   *
+   * @see ResourceBundleKey
+   *
+   * @see #getPatterns(ResourceBundleKey)
+   */
+  public Set<Pattern<T>> addPatterns(final ResourceBundleKey key, final Iterable<? extends Pattern<T>> patterns) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    if (patterns == null) {
+      throw new IllegalArgumentException("patterns", new NullPointerException("patterns"));
+    }
+    this.checkNotFrozen();
+    final PatternSet patternSet = this.getOrCreatePatternSet(key);
+    assert patternSet != null;
+    for (final Pattern<T> pattern : patterns) {
+      if (pattern != null) {
+        patternSet.add(pattern);
+      }
+    }
+    return patternSet;
+  }
+
+  /**
+   * Returns the {@link PatternSet} indexed under the supplied {@link
+   * ResourceBundleKey}, creating and storing it first if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} in question; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link PatternSet}
+   */
+  private final PatternSet getOrCreatePatternSet(final ResourceBundleKey key) {
+    assert key != null;
+    if (this.patterns == null) {
+      this.patterns = new LinkedHashMap<ResourceBundleKey, PatternSet>();
+    }
+    PatternSet patternSet = this.patterns.get(key);
+    if (patternSet == null) {
+      patternSet = new PatternSet();
+      this.patterns.put(key, patternSet);
+      this.patternIndex = null;
+    }
+    return patternSet;
+  }
+
+  /**
+   * Returns a {@link Set} of {@link Pattern}s indexed under the
+   * supplied {@code key}, or {@code null} if there is no such {@link
+   * Set}.
+   *
+   * <p>The {@link Set} that is returned is the actual {@link Set}
+   * used internally by this {@link MessageFactory} and is mutable,
+   * unless this {@link MessageFactory} has been {@linkplain #freeze()
+   * frozen}, in which case it is unmodifiable.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} whose {@link Pattern}s
+   * are to be retrieved; must not be {@code null}
+   *
+   * @return a {@link Set} of {@link Pattern}s indexed under the
+   * supplied {@code key}, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code key} is {@code
+   * null}
+   */
+  public Set<Pattern<T>> getPatterns(final ResourceBundleKey key) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    final Set<Pattern<T>> returnValue;
+    if (this.patterns != null && !this.patterns.isEmpty()) {
+      final Set<Pattern<T>> patternSet = this.patterns.get(key);
+      if (patternSet != null && this.frozen) {
+        returnValue = Collections.unmodifiableSet(patternSet);
+      } else {
+        returnValue = patternSet;
+      }
+    } else {
+      returnValue = null;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns an unmodifiable {@link Set} of the {@link
+   * ResourceBundleKey}s under which {@link Pattern}s have been
+   * indexed, in insertion order.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set} of {@link
+   * ResourceBundleKey}s
+   *
+   * @see #getPatterns(ResourceBundleKey)
+   */
+  public final Set<ResourceBundleKey> getKeys() {
+    final Set<ResourceBundleKey> returnValue;
+    if (this.patterns == null || this.patterns.isEmpty()) {
+      returnValue = Collections.emptySet();
+    } else {
+      returnValue = Collections.unmodifiableSet(this.patterns.keySet());
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the source code from which the supplied {@link Pattern},
+   * indexed under the supplied {@link ResourceBundleKey}, was
+   * compiled, if it is known.
+   *
+   * <p>The source code of a {@link Pattern} is known only if it was
+   * added with the {@link #addPattern(ResourceBundleKey, String)} or
+   * {@link #addPattern(ResourceBundleKey, String, Pattern)}
+   * methods.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} under which the supplied
+   * {@code pattern} is indexed; must not be {@code null}
+   *
+   * @param pattern the {@link Pattern} in question; must not be
+   * {@code null}
+   *
+   * @return the source code of the supplied {@link Pattern}, or
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}
+   */
+  public final String getPatternSource(final ResourceBundleKey key, final Pattern<T> pattern) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    if (pattern == null) {
+      throw new IllegalArgumentException("pattern", new NullPointerException("pattern"));
+    }
+    String returnValue = null;
+    if (this.patterns != null) {
+      final PatternSet patternSet = this.patterns.get(key);
+      if (patternSet != null) {
+        final PatternSummary summary = patternSet.getSummary(pattern);
+        if (summary != null) {
+          returnValue = summary.getSource();
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Removes the {@link Pattern}s indexed under the supplied {@code
+   * key} and returns an unmodifiable {@link Set} of them.
+   *
+   * <p>The returned {@link Set} is a copy, unaffected by later
+   * changes to any {@link Set} previously returned by the {@link
+   * #getPatterns(ResourceBundleKey)} method.  {@linkplain
+   * #setLazyCompilation(boolean) Lazily compiled} {@link Pattern}s in
+   * it are compiled only when it is iterated.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key a {@link ResourceBundleKey} whose associated {@link
+   * Pattern}s are to be removed; must not be {@code null}
+   *
+   * @return an unmodifiable {@link Set} of the {@link Pattern}s that
+   * were removed, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code key} was {@code
+   * null}
+   *
+   * @exception UnsupportedOperationException if this {@link
+   * MessageFactory} has been {@linkplain #freeze() frozen}
+   */
+  public Set<Pattern<T>> removePatterns(final ResourceBundleKey key) {
+    if (key == null) {
+      throw new IllegalArgumentException("key", new NullPointerException("key"));
+    }
+    this.checkNotFrozen();
+    Set<Pattern<T>> returnValue = null;
+    if (this.patterns != null && !this.patterns.isEmpty()) {
+      final PatternSet removed = this.patterns.remove(key);
+      if (removed != null) {
+        this.patternIndex = null;
+        final PatternSet copy = new PatternSet();
+        copy.summaries.putAll(removed.summaries);
+        returnValue = Collections.unmodifiableSet(copy);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Formats or transforms the supplied {@code rawMessage} {@link
+   * Object} in some way, perhaps by using the information stored as
+   * part of the supplied {@link Matcher}, and returns the formatted
+   * or transformed {@link Object}.
+   *
+   * <p>This implementation checks to see if the supplied {@code
+   * rawMessage} is an instance of {@link CharSequence}.  If so, it is
+   * treated as an <a href="http://mvel.codehaus.org/">MVEL</a> <a
+   * href="http://mvel.codehaus.org/Templating+Guide">template</a>.
+   * The template is interpolated using all the {@linkplain
+   * Matcher#group(int) capture groups} and {@linkplain
+   * Matcher#getVariables() variables} that the supplied {@link
+   * Matcher} is capable of providing.  The compiled form of the
+   * template is obtained from this {@link MessageFactory}'s {@linkplain
+   * #getTemplateCache() <code>TemplateCache</code>}, so any given
+   * template text is normally compiled only once.  Capture groups and
+   * variables are read from the supplied {@link Matcher} only if the
+   * template refers to them.  A template that contains neither an
+   * {@code @} nor a {@code $} character cannot contain an orb tag, so
+   * it is returned as a {@link String} without being compiled or
+   * evaluated.</p>
+   *
+   * <p>Specifically, <a
+   * href="http://mvel.codehaus.org/MVEL+2.0+Orb+Tags">orb tags</a>
+   * may have bodies that reference the {@linkplain
+   * Matcher#getVariables() variables contained by the supplied
+   * <code>Matcher</code>}, as well as {@linkplain Matcher#group(int) its
+   * capture groups}.  Capture group variable references begin with
+   * the {@code $} character, so the following orb tag would return a
+   * {@link List} representing the full match:</p>
+   *
+   * <blockquote><code>@{$0}</code></blockquote>
+   *
+   * @param rawMessage the unformatted message as returned by the
+   * {@link #getMessage(List, Locale)} method; may be {@code null}
+   *
+   * @param matcher the {@link Matcher} that was used by the {@link
+   * #getMessage(List, Locale)} method in producing the {@code
+   * rawMessage} parameter value; may be {@code null}
+   *
+   * @return a formatted version of the supplied {@code rawMessage},
+   * which may simply be the supplied {@code rawMessage} if no formatting
+   * could be performed
+   *
+   * @see TemplateRuntime
+   *
+   * @see #getTemplateCache()
+   *
+   * @see #getMessage(List, Locale)
+   */
+  protected Object format(final Object rawMessage, final Matcher<T> matcher) {
+    final Object returnValue;
+    if (rawMessage instanceof CharSequence) {
+      final String template = rawMessage.toString();
+      if (template != null && matcher != null) {
+        if (!TemplateCache.isTemplate(template)) {
+          // Plain text; there is nothing to interpolate.
+          returnValue = template;
+        } else {
+          final CompiledTemplate compiledTemplate = this.getTemplateCache().getCompiledTemplate(template);
+          assert compiledTemplate != null;
+          returnValue = TemplateRuntime.execute(compiledTemplate, null, new MatcherVariableResolverFactory(matcher));
+        }
+      } else {
+        returnValue = rawMessage;
+      }
+    } else {
+      returnValue = null;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Given a {@link List} of {@link Object}s of type {@link
+   * MessageFactory T}, matches that {@link List} against all the
+   * {@link Pattern}s that have been {@linkplain
+   * #addPattern(ResourceBundleKey, Pattern) added} to this {@link
+   * MessageFactory} in insertion order, and, when one of them
+   * {@linkplain Matcher#lookingAt() has a match}, selects and
+   * {@linkplain #format(Object, Matcher) formats} the associated key,
+   * {@linkplain #convert(Object) converts it to a
+   * <code>String</code>} and returns the result.
+   *
+   * <p>The selected message is resolved with the {@link
+   * ResourceBundleKey#getObject(Locale)} method, which caches the fact
+   * that a message is missing for a given {@link Locale} just as it
+   * caches messages that are present, so a missing message costs no
+   * further {@link ResourceBundle} lookups until that cache entry
+   * expires.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @return a {@linkplain #convert(Object) converted} and {@linkplain
+   * #format(Object, Matcher) formatted} message, or {@code null}
+   *
+   * @exception MissingResourceException if the selected message is
+   * missing
+   *
+   * @see #convert(Object)
+   *
+   * @see #format(Object, Matcher)
+   */
+  public String getMessage(final List<? extends T> input, final Locale locale) {
+    return (String)this.selectMessage(input, locale, false);
+  }
+
+  /**
+   * Implements the {@link #getMessage(List, Locale)} method, returning
+   * {@link #MISSING} instead of throwing a {@link
+   * MissingResourceException} if the selected message is missing and
+   * {@code orMissing} is {@code true}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param orMissing whether to return {@link #MISSING} rather than
+   * throw a {@link MissingResourceException} if the selected message
+   * is missing
+   *
+   * @return a {@link String}, {@link #MISSING}, or {@code null}
+   *
+   * @exception MissingResourceException if the selected message is
+   * missing and {@code orMissing} is {@code false}
+   */
+  private final Object selectMessage(final List<? extends T> input, final Locale locale, final boolean orMissing) {
+    final Object returnValue;
+    final Selector<T> selector = this.getSelector(input);
+    if (selector == null) {
+      returnValue = null;
+    } else {
       final ResourceBundleKey key = selector.getKey();
       if (key == null) {
         returnValue = this.convert(this.format(null, selector.getMatcher()));
       } else {
-        returnValue = this.convert(this.format(key.getObject(locale), selector.getMatcher()));
+        final MessageTable.Cell cell = this.getPrecomputedMessage(selector, locale);
+        if (cell == null) {
+          final Object rawMessage = orMissing ? key.getObject(locale, MISSING) : key.getObject(locale);
+          if (rawMessage == MISSING) {
+            returnValue = MISSING;
+          } else {
+            returnValue = this.convert(this.format(rawMessage, selector.getMatcher()));
+          }
+        } else {
+          returnValue = this.convert(this.format(cell, selector.getMatcher()));
+        }
       }
     }
     return returnValue;
@@ -378,88 +1676,786 @@ public class MessageFactory<T> implements Serializable {
   }
 
   /**
-   * Calls {@link #getMessage(List, Locale)}, and if the return value
-   * is {@code null}, returns the supplied {@code defaultValue}
-   * parameter as the return value instead.
+   * Behaves like {@link #getMessage(List, Locale)}, but returns the
+   * supplied {@code defaultValue} parameter instead of {@code null},
+   * and instead of throwing a {@link MissingResourceException} if the
+   * selected message is missing.
    *
    * <p>This method may return {@code null}.</p>
    *
-   * <p>This method suppresses any {@link MissingResourceException}s
-   * thrown by {@link #getMessage(List, Locale)} and returns the
-   * supplied {@code defaultValue} parameter in such cases.</p>
+   * <p>If a subclass overrides the {@link #getMessage(List, Locale)}
+   * method, this method calls it, so that the override is honored,
+   * and suppresses any {@link MissingResourceException} it throws.
+   * Otherwise a missing message is detected without any {@link
+   * MissingResourceException} being created or thrown, using the
+   * {@link ResourceBundleKey#getObject(Locale, Object)} method, so a
+   * missing message that has already been cached costs no more than
+   * one that is present.  Missing messages are cached as described
+   * there, and how often each has been requested is available from
+   * the {@link #getMissCounts()} method.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param defaultValue the message to return if no message could be
+   * selected or the selected message is missing; may be {@code null}
    *
    * @return a formatted message, or the {@code defaultValue}
    * parameter, or {@code null} if the {@code defaultValue} parameter
    * is {@code null} itself
+   *
+   * @see #getMissCounts()
+   */
+  public String getMessage(final List<? extends T> input, final Locale locale, final String defaultValue) {
+    String returnValue = null;
+    try {
+      if (overridesGetMessage.get(this.getClass()).booleanValue()) {
+        returnValue = this.getMessage(input, locale);
+      } else {
+        final Object message = this.selectMessage(input, locale, true);
+        if (message != MISSING) {
+          returnValue = (String)message;
+        }
+      }
+    } catch (final MissingResourceException missingResourceException) {
+      // Thrown by an overridden method.
+      returnValue = null;
+    }
+    if (returnValue == null) {
+      returnValue = defaultValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a localized message appropriate for the supplied {@link
+   * Throwable} and its chain of {@linkplain Throwable#getCause()
+   * causes}, as selected by the supplied {@link MessageFactory}.
+   *
+   * <p>This method calls the {@link #getMessage(List, Locale)} method
+   * with a {@linkplain ThrowableList#ThrowableList(Throwable) new
+   * <code>ThrowableList</code>} wrapping the supplied {@link
+   * Throwable}.  No {@link List} is copied, cyclic cause chains are
+   * handled safely, and causes are visited only as far as is
+   * necessary to select a message.  To include {@linkplain
+   * Throwable#getSuppressed() suppressed exceptions} or to change the
+   * maximum length of the cause chain, call the {@link
+   * #getMessage(List, Locale)} method with a suitably configured
+   * {@link ThrowableList} instead.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param messageFactory the {@link MessageFactory} to use; must not
+   * be {@code null}
+   *
+   * @param throwable the {@link Throwable} for which a message should
+   * be returned; may be {@code null} in which case the {@link
+   * #getMessage(List, Locale)} method is called with a {@code null}
+   * {@link List}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @return a formatted message, or {@code null}
+   *
+   * @exception IllegalArgumentException if {@code messageFactory} is
+   * {@code null}
+   *
+   * @exception MissingResourceException if the selected message could
+   * not be found
+   *
+   * @see ThrowableList
+   *
+   * @see #getMessage(List, Locale)
+   */
+  public static final String getMessage(final MessageFactory<? super Throwable> messageFactory, final Throwable throwable, final Locale locale) {
+    if (messageFactory == null) {
+      throw new IllegalArgumentException("messageFactory", new NullPointerException("messageFactory"));
+    }
+    return messageFactory.getMessage(throwable == null ? null : new ThrowableList(throwable), locale);
+  }
+
+  /**
+   * Behaves like {@link #getMessage(MessageFactory, Throwable,
+   * Locale)}, but returns the supplied {@code defaultValue} parameter
+   * instead of {@code null}, and instead of throwing a {@link
+   * MissingResourceException} if the selected message is missing.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param messageFactory the {@link MessageFactory} to use; must not
+   * be {@code null}
+   *
+   * @param throwable the {@link Throwable} for which a message should
+   * be returned; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param defaultValue the message to return if no message could be
+   * selected or the selected message is missing; may be {@code null}
+   *
+   * @return a formatted message, or the {@code defaultValue}
+   * parameter
+   *
+   * @exception IllegalArgumentException if {@code messageFactory} is
+   * {@code null}
+   *
+   * @see #getMessage(List, Locale, String)
+   */
+  public static final String getMessage(final MessageFactory<? super Throwable> messageFactory, final Throwable throwable, final Locale locale, final String defaultValue) {
+    if (messageFactory == null) {
+      throw new IllegalArgumentException("messageFactory", new NullPointerException("messageFactory"));
+    }
+    return messageFactory.getMessage(throwable == null ? null : new ThrowableList(throwable), locale, defaultValue);
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed with
+   * the result of calling the {@link #getMessage(List, Locale)}
+   * method, which is called by a task executed by the {@linkplain
+   * ForkJoinPool#commonPool() common <code>ForkJoinPool</code>}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see #getMessageAsync(List, Locale, Executor)
+   */
+  public final CompletableFuture<String> getMessageAsync(final List<? extends T> input, final Locale locale) {
+    return this.getMessageAsync(input, locale, null);
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed with
+   * the result of calling the {@link #getMessage(List, Locale)}
+   * method, which is called by a task executed by the supplied {@link
+   * Executor}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>This method itself never blocks, so it is suitable for use on
+   * event loop {@link Thread}s.  If the {@link #getMessage(List,
+   * Locale)} method throws an exception, then the returned {@link
+   * CompletableFuture} is completed exceptionally with it.  An {@link
+   * Executor} that runs each task in a new virtual thread is a good
+   * choice where one is available.</p>
+   *
+   * <p>Unless this {@link MessageFactory} has been {@linkplain
+   * #freeze() frozen}, it must not be modified until the returned
+   * {@link CompletableFuture} has completed.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param executor the {@link Executor} that will call the {@link
+   * #getMessage(List, Locale)} method; may be {@code null} in which
+   * case the {@linkplain ForkJoinPool#commonPool() common
+   * <code>ForkJoinPool</code>} will be used
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see #getMessage(List, Locale)
+   */
+  public final CompletableFuture<String> getMessageAsync(final List<? extends T> input, final Locale locale, final Executor executor) {
+    return supplyAsync(new Supplier<String>() {
+        @Override
+        public final String get() {
+          return getMessage(input, locale);
+        }
+      }, executor);
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed with
+   * the result of calling the {@link #getMessage(List, Locale,
+   * String)} method, which is called by a task executed by the
+   * supplied {@link Executor}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Unless this {@link MessageFactory} has been {@linkplain
+   * #freeze() frozen}, it must not be modified until the returned
+   * {@link CompletableFuture} has completed.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} to match; may be {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param defaultValue the message to return if no message could be
+   * selected or the selected message is missing; may be {@code null}
+   *
+   * @param executor the {@link Executor} that will call the {@link
+   * #getMessage(List, Locale, String)} method; may be {@code null} in
+   * which case the {@linkplain ForkJoinPool#commonPool() common
+   * <code>ForkJoinPool</code>} will be used
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see #getMessage(List, Locale, String)
+   */
+  public final CompletableFuture<String> getMessageAsync(final List<? extends T> input, final Locale locale, final String defaultValue, final Executor executor) {
+    return supplyAsync(new Supplier<String>() {
+        @Override
+        public final String get() {
+          return getMessage(input, locale, defaultValue);
+        }
+      }, executor);
+  }
+
+  /**
+   * Returns a {@link List} of messages, one for each {@link List} in
+   * the supplied {@link Iterable}, in iteration order, exactly as if
+   * the {@link #getMessage(List, Locale)} method had been called with
+   * each in turn.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>Work that does not depend on the individual inputs is done once
+   * for the whole batch: the {@link Pattern}s are indexed once, and
+   * each selected message is looked up in its {@link ResourceBundle}
+   * only once, and its template compiled only once, no matter how many
+   * inputs select it.</p>
+   *
+   * @param inputs an {@link Iterable} of {@link List}s of {@link
+   * Object}s of type {@link MessageFactory T} to match; must not be
+   * {@code null}; its elements may be {@code null}
+   *
+   * @param locale the {@link Locale} for which messages should be
+   * returned; may be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of messages, each of
+   * which may be {@code null}, in the same order as the supplied
+   * {@code inputs}
+   *
+   * @exception IllegalArgumentException if {@code inputs} is {@code
+   * null}
+   *
+   * @exception MissingResourceException if a selected message could
+   * not be found
+   *
+   * @see #getMessages(Iterable, Locale, ExecutorService)
+   */
+  public final List<String> getMessages(final Iterable<? extends List<? extends T>> inputs, final Locale locale) {
+    if (inputs == null) {
+      throw new IllegalArgumentException("inputs", new NullPointerException("inputs"));
+    }
+    final Batch batch = new Batch(locale);
+    final List<String> returnValue;
+    if (inputs instanceof Collection) {
+      returnValue = new ArrayList<String>(((Collection<?>)inputs).size());
+    } else {
+      returnValue = new ArrayList<String>();
+    }
+    for (final List<? extends T> input : inputs) {
+      returnValue.add(batch.getMessage(input));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link List} of messages, one for each {@link List} in
+   * the supplied {@link Iterable}, in iteration order, exactly as if
+   * the {@link #getMessage(List, Locale)} method had been called with
+   * each in turn, dividing the work among tasks submitted to the
+   * supplied {@link ExecutorService}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The supplied {@code inputs} are divided into contiguous runs,
+   * each of which is processed by a single task, and the results are
+   * reassembled in input order.  As with the {@link
+   * #getMessages(Iterable, Locale)} method, the {@link Pattern}s are
+   * indexed once, and message lookups are shared by all tasks.  This
+   * method waits for all tasks to complete.  The supplied {@link
+   * ExecutorService} is not shut down.</p>
+   *
+   * <p>Any {@link ExecutorService} may be supplied.  In particular, a
+   * {@link ForkJoinPool}, such as the {@linkplain
+   * ForkJoinPool#commonPool() common pool}, is an {@link
+   * ExecutorService}, and tasks submitted to it are run by its worker
+   * {@link Thread}s like any others.  Each task processes a whole run
+   * of inputs, so the tasks are few and coarse, and none of them
+   * waits for another.</p>
+   *
+   * <p>This {@link MessageFactory} must not be modified while this
+   * method is executing; ideally it will have been {@linkplain
+   * #freeze() frozen}.</p>
+   *
+   * @param inputs an {@link Iterable} of {@link List}s of {@link
+   * Object}s of type {@link MessageFactory T} to match; must not be
+   * {@code null}; its elements may be {@code null}
+   *
+   * @param locale the {@link Locale} for which messages should be
+   * returned; may be {@code null}
+   *
+   * @param executor the {@link ExecutorService}, which may be a
+   * {@link ForkJoinPool}, to which tasks will be submitted; may be
+   * {@code null} in which case the work will be done on the calling
+   * {@link Thread}
+   *
+   * @return a non-{@code null} {@link List} of messages, each of
+   * which may be {@code null}, in the same order as the supplied
+   * {@code inputs}
+   *
+   * @exception IllegalArgumentException if {@code inputs} is {@code
+   * null}
+   *
+   * @exception MissingResourceException if a selected message could
+   * not be found
+   *
+   * @exception InterruptedException if the calling {@link Thread} was
+   * interrupted while waiting for tasks to complete; any tasks not
+   * yet complete are {@linkplain Future#cancel(boolean) cancelled}
+   *
+   * @see #getMessages(Iterable, Locale)
+   */
+  public final List<String> getMessages(final Iterable<? extends List<? extends T>> inputs, final Locale locale, final ExecutorService executor) throws InterruptedException {
+    if (inputs == null) {
+      throw new IllegalArgumentException("inputs", new NullPointerException("inputs"));
+    }
+    if (executor == null) {
+      return this.getMessages(inputs, locale);
+    }
+    final List<List<? extends T>> inputList = new ArrayList<List<? extends T>>();
+    for (final List<? extends T> input : inputs) {
+      inputList.add(input);
+    }
+    final int size = inputList.size();
+    final String[] messages = new String[size];
+    if (size > 0) {
+      final Batch batch = new Batch(locale);
+      final int taskCount = Math.min(size, Runtime.getRuntime().availableProcessors() * 4);
+      final int runLength = (size + taskCount - 1) / taskCount;
+      final List<Future<?>> futures = new ArrayList<Future<?>>(taskCount);
+      try {
+        for (int start = 0; start < size; start += runLength) {
+          final int from = start;
+          final int to = Math.min(size, start + runLength);
+          futures.add(executor.submit(new Callable<Void>() {
+              @Override
+              public final Void call() {
+                for (int i = from; i < to; i++) {
+                  messages[i] = batch.getMessage(inputList.get(i));
+                }
+                return null;
+              }
+            }));
+        }
+        for (final Future<?> future : futures) {
+          try {
+            future.get();
+          } catch (final ExecutionException executionException) {
+            final Throwable cause = executionException.getCause();
+            if (cause instanceof RuntimeException) {
+              throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+              throw (Error)cause;
+            } else {
+              throw new IllegalStateException(cause);
+            }
+          }
+        }
+      } finally {
+        for (final Future<?> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    return Arrays.asList(messages);
+  }
+
+  /**
+   * Returns a {@link Map} of the number of times each {@link
+   * ResourceBundleKey} in this {@link MessageFactory} has been found
+   * to identify a missing message, indexed by {@link
+   * ResourceBundleKey}.
+   *
+   * <p>Only {@link ResourceBundleKey}s with a non-zero {@linkplain
+   * ResourceBundleKey#getMissCount() miss count} are included.  The
+   * returned {@link Map} is a snapshot; it is not updated as further
+   * lookups occur.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map} of miss
+   * counts
+   *
+   * @see ResourceBundleKey#getMissCount()
+   */
+  public final Map<ResourceBundleKey, Long> getMissCounts() {
+    final Map<ResourceBundleKey, Long> returnValue;
+    if (this.patterns == null || this.patterns.isEmpty()) {
+      returnValue = Collections.emptyMap();
+    } else {
+      final Map<ResourceBundleKey, Long> missCounts = new LinkedHashMap<ResourceBundleKey, Long>();
+      for (final ResourceBundleKey key : this.patterns.keySet()) {
+        assert key != null;
+        final long missCount = key.getMissCount();
+        if (missCount > 0L) {
+          missCounts.put(key, Long.valueOf(missCount));
+        }
+      }
+      returnValue = Collections.unmodifiableMap(missCounts);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link Selector} for the supplied {@link List} of
+   * {@link Object}s of type {@link MessageFactory T}.
+   *
+   * <p>{@link Pattern}s are considered in insertion order, but only
+   * those whose {@linkplain PatternSummary#getRequiredType(int)
+   * required types} are all represented in the supplied {@code input}
+   * are actually evaluated.  The {@link Selector} returned is
+   * therefore the same as if every {@link Pattern} had been
+   * evaluated in turn.  If a {@linkplain
+   * #setSelectorCache(SelectorCache) <code>SelectorCache</code> is
+   * installed}, no {@link Pattern}s may need to be evaluated at
+   * all.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} for which a {@link Selector} will be returned;
+   * may be {@code null}; will be passed to the {@link
+   * Pattern#matcher(List)} method
+   *
+   * @return a {@link Selector}, or {@code null}
+   */
+  final Selector<T> getSelector(final List<? extends T> input) {
+    final PatternIndex<T> patternIndex = this.getPatternIndex();
+    this.countLookup(patternIndex);
+    return patternIndex.select(input, this.selectorCache, true);
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed with
+   * the result of calling the {@link #getSelector(List)} method,
+   * which is called by a task executed by the supplied {@link
+   * Executor}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s of type {@link
+   * MessageFactory T} for which a {@link Selector} will be returned;
+   * may be {@code null}
+   *
+   * @param executor the {@link Executor} that will call the {@link
+   * #getSelector(List)} method; may be {@code null} in which case the
+   * {@linkplain ForkJoinPool#commonPool() common
+   * <code>ForkJoinPool</code>} will be used
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see #getSelector(List)
+   */
+  final CompletableFuture<Selector<T>> getSelectorAsync(final List<? extends T> input, final Executor executor) {
+    return supplyAsync(new Supplier<Selector<T>>() {
+        @Override
+        public final Selector<T> get() {
+          return getSelector(input);
+        }
+      }, executor);
+  }
+
+  /**
+   * Returns a {@link PatternIndex} reflecting the current contents of
+   * this {@link MessageFactory}, building it first if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link PatternIndex}
+   */
+  private final PatternIndex<T> getPatternIndex() {
+    PatternIndex<T> returnValue = this.patternIndex;
+    if (returnValue == null) {
+      returnValue = this.createPatternIndex();
+      this.patternIndex = returnValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Creates a new {@link PatternIndex} that tries the {@link
+   * Pattern}s of this {@link MessageFactory} in the order in which
+   * they were added, those added under each {@link ResourceBundleKey}
+   * being contiguous.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null} {@link PatternIndex}
+   */
+  private final PatternIndex<T> createPatternIndex() {
+    final List<ResourceBundleKey> keys = new ArrayList<ResourceBundleKey>();
+    final List<LazyPattern<T>> patterns = new ArrayList<LazyPattern<T>>();
+    final List<PatternSummary> summaries = new ArrayList<PatternSummary>();
+    if (this.patterns != null) {
+      for (final Entry<ResourceBundleKey, PatternSet> entry : this.patterns.entrySet()) {
+        assert entry != null;
+        final ResourceBundleKey key = entry.getKey();
+        assert key != null;
+        final PatternSet patternSet = entry.getValue();
+        assert patternSet != null;
+        for (final Entry<Object, PatternSummary> summary : patternSet.summaries.entrySet()) {
+          assert summary != null;
+          assert summary.getValue() != null;
+          keys.add(key);
+          patterns.add(patternSet.toLazyPattern(summary.getKey()));
+          summaries.add(summary.getValue());
+        }
+      }
+    }
+    return new PatternIndex<T>(keys, patterns, summaries, this.automatonEnabled, this.getIndexMetrics());
+  }
+
+  /**
+   * Returns the {@link MatchMetrics} in which a new {@link
+   * PatternIndex} should record statistics: the {@linkplain
+   * #getMatchMetrics() installed <code>MatchMetrics</code>} if there
+   * is one, or else, if {@linkplain #setAdaptiveOrdering(boolean)
+   * adaptive ordering} is enabled, a private one.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link MatchMetrics}, or {@code null}
+   */
+  private final MatchMetrics getIndexMetrics() {
+    MatchMetrics returnValue = this.matchMetrics;
+    if (returnValue == null && this.adaptiveOrdering) {
+      returnValue = this.adaptiveMetrics;
+      if (returnValue == null) {
+        // Benign race: at worst a few early statistics are dropped.
+        returnValue = new MatchMetrics();
+        this.adaptiveMetrics = returnValue;
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Counts a lookup if {@linkplain #setAdaptiveOrdering(boolean)
+   * adaptive ordering} is enabled, and every {@value
+   * #ADAPTIVE_ORDERING_INTERVAL} lookups submits a task to the
+   * {@linkplain ForkJoinPool#commonPool() common
+   * <code>ForkJoinPool</code>} that {@linkplain PatternIndex#reorder()
+   * reorders} the {@link Pattern}s of the supplied {@link
+   * PatternIndex}, so that the lookup itself never does so.
+   *
+   * @param patternIndex the {@link PatternIndex} used for the lookup;
+   * must not be {@code null}
+   */
+  private final void countLookup(final PatternIndex<T> patternIndex) {
+    assert patternIndex != null;
+    if (this.adaptiveOrdering) {
+      AtomicLong lookupCount = this.lookupCount;
+      if (lookupCount == null) {
+        // Benign race: at worst a few lookups go uncounted.
+        lookupCount = new AtomicLong();
+        this.lookupCount = lookupCount;
+      }
+      if (lookupCount.incrementAndGet() % ADAPTIVE_ORDERING_INTERVAL == 0L) {
+        ForkJoinPool.commonPool().execute(new Runnable() {
+            @Override
+            public final void run() {
+              patternIndex.reorder();
+            }
+          });
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Class}, or any of its
+   * superclasses below {@link MessageFactory}, declares a method with
+   * the supplied name and parameter types, and hence overrides the
+   * {@link MessageFactory} method with that signature.
+   *
+   * @param c the {@link Class} to inspect; may be {@code null}
+   *
+   * @param name the name of the method; must not be {@code null}
+   *
+   * @param parameterTypes the parameter types of the method; must not
+   * be {@code null}
+   *
+   * @return {@code true} if the method is overridden; {@code false}
+   * otherwise
+   */
+  private static final boolean overrides(Class<?> c, final String name, final Class<?>... parameterTypes) {
+    assert name != null;
+    for (; c != null && c != MessageFactory.class; c = c.getSuperclass()) {
+      try {
+        c.getDeclaredMethod(name, parameterTypes);
+        return true;
+      } catch (final NoSuchMethodException noSuchMethodException) {
+        // Keep looking.
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Calls the {@link CompletableFuture#supplyAsync(Supplier, Executor)}
+   * method with the supplied {@link Supplier} and {@link Executor}, or,
+   * if the supplied {@link Executor} is {@code null}, the {@link
+   * CompletableFuture#supplyAsync(Supplier)} method with the supplied
+   * {@link Supplier}, and returns the result.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <U> the type of value supplied
+   *
+   * @param supplier the {@link Supplier} to run; must not be {@code
+   * null}
+   *
+   * @param executor the {@link Executor} to run it on; may be {@code
+   * null}
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
    */
-  public String getMessage(final List<? extends T> input, final Locale locale, final String defaultValue) {
-    String returnValue = null;
-    try {
-      returnValue = this.getMessage(input, locale);
-    } catch (final MissingResourceException oops) {
-      // TODO: log
-      returnValue = null;
-    }
-    if (returnValue == null) {
-      returnValue = defaultValue;
+  private static final <U> CompletableFuture<U> supplyAsync(final Supplier<U> supplier, final Executor executor) {
+    assert supplier != null;
+    final CompletableFuture<U> returnValue;
+    if (executor == null) {
+      returnValue = CompletableFuture.supplyAsync(supplier);
+    } else {
+      returnValue = CompletableFuture.supplyAsync(supplier, executor);
     }
     return returnValue;
   }
 
   /**
-   * Returns a {@link Selector} for the supplied {@link List} of
-   * {@link Object}s of type {@link MessageFactory T}.
+   * The state shared by all the inputs of a call to the {@link
+   * #getMessages(Iterable, Locale)} or {@link #getMessages(Iterable,
+   * Locale, ExecutorService)} methods.
    *
-   * <p>This method may return {@code null}.</p>
-   *
-   * @param input the {@link List} of {@link Object}s of type {@link
-   * MessageFactory T} for which a {@link Selector} will be returned;
-   * may be {@code null}; will be passed to the {@link
-   * Pattern#matcher(List)} method
+   * <p>Instances of this class are safe for concurrent use by multiple
+   * {@link Thread}s.</p>
    *
-   * @return a {@link Selector}, or {@code null}
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
    */
-  final Selector<T> getSelector(final List<? extends T> input) {
-    Selector<T> returnValue = null;
-    if (this.patterns != null && !this.patterns.isEmpty()) {
-      final Set<Entry<ResourceBundleKey, Set<Pattern<T>>>> entrySet = this.patterns.entrySet();
-      if (entrySet != null && !entrySet.isEmpty()) {
-        ENTRY_SET_LOOP:
-        for (final Entry<ResourceBundleKey, Set<Pattern<T>>> entry : entrySet) {
-          if (entry != null) {
-            final ResourceBundleKey key = entry.getKey();
-            if (key != null) {
-              final Set<Pattern<T>> patterns = entry.getValue();
-              if (patterns != null && !patterns.isEmpty()) {
-                for (final Pattern<T> pattern : patterns) {
-                  if (pattern != null) {
-                    final Matcher<T> matcher = pattern.matcher(input);
-                    assert matcher != null;
-                    if (matcher.lookingAt()) {
-                      returnValue = new Selector<T>(key, matcher);
-                      break ENTRY_SET_LOOP;
-                    }
-                  }
-                }
+  private final class Batch {
+
+    /**
+     * The {@link Locale} for which messages are returned.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final Locale locale;
+
+    /**
+     * The {@link PatternIndex} used for every input.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final PatternIndex<T> patternIndex;
+
+    /**
+     * The {@link SelectorCache} used for every input.
+     *
+     * <p>This field may be {@code null}.</p>
+     */
+    private final SelectorCache selectorCache;
+
+    /**
+     * Raw messages already looked up, indexed by the {@link
+     * ResourceBundleKey}s that identify them.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Map<ResourceBundleKey, Object> rawMessages;
+
+    /**
+     * Creates a new {@link Batch}.
+     *
+     * @param locale the {@link Locale} for which messages are
+     * returned; may be {@code null}
+     */
+    private Batch(final Locale locale) {
+      super();
+      this.locale = locale;
+      this.patternIndex = getPatternIndex();
+      this.selectorCache = MessageFactory.this.selectorCache;
+      this.rawMessages = new ConcurrentHashMap<ResourceBundleKey, Object>();
+      // Make sure the TemplateCache exists before any tasks need it.
+      getTemplateCache();
+    }
+
+    /**
+     * Returns the message for the supplied {@code input}, exactly as
+     * the {@link MessageFactory#getMessage(List, Locale)} method
+     * would.
+     *
+     * <p>This method may return {@code null}.</p>
+     *
+     * @param input the {@link List} to match; may be {@code null}
+     *
+     * @return a message, or {@code null}
+     *
+     * @exception MissingResourceException if the selected message
+     * could not be found
+     */
+    private final String getMessage(final List<? extends T> input) {
+      final String returnValue;
+      countLookup(this.patternIndex);
+      final Selector<T> selector = this.patternIndex.select(input, this.selectorCache, true);
+      if (selector == null) {
+        returnValue = null;
+      } else {
+        final ResourceBundleKey key = selector.getKey();
+        if (key == null) {
+          returnValue = convert(format(null, selector.getMatcher()));
+        } else {
+          final MessageTable.Cell cell = getPrecomputedMessage(selector, this.locale);
+          if (cell == null) {
+            Object rawMessage = this.rawMessages.get(key);
+            if (rawMessage == null) {
+              rawMessage = key.getObject(this.locale);
+              if (rawMessage != null) {
+                this.rawMessages.put(key, rawMessage);
               }
             }
+            returnValue = convert(format(rawMessage, selector.getMatcher()));
+          } else {
+            returnValue = convert(format(cell, selector.getMatcher()));
           }
         }
       }
+      return returnValue;
     }
-    return returnValue;
+
   }
 
   /**
    * A simple tuple that combines a {@link ResourceBundle}, a {@link
    * String} key and a {@link Matcher}.
    *
+   * <p>The {@link Matcher} may be created lazily, so instances of this
+   * class are not safe for concurrent use by multiple {@link
+   * Thread}s.</p>
+   *
    * @author <a href="http://about.me/lairdnelson"
    * target="_parent">Laird Nelson</a>
    *
    * @see MessageFactory#getSelector(List)
    */
-  private static final class Selector<T> {
+  static final class Selector<T> {
 
     /**
      * The {@link Selector}'s key.  This field is never {@code null}.
@@ -467,10 +2463,33 @@ public class MessageFactory<T> implements Serializable {
     private final ResourceBundleKey key;
 
     /**
-     * This {@link Selector}'s {@link Matcher}.  This field is never
-     * {@code null}.
+     * The ordinal of the {@link #key} field among the distinct keys of
+     * the {@link PatternIndex} that created this {@link Selector}, or
+     * {@code -1} if it is not known.
+     */
+    private final int keyOrdinal;
+
+    /**
+     * This {@link Selector}'s {@link Matcher}.  This field is {@code
+     * null} only until the {@link #getMatcher()} method is first
+     * called on a {@link Selector} created with the {@link
+     * #Selector(ResourceBundleKey, Pattern, List)} constructor.
+     */
+    private Matcher<T> matcher;
+
+    /**
+     * The {@link Pattern} from which the {@link #matcher} field will be
+     * created on demand.  This field is {@code null} once the {@link
+     * #matcher} field has been set.
      */
-    private final Matcher<T> matcher;
+    private Pattern<T> pattern;
+
+    /**
+     * The input that the {@link #pattern} field is known to match.
+     * This field is {@code null} once the {@link #matcher} field has
+     * been set.
+     */
+    private List<? extends T> input;
 
     /**
      * Creates a new {@link Selector}.
@@ -483,8 +2502,30 @@ public class MessageFactory<T> implements Serializable {
      *
      * @exception IllegalArgumentException if either parameter is
      * {@code null}
+     *
+     * @see #Selector(ResourceBundleKey, int, Matcher)
+     */
+    Selector(final ResourceBundleKey key, final Matcher<T> matcher) {
+      this(key, -1, matcher);
+    }
+
+    /**
+     * Creates a new {@link Selector}.
+     *
+     * @param key the key portion of this {@link Selector}; must not
+     * be {@code null}
+     *
+     * @param keyOrdinal the ordinal of the supplied {@code key} among
+     * the distinct keys of the {@link PatternIndex} creating this
+     * {@link Selector}, or {@code -1} if it is not known
+     *
+     * @param matcher the {@link Matcher} portion of this {@link
+     * Selector}; must not be {@code null}
+     *
+     * @exception IllegalArgumentException if either {@code key} or
+     * {@code matcher} is {@code null}
      */
-    private Selector(final ResourceBundleKey key, final Matcher<T> matcher) {
+    Selector(final ResourceBundleKey key, final int keyOrdinal, final Matcher<T> matcher) {
       super();
       if (key == null) {
         throw new IllegalArgumentException("key", new NullPointerException("key"));
@@ -493,9 +2534,70 @@ public class MessageFactory<T> implements Serializable {
         throw new IllegalArgumentException("matcher", new NullPointerException("matcher"));
       }
       this.key = key;
+      this.keyOrdinal = keyOrdinal;
       this.matcher = matcher;
     }
 
+    /**
+     * Creates a new {@link Selector} whose {@link Matcher} will be
+     * created from the supplied {@link Pattern} and {@code input} only
+     * if and when it is {@linkplain #getMatcher() requested}.
+     *
+     * @param key the key portion of this {@link Selector}; must not
+     * be {@code null}
+     *
+     * @param pattern the {@link Pattern} that is already known to
+     * {@linkplain Matcher#lookingAt() match} the supplied {@code
+     * input}; must not be {@code null}
+     *
+     * @param input the input that the supplied {@link Pattern} is
+     * known to match; may be {@code null}
+     *
+     * @exception IllegalArgumentException if either {@code key} or
+     * {@code pattern} is {@code null}
+     *
+     * @see #Selector(ResourceBundleKey, int, Pattern, List)
+     */
+    Selector(final ResourceBundleKey key, final Pattern<T> pattern, final List<? extends T> input) {
+      this(key, -1, pattern, input);
+    }
+
+    /**
+     * Creates a new {@link Selector} whose {@link Matcher} will be
+     * created from the supplied {@link Pattern} and {@code input} only
+     * if and when it is {@linkplain #getMatcher() requested}.
+     *
+     * @param key the key portion of this {@link Selector}; must not
+     * be {@code null}
+     *
+     * @param keyOrdinal the ordinal of the supplied {@code key} among
+     * the distinct keys of the {@link PatternIndex} creating this
+     * {@link Selector}, or {@code -1} if it is not known
+     *
+     * @param pattern the {@link Pattern} that is already known to
+     * {@linkplain Matcher#lookingAt() match} the supplied {@code
+     * input}; must not be {@code null}
+     *
+     * @param input the input that the supplied {@link Pattern} is
+     * known to match; may be {@code null}
+     *
+     * @exception IllegalArgumentException if either {@code key} or
+     * {@code pattern} is {@code null}
+     */
+    Selector(final ResourceBundleKey key, final int keyOrdinal, final Pattern<T> pattern, final List<? extends T> input) {
+      super();
+      if (key == null) {
+        throw new IllegalArgumentException("key", new NullPointerException("key"));
+      }
+      if (pattern == null) {
+        throw new IllegalArgumentException("pattern", new NullPointerException("pattern"));
+      }
+      this.key = key;
+      this.keyOrdinal = keyOrdinal;
+      this.pattern = pattern;
+      this.input = input;
+    }
+
     /**
      * Returns the key of this {@link Selector}.
      *
@@ -508,14 +2610,42 @@ public class MessageFactory<T> implements Serializable {
     }
 
     /**
-     * Returns the {@link Matcher} of this {@link Selector}.
+     * Returns the ordinal of this {@link Selector}'s {@linkplain
+     * #getKey() key} among the distinct keys of the {@link
+     * PatternIndex} that created it, or {@code -1} if it is not
+     * known.
+     *
+     * @return a key ordinal, or {@code -1}
+     */
+    final int getKeyOrdinal() {
+      return this.keyOrdinal;
+    }
+
+    /**
+     * Returns the {@link Matcher} of this {@link Selector}, creating
+     * it first if necessary.
      *
      * <p>This method never returns {@code null}.</p>
      *
      * @return the non-{@code null} {@link Matcher} portion of this
      * {@link Selector}
+     *
+     * @exception IllegalStateException if this {@link Selector} was
+     * created with a {@link Pattern} that does not in fact {@linkplain
+     * Matcher#lookingAt() match} its input
      */
     public final Matcher<T> getMatcher() {
+      if (this.matcher == null) {
+        assert this.pattern != null;
+        final Matcher<T> matcher = this.pattern.matcher(this.input);
+        assert matcher != null;
+        if (!matcher.lookingAt()) {
+          throw new IllegalStateException("Pattern " + this.pattern + " does not match " + this.input);
+        }
+        this.matcher = matcher;
+        this.pattern = null;
+        this.input = null;
+      }
       return this.matcher;
     }
 
@@ -589,4 +2719,326 @@ public class MessageFactory<T> implements Serializable {
 
   }
 
+
+  /**
+   * A mutable {@link Set} of {@link Pattern}s that records a {@link
+   * PatternSummary} for each of its elements and that discards its
+   * enclosing {@link MessageFactory}'s {@link PatternIndex} whenever
+   * it is modified.  Once its enclosing {@link MessageFactory} has
+   * been {@linkplain MessageFactory#freeze() frozen}, attempts to
+   * modify a {@link PatternSet} result in {@link
+   * UnsupportedOperationException}s.
+   *
+   * <p>A {@link PatternSet} may also hold {@link LazyPattern}s, which
+   * are compiled only when they are first evaluated or when they are
+   * encountered while iterating.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see MessageFactory#getPatterns(ResourceBundleKey)
+   */
+  private final class PatternSet extends AbstractSet<Pattern<T>> implements Serializable {
+
+    /**
+     * The version of this class for {@linkplain Serializable
+     * serialization purposes}.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The {@link Pattern}s and {@link LazyPattern}s in this {@link
+     * PatternSet}, in insertion order, mapped to {@link
+     * PatternSummary} instances describing them.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Map<Object, PatternSummary> summaries;
+
+    /**
+     * Creates a new {@link PatternSet}.
+     */
+    private PatternSet() {
+      super();
+      this.summaries = new LinkedHashMap<Object, PatternSummary>();
+    }
+
+    /**
+     * Returns the size of this {@link PatternSet}.
+     *
+     * @return the size of this {@link PatternSet}
+     */
+    @Override
+    public final int size() {
+      return this.summaries.size();
+    }
+
+    /**
+     * Returns {@code true} if this {@link PatternSet} contains the
+     * supplied {@link Object}.
+     *
+     * @param object the {@link Object} to test; may be {@code null}
+     *
+     * @return {@code true} if this {@link PatternSet} contains the
+     * supplied {@link Object}; {@code false} otherwise
+     */
+    @Override
+    public final boolean contains(final Object object) {
+      return this.getKey(object) != null;
+    }
+
+    /**
+     * Returns the key under which the supplied {@link Pattern} is
+     * recorded in the {@link #summaries} {@link Map}: either the
+     * {@link Pattern} itself or the {@link LazyPattern} that compiled
+     * it.  Returns {@code null} if there is no such key.
+     *
+     * <p>This method may return {@code null}.</p>
+     *
+     * @param pattern the {@link Pattern} in question; may be {@code
+     * null}
+     *
+     * @return the key under which the supplied {@link Pattern} is
+     * recorded, or {@code null}
+     */
+    private final Object getKey(final Object pattern) {
+      if (pattern == null || pattern instanceof LazyPattern) {
+        return null;
+      } else if (this.summaries.containsKey(pattern)) {
+        return pattern;
+      }
+      for (final Object key : this.summaries.keySet()) {
+        if (key instanceof LazyPattern && pattern.equals(((LazyPattern<?>)key).getIfCompiled())) {
+          return key;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Returns the {@link PatternSummary} recorded for the supplied
+     * {@link Pattern}, or {@code null} if it is not in this {@link
+     * PatternSet}.
+     *
+     * <p>This method may return {@code null}.</p>
+     *
+     * @param pattern the {@link Pattern} in question; may be {@code
+     * null}
+     *
+     * @return a {@link PatternSummary}, or {@code null}
+     */
+    private final PatternSummary getSummary(final Object pattern) {
+      final Object key = this.getKey(pattern);
+      return key == null ? null : this.summaries.get(key);
+    }
+
+    /**
+     * Adds the supplied {@link Pattern} to this {@link PatternSet}
+     * if it is not already present.
+     *
+     * @param pattern the {@link Pattern} to add; must not be {@code
+     * null}
+     *
+     * @return {@code true} if this {@link PatternSet} was modified;
+     * {@code false} otherwise
+     *
+     * @exception IllegalArgumentException if {@code pattern} is
+     * {@code null}
+     */
+    @Override
+    public final boolean add(final Pattern<T> pattern) {
+      return this.add(pattern, PatternSummary.UNKNOWN);
+    }
+
+    /**
+     * Adds the supplied {@link Pattern} to this {@link PatternSet},
+     * described by the supplied {@link PatternSummary}, if it is not
+     * already present.  If it is already present but was not
+     * {@linkplain PatternSummary#isAnalyzed() analyzed}, then its
+     * {@link PatternSummary} is replaced.
+     *
+     * @param pattern the {@link Pattern} to add; must not be {@code
+     * null}
+     *
+     * @param summary the {@link PatternSummary} describing the
+     * supplied {@link Pattern}; must not be {@code null}
+     *
+     * @return {@code true} if the supplied {@link Pattern} was not
+     * already present; {@code false} otherwise
+     *
+     * @exception IllegalArgumentException if either parameter is
+     * {@code null}
+     */
+    private final boolean add(final Pattern<T> pattern, final PatternSummary summary) {
+      if (pattern == null) {
+        throw new IllegalArgumentException("pattern", new NullPointerException("pattern"));
+      }
+      if (summary == null) {
+        throw new IllegalArgumentException("summary", new NullPointerException("summary"));
+      }
+      MessageFactory.this.checkNotFrozen();
+      final boolean returnValue;
+      final Object key = this.getKey(pattern);
+      if (key == null) {
+        this.summaries.put(pattern, summary);
+        returnValue = true;
+        MessageFactory.this.patternIndex = null;
+      } else {
+        if (!this.summaries.get(key).isAnalyzed() && summary.isAnalyzed()) {
+          this.summaries.put(key, summary);
+          MessageFactory.this.patternIndex = null;
+        }
+        returnValue = false;
+      }
+      return returnValue;
+    }
+
+    /**
+     * Adds the supplied {@link LazyPattern} to this {@link
+     * PatternSet}, described by the supplied {@link PatternSummary},
+     * unless a {@link LazyPattern} with the same source code is
+     * already present.
+     *
+     * @param pattern the {@link LazyPattern} to add; must not be
+     * {@code null}
+     *
+     * @param summary the {@link PatternSummary} describing the
+     * supplied {@link LazyPattern}; must not be {@code null}
+     *
+     * @return {@code true} if the supplied {@link LazyPattern} was
+     * added; {@code false} otherwise
+     */
+    private final boolean add(final LazyPattern<T> pattern, final PatternSummary summary) {
+      assert pattern != null;
+      assert summary != null;
+      MessageFactory.this.checkNotFrozen();
+      final String source = pattern.getSource();
+      for (final Object key : this.summaries.keySet()) {
+        if (key instanceof LazyPattern && source.equals(((LazyPattern<?>)key).getSource())) {
+          return false;
+        }
+      }
+      this.summaries.put(pattern, summary);
+      MessageFactory.this.patternIndex = null;
+      return true;
+    }
+
+    /**
+     * Removes the supplied {@link Object} from this {@link
+     * PatternSet}.
+     *
+     * @param object the {@link Object} to remove; may be {@code null}
+     *
+     * @return {@code true} if this {@link PatternSet} was modified;
+     * {@code false} otherwise
+     */
+    @Override
+    public final boolean remove(final Object object) {
+      MessageFactory.this.checkNotFrozen();
+      final Object key = this.getKey(object);
+      final boolean returnValue = key != null;
+      if (returnValue) {
+        this.summaries.remove(key);
+        MessageFactory.this.patternIndex = null;
+      }
+      return returnValue;
+    }
+
+    /**
+     * Removes all {@link Pattern}s from this {@link PatternSet}.
+     */
+    @Override
+    public final void clear() {
+      MessageFactory.this.checkNotFrozen();
+      if (!this.summaries.isEmpty()) {
+        this.summaries.clear();
+        MessageFactory.this.patternIndex = null;
+      }
+    }
+
+    /**
+     * Returns an {@link Iterator} over the {@link Pattern}s in this
+     * {@link PatternSet}, in insertion order.  {@link LazyPattern}s
+     * are compiled as they are encountered.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Iterator}
+     */
+    @Override
+    public final Iterator<Pattern<T>> iterator() {
+      final Iterator<Object> delegate = this.summaries.keySet().iterator();
+      assert delegate != null;
+      return new Iterator<Pattern<T>>() {
+        @Override
+        public final boolean hasNext() {
+          return delegate.hasNext();
+        }
+
+        @Override
+        public final Pattern<T> next() {
+          return toPattern(delegate.next());
+        }
+
+        @Override
+        public final void remove() {
+          MessageFactory.this.checkNotFrozen();
+          delegate.remove();
+          MessageFactory.this.patternIndex = null;
+        }
+      };
+    }
+
+    /**
+     * Returns a {@link LazyPattern} for the supplied key of the {@link
+     * #summaries} {@link Map}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param key a key of the {@link #summaries} {@link Map}; must not
+     * be {@code null}
+     *
+     * @return a non-{@code null} {@link LazyPattern}
+     */
+    @SuppressWarnings("unchecked")
+    private final LazyPattern<T> toLazyPattern(final Object key) {
+      assert key != null;
+      final LazyPattern<T> returnValue;
+      if (key instanceof LazyPattern) {
+        returnValue = (LazyPattern<T>)key;
+      } else {
+        final PatternSummary summary = this.summaries.get(key);
+        returnValue = new LazyPattern<T>(summary == null ? null : summary.getSource(), (Pattern<T>)key);
+      }
+      return returnValue;
+    }
+
+    /**
+     * Returns the {@link Pattern} for the supplied key of the {@link
+     * #summaries} {@link Map}, compiling it first if necessary.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param key a key of the {@link #summaries} {@link Map}; must not
+     * be {@code null}
+     *
+     * @return a non-{@code null} {@link Pattern}
+     *
+     * @exception IllegalStateException if a {@link LazyPattern} could
+     * not be compiled
+     */
+    @SuppressWarnings("unchecked")
+    private final Pattern<T> toPattern(final Object key) {
+      assert key != null;
+      final Pattern<T> returnValue;
+      if (key instanceof LazyPattern) {
+        returnValue = ((LazyPattern<T>)key).get();
+      } else {
+        returnValue = (Pattern<T>)key;
+      }
+      return returnValue;
+    }
+
+  }
+
 }
@@ -0,0 +1,395 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle.Control;
+import java.util.Set;
+
+import org.mvel2.templates.CompiledTemplate;
+
+/**
+ * A dense table of raw messages and their {@linkplain
+ * TemplateCache#getCompiledTemplate(String) compiled templates},
+ * indexed by {@link Locale} and by the ordinal of the {@link
+ * ResourceBundleKey} that selects them.
+ *
+ * <p>A {@link MessageTable} is built once, for a fixed set of {@link
+ * Locale}s, from the {@linkplain PatternIndex#getDistinctKeys()
+ * distinct keys} of a {@link PatternIndex}.  Looking up a message it
+ * holds requires no {@link java.util.ResourceBundle} machinery and no
+ * template cache lookup.  Keys whose messages are missing for a given
+ * {@link Locale} are {@linkplain #getMissingKeys() recorded} when the
+ * table is built, and are not held in it.</p>
+ *
+ * <p>Each message is held for the {@linkplain
+ * Control#getTimeToLive(String, Locale) time-to-live} reported by
+ * the {@link Control} of the {@link ResourceBundleKey} that selects
+ * it.  A message that has expired is resolved and, if necessary,
+ * compiled afresh the next time it is {@linkplain #getCell(Locale,
+ * int, ResourceBundleKey) looked up}.  A message whose {@link
+ * Control} returns {@link Control#TTL_DONT_CACHE} is not held at
+ * all.  With the default {@link Control}, messages never expire and
+ * looking one up does not consult the clock.</p>
+ *
+ * <p>{@link MessageTable} instances are safe for concurrent use by
+ * multiple {@link Thread}s.  Replacing an expired {@link Cell} is a
+ * benign race, since {@link Cell}s are immutable.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#precomputeMessages(Collection)
+ */
+final class MessageTable {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ResourceBundleKey}s of this {@link MessageTable},
+   * indexed by key ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ResourceBundleKey[] keys;
+
+  /**
+   * The {@link Locale}s of this {@link MessageTable}, indexed by
+   * {@link Locale} ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Locale[] locales;
+
+  /**
+   * The {@link Cell}s of this {@link MessageTable}, indexed first by
+   * {@link Locale} ordinal and then by key ordinal.  A cell is {@code
+   * null} if its message is missing or is not to be held.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Cell[][] cells;
+
+  /**
+   * The {@link ResourceBundleKey}s whose messages are missing,
+   * indexed by the {@link Locale} for which they are missing.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<Locale, Set<ResourceBundleKey>> missingKeys;
+
+  /**
+   * The {@link TemplateCache} with which templates are compiled.
+   *
+   * <p>This field may be {@code null}, in which case no templates are
+   * compiled.</p>
+   */
+  private final TemplateCache templateCache;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MessageTable}, resolving every message it
+   * will hold.
+   *
+   * @param keys the {@link ResourceBundleKey}s whose messages are to
+   * be held, indexed by key ordinal; must not be {@code null}
+   *
+   * @param locales the {@link Locale}s for which messages are to be
+   * held; must not be {@code null}; {@code null} elements and
+   * duplicates are ignored
+   *
+   * @param templateCache the {@link TemplateCache} with which to
+   * compile templates; may be {@code null} in which case no templates
+   * will be compiled
+   *
+   * @exception IllegalArgumentException if {@code keys} or {@code
+   * locales} is {@code null}
+   */
+  MessageTable(final ResourceBundleKey[] keys, final Collection<? extends Locale> locales, final TemplateCache templateCache) {
+    super();
+    if (keys == null) {
+      throw new IllegalArgumentException("keys", new NullPointerException("keys"));
+    }
+    if (locales == null) {
+      throw new IllegalArgumentException("locales", new NullPointerException("locales"));
+    }
+    this.keys = keys.clone();
+    this.templateCache = templateCache;
+    final long now = System.currentTimeMillis();
+    final Set<Locale> localeSet = new LinkedHashSet<Locale>(locales);
+    localeSet.remove(null);
+    this.locales = localeSet.toArray(new Locale[localeSet.size()]);
+    this.cells = new Cell[this.locales.length][];
+    final Map<Locale, Set<ResourceBundleKey>> missingKeys = new LinkedHashMap<Locale, Set<ResourceBundleKey>>();
+    for (int l = 0; l < this.locales.length; l++) {
+      final Locale locale = this.locales[l];
+      final Cell[] row = new Cell[this.keys.length];
+      Set<ResourceBundleKey> missing = null;
+      for (int k = 0; k < this.keys.length; k++) {
+        final ResourceBundleKey key = this.keys[k];
+        assert key != null;
+        final Object rawMessage = key.getUncountedObject(locale, null);
+        if (rawMessage == null) {
+          if (missing == null) {
+            missing = new LinkedHashSet<ResourceBundleKey>();
+          }
+          missing.add(key);
+        } else {
+          row[k] = this.createCell(key, locale, rawMessage, now);
+        }
+      }
+      this.cells[l] = row;
+      if (missing != null) {
+        missingKeys.put(locale, Collections.unmodifiableSet(missing));
+      }
+    }
+    this.missingKeys = Collections.unmodifiableMap(missingKeys);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link Cell} holding the message selected by the
+   * supplied {@link ResourceBundleKey} for the supplied {@link
+   * Locale}, or {@code null} if this {@link MessageTable} does not
+   * hold it.
+   *
+   * <p>The supplied {@code keyOrdinal} is trusted only if the key
+   * this {@link MessageTable} holds at that ordinal is identical to
+   * the supplied {@code key}, so a {@link MessageTable} built for an
+   * earlier {@link PatternIndex} never yields a wrong message.</p>
+   *
+   * <p>If the {@link Cell} has expired, it is replaced by one holding
+   * the message as it is resolved now, which may be missing.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param locale the {@link Locale} in question; may be {@code null}
+   *
+   * @param keyOrdinal the ordinal of the supplied {@code key}, or
+   * {@code -1} if it is not known
+   *
+   * @param key the {@link ResourceBundleKey} in question; may be
+   * {@code null}
+   *
+   * @return a {@link Cell}, or {@code null}
+   */
+  final Cell getCell(final Locale locale, final int keyOrdinal, final ResourceBundleKey key) {
+    if (keyOrdinal < 0 || keyOrdinal >= this.keys.length || this.keys[keyOrdinal] != key || locale == null) {
+      return null;
+    }
+    for (int l = 0; l < this.locales.length; l++) {
+      if (locale.equals(this.locales[l])) {
+        Cell returnValue = this.cells[l][keyOrdinal];
+        if (returnValue != null && returnValue.expirationTime != Long.MAX_VALUE) {
+          final long now = System.currentTimeMillis();
+          if (now >= returnValue.expirationTime) {
+            final Object rawMessage = key.getUncountedObject(locale, null);
+            if (rawMessage == null) {
+              returnValue = null;
+            } else {
+              returnValue = this.createCell(key, locale, rawMessage, now);
+            }
+            // Benign race: concurrent replacements hold the same
+            // message.
+            this.cells[l][keyOrdinal] = returnValue;
+          }
+        }
+        return returnValue;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates a new {@link Cell} holding the supplied raw message,
+   * resolved by the supplied {@link ResourceBundleKey} at the
+   * supplied time, or returns {@code null} if the message is not to
+   * be held because its time-to-live is {@link
+   * Control#TTL_DONT_CACHE}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param key the {@link ResourceBundleKey} that resolved the
+   * message; must not be {@code null}
+   *
+   * @param locale the {@link Locale} for which it was resolved; must
+   * not be {@code null}
+   *
+   * @param rawMessage the raw message; must not be {@code null}
+   *
+   * @param now the time at which it was resolved
+   *
+   * @return a new {@link Cell}, or {@code null}
+   */
+  private final Cell createCell(final ResourceBundleKey key, final Locale locale, final Object rawMessage, final long now) {
+    assert key != null;
+    assert locale != null;
+    assert rawMessage != null;
+    final Cell returnValue;
+    final long timeToLive = key.getTimeToLive(locale);
+    if (timeToLive == Control.TTL_DONT_CACHE) {
+      returnValue = null;
+    } else {
+      CompiledTemplate compiledTemplate = null;
+      if (this.templateCache != null && rawMessage instanceof CharSequence) {
+        final String template = rawMessage.toString();
+        if (TemplateCache.isTemplate(template)) {
+          compiledTemplate = this.templateCache.getCompiledTemplate(template);
+        }
+      }
+      returnValue = new Cell(rawMessage, compiledTemplate, ResourceBundleKey.getExpirationTime(now, timeToLive));
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns an unmodifiable {@link Set} of the {@link Locale}s for
+   * which this {@link MessageTable} holds messages.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Set} of {@link
+   * Locale}s
+   */
+  final Set<Locale> getLocales() {
+    final Set<Locale> locales = new LinkedHashSet<Locale>();
+    Collections.addAll(locales, this.locales);
+    return Collections.unmodifiableSet(locales);
+  }
+
+  /**
+   * Returns an unmodifiable {@link Map} of the {@link
+   * ResourceBundleKey}s whose messages were found to be missing when
+   * this {@link MessageTable} was built, indexed by the {@link
+   * Locale} for which they are missing.  {@link Locale}s for which no
+   * messages are missing are absent.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, unmodifiable {@link Map}
+   */
+  final Map<Locale, Set<ResourceBundleKey>> getMissingKeys() {
+    return this.missingKeys;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A raw message and, if it is a template, its compiled form.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Cell {
+
+    /**
+     * The raw message.  This field is never {@code null}.
+     */
+    private final Object rawMessage;
+
+    /**
+     * The compiled form of the {@link #rawMessage} field, or {@code
+     * null} if it is not a template.
+     */
+    private final CompiledTemplate compiledTemplate;
+
+    /**
+     * The time, in milliseconds since the epoch, at which this {@link
+     * Cell} expires, or {@link Long#MAX_VALUE} if it never does.
+     */
+    private final long expirationTime;
+
+    /**
+     * Creates a new {@link Cell}.
+     *
+     * @param rawMessage the raw message; must not be {@code null}
+     *
+     * @param compiledTemplate the compiled form of the raw message;
+     * may be {@code null}
+     *
+     * @param expirationTime the time, in milliseconds since the epoch,
+     * at which the new {@link Cell} expires, or {@link Long#MAX_VALUE}
+     * if it never does
+     */
+    private Cell(final Object rawMessage, final CompiledTemplate compiledTemplate, final long expirationTime) {
+      super();
+      assert rawMessage != null;
+      this.rawMessage = rawMessage;
+      this.compiledTemplate = compiledTemplate;
+      this.expirationTime = expirationTime;
+    }
+
+    /**
+     * Returns the raw message.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} raw message
+     */
+    final Object getRawMessage() {
+      return this.rawMessage;
+    }
+
+    /**
+     * Returns the compiled form of the raw message, or {@code null} if
+     * it is not a template or was not compiled.
+     *
+     * <p>This method may return {@code null}.</p>
+     *
+     * @return a {@link CompiledTemplate}, or {@code null}
+     */
+    final CompiledTemplate getCompiledTemplate() {
+      return this.compiledTemplate;
+    }
+
+  }
+
+}
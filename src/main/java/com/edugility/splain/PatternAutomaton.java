@@ -0,0 +1,697 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A nondeterministic finite automaton that combines the {@linkplain
+ * PatternSummary#getSyntax() syntax trees} of many {@link Pattern}s
+ * so that all of them can be matched against an input {@link List} in
+ * a single pass over it.
+ *
+ * <p>Each combined {@link Pattern} is identified by its ordinal.  The
+ * {@link #match(String[][])} method reports the ordinals of all
+ * combined {@link Pattern}s that could match a given input.  For a
+ * {@link Pattern} that is {@linkplain PatternSummary#isTypeOnly() type
+ * only} this report is exact.  For a {@link Pattern} with predicates,
+ * which this class cannot evaluate, every predicate is presumed to be
+ * satisfied, so the report is a superset of the truth and the {@link
+ * Pattern} must still be evaluated to confirm a match.</p>
+ *
+ * <p>Start states are indexed by the type name their first element
+ * requires, so the cost of a match is proportional to the length of
+ * the input and the number of {@link Pattern}s that are actually in
+ * progress, not to the total number of {@link Pattern}s.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple {@link Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see PatternIndex
+ *
+ * @see MessageFactory#setAutomatonEnabled(boolean)
+ */
+final class PatternAutomaton {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * An empty {@code int} array.  This field is never {@code null}.
+   */
+  private static final int[] EMPTY = new int[0];
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The number of states in this {@link PatternAutomaton}.
+   */
+  private final int stateCount;
+
+  /**
+   * For each consuming state, the name of the type an item must be
+   * an instance of for the state to advance, or {@code null} if any
+   * item will do.  Entries for other states are {@code null}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String[] tests;
+
+  /**
+   * For each consuming state, the consuming and accepting states
+   * reachable after it has consumed an item.  Entries for other
+   * states are {@code null}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final int[][] successors;
+
+  /**
+   * For each state, the ordinal of the {@link Pattern} it accepts, or
+   * {@code -1} if it is not an accepting state.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final int[] acceptedOrdinals;
+
+  /**
+   * The ordinals of those {@link Pattern}s that must match at the end
+   * of the input.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet endAnchored;
+
+  /**
+   * The ordinals of those {@link Pattern}s that this {@link
+   * PatternAutomaton} combines.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet supported;
+
+  /**
+   * The ordinals of those {@link Pattern}s that match any input,
+   * including an empty one, because they can match an empty
+   * sequence.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet emptyMatches;
+
+  /**
+   * The ordinals of those {@link Pattern}s anchored at both ends that
+   * can match an empty sequence, and so match an empty input.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet emptyInputMatches;
+
+  /**
+   * The initial consuming states of {@link Pattern}s that may begin
+   * matching at any position, indexed by the type name they require.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, int[]> unanchoredStarts;
+
+  /**
+   * The initial consuming states of {@link Pattern}s that may begin
+   * matching at any position and that accept any item.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final int[] unanchoredAnyStarts;
+
+  /**
+   * The initial consuming states of {@link Pattern}s that must begin
+   * matching at the start of the input, indexed by the type name they
+   * require.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, int[]> anchoredStarts;
+
+  /**
+   * The initial consuming states of {@link Pattern}s that must begin
+   * matching at the start of the input and that accept any item.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final int[] anchoredAnyStarts;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PatternAutomaton} combining every {@link
+   * Pattern} whose {@link PatternSummary} has been {@linkplain
+   * PatternSummary#isAnalyzed() analyzed}.
+   *
+   * @param summaries {@link PatternSummary} instances indexed by
+   * ordinal; must not be {@code null} and must not contain {@code
+   * null} elements
+   *
+   * @exception IllegalArgumentException if {@code summaries} is
+   * {@code null}
+   */
+  PatternAutomaton(final PatternSummary[] summaries) {
+    super();
+    if (summaries == null) {
+      throw new IllegalArgumentException("summaries", new NullPointerException("summaries"));
+    }
+    final Builder builder = new Builder();
+    this.endAnchored = new BitSet(summaries.length);
+    this.supported = new BitSet(summaries.length);
+    this.emptyMatches = new BitSet(summaries.length);
+    this.emptyInputMatches = new BitSet(summaries.length);
+    final Map<String, List<Integer>> unanchoredStarts = new HashMap<String, List<Integer>>();
+    final List<Integer> unanchoredAnyStarts = new ArrayList<Integer>();
+    final Map<String, List<Integer>> anchoredStarts = new HashMap<String, List<Integer>>();
+    final List<Integer> anchoredAnyStarts = new ArrayList<Integer>();
+    for (int ordinal = 0; ordinal < summaries.length; ordinal++) {
+      final PatternSummary summary = summaries[ordinal];
+      assert summary != null;
+      final PatternSummary.Node syntax = summary.getSyntax();
+      if (syntax != null) {
+        this.supported.set(ordinal);
+        if (summary.isEndAnchored()) {
+          this.endAnchored.set(ordinal);
+        }
+        final int accept = builder.add(Builder.ACCEPT, null, ordinal);
+        final int start = builder.build(syntax, accept);
+        final boolean startAnchored = summary.isStartAnchored();
+        for (final int state : builder.closure(start)) {
+          if (builder.kinds.get(state).intValue() == Builder.ACCEPT) {
+            if (startAnchored && summary.isEndAnchored()) {
+              this.emptyInputMatches.set(ordinal);
+            } else {
+              this.emptyMatches.set(ordinal);
+            }
+          } else {
+            final String test = builder.tests.get(state);
+            if (test == null) {
+              (startAnchored ? anchoredAnyStarts : unanchoredAnyStarts).add(Integer.valueOf(state));
+            } else {
+              final Map<String, List<Integer>> starts = startAnchored ? anchoredStarts : unanchoredStarts;
+              List<Integer> states = starts.get(test);
+              if (states == null) {
+                states = new ArrayList<Integer>();
+                starts.put(test, states);
+              }
+              states.add(Integer.valueOf(state));
+            }
+          }
+        }
+      }
+    }
+    this.stateCount = builder.kinds.size();
+    this.tests = builder.tests.toArray(new String[this.stateCount]);
+    this.successors = new int[this.stateCount][];
+    this.acceptedOrdinals = new int[this.stateCount];
+    for (int state = 0; state < this.stateCount; state++) {
+      final int kind = builder.kinds.get(state).intValue();
+      if (kind == Builder.CONSUME) {
+        this.successors[state] = builder.closure(builder.targets.get(state).intValue());
+        this.acceptedOrdinals[state] = -1;
+      } else if (kind == Builder.ACCEPT) {
+        this.acceptedOrdinals[state] = builder.targets.get(state).intValue();
+      } else {
+        this.acceptedOrdinals[state] = -1;
+      }
+    }
+    this.unanchoredStarts = toArrays(unanchoredStarts);
+    this.unanchoredAnyStarts = toArray(unanchoredAnyStarts);
+    this.anchoredStarts = toArrays(anchoredStarts);
+    this.anchoredAnyStarts = toArray(anchoredAnyStarts);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the {@link Pattern} with the supplied
+   * ordinal is combined by this {@link PatternAutomaton}.
+   *
+   * @param ordinal the ordinal of a {@link Pattern}
+   *
+   * @return {@code true} if the {@link Pattern} with the supplied
+   * ordinal is combined by this {@link PatternAutomaton}
+   */
+  final boolean isSupported(final int ordinal) {
+    return this.supported.get(ordinal);
+  }
+
+  /**
+   * Returns a new {@link BitSet} whose bits are set for the ordinals
+   * of those {@link Pattern}s that are <em>not</em> combined by this
+   * {@link PatternAutomaton}, out of the supplied number of {@link
+   * Pattern}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param size the total number of {@link Pattern}s
+   *
+   * @return a new, non-{@code null} {@link BitSet}
+   */
+  final BitSet getUnsupported(final int size) {
+    final BitSet returnValue = new BitSet(size);
+    returnValue.set(0, size);
+    returnValue.andNot(this.supported);
+    return returnValue;
+  }
+
+  /**
+   * Walks an input {@link List} once and returns a new {@link BitSet}
+   * of the ordinals of those combined {@link Pattern}s that could
+   * match it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param itemTypeNames for each item in the input {@link List}, in
+   * order, the names of all the types that item is an instance of, or
+   * {@code null} if the item is {@code null}; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link BitSet}
+   */
+  final BitSet match(final String[][] itemTypeNames) {
+    assert itemTypeNames != null;
+    final BitSet matched = (BitSet)this.emptyMatches.clone();
+    final int size = itemTypeNames.length;
+    if (size == 0) {
+      matched.or(this.emptyInputMatches);
+    } else {
+      final StateSet current = new StateSet(this.stateCount);
+      final StateSet next = new StateSet(this.stateCount);
+      for (int position = 0; position < size; position++) {
+        final String[] names = itemTypeNames[position];
+        current.addAll(this.unanchoredAnyStarts);
+        if (position == 0) {
+          current.addAll(this.anchoredAnyStarts);
+        }
+        if (names != null) {
+          for (final String name : names) {
+            current.addAll(this.unanchoredStarts.get(name));
+            if (position == 0) {
+              current.addAll(this.anchoredStarts.get(name));
+            }
+          }
+        }
+        final boolean last = position + 1 == size;
+        for (int i = 0; i < current.size; i++) {
+          final int state = current.states[i];
+          if (accepts(this.tests[state], names)) {
+            for (final int successor : this.successors[state]) {
+              final int ordinal = this.acceptedOrdinals[successor];
+              if (ordinal < 0) {
+                next.add(successor);
+              } else if (last || !this.endAnchored.get(ordinal)) {
+                matched.set(ordinal);
+              }
+            }
+          }
+        }
+        current.clear();
+        current.addAll(next);
+        next.clear();
+      }
+    }
+    return matched;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if an item that is an instance of every type
+   * named in the supplied {@code names} array passes the supplied
+   * {@code test}.
+   *
+   * @param test the name of a type, or {@code null} if any item
+   * passes
+   *
+   * @param names the type names of an item, or {@code null} if the
+   * item is {@code null}
+   *
+   * @return {@code true} if the item passes the test
+   */
+  private static final boolean accepts(final String test, final String[] names) {
+    if (test == null) {
+      return true;
+    } else if (names != null) {
+      for (final String name : names) {
+        if (test.equals(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Converts a {@link List} of {@link Integer}s to an {@code int}
+   * array.
+   *
+   * @param list the {@link List} to convert; must not be {@code null}
+   *
+   * @return a non-{@code null} {@code int} array
+   */
+  private static final int[] toArray(final List<Integer> list) {
+    assert list != null;
+    if (list.isEmpty()) {
+      return EMPTY;
+    }
+    final int[] returnValue = new int[list.size()];
+    for (int i = 0; i < returnValue.length; i++) {
+      returnValue[i] = list.get(i).intValue();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Converts a {@link Map} of {@link List}s of {@link Integer}s to a
+   * {@link Map} of {@code int} arrays.
+   *
+   * @param map the {@link Map} to convert; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link Map}
+   */
+  private static final Map<String, int[]> toArrays(final Map<String, List<Integer>> map) {
+    assert map != null;
+    final Map<String, int[]> returnValue = new HashMap<String, int[]>(map.size() * 2);
+    for (final Entry<String, List<Integer>> entry : map.entrySet()) {
+      returnValue.put(entry.getKey(), toArray(entry.getValue()));
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An insertion-ordered set of states with constant-time membership
+   * tests and clearing proportional to its size.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class StateSet {
+
+    /**
+     * The states in this {@link StateSet}, in insertion order, in
+     * positions {@code 0} through {@link #size} (exclusive).
+     */
+    private int[] states;
+
+    /**
+     * The number of states in this {@link StateSet}.
+     */
+    private int size;
+
+    /**
+     * The states in this {@link StateSet}, for membership tests.
+     */
+    private final BitSet members;
+
+    /**
+     * Creates a new {@link StateSet}.
+     *
+     * @param stateCount the total number of states
+     */
+    private StateSet(final int stateCount) {
+      super();
+      this.states = new int[16];
+      this.members = new BitSet(stateCount);
+    }
+
+    /**
+     * Adds the supplied state if it is not already present.
+     *
+     * @param state the state to add
+     */
+    private final void add(final int state) {
+      if (!this.members.get(state)) {
+        this.members.set(state);
+        if (this.size == this.states.length) {
+          final int[] states = new int[this.size * 2];
+          System.arraycopy(this.states, 0, states, 0, this.size);
+          this.states = states;
+        }
+        this.states[this.size++] = state;
+      }
+    }
+
+    /**
+     * Adds all of the supplied states.
+     *
+     * @param states the states to add; may be {@code null}
+     */
+    private final void addAll(final int[] states) {
+      if (states != null) {
+        for (final int state : states) {
+          this.add(state);
+        }
+      }
+    }
+
+    /**
+     * Adds all of the states in the supplied {@link StateSet}.
+     *
+     * @param other the {@link StateSet} whose states should be added;
+     * must not be {@code null}
+     */
+    private final void addAll(final StateSet other) {
+      for (int i = 0; i < other.size; i++) {
+        this.add(other.states[i]);
+      }
+    }
+
+    /**
+     * Removes all states from this {@link StateSet}.
+     */
+    private final void clear() {
+      for (int i = 0; i < this.size; i++) {
+        this.members.clear(this.states[i]);
+      }
+      this.size = 0;
+    }
+
+  }
+
+  /**
+   * Builds the states of a {@link PatternAutomaton} from {@link
+   * PatternSummary.Node}s using Thompson's construction.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Builder {
+
+    /**
+     * The kind of a state that consumes one item.
+     */
+    private static final int CONSUME = 0;
+
+    /**
+     * The kind of a state that consumes nothing and continues at one
+     * or more other states.
+     */
+    private static final int SPLIT = 1;
+
+    /**
+     * The kind of a state that reports a match.
+     */
+    private static final int ACCEPT = 2;
+
+    /**
+     * The kind of each state.
+     */
+    private final List<Integer> kinds;
+
+    /**
+     * For each {@linkplain #CONSUME consuming} state, the type name it
+     * requires, or {@code null}.
+     */
+    private final List<String> tests;
+
+    /**
+     * For each {@linkplain #CONSUME consuming} state, the state it
+     * continues at; for each {@linkplain #ACCEPT accepting} state,
+     * the ordinal it reports.
+     */
+    private final List<Integer> targets;
+
+    /**
+     * For each {@linkplain #SPLIT split} state, the states it
+     * continues at.
+     */
+    private final List<int[]> splits;
+
+    /**
+     * Creates a new {@link Builder}.
+     */
+    private Builder() {
+      super();
+      this.kinds = new ArrayList<Integer>();
+      this.tests = new ArrayList<String>();
+      this.targets = new ArrayList<Integer>();
+      this.splits = new ArrayList<int[]>();
+    }
+
+    /**
+     * Adds a new state and returns its number.
+     *
+     * @param kind the kind of the state
+     *
+     * @param test the type name a consuming state requires; may be
+     * {@code null}
+     *
+     * @param target the state a consuming state continues at, or the
+     * ordinal an accepting state reports
+     *
+     * @return the number of the new state
+     */
+    private final int add(final int kind, final String test, final int target) {
+      final int returnValue = this.kinds.size();
+      this.kinds.add(Integer.valueOf(kind));
+      this.tests.add(test);
+      this.targets.add(Integer.valueOf(target));
+      this.splits.add(EMPTY);
+      return returnValue;
+    }
+
+    /**
+     * Adds the states recognizing the supplied {@link
+     * PatternSummary.Node} and returns the number of the state at
+     * which recognition begins.
+     *
+     * @param node the {@link PatternSummary.Node} to recognize; must
+     * not be {@code null}
+     *
+     * @param next the state to continue at once the supplied {@code
+     * node} has been recognized
+     *
+     * @return the number of the state at which recognition begins
+     */
+    private final int build(final PatternSummary.Node node, int next) {
+      assert node != null;
+      final int returnValue;
+      switch (node.getKind()) {
+      case ELEMENT:
+        returnValue = this.add(CONSUME, node.getType(), next);
+        break;
+      case SEQUENCE:
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+          next = this.build(node.getChild(i), next);
+        }
+        returnValue = next;
+        break;
+      case ZERO_OR_ONE:
+        returnValue = this.add(SPLIT, null, -1);
+        this.splits.set(returnValue, new int[] { this.build(node.getChild(0), next), next });
+        break;
+      case ZERO_OR_MORE:
+        returnValue = this.add(SPLIT, null, -1);
+        this.splits.set(returnValue, new int[] { this.build(node.getChild(0), returnValue), next });
+        break;
+      case ONE_OR_MORE:
+        final int split = this.add(SPLIT, null, -1);
+        returnValue = this.build(node.getChild(0), split);
+        this.splits.set(split, new int[] { returnValue, next });
+        break;
+      default:
+        throw new IllegalStateException("Unexpected node kind: " + node.getKind());
+      }
+      return returnValue;
+    }
+
+    /**
+     * Returns the {@linkplain #CONSUME consuming} and {@linkplain
+     * #ACCEPT accepting} states reachable from the supplied state
+     * without consuming any items.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param state the state to start from
+     *
+     * @return a non-{@code null} array of state numbers
+     */
+    private final int[] closure(final int state) {
+      final List<Integer> states = new ArrayList<Integer>();
+      final BitSet visited = new BitSet();
+      final List<Integer> stack = new ArrayList<Integer>();
+      stack.add(Integer.valueOf(state));
+      while (!stack.isEmpty()) {
+        final int s = stack.remove(stack.size() - 1).intValue();
+        if (!visited.get(s)) {
+          visited.set(s);
+          if (this.kinds.get(s).intValue() == SPLIT) {
+            final int[] split = this.splits.get(s);
+            for (int i = split.length - 1; i >= 0; i--) {
+              stack.add(Integer.valueOf(split[i]));
+            }
+          } else {
+            states.add(Integer.valueOf(s));
+          }
+        }
+      }
+      return toArray(states);
+    }
+
+  }
+
+}
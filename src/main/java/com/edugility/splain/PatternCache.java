@@ -0,0 +1,296 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.text.ParseException;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A bounded cache of {@linkplain Pattern#compile(String) compiled}
+ * {@link Pattern}s, indexed by their source code.
+ *
+ * <p>Message catalogs frequently share {@link Pattern} source code.
+ * A {@link PatternCache} shared by the {@link MessageFactory}
+ * instances and catalog readers of an application ensures that each
+ * distinct {@link Pattern} is compiled once and held in memory once,
+ * however many catalogs contain it.  {@link Pattern}s are immutable,
+ * and so may safely be shared.</p>
+ *
+ * <p>A {@link PatternCache} is indexed only by source code, so
+ * sharing one is a decision for its users to make: catalog readers
+ * each create their own by default, and a {@linkplain #getInstance()
+ * shared instance} is available to those that opt in.</p>
+ *
+ * <p>When the cache is full, approximately the least recently used
+ * {@link Pattern} is evicted to make room for a new one.  The number
+ * of {@linkplain #getHitCount() hits}, {@linkplain #getMissCount()
+ * misses} and {@linkplain #getEvictionCount() evictions} is
+ * recorded.  Finding a {@link Pattern} that is already cached never
+ * takes a lock.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#setPatternCache(PatternCache)
+ *
+ * @see TemplateCache
+ */
+public final class PatternCache {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default {@linkplain #getMaximumSize() maximum size} of a
+   * {@link PatternCache}.
+   *
+   * @see #PatternCache()
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 2048;
+
+  /**
+   * The {@link PatternCache} returned by the {@link #getInstance()}
+   * method.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final PatternCache INSTANCE = new PatternCache();
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link BoundedCache} holding {@link Pattern}s indexed by the
+   * source code from which they were compiled.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BoundedCache<String, Pattern<?>> patterns;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PatternCache} that will hold at most {@link
+   * #DEFAULT_MAXIMUM_SIZE} {@link Pattern}s.
+   *
+   * @see #PatternCache(int)
+   */
+  public PatternCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new {@link PatternCache}.
+   *
+   * @param maximumSize the maximum number of {@link Pattern}s this
+   * {@link PatternCache} will hold; if {@code 0} then no {@link
+   * Pattern}s will be cached
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * less than {@code 0}
+   */
+  public PatternCache(final int maximumSize) {
+    super();
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    this.patterns = new BoundedCache<String, Pattern<?>>(maximumSize);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns the {@link PatternCache} shared by all users of this
+   * class that are loaded by the same {@link ClassLoader}.  It holds
+   * at most {@link #DEFAULT_MAXIMUM_SIZE} {@link Pattern}s.
+   *
+   * <p>Nothing uses the shared {@link PatternCache} unless it is
+   * explicitly installed.  Because it is indexed only by source code,
+   * it should be installed only where every user resolves the names
+   * in that source code with the same {@link ClassLoader}; otherwise a
+   * {@link Pattern} compiled for one {@link ClassLoader} may be
+   * handed to another, and will keep the first reachable for as long
+   * as it remains cached.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} shared {@link PatternCache}
+   */
+  public static final PatternCache getInstance() {
+    return INSTANCE;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a {@link Pattern} compiled from the supplied {@code
+   * source}, compiling and caching it if necessary.
+   *
+   * <p>If two {@link Thread}s compile the same {@code source} at the
+   * same time, both receive the {@link Pattern} that was cached
+   * first.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of objects the returned {@link Pattern} will
+   * work with
+   *
+   * @param source the {@link Pattern} source code; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} {@link Pattern}
+   *
+   * @exception IllegalArgumentException if {@code source} is {@code
+   * null}
+   *
+   * @exception ParseException if {@code source} could not be
+   * {@linkplain Pattern#compile(String) compiled}; failures are not
+   * cached
+   *
+   * @see Pattern#compile(String)
+   */
+  @SuppressWarnings("unchecked")
+  public final <T> Pattern<T> getPattern(final String source) throws ParseException {
+    if (source == null) {
+      throw new IllegalArgumentException("source", new NullPointerException("source"));
+    }
+    Pattern<?> returnValue = this.patterns.get(source);
+    if (returnValue == null) {
+      // Compile outside of any lock so that compilations of different
+      // sources proceed in parallel; the first Pattern cached wins.
+      returnValue = Pattern.compile(source);
+      assert returnValue != null;
+      returnValue = this.patterns.putIfAbsent(source, returnValue);
+    }
+    return (Pattern<T>)returnValue;
+  }
+
+  /**
+   * Returns the maximum number of {@link Pattern}s this {@link
+   * PatternCache} will hold.
+   *
+   * @return the maximum size of this {@link PatternCache}; always
+   * {@code 0} or greater
+   */
+  public final int getMaximumSize() {
+    return this.patterns.getMaximumSize();
+  }
+
+  /**
+   * Returns the number of {@link Pattern}s currently held by this
+   * {@link PatternCache}.
+   *
+   * @return the size of this {@link PatternCache}; always {@code 0}
+   * or greater
+   */
+  public final int size() {
+    return this.patterns.size();
+  }
+
+  /**
+   * Returns the number of times the {@link #getPattern(String)}
+   * method found a {@link Pattern} in this {@link PatternCache}.
+   *
+   * @return the hit count; always {@code 0} or greater
+   */
+  public final long getHitCount() {
+    return this.patterns.getHitCount();
+  }
+
+  /**
+   * Returns the number of times the {@link #getPattern(String)}
+   * method had to compile a {@link Pattern}.
+   *
+   * @return the miss count; always {@code 0} or greater
+   */
+  public final long getMissCount() {
+    return this.patterns.getMissCount();
+  }
+
+  /**
+   * Returns the number of {@link Pattern}s that have been evicted
+   * from this {@link PatternCache} to make room for others.
+   *
+   * @return the eviction count; always {@code 0} or greater
+   */
+  public final long getEvictionCount() {
+    return this.patterns.getEvictionCount();
+  }
+
+  /**
+   * Removes all {@link Pattern}s from this {@link PatternCache}.
+   * Statistics are not reset.
+   */
+  public final void clear() {
+    this.patterns.clear();
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * PatternCache}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The format of the {@link String} representation returned by
+   * this method may change at any time.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return new StringBuilder("PatternCache[size=").append(this.size())
+      .append(", maximumSize=").append(this.getMaximumSize())
+      .append(", hits=").append(this.getHitCount())
+      .append(", misses=").append(this.getMissCount())
+      .append(", evictions=").append(this.getEvictionCount())
+      .append("]").toString();
+  }
+
+}
@@ -0,0 +1,1351 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.edugility.objexj.Matcher;
+import com.edugility.objexj.Pattern;
+
+/**
+ * An ordered index of {@link Pattern}s and the {@link
+ * ResourceBundleKey}s they select, organized by the names of the
+ * types each {@link Pattern} {@linkplain
+ * PatternSummary#getRequiredType(int) requires}.
+ *
+ * <p>Each {@link Pattern} is assigned an <em>ordinal</em> reflecting
+ * its position in catalog order.  When an input {@link List} is
+ * {@linkplain #select(List) presented}, only those {@link Pattern}s
+ * whose required types all have instances in the input are evaluated,
+ * still in ordinal order, so the result is the same as that of
+ * evaluating every {@link Pattern} in turn.  {@link Pattern}s that
+ * consist of a single element anchored at the start or end of the
+ * input, such as {@code java.sql.SQLException$}, are checked against
+ * only the first or last item of the input, and are evaluated by
+ * their {@link Matcher}s only when necessary.</p>
+ *
+ * <p>A {@link PatternIndex} may optionally combine every {@link
+ * Pattern} whose source code could be {@linkplain
+ * PatternSummary#isAnalyzed() analyzed} into a single {@link
+ * PatternAutomaton}, which finds all of their potential matches in
+ * one pass over the input.  {@link Pattern}s that are {@linkplain
+ * PatternSummary#isTypeOnly() type only} are then never evaluated by
+ * their {@link Matcher}s unless and until a {@link Matcher} is
+ * requested.  Other {@link Pattern}s are evaluated as usual, but only
+ * if the {@link PatternAutomaton} admits them.</p>
+ *
+ * <p>Candidates are found by comparing type names, but a {@link
+ * Pattern} is only ever declared to match without being evaluated
+ * when every item whose type names it requires is an instance of the
+ * {@link Class} that name {@linkplain #resolve(String, ClassLoader)
+ * resolves} to through the {@linkplain
+ * ResourceBundleKey#getBundleLoader() <code>ClassLoader</code>} of
+ * the {@link ResourceBundleKey} it selects.  Each required type is
+ * resolved once, when the {@link PatternIndex} is created.  An item
+ * whose {@link Class} merely shares the name of a required type, and
+ * a type that cannot be resolved at all, cause the {@link Pattern} to
+ * be evaluated by its {@link Matcher} as usual.</p>
+ *
+ * <p>The {@link Pattern}s that select a given {@link
+ * ResourceBundleKey} have contiguous ordinals.  If statistics are
+ * recorded, the order in which those {@link Pattern}s are tried may
+ * be {@linkplain #reorder() changed} to favor the cheapest of them;
+ * their ordinals, and the order in which {@link ResourceBundleKey}s
+ * are considered, never change.</p>
+ *
+ * <p>Instances of this class are safe for concurrent use by multiple
+ * {@link Thread}s without locking.  All of their state needed for
+ * {@linkplain #select(List) selection} is held in {@code final}
+ * fields, so they are safely published however they are shared,
+ * except for the order in which the {@link Pattern}s of each {@link
+ * ResourceBundleKey} are tried, which is held in a {@code volatile}
+ * field and replaced, never modified.</p>
+ *
+ * @param <T> the type of {@link Object} the indexed {@link Pattern}s
+ * match
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see PatternSummary
+ *
+ * @see MessageFactory#getSelector(List)
+ */
+final class PatternIndex<T> {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The source of the {@linkplain #id identifiers} of {@link
+   * PatternIndex} instances.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private static final AtomicLong nextId = new AtomicLong();
+
+  /**
+   * The number of evaluations of a {@link Pattern} that must have
+   * been recorded before its cost is trusted by the {@link #reorder()}
+   * method.
+   */
+  private static final long MINIMUM_EVALUATIONS = 32L;
+
+  /**
+   * The fraction by which the {@linkplain
+   * MatchMetrics.Counters#getCostPerMatch() cost per match} of a
+   * {@link Pattern} must be lower than that of another before the
+   * {@link #reorder()} method will try it first.
+   */
+  private static final double REORDER_MARGIN = 0.2;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The identifier of this {@link PatternIndex}, unique within the
+   * running virtual machine, under which it records results in a
+   * {@link SelectorCache}.
+   *
+   * @see SelectorCache#get(long, SelectorCache.Signature)
+   */
+  private final long id;
+
+  /**
+   * The {@link ResourceBundleKey}s selected by the indexed {@link
+   * Pattern}s, indexed by ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ResourceBundleKey[] keys;
+
+  /**
+   * The distinct {@link ResourceBundleKey}s selected by the indexed
+   * {@link Pattern}s, in order of first appearance, indexed by key
+   * ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final ResourceBundleKey[] distinctKeys;
+
+  /**
+   * The key ordinals of the {@link ResourceBundleKey}s selected by the
+   * indexed {@link Pattern}s, indexed by {@link Pattern} ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #distinctKeys
+   */
+  private final int[] keyOrdinals;
+
+  /**
+   * The ordinal of the first {@link Pattern} selecting each of the
+   * {@link #distinctKeys}, indexed by key ordinal, followed by the
+   * number of indexed {@link Pattern}s.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final int[] keyStarts;
+
+  /**
+   * The indexed {@link Pattern}s, indexed by ordinal.  Each is
+   * {@linkplain LazyPattern#get() compiled} no later than its first
+   * evaluation.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final LazyPattern<T>[] patterns;
+
+  /**
+   * The {@link PatternSummary} instances describing the indexed {@link
+   * Pattern}s, indexed by ordinal.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final PatternSummary[] summaries;
+
+  /**
+   * A {@link Map} of {@link BitSet}s of ordinals, indexed by the name
+   * of the first type required by the {@link Pattern}s with those
+   * ordinals, for those {@link Pattern}s that may match anywhere in
+   * an input.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, BitSet> candidatesByType;
+
+  /**
+   * A {@link Map} of {@link BitSet}s of ordinals, indexed by the name
+   * of the type required by the {@link Pattern}s with those ordinals,
+   * for those {@link Pattern}s that consist of a single element
+   * anchored at the start of an input and so can only match its first
+   * item.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, BitSet> startCandidatesByType;
+
+  /**
+   * A {@link Map} of {@link BitSet}s of ordinals, indexed by the name
+   * of the type required by the {@link Pattern}s with those ordinals,
+   * for those {@link Pattern}s that consist of a single element
+   * anchored at the end, but not the start, of an input and so can
+   * only match its last item.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, BitSet> endCandidatesByType;
+
+  /**
+   * A {@link BitSet} of the ordinals of those {@link Pattern}s that
+   * require no particular types and hence must always be evaluated.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet unindexed;
+
+  /**
+   * A {@link BitSet} of the ordinals of those {@link Pattern}s that
+   * are not {@linkplain PatternSummary#isTypeOnly() type only}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BitSet notTypeOnly;
+
+  /**
+   * The {@linkplain #resolve(String, ClassLoader) resolved} types
+   * required by the indexed {@link Pattern}s, indexed by ordinal and
+   * then in the order given by {@link
+   * PatternSummary#getRequiredType(int)}.
+   *
+   * <p>This field is never {@code null}.  An element of one of its
+   * arrays is {@code null} if the corresponding type could not be
+   * resolved.</p>
+   */
+  private final Class<?>[][] requiredTypes;
+
+  /**
+   * A cache of the {@link TypeInfo} describing a given {@link Class}:
+   * the names of every class and interface it is assignable to, and
+   * the ordinals of the {@link Pattern}s that could accept an instance
+   * of it.
+   *
+   * <p>Because this is a {@link ClassValue}, each {@link TypeInfo} is
+   * held by the {@link Class} it describes rather than by this {@link
+   * PatternIndex}, so caching it never keeps a {@link Class} or its
+   * {@link ClassLoader} reachable.</p>
+   *
+   * <p>This field is never {@code null}.</p>
+   *
+   * @see #getTypeInfo(Class)
+   */
+  private final ClassValue<TypeInfo> typeInfo;
+
+  /**
+   * The {@link PatternAutomaton} combining the {@linkplain
+   * PatternSummary#isAnalyzed() analyzed} {@link Pattern}s.
+   *
+   * <p>This field may be {@code null}, in which case no {@link
+   * PatternAutomaton} is used.</p>
+   */
+  private final PatternAutomaton automaton;
+
+  /**
+   * A {@link BitSet} of the ordinals of those {@link Pattern}s that
+   * the {@linkplain #automaton <code>PatternAutomaton</code>} does not
+   * combine.
+   *
+   * <p>This field is {@code null} if and only if the {@link #automaton}
+   * field is {@code null}.</p>
+   */
+  private final BitSet unsupported;
+
+  /**
+   * The {@link MatchMetrics.Counters} recording the statistics of each
+   * indexed {@link Pattern}, indexed by ordinal.
+   *
+   * <p>This field may be {@code null}, in which case no statistics
+   * are recorded.</p>
+   */
+  private final MatchMetrics.Counters[] counters;
+
+  /**
+   * The order in which the {@link Pattern}s selecting each of the
+   * {@link #distinctKeys} are tried, indexed by key ordinal.
+   *
+   * <p>This field may be {@code null}, and so may any of its
+   * elements, in which case the corresponding {@link Pattern}s are
+   * tried in ordinal order.  Otherwise each element holds the ordinals
+   * of every {@link Pattern} selecting its {@link ResourceBundleKey}.
+   * Neither this array nor its elements are ever modified; the {@link
+   * #reorder()} method replaces them instead.</p>
+   *
+   * @see #reorder()
+   */
+  private volatile int[][] tryOrders;
+
+  /**
+   * The {@link Lock} held while the {@link #reorder()} method runs.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Lock reorderLock;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PatternIndex}.
+   *
+   * <p>The three supplied {@link List}s are parallel: the element at
+   * a given index in each describes the {@link Pattern} with that
+   * ordinal.</p>
+   *
+   * @param keys the {@link ResourceBundleKey}s selected by each
+   * {@link Pattern}; must not be {@code null}
+   *
+   * @param patterns {@link LazyPattern}s representing the {@link
+   * Pattern}s, in catalog order; must not be {@code null}
+   *
+   * @param summaries {@link PatternSummary} instances describing each
+   * {@link Pattern}; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if any parameter is {@code
+   * null}, if the supplied {@link List}s are of different sizes or if
+   * the occurrences of any {@link ResourceBundleKey} in {@code keys}
+   * are not contiguous
+   *
+   * @see #PatternIndex(List, List, List, boolean, MatchMetrics)
+   */
+  PatternIndex(final List<? extends ResourceBundleKey> keys, final List<? extends LazyPattern<T>> patterns, final List<? extends PatternSummary> summaries) {
+    this(keys, patterns, summaries, false, null);
+  }
+
+  /**
+   * Creates a new {@link PatternIndex}.
+   *
+   * <p>The three supplied {@link List}s are parallel: the element at
+   * a given index in each describes the {@link Pattern} with that
+   * ordinal.</p>
+   *
+   * @param keys the {@link ResourceBundleKey}s selected by each
+   * {@link Pattern}; must not be {@code null}
+   *
+   * @param patterns {@link LazyPattern}s representing the {@link
+   * Pattern}s, in catalog order; must not be {@code null}
+   *
+   * @param summaries {@link PatternSummary} instances describing each
+   * {@link Pattern}; must not be {@code null}
+   *
+   * @param automaton whether to combine the {@linkplain
+   * PatternSummary#isAnalyzed() analyzed} {@link Pattern}s into a
+   * {@link PatternAutomaton}
+   *
+   * @param metrics the {@link MatchMetrics} in which to record
+   * statistics about each {@link Pattern}; may be {@code null} in
+   * which case no statistics will be recorded
+   *
+   * @exception IllegalArgumentException if {@code keys}, {@code
+   * patterns} or {@code summaries} is {@code null}, if the supplied
+   * {@link List}s are of different sizes or if the occurrences of any
+   * {@link ResourceBundleKey} in {@code keys} are not contiguous
+   */
+  @SuppressWarnings("unchecked")
+  PatternIndex(final List<? extends ResourceBundleKey> keys, final List<? extends LazyPattern<T>> patterns, final List<? extends PatternSummary> summaries, final boolean automaton, final MatchMetrics metrics) {
+    super();
+    if (keys == null) {
+      throw new IllegalArgumentException("keys", new NullPointerException("keys"));
+    }
+    if (patterns == null) {
+      throw new IllegalArgumentException("patterns", new NullPointerException("patterns"));
+    }
+    if (summaries == null) {
+      throw new IllegalArgumentException("summaries", new NullPointerException("summaries"));
+    }
+    final int size = patterns.size();
+    if (keys.size() != size || summaries.size() != size) {
+      throw new IllegalArgumentException("keys.size() != patterns.size() || summaries.size() != patterns.size()");
+    }
+    this.id = nextId.incrementAndGet();
+    this.keys = keys.toArray(new ResourceBundleKey[size]);
+    this.patterns = (LazyPattern<T>[])patterns.toArray(new LazyPattern<?>[size]);
+    this.summaries = summaries.toArray(new PatternSummary[size]);
+    this.candidatesByType = new HashMap<String, BitSet>();
+    this.startCandidatesByType = new HashMap<String, BitSet>();
+    this.endCandidatesByType = new HashMap<String, BitSet>();
+    this.unindexed = new BitSet(size);
+    this.notTypeOnly = new BitSet(size);
+    this.requiredTypes = new Class<?>[size][];
+    this.keyOrdinals = new int[size];
+    final Map<ResourceBundleKey, Integer> keyOrdinals = new LinkedHashMap<ResourceBundleKey, Integer>();
+    for (int i = 0; i < size; i++) {
+      final PatternSummary summary = this.summaries[i];
+      if (summary == null) {
+        throw new IllegalArgumentException("summaries", new NullPointerException("summaries.get(" + i + ")"));
+      } else if (this.patterns[i] == null) {
+        throw new IllegalArgumentException("patterns", new NullPointerException("patterns.get(" + i + ")"));
+      } else if (this.keys[i] == null) {
+        throw new IllegalArgumentException("keys", new NullPointerException("keys.get(" + i + ")"));
+      }
+      Integer keyOrdinal = keyOrdinals.get(this.keys[i]);
+      if (keyOrdinal == null) {
+        keyOrdinal = Integer.valueOf(keyOrdinals.size());
+        keyOrdinals.put(this.keys[i], keyOrdinal);
+      } else if (keyOrdinal.intValue() != this.keyOrdinals[i - 1]) {
+        throw new IllegalArgumentException("keys.get(" + i + ") is not contiguous: " + this.keys[i]);
+      }
+      this.keyOrdinals[i] = keyOrdinal.intValue();
+      if (!summary.isTypeOnly()) {
+        this.notTypeOnly.set(i);
+      }
+      final int requiredTypeCount = summary.getRequiredTypeCount();
+      this.requiredTypes[i] = new Class<?>[Math.max(0, requiredTypeCount)];
+      for (int j = 0; j < requiredTypeCount; j++) {
+        this.requiredTypes[i][j] = resolve(summary.getRequiredType(j), this.keys[i].getBundleLoader());
+      }
+      if (summary.getRequiredTypeCount() <= 0) {
+        this.unindexed.set(i);
+      } else {
+        final String anchoredType = summary.getSingleElementType();
+        final Map<String, BitSet> candidatesByType;
+        final String type;
+        if (anchoredType != null && summary.isStartAnchored()) {
+          candidatesByType = this.startCandidatesByType;
+          type = anchoredType;
+        } else if (anchoredType != null && summary.isEndAnchored()) {
+          candidatesByType = this.endCandidatesByType;
+          type = anchoredType;
+        } else {
+          candidatesByType = this.candidatesByType;
+          type = summary.getRequiredType(0);
+        }
+        BitSet candidates = candidatesByType.get(type);
+        if (candidates == null) {
+          candidates = new BitSet(size);
+          candidatesByType.put(type, candidates);
+        }
+        candidates.set(i);
+      }
+    }
+    this.typeInfo = new ClassValue<TypeInfo>() {
+        @Override
+        protected final TypeInfo computeValue(final Class<?> c) {
+          return createTypeInfo(c);
+        }
+      };
+    this.distinctKeys = keyOrdinals.keySet().toArray(new ResourceBundleKey[keyOrdinals.size()]);
+    this.keyStarts = new int[this.distinctKeys.length + 1];
+    for (int i = size - 1; i >= 0; i--) {
+      this.keyStarts[this.keyOrdinals[i]] = i;
+    }
+    this.keyStarts[this.distinctKeys.length] = size;
+    this.reorderLock = new ReentrantLock();
+    if (metrics == null) {
+      this.counters = null;
+    } else {
+      this.counters = new MatchMetrics.Counters[size];
+      for (int i = 0; i < size; i++) {
+        final String source = this.summaries[i].getSource();
+        this.counters[i] = metrics.getCounters(this.keys[i], source == null ? String.valueOf(this.patterns[i]) : source);
+      }
+    }
+    if (automaton) {
+      this.automaton = new PatternAutomaton(this.summaries);
+      this.unsupported = this.automaton.getUnsupported(size);
+    } else {
+      this.automaton = null;
+      this.unsupported = null;
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the number of {@link Pattern}s in this {@link
+   * PatternIndex}.
+   *
+   * @return the number of {@link Pattern}s in this {@link
+   * PatternIndex}; always {@code 0} or greater
+   */
+  final int size() {
+    return this.patterns.length;
+  }
+
+  /**
+   * Returns the distinct {@link ResourceBundleKey}s selected by the
+   * indexed {@link Pattern}s, in order of first appearance, so that
+   * the element at a given index is the key whose ordinal is that
+   * index.
+   *
+   * <p>This method never returns {@code null}.  The returned array is
+   * a copy.</p>
+   *
+   * @return a non-{@code null} array of {@link ResourceBundleKey}s
+   *
+   * @see MessageFactory.Selector#getKeyOrdinal()
+   */
+  final ResourceBundleKey[] getDistinctKeys() {
+    return this.distinctKeys.clone();
+  }
+
+  /**
+   * {@linkplain LazyPattern#get() Compiles} every indexed {@link
+   * Pattern} that has not yet been compiled.
+   *
+   * @exception IllegalStateException if a {@link Pattern} could not
+   * be compiled
+   *
+   * @see LazyPattern#get()
+   */
+  final void compile() {
+    for (final LazyPattern<T> pattern : this.patterns) {
+      assert pattern != null;
+      pattern.get();
+    }
+  }
+
+  /**
+   * Returns a {@link MessageFactory.Selector} representing the first
+   * {@link Pattern}, in ordinal order except as {@linkplain #reorder()
+   * reordered} within each {@link ResourceBundleKey}, that {@linkplain
+   * Matcher#lookingAt() matches} the supplied {@code input}, or {@code
+   * null} if there is no such {@link Pattern}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} to match; may be {@code null}
+   *
+   * @return a {@link MessageFactory.Selector}, or {@code null}
+   *
+   * @see #select(List, SelectorCache, boolean)
+   */
+  final MessageFactory.Selector<T> select(final List<? extends T> input) {
+    return this.select(input, null, true);
+  }
+
+  /**
+   * Returns a {@link MessageFactory.Selector} representing the first
+   * {@link Pattern}, in ordinal order except as {@linkplain #reorder()
+   * reordered} within each {@link ResourceBundleKey}, that {@linkplain
+   * Matcher#lookingAt() matches} the supplied {@code input}, or {@code
+   * null} if there is no such {@link Pattern}, consulting and updating
+   * the supplied {@link SelectorCache} if it is non-{@code null}.
+   *
+   * <p>If there is a {@linkplain #automaton
+   * <code>PatternAutomaton</code>}, the names of the types of each
+   * item in the supplied {@code input} are computed only once, and the
+   * {@link PatternAutomaton} reports which of the {@link Pattern}s it
+   * combines could match; the {@link Pattern}s it does not combine are
+   * filtered as usual.  The first {@linkplain
+   * PatternSummary#isTypeOnly() type-only} candidate it reports is
+   * known to match without being evaluated, provided that the types
+   * of the items it requires are {@linkplain #getUnverified(Class[])
+   * verified}; otherwise it is evaluated.</p>
+   *
+   * <p>A result is recorded in the supplied {@link SelectorCache} only
+   * if every candidate {@link Pattern} that had to be considered was
+   * {@linkplain PatternSummary#isTypeOnly() type only}, since only
+   * then does the result depend solely on the {@link Class} of each
+   * item.  Because {@linkplain #reorder() reordering} never changes
+   * ordinals, a recorded result remains valid afterwards: it still
+   * names a {@link Pattern} that matches, and that selects the same
+   * {@link ResourceBundleKey} as the {@link Pattern} now tried first
+   * would.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} to match; may be {@code null}
+   *
+   * @param cache a {@link SelectorCache}; may be {@code null}
+   *
+   * @param record whether to record statistics in the {@link
+   * MatchMetrics} supplied at construction time, if any; {@code
+   * false} when selecting on behalf of a {@linkplain
+   * MessageFactory#warmUp(Collection, Iterable, int) warm-up} rather
+   * than a caller
+   *
+   * @return a {@link MessageFactory.Selector}, or {@code null}
+   */
+  final MessageFactory.Selector<T> select(final List<? extends T> input, final SelectorCache cache, final boolean record) {
+    final MatchMetrics.Counters[] counters = record ? this.counters : null;
+    // The only pass over the input outside of Pattern evaluation.
+    final Class<?>[] classes = input == null ? null : getClasses(input);
+    SelectorCache.Signature signature = null;
+    if (cache != null && classes != null) {
+      signature = new SelectorCache.Signature(classes);
+      final int ordinal = cache.get(this.id, signature);
+      if (ordinal >= 0) {
+        if (counters != null) {
+          counters[ordinal].recordSelection();
+        }
+        return new MessageFactory.Selector<T>(this.keys[ordinal], this.keyOrdinals[ordinal], this.patterns[ordinal].get(), input);
+      } else if (ordinal == SelectorCache.NO_MATCH) {
+        return null;
+      }
+    }
+    final boolean exact = this.automaton != null && input != null;
+    final BitSet candidates;
+    if (exact) {
+      candidates = this.automaton.match(this.getItemTypeNames(classes));
+      if (!this.unsupported.isEmpty()) {
+        final BitSet others = this.getCandidates(classes);
+        others.and(this.unsupported);
+        candidates.or(others);
+      }
+    } else {
+      candidates = this.getCandidates(classes);
+    }
+    assert candidates != null;
+    final int[][] tryOrders = this.tryOrders;
+    MessageFactory.Selector<T> returnValue = null;
+    BitSet unverified = null;
+    int selected = -1;
+    // The end, exclusive, of the ordinals considered so far.
+    int end = 0;
+    for (int i = candidates.nextSetBit(0); i >= 0 && returnValue == null; i = candidates.nextSetBit(end)) {
+      final int keyOrdinal = this.keyOrdinals[i];
+      final int[] tryOrder = tryOrders == null ? null : tryOrders[keyOrdinal];
+      final int count;
+      if (tryOrder == null) {
+        count = 1;
+        end = i + 1;
+      } else {
+        // Try every candidate selecting this key, in its try order.
+        count = tryOrder.length;
+        end = this.keyStarts[keyOrdinal + 1];
+      }
+      for (int j = 0; j < count && returnValue == null; j++) {
+        final int ordinal = tryOrder == null ? i : tryOrder[j];
+        if (candidates.get(ordinal)) {
+          boolean declare = false;
+          if (exact && this.automaton.isSupported(ordinal) && this.summaries[ordinal].isTypeOnly()) {
+            if (unverified == null) {
+              unverified = this.getUnverified(classes);
+            }
+            declare = !unverified.get(ordinal);
+          }
+          if (declare) {
+            returnValue = new MessageFactory.Selector<T>(this.keys[ordinal], this.keyOrdinals[ordinal], this.patterns[ordinal].get(), input);
+          } else if (counters == null) {
+            returnValue = this.select(ordinal, input);
+          } else {
+            final long start = System.nanoTime();
+            returnValue = this.select(ordinal, input);
+            counters[ordinal].recordEvaluation(System.nanoTime() - start, returnValue != null);
+          }
+          if (returnValue != null) {
+            selected = ordinal;
+            if (counters != null) {
+              counters[ordinal].recordSelection();
+            }
+          }
+        }
+      }
+    }
+    if (signature != null) {
+      final BitSet considered = selected < 0 ? candidates : candidates.get(0, end);
+      if (!considered.intersects(this.notTypeOnly)) {
+        cache.put(this.id, signature, selected < 0 ? SelectorCache.NO_MATCH : selected);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Changes the order in which the {@link Pattern}s selecting each
+   * {@link ResourceBundleKey} are tried so that those with the lowest
+   * recorded {@linkplain MatchMetrics.Counters#getCostPerMatch() cost
+   * per match} are tried first, and returns {@code true} if the order
+   * changed.
+   *
+   * <p>A {@link Pattern} is tried before one currently tried before it
+   * only if each has been evaluated at least {@value
+   * #MINIMUM_EVALUATIONS} times and its cost per match is lower by
+   * more than the fraction {@value #REORDER_MARGIN}, so that noise in
+   * the recorded statistics does not cause {@link Pattern}s to trade
+   * places back and forth.  Ordinals are unaffected, so neither
+   * results recorded in a {@link SelectorCache} nor {@linkplain
+   * MessageFactory.Selector#getKeyOrdinal() key ordinals} are
+   * invalidated.</p>
+   *
+   * <p>This method does nothing and returns {@code false} if no
+   * statistics are recorded or if another {@link Thread} is already
+   * reordering this {@link PatternIndex}.  It never blocks.</p>
+   *
+   * @return {@code true} if the order in which any {@link Pattern}s
+   * are tried changed; {@code false} otherwise
+   *
+   * @see MessageFactory#reorderPatterns()
+   */
+  final boolean reorder() {
+    boolean returnValue = false;
+    if (this.counters != null && this.reorderLock.tryLock()) {
+      try {
+        final int[][] oldTryOrders = this.tryOrders;
+        int[][] newTryOrders = null;
+        for (int keyOrdinal = 0; keyOrdinal < this.distinctKeys.length; keyOrdinal++) {
+          final int start = this.keyStarts[keyOrdinal];
+          final int size = this.keyStarts[keyOrdinal + 1] - start;
+          if (size > 1) {
+            final int[] oldTryOrder = oldTryOrders == null ? null : oldTryOrders[keyOrdinal];
+            final int[] tryOrder = new int[size];
+            final double[] costs = new double[size];
+            for (int i = 0; i < size; i++) {
+              tryOrder[i] = oldTryOrder == null ? start + i : oldTryOrder[i];
+              // NaN, which compares false with everything, marks a
+              // cost that is not yet trusted.
+              final MatchMetrics.Counters counters = this.counters[start + i];
+              costs[i] = counters.getEvaluationCount() < MINIMUM_EVALUATIONS ? Double.NaN : counters.getCostPerMatch();
+            }
+            final int[] original = tryOrder.clone();
+            // An insertion sort, which moves a Pattern ahead only past
+            // those that are clearly more expensive.
+            for (int i = 1; i < size; i++) {
+              final int ordinal = tryOrder[i];
+              final double cost = costs[ordinal - start] * (1.0 + REORDER_MARGIN);
+              int j = i;
+              while (j > 0 && cost < costs[tryOrder[j - 1] - start]) {
+                tryOrder[j] = tryOrder[j - 1];
+                j--;
+              }
+              tryOrder[j] = ordinal;
+            }
+            if (!Arrays.equals(tryOrder, original)) {
+              if (newTryOrders == null) {
+                newTryOrders = oldTryOrders == null ? new int[this.distinctKeys.length][] : oldTryOrders.clone();
+              }
+              newTryOrders[keyOrdinal] = tryOrder;
+            }
+          }
+        }
+        if (newTryOrders != null) {
+          // Volatile write: publishes the new arrays.
+          this.tryOrders = newTryOrders;
+          returnValue = true;
+        }
+      } finally {
+        this.reorderLock.unlock();
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MessageFactory.Selector} if the {@link Pattern}
+   * with the supplied ordinal matches the supplied {@code input}, or
+   * {@code null} if it does not.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param ordinal the ordinal of the {@link Pattern}
+   *
+   * @param input the {@link List} to match; may be {@code null}
+   *
+   * @return a {@link MessageFactory.Selector}, or {@code null}
+   */
+  private final MessageFactory.Selector<T> select(final int ordinal, final List<? extends T> input) {
+    MessageFactory.Selector<T> returnValue = null;
+    final PatternSummary summary = this.summaries[ordinal];
+    final String anchoredType = summary.getSingleElementType();
+    if (anchoredType != null && (summary.isStartAnchored() || summary.isEndAnchored())) {
+      returnValue = this.selectAnchored(ordinal, summary, anchoredType, input);
+    } else if (summary.getRequiredTypeCount() <= 1 || this.hasRequiredTypes(summary, input)) {
+      final Matcher<T> matcher = this.patterns[ordinal].get().matcher(input);
+      assert matcher != null;
+      if (matcher.lookingAt()) {
+        returnValue = new MessageFactory.Selector<T>(this.keys[ordinal], this.keyOrdinals[ordinal], matcher);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a {@link MessageFactory.Selector} if the {@link Pattern}
+   * with the supplied ordinal, which consists of a single element
+   * anchored at the start or end, matches the supplied {@code input},
+   * or {@code null} if it does not.
+   *
+   * <p>Such a {@link Pattern} can only match the first or last item
+   * of the supplied {@code input}, so only that item is examined.  If
+   * it is not an instance of the required type, then the {@link
+   * Pattern} is rejected without being evaluated at all.  Otherwise,
+   * if the element has no predicate and the item is an instance of
+   * the {@linkplain #requiredTypes resolved} required type, the match
+   * is certain, and the {@link Pattern} is evaluated only if and when
+   * the returned {@link MessageFactory.Selector}'s {@link Matcher} is
+   * requested.  If the element does have a predicate, or if the item
+   * merely shares the name of the required type, the {@link Pattern} is evaluated
+   * against a single-item view of the supplied {@code input}, which
+   * produces the same groups and variables as evaluating it against
+   * the whole {@code input} would.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param ordinal the ordinal of the {@link Pattern}
+   *
+   * @param summary the {@link PatternSummary} of the {@link Pattern};
+   * must not be {@code null}
+   *
+   * @param anchoredType the name of the type the sole element of the
+   * {@link Pattern} requires; must not be {@code null}
+   *
+   * @param input the {@link List} to match; may be {@code null}
+   *
+   * @return a {@link MessageFactory.Selector}, or {@code null}
+   */
+  private final MessageFactory.Selector<T> selectAnchored(final int ordinal, final PatternSummary summary, final String anchoredType, final List<? extends T> input) {
+    assert summary != null;
+    assert anchoredType != null;
+    MessageFactory.Selector<T> returnValue = null;
+    final int size = input == null ? 0 : input.size();
+    if (size > 0 && (size == 1 || !(summary.isStartAnchored() && summary.isEndAnchored()))) {
+      final int index = summary.isStartAnchored() ? 0 : size - 1;
+      final Object candidate = input.get(index);
+      if (this.isInstance(anchoredType, candidate)) {
+        final List<? extends T> item = size == 1 ? input : input.subList(index, index + 1);
+        if (summary.hasSingleElementPredicate() || this.getTypeInfo(candidate.getClass()).unverified.get(ordinal)) {
+          final Matcher<T> matcher = this.patterns[ordinal].get().matcher(item);
+          assert matcher != null;
+          if (matcher.lookingAt()) {
+            returnValue = new MessageFactory.Selector<T>(this.keys[ordinal], this.keyOrdinals[ordinal], matcher);
+          }
+        } else {
+          returnValue = new MessageFactory.Selector<T>(this.keys[ordinal], this.keyOrdinals[ordinal], this.patterns[ordinal].get(), item);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a new {@link BitSet} of the ordinals of those {@link
+   * Pattern}s that could possibly match an input whose items have the
+   * supplied {@link Class}es.
+   *
+   * <p>The {@link Pattern}s that could accept an instance of a given
+   * {@link Class} are {@linkplain #getTypeInfo(Class) computed once
+   * per <code>Class</code>}, so no superclass or interface hierarchy
+   * is walked here.  {@link Pattern}s consisting of a single element
+   * anchored at the start or end of the input are considered only if
+   * the first or last item, respectively, could be accepted by
+   * them.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classes the {@linkplain #getClasses(List) <code>Class</code>
+   * of each item} of the input; may be {@code null} if the input is
+   * {@code null}
+   *
+   * @return a new, non-{@code null} {@link BitSet}
+   */
+  private final BitSet getCandidates(final Class<?>[] classes) {
+    final BitSet returnValue = (BitSet)this.unindexed.clone();
+    if (classes != null && classes.length > 0) {
+      for (final Class<?> c : classes) {
+        if (c != null) {
+          returnValue.or(this.getTypeInfo(c).candidates);
+        }
+      }
+      final Class<?> first = classes[0];
+      if (first != null) {
+        returnValue.or(this.getTypeInfo(first).startCandidates);
+      }
+      final Class<?> last = classes[classes.length - 1];
+      if (last != null) {
+        returnValue.or(this.getTypeInfo(last).endCandidates);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns an array containing, for each of the supplied {@link
+   * Class}es, the {@linkplain #getTypeNames(Class) names of the types}
+   * an instance of it is an instance of, or {@code null} if the
+   * corresponding item is {@code null}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classes the {@linkplain #getClasses(List) <code>Class</code>
+   * of each item} of an input; must not be {@code null}
+   *
+   * @return a new, non-{@code null} array whose elements are shared
+   * and must not be modified
+   */
+  private final String[][] getItemTypeNames(final Class<?>[] classes) {
+    assert classes != null;
+    final String[][] returnValue = new String[classes.length][];
+    for (int i = 0; i < returnValue.length; i++) {
+      returnValue[i] = classes[i] == null ? null : this.getTypeNames(classes[i]);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a new {@link BitSet} of the ordinals of those {@link
+   * Pattern}s that require, by name, a type that some item of an
+   * input, whose items have the supplied {@link Class}es, is named as
+   * being an instance of, but of whose {@linkplain #requiredTypes
+   * resolved <code>Class</code>} that item is not an instance.
+   *
+   * <p>Such a {@link Pattern} must be evaluated by its {@link Matcher}
+   * before it can be said to match the input.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param classes the {@linkplain #getClasses(List) <code>Class</code>
+   * of each item} of an input; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link BitSet}
+   */
+  private final BitSet getUnverified(final Class<?>[] classes) {
+    assert classes != null;
+    final BitSet returnValue = new BitSet();
+    for (final Class<?> c : classes) {
+      if (c != null) {
+        returnValue.or(this.getTypeInfo(c).unverified);
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code input} contains an
+   * instance of every type {@linkplain
+   * PatternSummary#getRequiredType(int) required} by the supplied
+   * {@link PatternSummary}.
+   *
+   * @param summary the {@link PatternSummary} to check; must not be
+   * {@code null}
+   *
+   * @param input the {@link List} to check; may be {@code null}
+   *
+   * @return {@code true} if every required type is present in the
+   * supplied {@code input}; {@code false} otherwise
+   */
+  private final boolean hasRequiredTypes(final PatternSummary summary, final List<?> input) {
+    assert summary != null;
+    final int requiredTypeCount = summary.getRequiredTypeCount();
+    if (requiredTypeCount <= 0) {
+      return true;
+    } else if (input == null || input.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < requiredTypeCount; i++) {
+      if (!this.hasInstance(summary.getRequiredType(i), input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code input} contains an
+   * instance of the type named by the supplied {@code typeName}.
+   *
+   * @param typeName the name of the type in question; must not be
+   * {@code null}
+   *
+   * @param input the {@link List} to check; must not be {@code null}
+   *
+   * @return {@code true} if the supplied {@code input} contains an
+   * instance of the named type; {@code false} otherwise
+   */
+  private final boolean hasInstance(final String typeName, final List<?> input) {
+    assert typeName != null;
+    assert input != null;
+    if (input instanceof RandomAccess) {
+      final int size = input.size();
+      for (int i = 0; i < size; i++) {
+        if (this.isInstance(typeName, input.get(i))) {
+          return true;
+        }
+      }
+    } else {
+      for (final Object item : input) {
+        if (this.isInstance(typeName, item)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@code item} is an instance
+   * of the type named by the supplied {@code typeName}.
+   *
+   * @param typeName the name of the type in question; must not be
+   * {@code null}
+   *
+   * @param item the item to check; may be {@code null}
+   *
+   * @return {@code true} if {@code item} is non-{@code null} and is
+   * an instance of the named type; {@code false} otherwise
+   */
+  private final boolean isInstance(final String typeName, final Object item) {
+    assert typeName != null;
+    if (item != null) {
+      final String[] typeNames = this.getTypeNames(item.getClass());
+      for (int i = 0; i < typeNames.length; i++) {
+        if (typeName.equals(typeNames[i])) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns an array of the {@linkplain Class#getName() names} and
+   * {@linkplain Class#getCanonicalName() canonical names} of the
+   * supplied {@link Class}, all of its superclasses and all of the
+   * interfaces it implements.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The array that is returned is shared and must not be
+   * modified.</p>
+   *
+   * @param c the {@link Class} in question; must not be {@code null}
+   *
+   * @return a non-{@code null} array of type names
+   */
+  private final String[] getTypeNames(final Class<?> c) {
+    assert c != null;
+    return this.getTypeInfo(c).typeNames;
+  }
+
+  /**
+   * Returns the {@link TypeInfo} describing the supplied {@link
+   * Class}, {@linkplain #createTypeInfo(Class) creating} it on first
+   * use.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param c the {@link Class} in question; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link TypeInfo}
+   */
+  private final TypeInfo getTypeInfo(final Class<?> c) {
+    assert c != null;
+    return this.typeInfo.get(c);
+  }
+
+  /**
+   * Creates a new {@link TypeInfo} describing the supplied {@link
+   * Class} by walking its superclasses and interfaces once.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param c the {@link Class} in question; must not be {@code null}
+   *
+   * @return a new, non-{@code null} {@link TypeInfo}
+   *
+   * @see #getTypeInfo(Class)
+   */
+  private final TypeInfo createTypeInfo(final Class<?> c) {
+    assert c != null;
+    final Set<String> names = new LinkedHashSet<String>();
+    addTypeNames(c, names);
+    final String[] typeNames = names.toArray(new String[names.size()]);
+    final BitSet unverified = new BitSet();
+    for (int i = 0; i < this.requiredTypes.length; i++) {
+      for (int j = 0; j < this.requiredTypes[i].length; j++) {
+        if (names.contains(this.summaries[i].getRequiredType(j))) {
+          final Class<?> requiredType = this.requiredTypes[i][j];
+          if (requiredType == null || !requiredType.isAssignableFrom(c)) {
+            unverified.set(i);
+            break;
+          }
+        }
+      }
+    }
+    return new TypeInfo(typeNames,
+                        getCandidates(this.candidatesByType, typeNames),
+                        getCandidates(this.startCandidatesByType, typeNames),
+                        getCandidates(this.endCandidatesByType, typeNames),
+                        unverified);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new array containing the {@link Class} of each item in
+   * the supplied {@code input}, or {@code null} for a {@code null}
+   * item.
+   *
+   * <p>This is the only pass over an input that {@linkplain
+   * #select(List, SelectorCache, boolean) selection} makes before
+   * evaluating {@link Pattern}s; everything else it needs to know
+   * about the input is derived from the returned array.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param input the {@link List} in question; must not be {@code
+   * null}
+   *
+   * @return a new, non-{@code null} array of {@link Class}es
+   */
+  private static final Class<?>[] getClasses(final List<?> input) {
+    assert input != null;
+    final Class<?>[] returnValue = new Class<?>[input.size()];
+    if (input instanceof RandomAccess) {
+      for (int i = 0; i < returnValue.length; i++) {
+        final Object item = input.get(i);
+        returnValue[i] = item == null ? null : item.getClass();
+      }
+    } else {
+      int i = 0;
+      for (final Object item : input) {
+        returnValue[i++] = item == null ? null : item.getClass();
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns a new {@link BitSet} that is the union of the {@link
+   * BitSet}s in the supplied {@link Map} indexed by any of the
+   * supplied {@code typeNames}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param candidatesByType a {@link Map} of {@link BitSet}s of
+   * ordinals indexed by type name; must not be {@code null}
+   *
+   * @param typeNames the type names in question; must not be {@code
+   * null}
+   *
+   * @return a new, non-{@code null} {@link BitSet}
+   */
+  private static final BitSet getCandidates(final Map<String, BitSet> candidatesByType, final String[] typeNames) {
+    assert candidatesByType != null;
+    assert typeNames != null;
+    final BitSet returnValue = new BitSet();
+    if (!candidatesByType.isEmpty()) {
+      for (int i = 0; i < typeNames.length; i++) {
+        final BitSet candidates = candidatesByType.get(typeNames[i]);
+        if (candidates != null) {
+          returnValue.or(candidates);
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@link Class} with the supplied {@code name} as loaded
+   * by the supplied {@link ClassLoader}, without initializing it, or
+   * {@code null} if it cannot be loaded.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param name the name of the {@link Class}; must not be {@code
+   * null}
+   *
+   * @param loader the {@link ClassLoader} to use; must not be {@code
+   * null}
+   *
+   * @return the named {@link Class}, or {@code null}
+   *
+   * @see Class#forName(String, boolean, ClassLoader)
+   */
+  private static final Class<?> resolve(final String name, final ClassLoader loader) {
+    assert name != null;
+    assert loader != null;
+    Class<?> returnValue;
+    try {
+      returnValue = Class.forName(name, false, loader);
+    } catch (final ClassNotFoundException notFound) {
+      returnValue = null;
+    } catch (final LinkageError linkageError) {
+      returnValue = null;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Adds the names of the supplied {@link Class}, its superclasses
+   * and its interfaces to the supplied {@link Set}.
+   *
+   * @param c the {@link Class} in question; may be {@code null} in
+   * which case no action will be taken
+   *
+   * @param names the {@link Set} to add names to; must not be {@code
+   * null}
+   */
+  private static final void addTypeNames(final Class<?> c, final Set<String> names) {
+    assert names != null;
+    if (c != null && names.add(c.getName())) {
+      final String canonicalName = c.getCanonicalName();
+      if (canonicalName != null) {
+        names.add(canonicalName);
+      }
+      addTypeNames(c.getSuperclass(), names);
+      for (final Class<?> iface : c.getInterfaces()) {
+        addTypeNames(iface, names);
+      }
+    }
+  }
+
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * An immutable description of a {@link Class} as it pertains to a
+   * particular {@link PatternIndex}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see PatternIndex#getTypeInfo(Class)
+   */
+  private static final class TypeInfo {
+
+    /**
+     * The names of every class and interface the described {@link
+     * Class} is assignable to.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final String[] typeNames;
+
+    /**
+     * The ordinals of those unanchored {@link Pattern}s whose first
+     * required type the described {@link Class} is assignable to.
+     *
+     * <p>This field is never {@code null}.  Its contents must not be
+     * modified.</p>
+     */
+    private final BitSet candidates;
+
+    /**
+     * The ordinals of those start-anchored, single-element {@link
+     * Pattern}s that could accept an instance of the described {@link
+     * Class}.
+     *
+     * <p>This field is never {@code null}.  Its contents must not be
+     * modified.</p>
+     */
+    private final BitSet startCandidates;
+
+    /**
+     * The ordinals of those end-anchored, single-element {@link
+     * Pattern}s that could accept an instance of the described {@link
+     * Class}.
+     *
+     * <p>This field is never {@code null}.  Its contents must not be
+     * modified.</p>
+     */
+    private final BitSet endCandidates;
+
+    /**
+     * The ordinals of those {@link Pattern}s that require, by name, a
+     * type that the described {@link Class} is named as being
+     * assignable to, but that is not {@linkplain
+     * PatternIndex#requiredTypes resolved} to a {@link Class} that it
+     * is actually assignable to.
+     *
+     * <p>This field is never {@code null}.  Its contents must not be
+     * modified.</p>
+     *
+     * @see PatternIndex#getUnverified(Class[])
+     */
+    private final BitSet unverified;
+
+    /**
+     * Creates a new {@link TypeInfo}.
+     *
+     * @param typeNames the type names; must not be {@code null}
+     *
+     * @param candidates the unanchored candidates; must not be {@code
+     * null}
+     *
+     * @param startCandidates the start-anchored candidates; must not
+     * be {@code null}
+     *
+     * @param endCandidates the end-anchored candidates; must not be
+     * {@code null}
+     *
+     * @param unverified the {@link Pattern}s whose required types the
+     * described {@link Class} shares only the names of; must not be
+     * {@code null}
+     */
+    private TypeInfo(final String[] typeNames, final BitSet candidates, final BitSet startCandidates, final BitSet endCandidates, final BitSet unverified) {
+      super();
+      assert typeNames != null;
+      assert candidates != null;
+      assert startCandidates != null;
+      assert endCandidates != null;
+      assert unverified != null;
+      this.typeNames = typeNames;
+      this.candidates = candidates;
+      this.startCandidates = startCandidates;
+      this.endCandidates = endCandidates;
+      this.unverified = unverified;
+    }
+
+  }
+
+}
@@ -0,0 +1,944 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.Serializable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A conservative, static summary of the source code of an objexj
+ * {@link Pattern}.
+ *
+ * <p>A {@link PatternSummary} records the names of the types that
+ * any {@link List} must contain instances of if it is to be matched
+ * by the {@link Pattern} whose source code was summarized.  If the
+ * source code could not be understood, then a {@link PatternSummary}
+ * records no such types, and the associated {@link Pattern} must be
+ * presumed to be capable of matching anything.</p>
+ *
+ * <p>Instances of this class are immutable and safe for concurrent
+ * use by multiple {@link Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see #analyze(String)
+ */
+final class PatternSummary implements Serializable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * A {@link PatternSummary} that records nothing about its {@link
+   * Pattern}.  This field is never {@code null}.
+   */
+  static final PatternSummary UNKNOWN = new PatternSummary(null, null, Collections.<String>emptyList(), false, false, null, false);
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The source code that was summarized.
+   *
+   * <p>This field may be {@code null}.</p>
+   */
+  private final String source;
+
+  /**
+   * Whether the {@linkplain #source source code} was understood.
+   */
+  private final boolean analyzed;
+
+  /**
+   * The names of the types that an input {@link List} must contain
+   * instances of in order to be matched, in the order in which they
+   * appear in the {@linkplain #source source code}.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String[] requiredTypes;
+
+  /**
+   * Whether the {@linkplain #source source code} begins with the
+   * {@code ^} anchor.
+   */
+  private final boolean startAnchored;
+
+  /**
+   * Whether the {@linkplain #source source code} ends with the {@code
+   * $} anchor.
+   */
+  private final boolean endAnchored;
+
+  /**
+   * The name of the type matched by the sole element of the
+   * {@linkplain #source source code}, if it consists of exactly one
+   * unquantified, ungrouped element.
+   *
+   * <p>This field may be {@code null}.</p>
+   *
+   * @see #getSingleElementType()
+   */
+  private final String singleElementType;
+
+  /**
+   * Whether the sole element of the {@linkplain #source source code}
+   * has a predicate.
+   *
+   * @see #hasSingleElementPredicate()
+   */
+  private final boolean singleElementPredicate;
+
+  /**
+   * The syntax tree of the {@linkplain #source source code}, as a
+   * {@link Node} of {@linkplain Node.Kind#SEQUENCE sequence} kind.
+   *
+   * <p>This field is {@code null} if and only if the {@linkplain
+   * #source source code} was not {@linkplain #isAnalyzed()
+   * analyzed}.</p>
+   *
+   * @see #getSyntax()
+   */
+  private final Node syntax;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link PatternSummary}.
+   *
+   * @param source the source code that was summarized; may be {@code
+   * null}
+   *
+   * @param syntax the syntax tree of the supplied {@code source}, or
+   * {@code null} if it was not understood
+   *
+   * @param requiredTypes the names of the types that an input {@link
+   * List} must contain instances of in order to be matched; must not
+   * be {@code null}
+   *
+   * @param startAnchored whether the supplied {@code source} begins
+   * with the {@code ^} anchor
+   *
+   * @param endAnchored whether the supplied {@code source} ends with
+   * the {@code $} anchor
+   *
+   * @param singleElementType the name of the type matched by the sole
+   * element of the supplied {@code source}, or {@code null} if it does
+   * not consist of exactly one unquantified, ungrouped element
+   *
+   * @param singleElementPredicate whether that sole element has a
+   * predicate
+   */
+  private PatternSummary(final String source, final Node syntax, final Collection<String> requiredTypes, final boolean startAnchored, final boolean endAnchored, final String singleElementType, final boolean singleElementPredicate) {
+    super();
+    this.source = source;
+    this.syntax = syntax;
+    this.analyzed = syntax != null;
+    this.requiredTypes = requiredTypes.toArray(new String[requiredTypes.size()]);
+    this.startAnchored = startAnchored;
+    this.endAnchored = endAnchored;
+    this.singleElementType = singleElementType;
+    this.singleElementPredicate = singleElementType != null && singleElementPredicate;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the source code that was summarized.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the source code that was summarized, or {@code null}
+   */
+  final String getSource() {
+    return this.source;
+  }
+
+  /**
+   * Returns {@code true} if the {@linkplain #getSource() source code}
+   * was understood.
+   *
+   * @return {@code true} if the {@linkplain #getSource() source code}
+   * was understood; {@code false} otherwise
+   */
+  final boolean isAnalyzed() {
+    return this.analyzed;
+  }
+
+  /**
+   * Returns the number of {@linkplain #getRequiredType(int) required
+   * types}.
+   *
+   * @return the number of {@linkplain #getRequiredType(int) required
+   * types}; always {@code 0} or greater
+   */
+  final int getRequiredTypeCount() {
+    return this.requiredTypes.length;
+  }
+
+  /**
+   * Returns the name of the required type at the supplied {@code
+   * index}.  An input {@link List} must contain an instance of every
+   * required type if it is to be matched.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param index the index of the required type name; must be {@code
+   * 0} or greater and less than the return value of {@link
+   * #getRequiredTypeCount()}
+   *
+   * @return a non-{@code null} type name
+   *
+   * @exception ArrayIndexOutOfBoundsException if {@code index} is out
+   * of bounds
+   */
+  final String getRequiredType(final int index) {
+    return this.requiredTypes[index];
+  }
+
+  /**
+   * Returns {@code true} if the {@linkplain #getSource() source code}
+   * begins with the {@code ^} anchor, and so can match only at the
+   * start of an input {@link List}.
+   *
+   * @return {@code true} if the {@linkplain #getSource() source code}
+   * is anchored at the start
+   */
+  final boolean isStartAnchored() {
+    return this.startAnchored;
+  }
+
+  /**
+   * Returns {@code true} if the {@linkplain #getSource() source code}
+   * ends with the {@code $} anchor, and so can match only at the end
+   * of an input {@link List}.
+   *
+   * @return {@code true} if the {@linkplain #getSource() source code}
+   * is anchored at the end
+   */
+  final boolean isEndAnchored() {
+    return this.endAnchored;
+  }
+
+  /**
+   * Returns the name of the type matched by the sole element of the
+   * {@linkplain #getSource() source code} if it consists of exactly
+   * one element that is neither quantified nor grouped, such as
+   * {@code java.sql.SQLException} or {@code java.lang.String(toString()
+   * == "c")}, or {@code null} otherwise.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return the name of a type, or {@code null}
+   *
+   * @see #hasSingleElementPredicate()
+   */
+  final String getSingleElementType() {
+    return this.singleElementType;
+  }
+
+  /**
+   * Returns {@code true} if the {@linkplain #getSource() source code}
+   * consists of exactly one element and that element has a
+   * predicate.
+   *
+   * @return {@code true} if the sole element has a predicate
+   *
+   * @see #getSingleElementType()
+   */
+  final boolean hasSingleElementPredicate() {
+    return this.singleElementPredicate;
+  }
+
+  /**
+   * Returns the syntax tree of the {@linkplain #getSource() source
+   * code} as a {@link Node} of {@linkplain Node.Kind#SEQUENCE
+   * sequence} kind, or {@code null} if it was not {@linkplain
+   * #isAnalyzed() analyzed}.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link Node}, or {@code null}
+   */
+  final Node getSyntax() {
+    return this.syntax;
+  }
+
+  /**
+   * Returns {@code true} if the {@linkplain #getSource() source code}
+   * was {@linkplain #isAnalyzed() analyzed} and contains no
+   * predicates, so that whether it matches an input {@link List}
+   * depends only on the classes of that {@link List}'s items.
+   *
+   * @return {@code true} if the {@linkplain #getSource() source code}
+   * tests types only
+   */
+  final boolean isTypeOnly() {
+    return this.syntax != null && !this.syntax.hasPredicate();
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * PatternSummary}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The format of the {@link String} representation returned by
+   * this method may change at any time.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(this.source);
+    if (this.analyzed) {
+      sb.append(" requires ");
+      sb.append(Arrays.asList(this.requiredTypes));
+      if (this.singleElementType != null && (this.startAnchored || this.endAnchored)) {
+        sb.append(" (anchored)");
+      }
+    } else {
+      sb.append(" (not analyzed)");
+    }
+    return sb.toString();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Summarizes the supplied objexj {@link Pattern} source code and
+   * returns a new {@link PatternSummary} describing it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The analysis performed is deliberately conservative.  Only
+   * sequences of fully-qualified type names (optionally followed by
+   * predicates), capture groups, anchors and the {@code *}, {@code +}
+   * and {@code ?} quantifiers are understood.  A type name is
+   * recorded as required only if it does not occur within the scope
+   * of a {@code *} or {@code ?} quantifier.  If any other construct
+   * is encountered, such as alternation, then the returned {@link
+   * PatternSummary} will {@linkplain #isAnalyzed() not have been
+   * analyzed} and will record no required types.</p>
+   *
+   * @param source the source code to summarize; may be {@code null}
+   *
+   * @return a non-{@code null} {@link PatternSummary}
+   */
+  static final PatternSummary analyze(final String source) {
+    final PatternSummary returnValue;
+    if (source == null) {
+      returnValue = UNKNOWN;
+    } else {
+      final Set<String> requiredTypes = new LinkedHashSet<String>();
+      final Parser parser = new Parser(source.trim());
+      if (parser.parse(requiredTypes)) {
+        final String singleElementType = parser.topLevelItemCount == 1 ? parser.lastSimpleType : null;
+        assert parser.syntax != null;
+        returnValue = new PatternSummary(source, parser.syntax, requiredTypes, parser.startAnchored, parser.endAnchored, singleElementType, parser.lastSimplePredicate);
+      } else {
+        returnValue = new PatternSummary(source, null, Collections.<String>emptyList(), false, false, null, false);
+      }
+    }
+    return returnValue;
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A small recursive descent parser that recognizes a conservative
+   * subset of objexj {@link Pattern} syntax.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Parser {
+
+    /**
+     * The text being parsed.  This field is never {@code null}.
+     */
+    private final String text;
+
+    /**
+     * The current position within the {@linkplain #text text being
+     * parsed}.
+     */
+    private int position;
+
+    /**
+     * The current capture group nesting depth.
+     */
+    private int depth;
+
+    /**
+     * Whether the text begins with the {@code ^} anchor.
+     */
+    private boolean startAnchored;
+
+    /**
+     * Whether the text ends with the {@code $} anchor.
+     */
+    private boolean endAnchored;
+
+    /**
+     * The number of items parsed outside of any capture group.
+     */
+    private int topLevelItemCount;
+
+    /**
+     * The type name of the last item parsed outside of any capture
+     * group, if that item was a single unquantified element, or
+     * {@code null} otherwise.
+     */
+    private String lastSimpleType;
+
+    /**
+     * Whether the item recorded in {@link #lastSimpleType} had a
+     * predicate.
+     */
+    private boolean lastSimplePredicate;
+
+    /**
+     * The syntax tree produced by a successful {@linkplain
+     * #parse(Set) parse}.
+     */
+    private Node syntax;
+
+    /**
+     * Creates a new {@link Parser}.
+     *
+     * @param text the text to parse; must not be {@code null}
+     */
+    private Parser(final String text) {
+      super();
+      assert text != null;
+      this.text = text;
+    }
+
+    /**
+     * Parses the text supplied at construction time, adding the names
+     * of any required types to the supplied {@link Set}, and returns
+     * {@code true} if the text could be understood.
+     *
+     * @param requiredTypes a {@link Set} to which required type names
+     * will be added; must not be {@code null}
+     *
+     * @return {@code true} if parsing succeeded; {@code false}
+     * otherwise
+     */
+    private final boolean parse(final Set<String> requiredTypes) {
+      assert requiredTypes != null;
+      if (this.text.isEmpty()) {
+        return false;
+      }
+      if (this.peek() == '^') {
+        this.startAnchored = true;
+        this.position++;
+      }
+      final List<Node> nodes = new ArrayList<Node>();
+      if (!this.sequence(requiredTypes, nodes)) {
+        return false;
+      }
+      this.skipWhitespace();
+      if (this.peek() == '$') {
+        this.endAnchored = true;
+        this.position++;
+        this.skipWhitespace();
+      }
+      if (this.position != this.text.length()) {
+        return false;
+      }
+      this.syntax = Node.sequence(nodes);
+      return true;
+    }
+
+    /**
+     * Parses a {@code /}-separated sequence of items.
+     *
+     * @param requiredTypes a {@link Set} to which the names of types
+     * that the sequence requires will be added; must not be {@code
+     * null}
+     *
+     * @param nodes a {@link List} to which a {@link Node} for each
+     * item will be added; must not be {@code null}
+     *
+     * @return {@code true} if parsing succeeded; {@code false}
+     * otherwise
+     */
+    private final boolean sequence(final Set<String> requiredTypes, final List<Node> nodes) {
+      while (true) {
+        if (!this.item(requiredTypes, nodes)) {
+          return false;
+        }
+        this.skipWhitespace();
+        if (this.peek() == '/') {
+          this.position++;
+        } else {
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Parses a single element or capture group, together with any
+     * quantifier that follows it.
+     *
+     * @param requiredTypes a {@link Set} to which the names of types
+     * that the item requires will be added, unless it is quantified
+     * by {@code *} or {@code ?}; must not be {@code null}
+     *
+     * @param nodes a {@link List} to which a {@link Node} for the item
+     * will be added; must not be {@code null}
+     *
+     * @return {@code true} if parsing succeeded; {@code false}
+     * otherwise
+     */
+    private final boolean item(final Set<String> requiredTypes, final List<Node> nodes) {
+      this.skipWhitespace();
+      final List<String> types = new ArrayList<String>();
+      String simpleType = null;
+      boolean simplePredicate = false;
+      Node node;
+      final char c = this.peek();
+      if (c == '(') {
+        this.position++;
+        final Set<String> groupTypes = new LinkedHashSet<String>();
+        final List<Node> groupNodes = new ArrayList<Node>();
+        this.depth++;
+        final boolean parsed = this.sequence(groupTypes, groupNodes);
+        this.depth--;
+        if (!parsed) {
+          return false;
+        }
+        this.skipWhitespace();
+        if (this.peek() != ')') {
+          return false;
+        }
+        this.position++;
+        types.addAll(groupTypes);
+        node = Node.sequence(groupNodes);
+      } else if (c == '.') {
+        // Any single object.
+        this.position++;
+        node = Node.element(null, false);
+      } else if (Character.isJavaIdentifierStart(c)) {
+        final String name = this.qualifiedName();
+        if (name == null) {
+          return false;
+        }
+        types.add(name);
+        simpleType = name;
+        this.skipWhitespace();
+        if (this.peek() == '(') {
+          if (!this.predicate()) {
+            return false;
+          }
+          simplePredicate = true;
+        }
+        node = Node.element(name, simplePredicate);
+      } else {
+        return false;
+      }
+      this.skipWhitespace();
+      boolean optional = false;
+      switch (this.peek()) {
+      case '*':
+        optional = true;
+        simpleType = null;
+        node = Node.repeat(Node.Kind.ZERO_OR_MORE, node);
+        this.position++;
+        break;
+      case '?':
+        optional = true;
+        simpleType = null;
+        node = Node.repeat(Node.Kind.ZERO_OR_ONE, node);
+        this.position++;
+        break;
+      case '+':
+        simpleType = null;
+        node = Node.repeat(Node.Kind.ONE_OR_MORE, node);
+        this.position++;
+        break;
+      default:
+        break;
+      }
+      nodes.add(node);
+      if (this.depth == 0) {
+        this.topLevelItemCount++;
+        this.lastSimpleType = simpleType;
+        this.lastSimplePredicate = simplePredicate;
+      }
+      if (!optional) {
+        requiredTypes.addAll(types);
+      }
+      return true;
+    }
+
+    /**
+     * Parses a fully-qualified Java type name and returns it, or
+     * {@code null} if no such name could be parsed.
+     *
+     * @return a type name, or {@code null}
+     */
+    private final String qualifiedName() {
+      final int start = this.position;
+      boolean segmentStart = true;
+      while (this.position < this.text.length()) {
+        final char c = this.text.charAt(this.position);
+        if (segmentStart) {
+          if (!Character.isJavaIdentifierStart(c)) {
+            return null;
+          }
+          segmentStart = false;
+        } else if (c == '.') {
+          segmentStart = true;
+        } else if (c == '$' || !Character.isJavaIdentifierPart(c)) {
+          // '$' is an anchor in objexj, not part of a name.
+          break;
+        }
+        this.position++;
+      }
+      if (segmentStart) {
+        return null;
+      }
+      return this.text.substring(start, this.position);
+    }
+
+    /**
+     * Skips over a parenthesized predicate, honoring nested
+     * parentheses and quoted strings.
+     *
+     * @return {@code true} if a well-formed predicate was skipped;
+     * {@code false} otherwise
+     */
+    private final boolean predicate() {
+      assert this.peek() == '(';
+      int depth = 0;
+      char quote = 0;
+      while (this.position < this.text.length()) {
+        final char c = this.text.charAt(this.position++);
+        if (quote != 0) {
+          if (c == '\\') {
+            this.position++;
+          } else if (c == quote) {
+            quote = 0;
+          }
+        } else if (c == '"' || c == '\'') {
+          quote = c;
+        } else if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+          if (depth == 0) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Advances past any whitespace.
+     */
+    private final void skipWhitespace() {
+      while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+        this.position++;
+      }
+    }
+
+    /**
+     * Returns the character at the current position, or {@code 0} if
+     * there is no such character.
+     *
+     * @return the character at the current position, or {@code 0}
+     */
+    private final char peek() {
+      if (this.position < this.text.length()) {
+        return this.text.charAt(this.position);
+      }
+      return 0;
+    }
+
+  }
+
+
+
+  /**
+   * An immutable node in the syntax tree of a {@linkplain
+   * PatternSummary#isAnalyzed() analyzed} {@link Pattern}.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   *
+   * @see PatternSummary#getSyntax()
+   */
+  static final class Node implements Serializable {
+
+    /**
+     * The version of this class for {@linkplain Serializable
+     * serialization purposes}.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The kinds of {@link Node}.
+     *
+     * @author <a href="http://about.me/lairdnelson"
+     * target="_parent">Laird Nelson</a>
+     */
+    static enum Kind {
+
+      /**
+       * A single element that matches one item of an input {@link
+       * List}, possibly subject to a type and a predicate.
+       */
+      ELEMENT,
+
+      /**
+       * A sequence of {@linkplain Node#getChild(int) children}, each
+       * of which must match in turn.
+       */
+      SEQUENCE,
+
+      /**
+       * A single {@linkplain Node#getChild(int) child} quantified with
+       * {@code *}.
+       */
+      ZERO_OR_MORE,
+
+      /**
+       * A single {@linkplain Node#getChild(int) child} quantified with
+       * {@code +}.
+       */
+      ONE_OR_MORE,
+
+      /**
+       * A single {@linkplain Node#getChild(int) child} quantified with
+       * {@code ?}.
+       */
+      ZERO_OR_ONE
+    }
+
+    /**
+     * The {@link Kind} of this {@link Node}.  This field is never
+     * {@code null}.
+     */
+    private final Kind kind;
+
+    /**
+     * The name of the type an {@linkplain Kind#ELEMENT element} must
+     * be an instance of, or {@code null} if it matches any item.
+     */
+    private final String type;
+
+    /**
+     * Whether this {@link Node} is an {@linkplain Kind#ELEMENT
+     * element} with a predicate.
+     */
+    private final boolean predicate;
+
+    /**
+     * The children of this {@link Node}.  This field is never {@code
+     * null}.
+     */
+    private final Node[] children;
+
+    /**
+     * Creates a new {@link Node}.
+     *
+     * @param kind the {@link Kind}; must not be {@code null}
+     *
+     * @param type the name of the type an element must be an instance
+     * of; may be {@code null}
+     *
+     * @param predicate whether an element has a predicate
+     *
+     * @param children the children; must not be {@code null}
+     */
+    private Node(final Kind kind, final String type, final boolean predicate, final Node[] children) {
+      super();
+      assert kind != null;
+      assert children != null;
+      this.kind = kind;
+      this.type = type;
+      this.predicate = predicate;
+      this.children = children;
+    }
+
+    /**
+     * Returns the {@link Kind} of this {@link Node}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return the non-{@code null} {@link Kind} of this {@link Node}
+     */
+    final Kind getKind() {
+      return this.kind;
+    }
+
+    /**
+     * Returns the name of the type an {@linkplain Kind#ELEMENT
+     * element} requires, or {@code null} if it matches any item.
+     *
+     * <p>This method may return {@code null}.</p>
+     *
+     * @return a type name, or {@code null}
+     */
+    final String getType() {
+      return this.type;
+    }
+
+    /**
+     * Returns {@code true} if this {@link Node} or any of its
+     * descendants is an {@linkplain Kind#ELEMENT element} with a
+     * predicate.
+     *
+     * @return {@code true} if a predicate is present
+     */
+    final boolean hasPredicate() {
+      if (this.predicate) {
+        return true;
+      }
+      for (final Node child : this.children) {
+        if (child.hasPredicate()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns the number of children of this {@link Node}.
+     *
+     * @return the number of children; always {@code 0} or greater
+     */
+    final int getChildCount() {
+      return this.children.length;
+    }
+
+    /**
+     * Returns the child of this {@link Node} at the supplied {@code
+     * index}.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @param index the index of the child
+     *
+     * @return a non-{@code null} {@link Node}
+     *
+     * @exception ArrayIndexOutOfBoundsException if {@code index} is out
+     * of bounds
+     */
+    final Node getChild(final int index) {
+      return this.children[index];
+    }
+
+    /**
+     * Returns a new {@linkplain Kind#ELEMENT element} {@link Node}.
+     *
+     * @param type the name of the type the element requires, or {@code
+     * null} if it matches any item
+     *
+     * @param predicate whether the element has a predicate
+     *
+     * @return a new {@link Node}
+     */
+    private static final Node element(final String type, final boolean predicate) {
+      return new Node(Kind.ELEMENT, type, predicate, new Node[0]);
+    }
+
+    /**
+     * Returns a new {@linkplain Kind#SEQUENCE sequence} {@link Node}.
+     *
+     * @param children the children; must not be {@code null}
+     *
+     * @return a new {@link Node}
+     */
+    private static final Node sequence(final List<Node> children) {
+      assert children != null;
+      return new Node(Kind.SEQUENCE, null, false, children.toArray(new Node[children.size()]));
+    }
+
+    /**
+     * Returns a new quantified {@link Node}.
+     *
+     * @param kind one of {@link Kind#ZERO_OR_MORE}, {@link
+     * Kind#ONE_OR_MORE} or {@link Kind#ZERO_OR_ONE}
+     *
+     * @param child the quantified {@link Node}; must not be {@code
+     * null}
+     *
+     * @return a new {@link Node}
+     */
+    private static final Node repeat(final Kind kind, final Node child) {
+      assert child != null;
+      return new Node(kind, null, false, new Node[] { child });
+    }
+
+  }
+
+}
@@ -34,10 +34,28 @@ import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.ResourceBundle.Control;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * An identifier of a particular resource within a {@link
  * ResourceBundle}.
  *
+ * <p>Each {@link ResourceBundleKey} caches, per {@link Locale}, the
+ * resources it {@linkplain #getObject(Locale) resolves}, so that
+ * repeated lookups do not go through {@link
+ * ResourceBundle#getBundle(String, Locale, ClassLoader, Control)}.
+ * Cached resources honor the {@linkplain
+ * Control#getTimeToLive(String, Locale) time-to-live} reported by
+ * this {@link ResourceBundleKey}'s {@link Control}.  The cache is
+ * held by the {@link ResourceBundleKey} itself and by nothing else,
+ * so it becomes unreachable together with the {@link
+ * ResourceBundleKey} (and hence does not prevent a {@link
+ * ClassLoader} from being garbage collected on redeployment).  It
+ * may be {@linkplain #clearCache() cleared} at any time.</p>
+ *
  * @author <a href="http://about.me/lairdnelson"
  * target="_parent">Laird Nelson</a>
  *
@@ -57,6 +75,12 @@ public final class ResourceBundleKey implements Serializable {
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * An {@link AtomicLongFieldUpdater} for the {@link #missCount}
+   * field.  This field is never {@code null}.
+   */
+  private static final AtomicLongFieldUpdater<ResourceBundleKey> missCountUpdater = AtomicLongFieldUpdater.newUpdater(ResourceBundleKey.class, "missCount");
+
 
   /*
    * Instance fields.
@@ -97,6 +121,26 @@ public final class ResourceBundleKey implements Serializable {
    */
   private final ClassLoader bundleLoader;
 
+  /**
+   * A cache of resources {@linkplain #getObject(Locale) resolved} by
+   * this {@link ResourceBundleKey}, indexed by the {@link Locale} for
+   * which they were resolved.
+   *
+   * <p>This field may be {@code null}, and is created on demand.</p>
+   *
+   * @see #getObject(Locale)
+   *
+   * @see #clearCache()
+   */
+  private transient volatile ConcurrentMap<Locale, CachedObject> cache;
+
+  /**
+   * The number of times a resource has been found to be missing.
+   *
+   * @see #getMissCount()
+   */
+  private transient volatile long missCount;
+
 
   /*
    * Constructors.
@@ -292,20 +336,34 @@ public final class ResourceBundleKey implements Serializable {
   }
 
   /**
-   *
+   * Returns the {@linkplain Locale locale}-independent name of the
+   * {@link ResourceBundle} into which this {@link ResourceBundleKey}
+   * indexes, or {@code null} if this {@link ResourceBundleKey} simply
+   * wraps its {@linkplain #getKey() key}.
    *
    * <p>This method may return {@code null}.</p>
    *
    * @return a {@linkplain Locale locale}-indepdendent name of a
    * {@link ResourceBundle} to load, or {@code null}
    *
-   * @see #ResourceBundleKey(Control, String, String)
+   * @see #ResourceBundleKey(String, ClassLoader,
+   * ResourceBundle.Control, String)
    */
-  private final String getResourceBundleName() {
+  public final String getResourceBundleName() {
     return this.resourceBundleName;
   }
 
-  private final ClassLoader getBundleLoader() {
+  /**
+   * Returns the {@link ClassLoader} used to {@linkplain
+   * ResourceBundle#getBundle(String, Locale, ClassLoader, Control)
+   * load} {@link ResourceBundle}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} {@link ClassLoader} used to load
+   * {@link ResourceBundle}s
+   */
+  final ClassLoader getBundleLoader() {
     return this.bundleLoader;
   }
 
@@ -317,9 +375,10 @@ public final class ResourceBundleKey implements Serializable {
    * @return the key component of this {@link ResourceBundleKey};
    * never {@code null}
    *
-   * @see #ResourceBundleKey(ResourceBundle, String, String)
+   * @see #ResourceBundleKey(String, ClassLoader,
+   * ResourceBundle.Control, String)
    */
-  private final String getKey() {
+  public final String getKey() {
     return this.key;
   }
 
@@ -333,6 +392,17 @@ public final class ResourceBundleKey implements Serializable {
    * {@code null} resource bundle name, then the key that was supplied
    * at construction time is simply returned as is.</p>
    *
+   * <p>Resources are cached per {@link Locale} until the {@linkplain
+   * Control#getTimeToLive(String, Locale) time-to-live} reported by
+   * this {@link ResourceBundleKey}'s {@link Control} elapses, or
+   * until the {@link #clearCache()} method is called.  A {@link
+   * Control} that returns {@link Control#TTL_DONT_CACHE} disables
+   * this caching; one that returns {@link
+   * Control#TTL_NO_EXPIRATION_CONTROL} causes resources to be cached
+   * until {@linkplain #clearCache() cleared}.  Missing resources are
+   * cached in the same way; see {@link #getObject(Locale,
+   * Object)}.</p>
+   *
    * <p>This method may return {@code null} in rare edge cases
    * only.</p>
    *
@@ -351,17 +421,207 @@ public final class ResourceBundleKey implements Serializable {
    * ResourceBundle#containsKey(String) exist}
    */
   public final Object getObject(final Locale locale) {
+    final Object returnValue = this.resolve(locale);
+    if (returnValue instanceof Missing) {
+      missCountUpdater.incrementAndGet(this);
+      throw ((Missing)returnValue).toMissingResourceException();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Attempts to {@linkplain ResourceBundle#getBundle(String, Locale,
+   * ClassLoader, Control) load} the {@link ResourceBundle} identified
+   * by this {@link ResourceBundleKey} and to return the resource in
+   * that bundle identified by this {@link ResourceBundleKey}, or the
+   * supplied {@code defaultValue} if there is no such resource.
+   *
+   * <p>This method behaves like the {@link #getObject(Locale)} method
+   * except that it never throws a {@link MissingResourceException}.
+   * Instead, the fact that a resource is missing for a given {@link
+   * Locale} is cached just like a resource would be, so that repeated
+   * lookups of a missing resource are cheap.  Each such lookup is
+   * {@linkplain #getMissCount() counted}.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param locale the {@link Locale} for which an {@link Object}
+   * should be retrieved; may be {@code null} in which case the return
+   * value of the {@link Locale#getDefault()} method will be used
+   * instead
+   *
+   * @param defaultValue the {@link Object} to return if the resource
+   * is missing; may be {@code null}
+   *
+   * @return a resource, or {@code defaultValue}
+   *
+   * @see #getObject(Locale)
+   *
+   * @see #getMissCount()
+   */
+  public final Object getObject(final Locale locale, final Object defaultValue) {
+    Object returnValue = this.resolve(locale);
+    if (returnValue instanceof Missing) {
+      missCountUpdater.incrementAndGet(this);
+      returnValue = defaultValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the resource identified by this {@link ResourceBundleKey}
+   * for the supplied {@link Locale}, or the supplied {@code
+   * defaultValue} if there is no such resource, exactly as the {@link
+   * #getObject(Locale, Object)} method does, except that a missing
+   * resource is not {@linkplain #getMissCount() counted}.
+   *
+   * <p>This method is used when resources are resolved ahead of time
+   * rather than on behalf of a caller.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param locale the {@link Locale} for which an {@link Object}
+   * should be retrieved; may be {@code null} in which case the return
+   * value of the {@link Locale#getDefault()} method will be used
+   * instead
+   *
+   * @param defaultValue the {@link Object} to return if the resource
+   * is missing; may be {@code null}
+   *
+   * @return a resource, or {@code defaultValue}
+   *
+   * @see #getObject(Locale, Object)
+   */
+  final Object getUncountedObject(final Locale locale, final Object defaultValue) {
+    Object returnValue = this.resolve(locale);
+    if (returnValue instanceof Missing) {
+      returnValue = defaultValue;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@linkplain Control#getTimeToLive(String, Locale)
+   * time-to-live} of resources resolved by this {@link
+   * ResourceBundleKey} for the supplied {@link Locale}, as reported
+   * by its {@link Control}, or {@link
+   * Control#TTL_NO_EXPIRATION_CONTROL} if this {@link
+   * ResourceBundleKey} simply wraps its {@linkplain #getKey() key}.
+   *
+   * @param locale the {@link Locale} in question; may be {@code null}
+   * in which case the return value of the {@link Locale#getDefault()}
+   * method will be used instead
+   *
+   * @return a time-to-live in milliseconds, {@link
+   * Control#TTL_DONT_CACHE} or {@link
+   * Control#TTL_NO_EXPIRATION_CONTROL}
+   */
+  final long getTimeToLive(Locale locale) {
+    final long returnValue;
+    if (this.getResourceBundleName() == null || this.getKey() == null) {
+      returnValue = Control.TTL_NO_EXPIRATION_CONTROL;
+    } else {
+      if (locale == null) {
+        locale = Locale.getDefault();
+      }
+      returnValue = this.getControl().getTimeToLive(this.getResourceBundleName(), locale);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the resource identified by this {@link ResourceBundleKey}
+   * for the supplied {@link Locale}, or a {@link Missing} recording
+   * why it could not be found, consulting and updating the cache
+   * described by the {@link #getObject(Locale)} method.
+   *
+   * <p>This method does not {@linkplain #getMissCount() count}
+   * misses.</p>
+   *
+   * <p>This method may return {@code null} in rare edge cases
+   * only.</p>
+   *
+   * @param locale the {@link Locale} for which an {@link Object}
+   * should be retrieved; may be {@code null} in which case the return
+   * value of the {@link Locale#getDefault()} method will be used
+   * instead
+   *
+   * @return a resource, a {@link Missing}, or {@code null}
+   */
+  private final Object resolve(Locale locale) {
     Object returnValue = null;
-    final ResourceBundle rb = this.getResourceBundle(locale);
     final String key = this.getKey();
-    if (rb != null && key != null) {
-      returnValue = rb.getObject(key);
-    } else {
+    if (this.getResourceBundleName() == null || key == null) {
       returnValue = key;
+    } else {
+      if (locale == null) {
+        locale = Locale.getDefault();
+      }
+      assert locale != null;
+      ConcurrentMap<Locale, CachedObject> cache = this.cache;
+      if (cache == null) {
+        // Benign race: at worst a few freshly resolved resources are
+        // dropped.
+        cache = new ConcurrentHashMap<Locale, CachedObject>();
+        this.cache = cache;
+      }
+      final CachedObject cachedObject = cache.get(locale);
+      final long now = System.currentTimeMillis();
+      if (cachedObject != null && !cachedObject.isExpired(now)) {
+        returnValue = cachedObject.value;
+      } else {
+        try {
+          final ResourceBundle rb = this.getResourceBundle(locale);
+          if (rb == null) {
+            returnValue = key;
+          } else {
+            returnValue = rb.getObject(key);
+          }
+        } catch (final MissingResourceException missingResourceException) {
+          returnValue = new Missing(missingResourceException);
+        }
+        final long timeToLive = this.getTimeToLive(locale);
+        if (timeToLive == Control.TTL_DONT_CACHE) {
+          cache.remove(locale);
+        } else {
+          cache.put(locale, new CachedObject(returnValue, getExpirationTime(now, timeToLive)));
+        }
+      }
     }
     return returnValue;
   }
 
+  /**
+   * Returns the number of times the {@link #getObject(Locale)} or
+   * {@link #getObject(Locale, Object)} methods have found the
+   * resource identified by this {@link ResourceBundleKey} to be
+   * missing, for any {@link Locale}, since this {@link
+   * ResourceBundleKey} was created or deserialized.
+   *
+   * @return the number of missing resource lookups; never negative
+   */
+  public final long getMissCount() {
+    return this.missCount;
+  }
+
+  /**
+   * Discards all resources cached by this {@link ResourceBundleKey}
+   * so that subsequent invocations of the {@link #getObject(Locale)}
+   * method will load them afresh.
+   *
+   * <p>This does not {@linkplain ResourceBundle#clearCache(ClassLoader)
+   * clear} the cache maintained by the {@link ResourceBundle} class
+   * itself.</p>
+   *
+   * @see #getObject(Locale)
+   */
+  public final void clearCache() {
+    final ConcurrentMap<Locale, CachedObject> cache = this.cache;
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
   /**
    * Returns a hash code for this {@link ResourceBundleKey}.
    *
@@ -770,4 +1030,139 @@ public final class ResourceBundleKey implements Serializable {
     return returnValue;
   }
 
+  /**
+   * Returns the time, in milliseconds since the epoch, at which a
+   * resource resolved at the supplied time and cached for the
+   * supplied {@linkplain Control#getTimeToLive(String, Locale)
+   * time-to-live} expires.
+   *
+   * @param now the time at which the resource was resolved
+   *
+   * @param timeToLive the time-to-live of the resource; must not be
+   * {@link Control#TTL_DONT_CACHE}
+   *
+   * @return the expiration time, which is {@link Long#MAX_VALUE} if
+   * the resource never expires
+   */
+  static final long getExpirationTime(final long now, final long timeToLive) {
+    assert timeToLive != Control.TTL_DONT_CACHE;
+    final long returnValue;
+    if (timeToLive < 0L || now > Long.MAX_VALUE - timeToLive) {
+      // Control.TTL_NO_EXPIRATION_CONTROL, or too far in the future to
+      // matter.
+      returnValue = Long.MAX_VALUE;
+    } else {
+      returnValue = now + timeToLive;
+    }
+    return returnValue;
+  }
+
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A resource {@linkplain ResourceBundleKey#getObject(Locale)
+   * resolved} by a {@link ResourceBundleKey}, or the fact that it is
+   * missing, together with the time after which it must be resolved
+   * again.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class CachedObject {
+
+    /**
+     * The resolved resource, or a {@link Missing}.
+     * This field may be {@code null}.
+     */
+    private final Object value;
+
+    /**
+     * The time, in milliseconds since the epoch, after which {@link
+     * #value} must be resolved again.
+     */
+    private final long expirationTime;
+
+    /**
+     * Creates a new {@link CachedObject}.
+     *
+     * @param value the resolved resource; may be {@code null}
+     *
+     * @param expirationTime the time, in milliseconds since the
+     * epoch, after which the supplied {@code value} must be resolved
+     * again
+     */
+    private CachedObject(final Object value, final long expirationTime) {
+      super();
+      this.value = value;
+      this.expirationTime = expirationTime;
+    }
+
+    /**
+     * Returns {@code true} if this {@link CachedObject} has expired as
+     * of the supplied time.
+     *
+     * @param now the current time in milliseconds since the epoch
+     *
+     * @return {@code true} if this {@link CachedObject} has expired
+     */
+    private final boolean isExpired(final long now) {
+      return now >= this.expirationTime;
+    }
+
+  }
+
+  /**
+   * The fact that a resource {@linkplain
+   * ResourceBundleKey#getObject(Locale) resolved} by a {@link
+   * ResourceBundleKey} is missing, together with the {@link
+   * MissingResourceException} that reported it.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Missing {
+
+    /**
+     * The {@link MissingResourceException} that reported the missing
+     * resource.  This field is never {@code null}.
+     */
+    private final MissingResourceException cause;
+
+    /**
+     * Creates a new {@link Missing}.
+     *
+     * @param cause the {@link MissingResourceException} that reported
+     * the missing resource; must not be {@code null}
+     */
+    private Missing(final MissingResourceException cause) {
+      super();
+      assert cause != null;
+      this.cause = cause;
+    }
+
+    /**
+     * Returns a new {@link MissingResourceException} equivalent to
+     * the one that originally reported the missing resource, whose
+     * {@linkplain Throwable#getCause() cause} is that original.
+     *
+     * <p>A new {@link MissingResourceException} is returned each time
+     * so that its stack trace reflects the caller's.</p>
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a new, non-{@code null} {@link MissingResourceException}
+     */
+    private final MissingResourceException toMissingResourceException() {
+      final MissingResourceException returnValue = new MissingResourceException(this.cause.getMessage(), this.cause.getClassName(), this.cause.getKey());
+      returnValue.initCause(this.cause);
+      return returnValue;
+    }
+
+  }
+
 }
@@ -0,0 +1,570 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.lang.ref.WeakReference;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A bounded cache of the results of message selection, indexed by
+ * the sequence of {@link Class}es of the items in an input {@link
+ * List}.
+ *
+ * <p>When every {@link Pattern} a {@link MessageFactory} had to
+ * consider for a given input tests only the types of the items it
+ * matches, and never their properties, then the message selected
+ * depends only on the {@link Class} of each item.  A {@link
+ * SelectorCache} {@linkplain
+ * MessageFactory#setSelectorCache(SelectorCache) installed} in a
+ * {@link MessageFactory} records such results, so that a later input
+ * with the same {@link Class}es, such as a recurring chain of
+ * exception causes, selects its message without any {@link Pattern}
+ * being evaluated.  Results that might depend on item properties are
+ * never recorded.</p>
+ *
+ * <p>When the cache is full, approximately the least recently used
+ * result is evicted to make room for a new one.  Finding a result
+ * never takes a lock.  The number of {@linkplain
+ * #getHitCount() hits}, {@linkplain #getMissCount() misses} and
+ * {@linkplain #getEvictionCount() evictions} is recorded.  Cached
+ * results hold only {@linkplain WeakReference weak references} to
+ * the {@link Class}es they are indexed by, so a {@link SelectorCache}
+ * shared across applications never keeps their {@link ClassLoader}s
+ * reachable; a result whose {@link Class}es have been collected is
+ * never found again and is eventually evicted.</p>
+ *
+ * <p>A {@link SelectorCache} may be shared by several {@link
+ * MessageFactory} instances; each records and sees only its own
+ * results, which are held side by side.  Results are associated with
+ * the internal index a {@link MessageFactory} builds from its {@link
+ * Pattern}s by an identifier rather than by reference, so results
+ * recorded for an index that has since been discarded, for example
+ * because a {@link MessageFactory} was modified or reloaded, do not
+ * keep it reachable; they are simply never found again and are
+ * eventually evicted.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#setSelectorCache(SelectorCache)
+ */
+public final class SelectorCache {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default {@linkplain #getMaximumSize() maximum size} of a
+   * {@link SelectorCache}.
+   *
+   * @see #SelectorCache()
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  /**
+   * The value returned by the {@link #get(long, Signature)} method
+   * when no result has been recorded.
+   */
+  static final int ABSENT = -2;
+
+  /**
+   * The ordinal recorded to indicate that no {@link Pattern} matched.
+   */
+  static final int NO_MATCH = -1;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link BoundedCache} holding the ordinals of selected {@link
+   * Pattern}s, indexed by the {@link Key}s identifying the results.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BoundedCache<Key, Integer> results;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link SelectorCache} that will hold at most {@link
+   * #DEFAULT_MAXIMUM_SIZE} results.
+   *
+   * @see #SelectorCache(int)
+   */
+  public SelectorCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new {@link SelectorCache} that will hold at most the
+   * supplied number of results.
+   *
+   * @param maximumSize the maximum number of results to hold; must
+   * be {@code 0} or greater; if {@code 0}, then nothing will be
+   * cached
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * less than {@code 0}
+   */
+  public SelectorCache(final int maximumSize) {
+    super();
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    this.results = new BoundedCache<Key, Integer>(maximumSize);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the ordinal of the {@link Pattern} recorded as selected
+   * by the supplied {@code owner} for inputs with the supplied {@link
+   * Signature}, {@link #NO_MATCH} if no {@link Pattern} was recorded
+   * as matching, or {@link #ABSENT} if nothing was recorded.
+   *
+   * <p>This method never locks.</p>
+   *
+   * @param owner the identifier of the {@link PatternIndex} on whose
+   * behalf the result was recorded
+   *
+   * @param signature the {@link Signature} of an input; must not be
+   * {@code null}
+   *
+   * @return an ordinal, {@link #NO_MATCH} or {@link #ABSENT}
+   */
+  final int get(final long owner, final Signature signature) {
+    assert signature != null;
+    final Integer ordinal = this.results.get(new Key(owner, signature));
+    final int returnValue;
+    if (ordinal == null) {
+      returnValue = ABSENT;
+    } else {
+      returnValue = ordinal.intValue();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Records the ordinal of the {@link Pattern} selected by the
+   * supplied {@code owner} for inputs with the supplied {@link
+   * Signature}.
+   *
+   * @param owner the identifier of the {@link PatternIndex} on whose
+   * behalf the result is recorded
+   *
+   * @param signature the {@link Signature} of an input; must not be
+   * {@code null}
+   *
+   * @param ordinal the ordinal of the selected {@link Pattern}, or
+   * {@link #NO_MATCH}
+   */
+  final void put(final long owner, final Signature signature, final int ordinal) {
+    assert signature != null;
+    assert ordinal >= NO_MATCH;
+    this.results.putIfAbsent(new Key(owner, signature.toRecorded()), Integer.valueOf(ordinal));
+  }
+
+  /**
+   * Returns the maximum number of results this {@link SelectorCache}
+   * will hold.
+   *
+   * @return the maximum number of results this {@link SelectorCache}
+   * will hold; always {@code 0} or greater
+   */
+  public final int getMaximumSize() {
+    return this.results.getMaximumSize();
+  }
+
+  /**
+   * Returns the number of results currently held by this {@link
+   * SelectorCache}.
+   *
+   * @return the number of results currently held; always {@code 0}
+   * or greater
+   */
+  public final int size() {
+    return this.results.size();
+  }
+
+  /**
+   * Returns the number of times a result was found in this {@link
+   * SelectorCache}.
+   *
+   * @return the number of cache hits; always {@code 0} or greater
+   */
+  public final long getHitCount() {
+    return this.results.getHitCount();
+  }
+
+  /**
+   * Returns the number of times a result was not found in this
+   * {@link SelectorCache}.
+   *
+   * @return the number of cache misses; always {@code 0} or greater
+   */
+  public final long getMissCount() {
+    return this.results.getMissCount();
+  }
+
+  /**
+   * Returns the number of results that have been evicted from this
+   * {@link SelectorCache} to make room for others.
+   *
+   * @return the number of evictions; always {@code 0} or greater
+   */
+  public final long getEvictionCount() {
+    return this.results.getEvictionCount();
+  }
+
+  /**
+   * Returns the proportion of lookups that found a result in this
+   * {@link SelectorCache}, or {@code 0.0} if there have been no
+   * lookups.
+   *
+   * @return a value between {@code 0.0} and {@code 1.0}, inclusive
+   */
+  public final double getHitRatio() {
+    final long hits = this.getHitCount();
+    final long lookups = hits + this.getMissCount();
+    final double returnValue;
+    if (lookups <= 0L) {
+      returnValue = 0.0;
+    } else {
+      returnValue = (double)hits / (double)lookups;
+    }
+    return returnValue;
+  }
+
+  /**
+   * Removes all results from this {@link SelectorCache}.  Hit, miss
+   * and eviction counts are not reset.
+   */
+  public final void clear() {
+    this.results.clear();
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link SelectorCache}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return new StringBuilder("SelectorCache[size=").append(this.size())
+      .append(", maximumSize=").append(this.getMaximumSize())
+      .append(", hits=").append(this.getHitCount())
+      .append(", misses=").append(this.getMissCount())
+      .append(", evictions=").append(this.getEvictionCount())
+      .append(", hitRatio=").append(this.getHitRatio())
+      .append("]").toString();
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * The sequence of {@link Class}es of the items in an input {@link
+   * List}.
+   *
+   * <p>A {@link Signature} used to look up a result holds its {@link
+   * Class}es strongly; one {@linkplain #toRecorded() recorded} with a
+   * result holds them {@linkplain WeakReference weakly}.  A recorded
+   * {@link Signature} one of whose {@link Class}es has been collected
+   * is equal to no other.</p>
+   *
+   * <p>Instances of this class are immutable and safe for concurrent
+   * use by multiple {@link Thread}s.</p>
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  static final class Signature {
+
+    /**
+     * The value returned by the {@link #get(int)} method in place of a
+     * {@link Class} that has been collected.  This field is never
+     * {@code null}.
+     */
+    private static final Object COLLECTED = new Object();
+
+    /**
+     * The {@link Class} of each item, or {@code null} for a {@code
+     * null} item.
+     *
+     * <p>This field is {@code null} if and only if this {@link
+     * Signature} was {@linkplain #toRecorded() recorded}.</p>
+     */
+    private final Class<?>[] classes;
+
+    /**
+     * {@link WeakReference}s to the {@link Class} of each item, or
+     * {@code null} for a {@code null} item.
+     *
+     * <p>This field is {@code null} unless this {@link Signature} was
+     * {@linkplain #toRecorded() recorded}.</p>
+     */
+    private final WeakReference<Class<?>>[] references;
+
+    /**
+     * The hash code of this {@link Signature}.
+     */
+    private final int hashCode;
+
+    /**
+     * Creates a new {@link Signature} describing an input whose items
+     * have the supplied {@link Class}es.
+     *
+     * @param classes the {@link Class} of each item of the input, or
+     * {@code null} for a {@code null} item; must not be {@code null};
+     * is not copied and so must not be modified afterwards
+     *
+     * @exception IllegalArgumentException if {@code classes} is {@code
+     * null}
+     */
+    Signature(final Class<?>[] classes) {
+      super();
+      if (classes == null) {
+        throw new IllegalArgumentException("classes", new NullPointerException("classes"));
+      }
+      this.classes = classes;
+      this.references = null;
+      this.hashCode = Arrays.hashCode(classes);
+    }
+
+    /**
+     * Creates a new, {@linkplain #toRecorded() recorded} {@link
+     * Signature} equal to the supplied one.
+     *
+     * @param signature the {@link Signature} to copy; must not be
+     * {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    private Signature(final Signature signature) {
+      super();
+      assert signature != null;
+      final int size = signature.size();
+      this.classes = null;
+      this.references = (WeakReference<Class<?>>[])new WeakReference<?>[size];
+      for (int i = 0; i < size; i++) {
+        final Object c = signature.get(i);
+        if (c != null) {
+          this.references[i] = new WeakReference<Class<?>>((Class<?>)c);
+        }
+      }
+      this.hashCode = signature.hashCode;
+    }
+
+    /**
+     * Returns a {@link Signature} equal to this one that holds its
+     * {@link Class}es only {@linkplain WeakReference weakly}, suitable
+     * for recording with a result.
+     *
+     * <p>This method never returns {@code null}.</p>
+     *
+     * @return a non-{@code null} {@link Signature}
+     */
+    final Signature toRecorded() {
+      return this.references == null ? new Signature(this) : this;
+    }
+
+    /**
+     * Returns the number of items described by this {@link
+     * Signature}.
+     *
+     * @return the number of items; always {@code 0} or greater
+     */
+    private final int size() {
+      return this.references == null ? this.classes.length : this.references.length;
+    }
+
+    /**
+     * Returns the {@link Class} of the item at the supplied index,
+     * {@code null} if that item is {@code null}, or {@link #COLLECTED}
+     * if its {@link Class} has been collected.
+     *
+     * @param index the index of the item
+     *
+     * @return a {@link Class}, {@link #COLLECTED} or {@code null}
+     */
+    private final Object get(final int index) {
+      final Object returnValue;
+      if (this.references == null) {
+        returnValue = this.classes[index];
+      } else if (this.references[index] == null) {
+        returnValue = null;
+      } else {
+        final Class<?> c = this.references[index].get();
+        returnValue = c == null ? COLLECTED : c;
+      }
+      return returnValue;
+    }
+
+    /**
+     * Returns a hash code for this {@link Signature}.
+     *
+     * @return a hash code for this {@link Signature}
+     */
+    @Override
+    public final int hashCode() {
+      return this.hashCode;
+    }
+
+    /**
+     * Returns {@code true} if the supplied {@link Object} is a {@link
+     * Signature} describing the same sequence of {@link Class}es.
+     *
+     * @param other the {@link Object} to test; may be {@code null}
+     *
+     * @return {@code true} if the supplied {@link Object} is equal to
+     * this {@link Signature}; {@code false} otherwise
+     */
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Signature) {
+        final Signature her = (Signature)other;
+        final int size = this.size();
+        if (this.hashCode != her.hashCode || size != her.size()) {
+          return false;
+        }
+        for (int i = 0; i < size; i++) {
+          final Object c = this.get(i);
+          if (c == COLLECTED || c != her.get(i)) {
+            return false;
+          }
+        }
+        return true;
+      } else {
+        return false;
+      }
+    }
+
+  }
+
+  /**
+   * The identity of a recorded result: the identifier of the {@link
+   * PatternIndex} on whose behalf it was recorded, and the {@link
+   * Signature} of the inputs it applies to.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Key {
+
+    /**
+     * The identifier of the {@link PatternIndex} on whose behalf the
+     * result was recorded.
+     */
+    private final long owner;
+
+    /**
+     * The {@link Signature} of the inputs the result applies to.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Signature signature;
+
+    /**
+     * Creates a new {@link Key}.
+     *
+     * @param owner the identifier of the {@link PatternIndex} on
+     * whose behalf the result was recorded
+     *
+     * @param signature the {@link Signature} of the inputs the result
+     * applies to; must not be {@code null}
+     */
+    private Key(final long owner, final Signature signature) {
+      super();
+      assert signature != null;
+      this.owner = owner;
+      this.signature = signature;
+    }
+
+    /**
+     * Returns a hash code for this {@link Key}.
+     *
+     * @return a hash code for this {@link Key}
+     */
+    @Override
+    public final int hashCode() {
+      int result = 17;
+      result = result * 37 + (int)(this.owner ^ (this.owner >>> 32));
+      result = result * 37 + this.signature.hashCode();
+      return result;
+    }
+
+    /**
+     * Returns {@code true} if the supplied {@link Object} is a {@link
+     * Key} with the same owner and {@link Signature}.
+     *
+     * @param other the {@link Object} to test; may be {@code null}
+     *
+     * @return {@code true} if the supplied {@link Object} is equal to
+     * this {@link Key}; {@code false} otherwise
+     */
+    @Override
+    public final boolean equals(final Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        final Key her = (Key)other;
+        return this.owner == her.owner && this.signature.equals(her.signature);
+      } else {
+        return false;
+      }
+    }
+
+  }
+
+}
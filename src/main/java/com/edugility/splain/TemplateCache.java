@@ -0,0 +1,264 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.Map;
+
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateCompiler;
+import org.mvel2.templates.TemplateRuntime;
+
+/**
+ * A bounded cache of {@linkplain TemplateCompiler#compileTemplate(String)
+ * compiled} <a href="http://mvel.codehaus.org/">MVEL</a> <a
+ * href="http://mvel.codehaus.org/Templating+Guide">templates</a>,
+ * indexed by their source text.
+ *
+ * <p>When the cache is full, approximately the least recently used
+ * {@link CompiledTemplate} is evicted to make room for a new one.
+ * The number of {@linkplain #getHitCount() hits}, {@linkplain
+ * #getMissCount() misses} and {@linkplain #getEvictionCount()
+ * evictions} is recorded.  Finding a {@link CompiledTemplate} that
+ * is already cached never takes a lock.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#getTemplateCache()
+ *
+ * @see TemplateRuntime#execute(CompiledTemplate, Map)
+ */
+public final class TemplateCache {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default {@linkplain #getMaximumSize() maximum size} of a
+   * {@link TemplateCache}.
+   *
+   * @see #TemplateCache()
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 512;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link BoundedCache} holding {@link CompiledTemplate}s
+   * indexed by the source text from which they were compiled.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final BoundedCache<String, CompiledTemplate> templates;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link TemplateCache} that will hold at most {@link
+   * #DEFAULT_MAXIMUM_SIZE} {@link CompiledTemplate}s.
+   *
+   * @see #TemplateCache(int)
+   */
+  public TemplateCache() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new {@link TemplateCache}.
+   *
+   * @param maximumSize the maximum number of {@link
+   * CompiledTemplate}s this {@link TemplateCache} will hold; if
+   * {@code 0} then no {@link CompiledTemplate}s will be cached
+   *
+   * @exception IllegalArgumentException if {@code maximumSize} is
+   * less than {@code 0}
+   */
+  public TemplateCache(final int maximumSize) {
+    super();
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize < 0: " + maximumSize);
+    }
+    this.templates = new BoundedCache<String, CompiledTemplate>(maximumSize);
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns {@code true} if the supplied text may contain <a
+   * href="http://mvel.codehaus.org/Templating+Guide">template</a>
+   * expressions, which begin with either {@code @} or {@code $}, and
+   * so must be compiled before it can be rendered.  Any other text is
+   * plain and renders as itself.
+   *
+   * @param text the text in question; may be {@code null} in which
+   * case {@code false} will be returned
+   *
+   * @return {@code true} if the supplied text may be a template;
+   * {@code false} if it is certainly plain text
+   */
+  static final boolean isTemplate(final String text) {
+    return text != null && (text.indexOf('@') >= 0 || text.indexOf('$') >= 0);
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns a {@link CompiledTemplate} for the supplied {@code
+   * template} text, compiling and caching it if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param template the template text; must not be {@code null}
+   *
+   * @return a non-{@code null} {@link CompiledTemplate}
+   *
+   * @exception IllegalArgumentException if {@code template} is {@code
+   * null}
+   *
+   * @see TemplateCompiler#compileTemplate(String)
+   */
+  public final CompiledTemplate getCompiledTemplate(final String template) {
+    if (template == null) {
+      throw new IllegalArgumentException("template", new NullPointerException("template"));
+    }
+    CompiledTemplate returnValue = this.templates.get(template);
+    if (returnValue == null) {
+      // A concurrent duplicate compilation is harmless; the first
+      // CompiledTemplate cached wins.
+      returnValue = TemplateCompiler.compileTemplate(template);
+      assert returnValue != null;
+      returnValue = this.templates.putIfAbsent(template, returnValue);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the maximum number of {@link CompiledTemplate}s this
+   * {@link TemplateCache} will hold.
+   *
+   * @return the maximum size of this {@link TemplateCache}; always
+   * {@code 0} or greater
+   */
+  public final int getMaximumSize() {
+    return this.templates.getMaximumSize();
+  }
+
+  /**
+   * Returns the number of {@link CompiledTemplate}s currently held by
+   * this {@link TemplateCache}.
+   *
+   * @return the size of this {@link TemplateCache}; always {@code 0}
+   * or greater
+   */
+  public final int size() {
+    return this.templates.size();
+  }
+
+  /**
+   * Returns the number of times the {@link
+   * #getCompiledTemplate(String)} method found a {@link
+   * CompiledTemplate} in this {@link TemplateCache}.
+   *
+   * @return the hit count; always {@code 0} or greater
+   */
+  public final long getHitCount() {
+    return this.templates.getHitCount();
+  }
+
+  /**
+   * Returns the number of times the {@link
+   * #getCompiledTemplate(String)} method had to compile a template.
+   *
+   * @return the miss count; always {@code 0} or greater
+   */
+  public final long getMissCount() {
+    return this.templates.getMissCount();
+  }
+
+  /**
+   * Returns the number of {@link CompiledTemplate}s that have been
+   * evicted from this {@link TemplateCache} to make room for others.
+   *
+   * @return the eviction count; always {@code 0} or greater
+   */
+  public final long getEvictionCount() {
+    return this.templates.getEvictionCount();
+  }
+
+  /**
+   * Removes all {@link CompiledTemplate}s from this {@link
+   * TemplateCache}.  Statistics are not reset.
+   */
+  public final void clear() {
+    this.templates.clear();
+  }
+
+  /**
+   * Returns a {@link String} representation of this {@link
+   * TemplateCache}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>The format of the {@link String} representation returned by
+   * this method may change at any time.</p>
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return new StringBuilder("TemplateCache[size=").append(this.size())
+      .append(", maximumSize=").append(this.getMaximumSize())
+      .append(", hits=").append(this.getHitCount())
+      .append(", misses=").append(this.getMissCount())
+      .append(", evictions=").append(this.getEvictionCount())
+      .append("]").toString();
+  }
+
+}
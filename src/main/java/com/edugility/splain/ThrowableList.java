@@ -0,0 +1,349 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale; // for javadoc only
+import java.util.RandomAccess;
+
+import com.edugility.objexj.Pattern; // for javadoc only
+
+/**
+ * An unmodifiable {@link List} view of a {@link Throwable} and its
+ * chain of {@linkplain Throwable#getCause() causes}, suitable for
+ * passing directly to a {@link MessageFactory}.
+ *
+ * <p>The first element of a {@link ThrowableList} is the {@link
+ * Throwable} it was created with; each subsequent element is the
+ * cause of the one before it.  If {@linkplain
+ * #ThrowableList(Throwable, boolean, int) requested}, each element of
+ * the cause chain is immediately followed by its {@linkplain
+ * Throwable#getSuppressed() suppressed exceptions}, which are not
+ * themselves followed by their causes.</p>
+ *
+ * <p>Elements are discovered lazily, only as far as they are
+ * requested, so a {@link Pattern} that matches at the start of the
+ * chain never causes the rest of it to be walked.  A {@link Throwable}
+ * that has already appeared in the view is never added again, so
+ * cyclic cause chains are safe, and the view never grows beyond its
+ * {@linkplain #getMaximumSize() maximum size}.</p>
+ *
+ * <p>This class is not safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactory#getMessage(MessageFactory, Throwable, Locale)
+ */
+public final class ThrowableList extends AbstractList<Throwable> implements RandomAccess {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The default {@linkplain #getMaximumSize() maximum size} of a
+   * {@link ThrowableList}.
+   *
+   * @see #ThrowableList(Throwable)
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 64;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * Whether {@linkplain Throwable#getSuppressed() suppressed
+   * exceptions} are included in this {@link ThrowableList}.
+   */
+  private final boolean includeSuppressed;
+
+  /**
+   * The maximum number of elements this {@link ThrowableList} will
+   * present.
+   */
+  private final int maximumSize;
+
+  /**
+   * The elements discovered so far.  Only the first {@link #size}
+   * elements are meaningful.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private Throwable[] elements;
+
+  /**
+   * The number of elements discovered so far.
+   */
+  private int size;
+
+  /**
+   * Whether all of the elements of this {@link ThrowableList} have
+   * been discovered.
+   */
+  private boolean complete;
+
+  /**
+   * The most recently discovered element of the cause chain, whose
+   * cause has yet to be discovered.
+   *
+   * <p>This field is {@code null} only if {@link #complete} is {@code
+   * true}.</p>
+   */
+  private Throwable link;
+
+  /**
+   * The {@linkplain Throwable#getSuppressed() suppressed exceptions}
+   * of the {@link #link} field, or {@code null} if they are not
+   * included.
+   */
+  private Throwable[] suppressed;
+
+  /**
+   * The index within {@link #suppressed} of the next suppressed
+   * exception to be discovered.
+   */
+  private int suppressedIndex;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ThrowableList} presenting the supplied
+   * {@link Throwable} and its causes, without suppressed exceptions,
+   * in at most {@link #DEFAULT_MAXIMUM_SIZE} elements.
+   *
+   * @param throwable the {@link Throwable} to present; must not be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code throwable} is
+   * {@code null}
+   *
+   * @see #ThrowableList(Throwable, boolean, int)
+   */
+  public ThrowableList(final Throwable throwable) {
+    this(throwable, false, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Creates a new {@link ThrowableList}.
+   *
+   * @param throwable the {@link Throwable} to present; must not be
+   * {@code null}
+   *
+   * @param includeSuppressed whether each element of the cause chain
+   * should be followed by its {@linkplain Throwable#getSuppressed()
+   * suppressed exceptions}
+   *
+   * @param maximumSize the maximum number of elements the new {@link
+   * ThrowableList} will present; must be greater than {@code 0}
+   *
+   * @exception IllegalArgumentException if {@code throwable} is
+   * {@code null} or if {@code maximumSize} is less than {@code 1}
+   */
+  public ThrowableList(final Throwable throwable, final boolean includeSuppressed, final int maximumSize) {
+    super();
+    if (throwable == null) {
+      throw new IllegalArgumentException("throwable", new NullPointerException("throwable"));
+    }
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("maximumSize < 1: " + maximumSize);
+    }
+    this.includeSuppressed = includeSuppressed;
+    this.maximumSize = maximumSize;
+    this.elements = new Throwable[Math.min(maximumSize, 4)];
+    this.elements[0] = throwable;
+    this.size = 1;
+    this.complete = maximumSize == 1;
+    if (!this.complete) {
+      this.link = throwable;
+      this.suppressed = includeSuppressed ? throwable.getSuppressed() : null;
+    }
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns {@code true} if {@linkplain Throwable#getSuppressed()
+   * suppressed exceptions} are included in this {@link
+   * ThrowableList}.
+   *
+   * @return {@code true} if suppressed exceptions are included;
+   * {@code false} otherwise
+   */
+  public final boolean isIncludeSuppressed() {
+    return this.includeSuppressed;
+  }
+
+  /**
+   * Returns the maximum number of elements this {@link ThrowableList}
+   * will present.
+   *
+   * @return the maximum size of this {@link ThrowableList}; always
+   * {@code 1} or greater
+   */
+  public final int getMaximumSize() {
+    return this.maximumSize;
+  }
+
+  /**
+   * Returns the element at the supplied index, discovering elements
+   * up to and including it if necessary.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param index the index of the element to return
+   *
+   * @return the non-{@code null} element at the supplied index
+   *
+   * @exception IndexOutOfBoundsException if {@code index} is less
+   * than {@code 0} or not less than the {@linkplain #size() size} of
+   * this {@link ThrowableList}
+   */
+  @Override
+  public final Throwable get(final int index) {
+    if (index < 0) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    while (index >= this.size && this.advance()) {
+      // Keep discovering elements.
+    }
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException(index + " >= " + this.size);
+    }
+    return this.elements[index];
+  }
+
+  /**
+   * Returns the size of this {@link ThrowableList}, discovering all of
+   * its elements if necessary.
+   *
+   * @return the size of this {@link ThrowableList}; always {@code 1}
+   * or greater
+   */
+  @Override
+  public final int size() {
+    while (this.advance()) {
+      // Keep discovering elements.
+    }
+    return this.size;
+  }
+
+  /**
+   * Returns {@code false}, because a {@link ThrowableList} always
+   * contains at least one element.
+   *
+   * @return {@code false}
+   */
+  @Override
+  public final boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Discovers the next element of this {@link ThrowableList}, if
+   * there is one, and returns {@code true} if an element was
+   * discovered.
+   *
+   * @return {@code true} if an element was discovered; {@code false}
+   * if all elements have already been discovered
+   */
+  private final boolean advance() {
+    while (!this.complete) {
+      final Throwable candidate;
+      final boolean isCause;
+      if (this.suppressed != null && this.suppressedIndex < this.suppressed.length) {
+        candidate = this.suppressed[this.suppressedIndex++];
+        isCause = false;
+      } else {
+        candidate = this.link.getCause();
+        isCause = true;
+      }
+      if (candidate == null || this.isDiscovered(candidate)) {
+        if (isCause) {
+          // The end of the chain, or a cycle.
+          this.complete = true;
+          this.link = null;
+          this.suppressed = null;
+        }
+      } else {
+        if (this.size == this.elements.length) {
+          this.elements = Arrays.copyOf(this.elements, Math.min(this.maximumSize, this.size * 2));
+        }
+        this.elements[this.size++] = candidate;
+        if (this.size >= this.maximumSize) {
+          this.complete = true;
+          this.link = null;
+          this.suppressed = null;
+        } else if (isCause) {
+          this.link = candidate;
+          this.suppressed = this.includeSuppressed ? candidate.getSuppressed() : null;
+          this.suppressedIndex = 0;
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Throwable} is
+   * identical to an element already discovered.
+   *
+   * @param throwable the {@link Throwable} to look for; must not be
+   * {@code null}
+   *
+   * @return {@code true} if the supplied {@link Throwable} has already
+   * been discovered; {@code false} otherwise
+   */
+  private final boolean isDiscovered(final Throwable throwable) {
+    assert throwable != null;
+    for (int i = 0; i < this.size; i++) {
+      if (this.elements[i] == throwable) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
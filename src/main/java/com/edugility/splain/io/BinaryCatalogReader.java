@@ -0,0 +1,663 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+import java.net.URI;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.ResourceBundle.Control;
+import java.util.Set;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.edugility.objexj.Pattern;
+
+import com.edugility.splain.MessageFactory;
+import com.edugility.splain.ResourceBundleKey;
+
+/**
+ * Reads {@link MessageFactory} instances from the binary catalog
+ * format written by {@link BinaryCatalogWriter}.
+ *
+ * <p>Reading a binary catalog requires neither parsing nor {@linkplain
+ * Pattern#compile(String) compilation} of {@link Pattern}s, and so is
+ * suitable for startup paths where a textual catalog would be too
+ * slow to read.  Binary catalogs contain serialized Java objects and
+ * should therefore only be read from trusted sources, typically
+ * artifacts produced by the same build that produced the
+ * application.  As a further precaution, only classes belonging to
+ * objexj, MVEL and a few core packages of the Java platform may be
+ * {@linkplain #isPermitted(String) deserialized}; anything else
+ * causes the binary catalog to be rejected.</p>
+ *
+ * <p>If a binary catalog is missing, corrupt, was written in an
+ * unsupported version of the format or is out of date with respect to
+ * its textual catalog, the {@link #read(File, URI, ClassLoader,
+ * Control)} method may be used to fall back to reading the textual
+ * catalog with a {@link MessageFactoryReader}.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see BinaryCatalogWriter
+ *
+ * @see MessageFactoryReader
+ */
+public class BinaryCatalogReader {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The magic number ("{@code SPLC}") that begins every binary
+   * catalog.
+   */
+  static final int MAGIC = 0x53504C43;
+
+  /**
+   * The version of the binary catalog format written by {@link
+   * BinaryCatalogWriter} and understood by this class.
+   */
+  static final int VERSION = 2;
+
+  /**
+   * The offset within a binary catalog of the checksum of the textual
+   * catalog from which it was written.
+   *
+   * @see BinaryCatalogWriter#write(MessageFactory, URI, OutputStream)
+   */
+  private static final int TEXT_CHECKSUM_OFFSET = 8;
+
+  /**
+   * The {@link Logger} used by instances of this class.  This field
+   * is never {@code null}.
+   */
+  private static final Logger logger = Logger.getLogger(BinaryCatalogReader.class.getName());
+
+  /**
+   * The names of the packages whose classes, but not those of their
+   * subpackages, may be deserialized from a binary catalog.  This
+   * field is never {@code null}.
+   *
+   * @see #isPermitted(String)
+   */
+  private static final Set<String> permittedPackages = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("java.lang",
+                                                                                                                      "java.math",
+                                                                                                                      "java.util",
+                                                                                                                      "java.util.concurrent",
+                                                                                                                      "java.util.concurrent.atomic",
+                                                                                                                      "java.util.regex")));
+
+  /**
+   * The prefixes of the names of the classes, in any subpackage, that
+   * may be deserialized from a binary catalog.  This field is never
+   * {@code null}.
+   *
+   * @see #isPermitted(String)
+   */
+  private static final String[] permittedPrefixes = new String[] { "com.edugility.objexj.", "org.mvel2." };
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link ByteBuffer} containing the binary catalog.  This field
+   * is never {@code null}.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The {@link ClassLoader} used to construct {@link
+   * ResourceBundleKey}s and to resolve serialized {@link Pattern}
+   * classes.  This field may be {@code null}.
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * The {@link Control} used to construct {@link
+   * ResourceBundleKey}s.  This field may be {@code null}.
+   */
+  private final Control rbControl;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BinaryCatalogReader}.
+   *
+   * @param buffer the {@link ByteBuffer} containing the binary
+   * catalog, from its {@linkplain ByteBuffer#position() position} to
+   * its {@linkplain ByteBuffer#limit() limit}; must not be {@code
+   * null}; will not be modified
+   *
+   * @exception IllegalArgumentException if {@code buffer} is {@code
+   * null}
+   */
+  public BinaryCatalogReader(final ByteBuffer buffer) {
+    this(buffer, null, null);
+  }
+
+  /**
+   * Creates a new {@link BinaryCatalogReader}.
+   *
+   * @param buffer the {@link ByteBuffer} containing the binary
+   * catalog, from its {@linkplain ByteBuffer#position() position} to
+   * its {@linkplain ByteBuffer#limit() limit}; must not be {@code
+   * null}; will not be modified
+   *
+   * @param classLoader the {@link ClassLoader} used to construct
+   * {@link ResourceBundleKey}s and to resolve serialized {@link
+   * Pattern} classes; may be {@code null}
+   *
+   * @param rbControl the {@link Control} used to construct {@link
+   * ResourceBundleKey}s; may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code buffer} is {@code
+   * null}
+   */
+  public BinaryCatalogReader(final ByteBuffer buffer, final ClassLoader classLoader, final Control rbControl) {
+    super();
+    if (buffer == null) {
+      throw new IllegalArgumentException("buffer", new NullPointerException("buffer"));
+    }
+    this.buffer = buffer.asReadOnlyBuffer();
+    this.classLoader = classLoader;
+    this.rbControl = rbControl;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Reads the binary catalog supplied at construction time and
+   * returns a new {@link MessageFactory} representing it.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * <p>This method may be called more than once.</p>
+   *
+   * @param <T> the type of {@link Object} matched by the returned
+   * {@link MessageFactory}
+   *
+   * @return a new, non-{@code null} {@link MessageFactory}
+   *
+   * @exception IOException if the binary catalog is truncated, fails
+   * its checksum, has an unknown magic number or version, or
+   * contains a {@link Pattern} that cannot be deserialized or
+   * compiled; any other failure while reading is also reported as an
+   * {@link IOException}
+   */
+  public <T> MessageFactory<T> read() throws IOException {
+    final ByteBuffer buffer = this.buffer.duplicate();
+    final int length = buffer.remaining();
+    if (length < 8) {
+      throw new IOException("Truncated binary catalog");
+    }
+    final int payloadEnd = buffer.position() + length - 8;
+    final long expectedChecksum = buffer.getLong(payloadEnd);
+    if (expectedChecksum != checksum(buffer, payloadEnd)) {
+      throw new IOException("Binary catalog checksum mismatch");
+    }
+    buffer.limit(payloadEnd);
+
+    final MessageFactory<T> mf = new MessageFactory<T>();
+    try {
+      final int magic = buffer.getInt();
+      if (magic != MAGIC) {
+        throw new IOException("Not a binary catalog; magic number: 0x" + Integer.toHexString(magic));
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary catalog version: " + version);
+      }
+      buffer.getLong(); // the checksum of the textual catalog
+      final int entryCount = buffer.getInt();
+      for (int i = 0; i < entryCount; i++) {
+        final String bundleName = readString(buffer);
+        final String key = readString(buffer);
+        if (key == null) {
+          throw new IOException("Binary catalog entry " + i + " has no key");
+        }
+        final ResourceBundleKey rbKey = new ResourceBundleKey(bundleName, this.classLoader, this.rbControl, key);
+        final int patternCount = buffer.getInt();
+        for (int j = 0; j < patternCount; j++) {
+          final String source = readString(buffer);
+          final int serializedLength = buffer.getInt();
+          if (serializedLength < 0 || serializedLength > buffer.remaining()) {
+            throw new IOException("Invalid serialized pattern length: " + serializedLength);
+          }
+          if (serializedLength == 0) {
+            if (source == null) {
+              throw new IOException("Binary catalog entry " + i + " contains a pattern with neither source nor serialized form");
+            }
+            try {
+              mf.addPattern(rbKey, source);
+            } catch (final ParseException parseException) {
+              throw (IOException)new IOException("Could not compile pattern: " + source).initCause(parseException);
+            }
+          } else {
+            final byte[] bytes = new byte[serializedLength];
+            buffer.get(bytes);
+            final Pattern<T> pattern = this.<T>deserialize(bytes);
+            if (source == null) {
+              mf.addPattern(rbKey, pattern);
+            } else {
+              mf.addPattern(rbKey, source, pattern);
+            }
+          }
+        }
+      }
+      if (buffer.hasRemaining()) {
+        throw new IOException("Trailing bytes in binary catalog");
+      }
+    } catch (final BufferUnderflowException underflow) {
+      throw (IOException)new IOException("Truncated binary catalog").initCause(underflow);
+    } catch (final RuntimeException runtimeException) {
+      throw (IOException)new IOException("Invalid binary catalog").initCause(runtimeException);
+    }
+    return mf;
+  }
+
+  /**
+   * Returns {@code true} unless the binary catalog supplied at
+   * construction time records a {@linkplain #checksum(URI) checksum}
+   * of its textual catalog that differs from that of the textual
+   * catalog identified by the supplied {@link URI}.
+   *
+   * <p>A binary catalog that does not record such a checksum, because
+   * it was written by the {@link
+   * BinaryCatalogWriter#write(MessageFactory, OutputStream)} method,
+   * is always considered current.</p>
+   *
+   * @param text the {@link URI} of the textual catalog; must not be
+   * {@code null}
+   *
+   * @return {@code true} if the binary catalog is not known to be out
+   * of date; {@code false} otherwise
+   *
+   * @exception IOException if the binary catalog is too short to
+   * contain a checksum, or if the textual catalog could not be read
+   *
+   * @see BinaryCatalogWriter#write(MessageFactory, URI, OutputStream)
+   */
+  final boolean isCurrentFor(final URI text) throws IOException {
+    assert text != null;
+    final ByteBuffer buffer = this.buffer.duplicate();
+    if (buffer.remaining() < TEXT_CHECKSUM_OFFSET + 8) {
+      throw new IOException("Truncated binary catalog");
+    }
+    final long textChecksum = buffer.getLong(buffer.position() + TEXT_CHECKSUM_OFFSET);
+    return textChecksum == -1L || textChecksum == checksum(text);
+  }
+
+  /**
+   * Deserializes a {@link Pattern} from the supplied bytes, resolving
+   * classes with the {@link ClassLoader} supplied at construction
+   * time if there is one.
+   *
+   * <p>Only {@linkplain #isPermitted(String) permitted} classes are
+   * resolved, and proxy classes are never resolved.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of {@link Object} matched by the returned
+   * {@link Pattern}
+   *
+   * @param bytes the serialized form of a {@link Pattern}; must not
+   * be {@code null}
+   *
+   * @return a non-{@code null} {@link Pattern}
+   *
+   * @exception IOException if the bytes do not represent a
+   * serialized {@link Pattern}, if they name a class that is not
+   * permitted, or if deserialization fails in any other way
+   */
+  private final <T> Pattern<T> deserialize(final byte[] bytes) throws IOException {
+    assert bytes != null;
+    final ClassLoader classLoader = this.classLoader;
+    final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+        @Override
+        protected final Class<?> resolveClass(final ObjectStreamClass descriptor) throws IOException, ClassNotFoundException {
+          if (!isPermitted(descriptor.getName())) {
+            throw new InvalidClassException(descriptor.getName(), "Not permitted in a binary catalog");
+          }
+          if (classLoader == null) {
+            return super.resolveClass(descriptor);
+          }
+          try {
+            return Class.forName(descriptor.getName(), false, classLoader);
+          } catch (final ClassNotFoundException notFound) {
+            return super.resolveClass(descriptor);
+          }
+        }
+
+        @Override
+        protected final Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+          throw new InvalidClassException(Arrays.toString(interfaces), "Proxies are not permitted in a binary catalog");
+        }
+      };
+    final Object object;
+    try {
+      object = in.readObject();
+    } catch (final ClassNotFoundException classNotFound) {
+      throw (IOException)new IOException("Could not deserialize pattern").initCause(classNotFound);
+    } catch (final RuntimeException runtimeException) {
+      throw (IOException)new IOException("Could not deserialize pattern").initCause(runtimeException);
+    } finally {
+      in.close();
+    }
+    if (!(object instanceof Pattern)) {
+      throw new IOException("Not a serialized pattern: " + object);
+    }
+    @SuppressWarnings("unchecked")
+    final Pattern<T> returnValue = (Pattern<T>)object;
+    return returnValue;
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Returns a new {@link BinaryCatalogReader} that will read the
+   * supplied {@link File} by {@linkplain
+   * FileChannel#map(FileChannel.MapMode, long, long) mapping it into
+   * memory}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param file the binary catalog {@link File}; must not be {@code
+   * null}
+   *
+   * @param classLoader the {@link ClassLoader} used to construct
+   * {@link ResourceBundleKey}s and to resolve serialized {@link
+   * Pattern} classes; may be {@code null}
+   *
+   * @param rbControl the {@link Control} used to construct {@link
+   * ResourceBundleKey}s; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link BinaryCatalogReader}
+   *
+   * @exception IllegalArgumentException if {@code file} is {@code
+   * null}
+   *
+   * @exception IOException if the {@link File} could not be mapped
+   */
+  public static BinaryCatalogReader open(final File file, final ClassLoader classLoader, final Control rbControl) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file", new NullPointerException("file"));
+    }
+    final ByteBuffer buffer;
+    final FileInputStream in = new FileInputStream(file);
+    try {
+      final FileChannel channel = in.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+    } finally {
+      in.close();
+    }
+    return new BinaryCatalogReader(buffer, classLoader, rbControl);
+  }
+
+  /**
+   * Reads a {@link MessageFactory} from the supplied binary catalog
+   * {@link File}, falling back to reading the textual catalog
+   * identified by the supplied {@link URI} with a {@link
+   * MessageFactoryReader} if the binary catalog does not exist, cannot
+   * be read, or records a {@linkplain
+   * BinaryCatalogWriter#write(MessageFactory, URI, OutputStream)
+   * checksum of its textual catalog} that no longer matches.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of {@link Object} matched by the returned
+   * {@link MessageFactory}
+   *
+   * @param binary the binary catalog {@link File}; may be {@code
+   * null} in which case the textual catalog will be read
+   *
+   * @param text the {@link URI} of the textual catalog; must not be
+   * {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} used to construct
+   * {@link ResourceBundleKey}s and to resolve serialized {@link
+   * Pattern} classes; may be {@code null}
+   *
+   * @param rbControl the {@link Control} used to construct {@link
+   * ResourceBundleKey}s; may be {@code null}
+   *
+   * @return a new, non-{@code null} {@link MessageFactory}
+   *
+   * @exception IllegalArgumentException if {@code text} is {@code
+   * null}
+   *
+   * @exception IOException if the textual catalog had to be read and
+   * could not be
+   *
+   * @exception ParseException if the textual catalog had to be read
+   * and could not be parsed
+   */
+  public static <T> MessageFactory<T> read(final File binary, final URI text, final ClassLoader classLoader, final Control rbControl) throws IOException, ParseException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    if (binary != null && binary.isFile()) {
+      try {
+        final BinaryCatalogReader binaryReader = open(binary, classLoader, rbControl);
+        if (binaryReader.isCurrentFor(text)) {
+          return binaryReader.<T>read();
+        }
+        if (logger.isLoggable(Level.WARNING)) {
+          logger.log(Level.WARNING, "Binary catalog " + binary + " is out of date; falling back to " + text);
+        }
+      } catch (final IOException e) {
+        if (logger.isLoggable(Level.WARNING)) {
+          logger.log(Level.WARNING, "Could not read binary catalog " + binary + "; falling back to " + text, e);
+        }
+      }
+    }
+    final MessageFactory<T> returnValue;
+    final MessageFactoryReader reader = new MessageFactoryReader(text, classLoader, rbControl);
+    try {
+      returnValue = reader.read();
+    } finally {
+      reader.close();
+    }
+    return returnValue;
+  }
+
+  /**
+   * Returns the {@link CRC32} checksum of the contents of the textual
+   * catalog identified by the supplied {@link URI}.
+   *
+   * @param text the {@link URI} of the textual catalog; must not be
+   * {@code null}
+   *
+   * @return a checksum; never negative
+   *
+   * @exception IOException if the textual catalog could not be read
+   *
+   * @see BinaryCatalogWriter#write(MessageFactory, URI, OutputStream)
+   */
+  static final long checksum(final URI text) throws IOException {
+    assert text != null;
+    final CRC32 checksum = new CRC32();
+    final InputStream in = new CheckedInputStream(text.toURL().openStream(), checksum);
+    try {
+      final byte[] bytes = new byte[8192];
+      while (in.read(bytes) >= 0) {
+        // Keep reading.
+      }
+    } finally {
+      in.close();
+    }
+    return checksum.getValue();
+  }
+
+  /**
+   * Returns {@code true} if a class with the supplied name, as
+   * {@linkplain ObjectStreamClass#getName() reported} by an {@link
+   * ObjectStreamClass}, may be deserialized from a binary catalog.
+   *
+   * <p>Arrays are permitted if their component types are.  Primitive
+   * types are always permitted.</p>
+   *
+   * @param name the name of the class in question; may be {@code
+   * null} in which case {@code false} will be returned
+   *
+   * @return {@code true} if the named class may be deserialized;
+   * {@code false} otherwise
+   */
+  static final boolean isPermitted(final String name) {
+    boolean returnValue = false;
+    if (name != null) {
+      int dimensions = 0;
+      while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+        dimensions++;
+      }
+      final String className;
+      if (dimensions <= 0) {
+        className = name;
+      } else if (name.length() == dimensions + 1) {
+        // A primitive array, such as [I
+        className = null;
+        returnValue = true;
+      } else if (name.charAt(dimensions) == 'L' && name.endsWith(";")) {
+        className = name.substring(dimensions + 1, name.length() - 1);
+      } else {
+        className = null;
+      }
+      if (className != null) {
+        final int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0 && permittedPackages.contains(className.substring(0, lastDot))) {
+          returnValue = true;
+        } else {
+          for (final String prefix : permittedPrefixes) {
+            if (className.startsWith(prefix)) {
+              returnValue = true;
+              break;
+            }
+          }
+        }
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Reads a length-prefixed UTF-8 {@link String}, which may be {@code
+   * null}, from the supplied {@link ByteBuffer}.
+   *
+   * @param buffer the {@link ByteBuffer} to read from; must not be
+   * {@code null}
+   *
+   * @return the {@link String} read, or {@code null}
+   *
+   * @exception IOException if the length is invalid
+   */
+  private static final String readString(final ByteBuffer buffer) throws IOException {
+    assert buffer != null;
+    final int length = buffer.getInt();
+    final String returnValue;
+    if (length < 0) {
+      returnValue = null;
+    } else if (length > buffer.remaining()) {
+      throw new IOException("Invalid string length: " + length);
+    } else {
+      final byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      returnValue = new String(bytes, "UTF-8");
+    }
+    return returnValue;
+  }
+
+  /**
+   * Computes the {@link CRC32} checksum of the bytes in the supplied
+   * {@link ByteBuffer} from its current {@linkplain
+   * ByteBuffer#position() position} up to, but not including, the
+   * supplied end index.
+   *
+   * <p>The supplied {@link ByteBuffer}'s position is not
+   * changed.</p>
+   *
+   * @param buffer the {@link ByteBuffer}; must not be {@code null}
+   *
+   * @param end the end index, exclusive
+   *
+   * @return the checksum
+   */
+  private static final long checksum(final ByteBuffer buffer, final int end) {
+    assert buffer != null;
+    final CRC32 crc = new CRC32();
+    final ByteBuffer slice = buffer.duplicate();
+    slice.limit(end);
+    final byte[] chunk = new byte[Math.min(8192, Math.max(1, slice.remaining()))];
+    while (slice.hasRemaining()) {
+      final int count = Math.min(chunk.length, slice.remaining());
+      slice.get(chunk, 0, count);
+      crc.update(chunk, 0, count);
+    }
+    return crc.getValue();
+  }
+
+}
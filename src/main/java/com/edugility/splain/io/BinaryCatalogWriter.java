@@ -0,0 +1,317 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import java.net.URI;
+
+import java.util.Set;
+
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.edugility.objexj.Pattern;
+
+import com.edugility.splain.MessageFactory;
+import com.edugility.splain.ResourceBundleKey;
+
+/**
+ * Writes {@link MessageFactory} instances in the binary catalog
+ * format understood by {@link BinaryCatalogReader}.
+ *
+ * <p>A binary catalog records, for every {@link ResourceBundleKey}
+ * in a {@link MessageFactory}, its already parsed bundle name and key
+ * components, and, for every {@link Pattern} indexed under it, the
+ * source code of that {@link Pattern} (if {@linkplain
+ * MessageFactory#getPatternSource(ResourceBundleKey, Pattern) known})
+ * together with its {@linkplain java.io.Serializable serialized}
+ * compiled form (if it is serializable).  Reading a binary catalog
+ * therefore requires neither parsing nor {@linkplain
+ * Pattern#compile(String) compilation}.</p>
+ *
+ * <p>The format is as follows.  All integers are big-endian.  All
+ * strings are written as a four-byte length, or {@code -1} for {@code
+ * null}, followed by that many bytes of UTF-8.</p>
+ *
+ * <ol>
+ *
+ * <li>The four-byte magic number {@code 0x53504C43}
+ * ("{@code SPLC}").</li>
+ *
+ * <li>A four-byte format version number.</li>
+ *
+ * <li>The eight-byte {@link CRC32} checksum of the textual catalog
+ * from which the {@link MessageFactory} was read, or {@code -1} if it
+ * is not known.  {@link BinaryCatalogReader#read(java.io.File, URI,
+ * ClassLoader, java.util.ResourceBundle.Control)} uses it to detect a
+ * binary catalog that is out of date.</li>
+ *
+ * <li>A four-byte count of entries, followed by that many
+ * entries.  Each entry consists of a bundle name string (possibly
+ * {@code null}), a key string, and a four-byte count of patterns,
+ * followed by that many patterns.  Each pattern consists of a source
+ * code string (possibly {@code null}), a four-byte length, and that
+ * many bytes of serialized {@link Pattern} (possibly none).</li>
+ *
+ * <li>An eight-byte {@link CRC32} checksum of all of the preceding
+ * bytes.</li>
+ *
+ * </ol>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see BinaryCatalogReader
+ */
+public class BinaryCatalogWriter {
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link BinaryCatalogWriter}.
+   */
+  public BinaryCatalogWriter() {
+    super();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Writes the supplied {@link MessageFactory} to the supplied {@link
+   * OutputStream} in binary catalog format, without recording the
+   * textual catalog it was read from.
+   *
+   * <p>The supplied {@link OutputStream} is {@linkplain
+   * OutputStream#flush() flushed} but not closed.</p>
+   *
+   * <p>A binary catalog written by this method is never considered
+   * out of date by the {@link BinaryCatalogReader#read(java.io.File,
+   * URI, ClassLoader, java.util.ResourceBundle.Control)} method; use
+   * the {@link #write(MessageFactory, URI, OutputStream)} method to
+   * have it checked against its textual catalog.</p>
+   *
+   * @param <T> the type of {@link Object} matched by the supplied
+   * {@link MessageFactory}
+   *
+   * @param mf the {@link MessageFactory} to write; must not be {@code
+   * null}
+   *
+   * @param outputStream the {@link OutputStream} to write to; must
+   * not be {@code null}
+   *
+   * @exception IllegalArgumentException if either parameter is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs, or if
+   * a {@link Pattern} in the supplied {@link MessageFactory} is
+   * neither serializable nor has known source code
+   */
+  public <T> void write(final MessageFactory<T> mf, final OutputStream outputStream) throws IOException {
+    this.write(mf, -1L, outputStream);
+  }
+
+  /**
+   * Writes the supplied {@link MessageFactory}, which was read from
+   * the textual catalog identified by the supplied {@link URI}, to
+   * the supplied {@link OutputStream} in binary catalog format.
+   *
+   * <p>A {@linkplain CRC32 checksum} of the textual catalog is
+   * recorded so that the {@link BinaryCatalogReader#read(java.io.File,
+   * URI, ClassLoader, java.util.ResourceBundle.Control)} method can
+   * fall back to the textual catalog if it has changed since the
+   * binary catalog was written.</p>
+   *
+   * <p>The supplied {@link OutputStream} is {@linkplain
+   * OutputStream#flush() flushed} but not closed.</p>
+   *
+   * @param <T> the type of {@link Object} matched by the supplied
+   * {@link MessageFactory}
+   *
+   * @param mf the {@link MessageFactory} to write; must not be {@code
+   * null}
+   *
+   * @param text the {@link URI} of the textual catalog from which the
+   * supplied {@link MessageFactory} was read; must not be {@code null}
+   *
+   * @param outputStream the {@link OutputStream} to write to; must
+   * not be {@code null}
+   *
+   * @exception IllegalArgumentException if any parameter is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs, if the
+   * textual catalog could not be read, or if a {@link Pattern} in the
+   * supplied {@link MessageFactory} is neither serializable nor has
+   * known source code
+   */
+  public <T> void write(final MessageFactory<T> mf, final URI text, final OutputStream outputStream) throws IOException {
+    if (text == null) {
+      throw new IllegalArgumentException("text", new NullPointerException("text"));
+    }
+    this.write(mf, BinaryCatalogReader.checksum(text), outputStream);
+  }
+
+  /**
+   * Writes the supplied {@link MessageFactory} to the supplied {@link
+   * OutputStream} in binary catalog format, recording the supplied
+   * checksum of its textual catalog.
+   *
+   * @param <T> the type of {@link Object} matched by the supplied
+   * {@link MessageFactory}
+   *
+   * @param mf the {@link MessageFactory} to write; must not be {@code
+   * null}
+   *
+   * @param textChecksum the {@link CRC32} checksum of the textual
+   * catalog, or {@code -1} if it is not known
+   *
+   * @param outputStream the {@link OutputStream} to write to; must
+   * not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code mf} or {@code
+   * outputStream} is {@code null}
+   *
+   * @exception IOException if an input or output error occurs, or if
+   * a {@link Pattern} in the supplied {@link MessageFactory} is
+   * neither serializable nor has known source code
+   */
+  private final <T> void write(final MessageFactory<T> mf, final long textChecksum, final OutputStream outputStream) throws IOException {
+    if (mf == null) {
+      throw new IllegalArgumentException("mf", new NullPointerException("mf"));
+    }
+    if (outputStream == null) {
+      throw new IllegalArgumentException("outputStream", new NullPointerException("outputStream"));
+    }
+    final CRC32 checksum = new CRC32();
+    final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(outputStream, checksum));
+    out.writeInt(BinaryCatalogReader.MAGIC);
+    out.writeInt(BinaryCatalogReader.VERSION);
+    out.writeLong(textChecksum);
+    final Set<ResourceBundleKey> keys = mf.getKeys();
+    assert keys != null;
+    out.writeInt(keys.size());
+    for (final ResourceBundleKey key : keys) {
+      assert key != null;
+      writeString(out, key.getResourceBundleName());
+      writeString(out, key.getKey());
+      final Set<Pattern<T>> patterns = mf.getPatterns(key);
+      assert patterns != null;
+      out.writeInt(patterns.size());
+      for (final Pattern<T> pattern : patterns) {
+        assert pattern != null;
+        final String source = mf.getPatternSource(key, pattern);
+        final byte[] serializedPattern = serialize(pattern);
+        if (source == null && serializedPattern.length <= 0) {
+          throw new NotSerializableException("Pattern " + pattern + " under key " + key + " is not serializable and has no known source");
+        }
+        writeString(out, source);
+        out.writeInt(serializedPattern.length);
+        out.write(serializedPattern);
+      }
+    }
+    out.flush();
+    // The checksum itself is written outside of the checksummed
+    // stream.
+    new DataOutputStream(outputStream).writeLong(checksum.getValue());
+    outputStream.flush();
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Writes the supplied {@link String}, which may be {@code null}, to
+   * the supplied {@link DataOutputStream} as a length-prefixed
+   * sequence of UTF-8 bytes.
+   *
+   * @param out the {@link DataOutputStream} to write to; must not be
+   * {@code null}
+   *
+   * @param s the {@link String} to write; may be {@code null}
+   *
+   * @exception IOException if an input or output error occurs
+   */
+  private static final void writeString(final DataOutputStream out, final String s) throws IOException {
+    assert out != null;
+    if (s == null) {
+      out.writeInt(-1);
+    } else {
+      final byte[] bytes = s.getBytes("UTF-8");
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Returns the serialized form of the supplied {@link Pattern}, or a
+   * zero-length array if it is not serializable.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param pattern the {@link Pattern} to serialize; must not be
+   * {@code null}
+   *
+   * @return a non-{@code null} array of bytes
+   *
+   * @exception IOException if an input or output error occurs
+   */
+  private static final byte[] serialize(final Pattern<?> pattern) throws IOException {
+    assert pattern != null;
+    byte[] returnValue;
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    try {
+      out.writeObject(pattern);
+      out.flush();
+      returnValue = bytes.toByteArray();
+    } catch (final NotSerializableException e) {
+      returnValue = new byte[0];
+    } finally {
+      out.close();
+    }
+    return returnValue;
+  }
+
+}
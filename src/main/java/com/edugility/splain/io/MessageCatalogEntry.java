@@ -0,0 +1,255 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.Serializable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.edugility.objexj.Pattern;
+
+/**
+ * A single entry in a textual message catalog, as {@linkplain
+ * MessageFactoryReader#parse(MessageCatalogHandler) reported} by a
+ * {@link MessageFactoryReader} to a {@link MessageCatalogHandler}.
+ *
+ * <p>A {@link MessageCatalogEntry} holds the source code of the
+ * entry's {@link Pattern}s and the text of the message or resource
+ * bundle key they select, exactly as they appear in the catalog.
+ * Nothing in it has been {@linkplain Pattern#compile(String)
+ * compiled} or resolved.</p>
+ *
+ * <p>{@link MessageCatalogEntry} instances are immutable and safe for
+ * concurrent use by multiple {@link Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactoryReader#parse(MessageCatalogHandler)
+ *
+ * @see MessageCatalogHandler
+ */
+public final class MessageCatalogEntry implements Serializable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The version of this class for {@linkplain Serializable
+   * serialization purposes}.
+   */
+  private static final long serialVersionUID = 1L;
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link Pattern} source code of this entry, in catalog order,
+   * mapped to the line numbers on which it appears.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final Map<String, Integer> patterns;
+
+  /**
+   * The message or resource bundle key selected by this entry's
+   * {@link Pattern}s.
+   *
+   * <p>This field is never {@code null}.</p>
+   */
+  private final String message;
+
+  /**
+   * The line number of this entry's first {@link Pattern}.
+   */
+  private final int firstLineNumber;
+
+  /**
+   * The line number of the last line of this entry's message.
+   */
+  private final int lastLineNumber;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MessageCatalogEntry}.
+   *
+   * @param patterns the {@link Pattern} source code of this entry, in
+   * catalog order, mapped to the line numbers on which it appears; a
+   * copy is made; must not be {@code null} or {@linkplain
+   * Map#isEmpty() empty}
+   *
+   * @param message the message or resource bundle key selected by
+   * the supplied {@code patterns}; must not be {@code null}
+   *
+   * @param firstLineNumber the line number of the first {@link
+   * Pattern}
+   *
+   * @param lastLineNumber the line number of the last line of the
+   * message; must not be less than {@code firstLineNumber}
+   *
+   * @exception IllegalArgumentException if {@code patterns} or {@code
+   * message} is {@code null}, if {@code patterns} is empty, or if
+   * {@code lastLineNumber} is less than {@code firstLineNumber}
+   */
+  public MessageCatalogEntry(final Map<String, Integer> patterns, final String message, final int firstLineNumber, final int lastLineNumber) {
+    super();
+    if (patterns == null) {
+      throw new IllegalArgumentException("patterns", new NullPointerException("patterns"));
+    }
+    if (patterns.isEmpty()) {
+      throw new IllegalArgumentException("patterns.isEmpty()");
+    }
+    if (message == null) {
+      throw new IllegalArgumentException("message", new NullPointerException("message"));
+    }
+    if (lastLineNumber < firstLineNumber) {
+      throw new IllegalArgumentException("lastLineNumber < firstLineNumber: " + lastLineNumber + " < " + firstLineNumber);
+    }
+    this.patterns = Collections.unmodifiableMap(new LinkedHashMap<String, Integer>(patterns));
+    this.message = message;
+    this.firstLineNumber = firstLineNumber;
+    this.lastLineNumber = lastLineNumber;
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns an unmodifiable {@link Map} of the {@link Pattern} source
+   * code of this entry, in catalog order, to the line numbers on
+   * which it appears.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, non-{@linkplain Map#isEmpty() empty},
+   * unmodifiable {@link Map}
+   */
+  public final Map<String, Integer> getPatterns() {
+    return this.patterns;
+  }
+
+  /**
+   * Returns the message or resource bundle key selected by this
+   * entry's {@link Pattern}s, exactly as it appears in the catalog.
+   * Multiple lines are separated by the platform's line separator.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} message or resource bundle key
+   */
+  public final String getMessage() {
+    return this.message;
+  }
+
+  /**
+   * Returns the line number of this entry's first {@link Pattern}.
+   *
+   * @return the line number of this entry's first {@link Pattern}
+   */
+  public final int getFirstLineNumber() {
+    return this.firstLineNumber;
+  }
+
+  /**
+   * Returns the line number of the last line of this entry's
+   * message.
+   *
+   * @return the line number of the last line of this entry's message
+   */
+  public final int getLastLineNumber() {
+    return this.lastLineNumber;
+  }
+
+  /**
+   * Returns a hashcode for this {@link MessageCatalogEntry}.
+   *
+   * @return a hashcode for this {@link MessageCatalogEntry}
+   */
+  @Override
+  public final int hashCode() {
+    int result = 17;
+    result = result * 37 + this.patterns.hashCode();
+    result = result * 37 + this.message.hashCode();
+    result = result * 37 + this.firstLineNumber;
+    result = result * 37 + this.lastLineNumber;
+    return result;
+  }
+
+  /**
+   * Returns {@code true} if the supplied {@link Object} is equal to
+   * this {@link MessageCatalogEntry}.
+   *
+   * @param other the {@link Object} to test; may be {@code null}
+   *
+   * @return {@code true} if the supplied {@link Object} is equal to
+   * this {@link MessageCatalogEntry}; {@code false} otherwise
+   */
+  @Override
+  public final boolean equals(final Object other) {
+    if (other == this) {
+      return true;
+    } else if (other instanceof MessageCatalogEntry) {
+      final MessageCatalogEntry her = (MessageCatalogEntry)other;
+      return
+        this.firstLineNumber == her.firstLineNumber &&
+        this.lastLineNumber == her.lastLineNumber &&
+        this.message.equals(her.message) &&
+        this.patterns.equals(her.patterns);
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns a non-{@code null} {@link String} representation of this
+   * {@link MessageCatalogEntry}.
+   *
+   * @return a non-{@code null} {@link String}
+   */
+  @Override
+  public final String toString() {
+    return "lines " + this.firstLineNumber + "-" + this.lastLineNumber + ": " + this.patterns.keySet() + " --> " + this.message;
+  }
+
+}
@@ -0,0 +1,75 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.IOException;
+
+import java.text.ParseException;
+
+/**
+ * Receives {@link MessageCatalogEntry} instances, one at a time and
+ * in catalog order, as a {@link MessageFactoryReader} {@linkplain
+ * MessageFactoryReader#parse(MessageCatalogHandler) parses} a textual
+ * message catalog.
+ *
+ * <p>Because each entry is reported as soon as it has been read, a
+ * {@link MessageCatalogHandler} can process catalogs without holding
+ * them in memory, and can stop parsing early by returning {@code
+ * false} from its {@link #handle(MessageCatalogEntry)} method.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactoryReader#parse(MessageCatalogHandler)
+ *
+ * @see MessageCatalogEntry
+ */
+public interface MessageCatalogHandler {
+
+  /**
+   * Handles the supplied {@link MessageCatalogEntry} and returns
+   * {@code true} if parsing should continue.
+   *
+   * <p>Any exception thrown by this method stops parsing and is
+   * propagated to the caller of the {@link
+   * MessageFactoryReader#parse(MessageCatalogHandler)} method.</p>
+   *
+   * @param entry the {@link MessageCatalogEntry} that has just been
+   * read; will never be {@code null}
+   *
+   * @return {@code true} if parsing should continue; {@code false} if
+   * it should stop without reading the rest of the catalog
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if the supplied {@link
+   * MessageCatalogEntry} is invalid
+   */
+  public boolean handle(final MessageCatalogEntry entry) throws IOException, ParseException;
+
+}
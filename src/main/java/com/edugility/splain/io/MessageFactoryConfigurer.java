@@ -0,0 +1,113 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.IOException;
+
+import java.text.ParseException;
+
+import com.edugility.splain.MessageFactory;
+
+/**
+ * Configures each {@link MessageFactoryReader} a {@link
+ * ReloadableMessageFactory} creates, and each {@link MessageFactory}
+ * it reads, before that {@link MessageFactory} is {@linkplain
+ * MessageFactory#freeze() frozen} and installed.
+ *
+ * <p>Because a reload replaces the current {@link MessageFactory}
+ * with an entirely new one, settings applied to the {@link
+ * MessageFactory} returned by {@link ReloadableMessageFactory#get()}
+ * would be lost at the next reload, and most of them cannot be
+ * applied to a frozen {@link MessageFactory} at all.  A {@link
+ * MessageFactoryConfigurer} is called on every read, including the
+ * first, so that settings such as {@linkplain
+ * MessageFactoryReader#setLazyCompilation(boolean) lazy
+ * compilation}, a {@linkplain
+ * MessageFactoryReader#setPatternCache(com.edugility.splain.PatternCache)
+ * pattern cache}, a {@linkplain
+ * MessageFactory#setSelectorCache(com.edugility.splain.SelectorCache)
+ * selector cache}, the {@linkplain
+ * MessageFactory#setAutomatonEnabled(boolean) automaton}, {@linkplain
+ * MessageFactory#setMatchMetrics(com.edugility.splain.MatchMetrics)
+ * metrics}, {@linkplain MessageFactory#setAdaptiveOrdering(boolean)
+ * adaptive ordering} and {@linkplain
+ * MessageFactory#warmUp(java.util.Collection) warming up} apply to
+ * every version of the catalog.</p>
+ *
+ * <p>Implementations must be safe for use by whichever {@link
+ * Thread} performs a reload.</p>
+ *
+ * @param <T> the type of {@link Object} matched by the {@link
+ * MessageFactory} instances being configured
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see ReloadableMessageFactory#ReloadableMessageFactory(java.net.URI,
+ * ClassLoader, java.util.ResourceBundle.Control,
+ * MessageFactoryConfigurer)
+ */
+public interface MessageFactoryConfigurer<T> {
+
+  /**
+   * Configures the supplied {@link MessageFactoryReader} before it
+   * {@linkplain MessageFactoryReader#read() reads} the message
+   * catalog.
+   *
+   * <p>Any exception thrown by this method causes the read to
+   * fail.</p>
+   *
+   * @param reader the {@link MessageFactoryReader} that is about to
+   * read the message catalog; will never be {@code null}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if configuration fails because of the
+   * content of the message catalog
+   */
+  public void configureReader(final MessageFactoryReader reader) throws IOException, ParseException;
+
+  /**
+   * Configures the supplied {@link MessageFactory}, which has just
+   * been read and has not yet been {@linkplain MessageFactory#freeze()
+   * frozen}.
+   *
+   * <p>Any exception thrown by this method causes the read to fail,
+   * and the supplied {@link MessageFactory} is discarded.</p>
+   *
+   * @param messageFactory the {@link MessageFactory} that has just
+   * been read; will never be {@code null}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if configuration fails because of the
+   * content of the message catalog
+   */
+  public void configureMessageFactory(final MessageFactory<T> messageFactory) throws IOException, ParseException;
+
+}
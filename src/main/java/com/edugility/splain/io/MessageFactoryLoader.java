@@ -0,0 +1,671 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import java.net.URISyntaxException;
+import java.net.URL;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.ResourceBundle;
+import java.util.ResourceBundle.Control;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.edugility.objexj.Pattern;
+
+import com.edugility.splain.MessageFactory;
+import com.edugility.splain.PatternCache;
+import com.edugility.splain.ResourceBundleKey;
+
+/**
+ * Creates a single {@link MessageFactory} from every message catalog
+ * resource with a given name that is visible to a {@link
+ * ClassLoader}.
+ *
+ * <p>Applications assembled from many libraries often ship one
+ * message catalog per library under a common resource name.  A
+ * {@link MessageFactoryReader} created with the {@link
+ * MessageFactoryReader#MessageFactoryReader(String, ClassLoader,
+ * ResourceBundle.Control)} constructor reads only the first of them.
+ * A {@link MessageFactoryLoader} instead {@linkplain
+ * ClassLoader#getResources(String) finds all of them}, {@linkplain
+ * MessageFactoryReader#parse(MessageCatalogHandler) parses} and
+ * {@linkplain Pattern#compile(String) compiles} them, optionally in
+ * parallel, and merges them into one {@link MessageFactory}.</p>
+ *
+ * <p>Catalogs are merged in priority order: all entries of a catalog
+ * precede those of any catalog of lower priority, and so are
+ * considered first by the {@link MessageFactory#getMessage(List,
+ * Locale)} method.  By default, priority follows the order in which
+ * the {@link ClassLoader} returns the resources, which is normally
+ * classpath order.  A different, deterministic order may be imposed
+ * by {@linkplain #setComparator(Comparator) supplying a
+ * <code>Comparator</code>}.  If the same {@link Pattern} source code
+ * selects the same {@link ResourceBundleKey} in more than one catalog,
+ * only its first occurrence is kept.</p>
+ *
+ * <p>{@link MessageFactoryLoader} instances are not safe for
+ * concurrent use by multiple {@link Thread}s.</p>
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactoryReader
+ */
+public class MessageFactoryLoader {
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The name of the message catalog resources to load.  This field
+   * is never {@code null}.
+   */
+  private final String resourceName;
+
+  /**
+   * The {@link ClassLoader} used to find message catalog resources
+   * and to load {@link ResourceBundle}s.  This field is never {@code
+   * null}.
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * A {@link Control} for loading {@link ResourceBundle}s.  This
+   * field is never {@code null}.
+   */
+  private final Control control;
+
+  /**
+   * A {@link Comparator} establishing the priority order of message
+   * catalog resources.  This field may be {@code null}, in which
+   * case resources are prioritized in the order in which they are
+   * found.
+   */
+  private Comparator<? super URL> comparator;
+
+  /**
+   * Whether {@link MessageFactory} instances produced by this {@link
+   * MessageFactoryLoader} defer {@linkplain Pattern#compile(String)
+   * compilation} of their {@link Pattern}s.
+   */
+  private boolean lazyCompilation;
+
+  /**
+   * The {@link PatternCache} used to compile {@link Pattern}s, and
+   * installed in {@link MessageFactory} instances produced by this
+   * {@link MessageFactoryLoader}.
+   *
+   * <p>This field may be {@code null}, in which case each {@link
+   * Pattern} is compiled afresh.</p>
+   *
+   * @see #getPatternCache()
+   *
+   * @see #setPatternCache(PatternCache)
+   */
+  private PatternCache patternCache;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link MessageFactoryLoader}.
+   *
+   * <p>This constructor calls the {@link
+   * #MessageFactoryLoader(String, ClassLoader, ResourceBundle.Control)}
+   * constructor, passing {@code resourceName} as the first argument
+   * and {@code null} for the remaining arguments.</p>
+   *
+   * @param resourceName the name of the message catalog resources to
+   * load; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code resourceName} is
+   * {@code null}
+   */
+  public MessageFactoryLoader(final String resourceName) {
+    this(resourceName, null, null);
+  }
+
+  /**
+   * Creates a new {@link MessageFactoryLoader}.
+   *
+   * @param resourceName the name of the message catalog resources to
+   * load, as accepted by the {@link ClassLoader#getResources(String)}
+   * method; must not be {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} used to find resources
+   * and to load {@link ResourceBundle}s; may be {@code null} in which
+   * case the {@linkplain Thread#getContextClassLoader() context
+   * <code>ClassLoader</code>} will be used instead
+   *
+   * @param rbControl a {@link Control} to use when {@linkplain
+   * ResourceBundle#getBundle(String, Locale, ClassLoader,
+   * ResourceBundle.Control) loading <code>ResourceBundle</code>s}; if
+   * {@code null} then {@link Control#getControl(List)
+   * Control.getControl(Control.FORMAT_DEFAULT)} will be used instead
+   *
+   * @exception IllegalArgumentException if {@code resourceName} is
+   * {@code null}
+   */
+  public MessageFactoryLoader(final String resourceName, ClassLoader classLoader, final Control rbControl) {
+    super();
+    if (resourceName == null) {
+      throw new IllegalArgumentException("resourceName", new NullPointerException("resourceName"));
+    }
+    this.resourceName = resourceName;
+    if (classLoader == null) {
+      classLoader = Thread.currentThread().getContextClassLoader();
+      if (classLoader == null) {
+        classLoader = this.getClass().getClassLoader();
+      }
+    }
+    assert classLoader != null;
+    this.classLoader = classLoader;
+    if (rbControl == null) {
+      this.control = Control.getControl(Control.FORMAT_DEFAULT);
+    } else {
+      this.control = rbControl;
+    }
+    this.patternCache = new PatternCache();
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the name of the message catalog resources this {@link
+   * MessageFactoryLoader} loads.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return the non-{@code null} resource name
+   */
+  public final String getResourceName() {
+    return this.resourceName;
+  }
+
+  /**
+   * Returns the {@link Comparator} establishing the priority order of
+   * message catalog resources, or {@code null} if resources are
+   * prioritized in the order in which they are found.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link Comparator}, or {@code null}
+   *
+   * @see #setComparator(Comparator)
+   */
+  public Comparator<? super URL> getComparator() {
+    return this.comparator;
+  }
+
+  /**
+   * Sets the {@link Comparator} establishing the priority order of
+   * message catalog resources.  Resources that the supplied {@link
+   * Comparator} considers smaller have higher priority; resources it
+   * considers equal retain the order in which they were found.
+   *
+   * @param comparator the {@link Comparator} to use; may be {@code
+   * null} in which case resources are prioritized in the order in
+   * which they are found
+   *
+   * @see #getComparator()
+   */
+  public void setComparator(final Comparator<? super URL> comparator) {
+    this.comparator = comparator;
+  }
+
+  /**
+   * Returns {@code true} if {@link MessageFactory} instances produced
+   * by this {@link MessageFactoryLoader} {@linkplain
+   * MessageFactory#setLazyCompilation(boolean) compile their
+   * <code>Pattern</code>s lazily}.
+   *
+   * @return {@code true} if compilation is deferred; {@code false}
+   * otherwise
+   *
+   * @see #setLazyCompilation(boolean)
+   */
+  public boolean isLazyCompilation() {
+    return this.lazyCompilation;
+  }
+
+  /**
+   * Sets whether {@link MessageFactory} instances produced by this
+   * {@link MessageFactoryLoader} {@linkplain
+   * MessageFactory#setLazyCompilation(boolean) compile their
+   * <code>Pattern</code>s lazily}.
+   *
+   * @param lazyCompilation whether to defer compilation
+   *
+   * @see #isLazyCompilation()
+   */
+  public void setLazyCompilation(final boolean lazyCompilation) {
+    this.lazyCompilation = lazyCompilation;
+  }
+
+  /**
+   * Returns the {@link PatternCache} used to compile {@link
+   * Pattern}s, and installed in {@link MessageFactory} instances
+   * produced by this {@link MessageFactoryLoader}, or {@code null} if there is
+   * none.
+   *
+   * <p>By default each {@link MessageFactoryLoader} has a {@linkplain
+   * PatternCache#PatternCache() <code>PatternCache</code> of its own}.
+   * {@link MessageFactoryLoader}s whose catalogs are loaded by the same {@link
+   * ClassLoader} may opt in to sharing {@link Pattern}s by {@linkplain
+   * #setPatternCache(PatternCache) installing} a common {@link
+   * PatternCache}, such as the {@linkplain PatternCache#getInstance()
+   * shared one}.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link PatternCache}, or {@code null}
+   *
+   * @see #setPatternCache(PatternCache)
+   */
+  public PatternCache getPatternCache() {
+    return this.patternCache;
+  }
+
+  /**
+   * Sets the {@link PatternCache} used to compile {@link Pattern}s,
+   * and installed in {@link MessageFactory} instances produced by
+   * this {@link MessageFactoryLoader}.
+   *
+   * @param patternCache the {@link PatternCache} to use; may be
+   * {@code null} in which case each {@link Pattern} will be compiled
+   * afresh
+   *
+   * @see #getPatternCache()
+   *
+   * @see MessageFactory#setPatternCache(PatternCache)
+   */
+  public void setPatternCache(final PatternCache patternCache) {
+    this.patternCache = patternCache;
+  }
+
+  /**
+   * Returns a {@link List} of {@link URL}s identifying every message
+   * catalog resource this {@link MessageFactoryLoader} will load, in
+   * priority order, highest priority first.  A resource found more
+   * than once is listed only once.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null}, mutable {@link List} of {@link URL}s
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @see ClassLoader#getResources(String)
+   *
+   * @see #setComparator(Comparator)
+   */
+  public List<URL> getResources() throws IOException {
+    final List<URL> returnValue = new ArrayList<URL>();
+    final Set<String> seen = new HashSet<String>();
+    final Enumeration<URL> resources = this.classLoader.getResources(this.getResourceName());
+    if (resources != null) {
+      while (resources.hasMoreElements()) {
+        final URL url = resources.nextElement();
+        if (url != null && seen.add(url.toExternalForm())) {
+          returnValue.add(url);
+        }
+      }
+    }
+    final Comparator<? super URL> comparator = this.getComparator();
+    if (comparator != null) {
+      Collections.sort(returnValue, comparator);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Loads every message catalog resource {@linkplain #getResources()
+   * found} by this {@link MessageFactoryLoader}, one after another on
+   * the calling {@link Thread}, and merges them into a new {@link
+   * MessageFactory}.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of objects new {@link MessageFactory}
+   * instances produced from this method will work with
+   *
+   * @return a new {@link MessageFactory}; never {@code null}; empty
+   * if no resources were found
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception IllegalStateException if a message catalog is
+   * malformed
+   *
+   * @exception ParseException if {@link Pattern} source code could
+   * not be {@linkplain Pattern#compile(String) compiled}; its message
+   * will include the offending resource and line number
+   *
+   * @see #load(ExecutorService)
+   */
+  public <T> MessageFactory<T> load() throws IOException, ParseException {
+    return this.load(null);
+  }
+
+  /**
+   * Loads every message catalog resource {@linkplain #getResources()
+   * found} by this {@link MessageFactoryLoader} and merges them into a
+   * new {@link MessageFactory}, parsing and compiling each resource in
+   * a task submitted to the supplied {@link ExecutorService}.
+   *
+   * <p>The result does not depend on the order in which the tasks
+   * complete: catalogs are always merged in priority order.  This
+   * method waits for all tasks to complete.  The supplied {@link
+   * ExecutorService} is not shut down.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of objects new {@link MessageFactory}
+   * instances produced from this method will work with
+   *
+   * @param executor the {@link ExecutorService} to which loading
+   * tasks will be submitted; may be {@code null} in which case each
+   * resource will be loaded on the calling {@link Thread}
+   *
+   * @return a new {@link MessageFactory}; never {@code null}; empty
+   * if no resources were found
+   *
+   * @exception IOException if an input or output error occurs, or if
+   * the calling {@link Thread} was interrupted while waiting for
+   * loading to complete
+   *
+   * @exception IllegalStateException if a message catalog is
+   * malformed
+   *
+   * @exception ParseException if {@link Pattern} source code could
+   * not be {@linkplain Pattern#compile(String) compiled}; its message
+   * will include the offending resource and line number
+   *
+   * @see #load()
+   */
+  public <T> MessageFactory<T> load(final ExecutorService executor) throws IOException, ParseException {
+    final List<URL> urls = this.getResources();
+    assert urls != null;
+    final boolean lazy = this.isLazyCompilation();
+    final List<Catalog<T>> catalogs = new ArrayList<Catalog<T>>(urls.size());
+    if (executor == null) {
+      for (final URL url : urls) {
+        catalogs.add(this.<T>parse(url, lazy));
+      }
+    } else {
+      final List<Future<Catalog<T>>> futures = new ArrayList<Future<Catalog<T>>>(urls.size());
+      try {
+        for (final URL url : urls) {
+          futures.add(executor.submit(new Callable<Catalog<T>>() {
+              @Override
+              public final Catalog<T> call() throws IOException, ParseException {
+                return parse(url, lazy);
+              }
+            }));
+        }
+        for (final Future<Catalog<T>> future : futures) {
+          try {
+            catalogs.add(future.get());
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            final IOException throwMe = new InterruptedIOException("Interrupted while loading message catalogs");
+            throwMe.initCause(interruptedException);
+            throw throwMe;
+          } catch (final ExecutionException executionException) {
+            final Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+              throw (IOException)cause;
+            } else if (cause instanceof ParseException) {
+              throw (ParseException)cause;
+            } else if (cause instanceof RuntimeException) {
+              throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+              throw (Error)cause;
+            } else {
+              throw new IllegalStateException(cause);
+            }
+          }
+        }
+      } finally {
+        for (final Future<?> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+    final MessageFactory<T> mf = new MessageFactory<T>();
+    mf.setLazyCompilation(lazy);
+    mf.setPatternCache(this.getPatternCache());
+    this.merge(mf, catalogs);
+    return mf;
+  }
+
+  /**
+   * Parses the message catalog identified by the supplied {@link URL}
+   * and, unless {@code lazy} is {@code true}, {@linkplain
+   * Pattern#compile(String) compiles} its {@link Pattern}s.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param <T> the type of objects the {@link Pattern}s will work
+   * with
+   *
+   * @param url the {@link URL} of the message catalog; must not be
+   * {@code null}
+   *
+   * @param lazy whether to skip compilation
+   *
+   * @return a non-{@code null} {@link Catalog}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if {@link Pattern} source code could
+   * not be compiled
+   */
+  private final <T> Catalog<T> parse(final URL url, final boolean lazy) throws IOException, ParseException {
+    assert url != null;
+    final MessageFactoryReader reader;
+    try {
+      reader = new MessageFactoryReader(url.toURI(), this.classLoader, this.control);
+    } catch (final URISyntaxException uriSyntaxException) {
+      throw new IOException(uriSyntaxException);
+    }
+    final Catalog<T> catalog = new Catalog<T>(url);
+    try {
+      reader.parse(new MessageCatalogHandler() {
+          @Override
+          public final boolean handle(final MessageCatalogEntry entry) throws ParseException {
+            catalog.entries.add(entry);
+            if (!lazy) {
+              for (final Entry<String, Integer> pattern : entry.getPatterns().entrySet()) {
+                final String source = pattern.getKey();
+                if (!catalog.patterns.containsKey(source)) {
+                  try {
+                    final PatternCache patternCache = getPatternCache();
+                    if (patternCache == null) {
+                      catalog.patterns.put(source, Pattern.<T>compile(source));
+                    } else {
+                      catalog.patterns.put(source, patternCache.<T>getPattern(source));
+                    }
+                  } catch (final ParseException parseException) {
+                    final ParseException throwMe = new ParseException("Could not compile pattern \"" + source + "\" at line " + pattern.getValue() + " of " + url + ": " + parseException.getMessage(), parseException.getErrorOffset());
+                    throwMe.initCause(parseException);
+                    throw throwMe;
+                  }
+                }
+              }
+            }
+            return true;
+          }
+        });
+    } finally {
+      reader.close();
+    }
+    return catalog;
+  }
+
+  /**
+   * Adds the entries of the supplied {@link Catalog}s, in order, to
+   * the supplied {@link MessageFactory}, skipping any {@link Pattern}
+   * source code that has already been added under the same {@link
+   * ResourceBundleKey}.
+   *
+   * @param <T> the type of objects the supplied {@link
+   * MessageFactory} works with
+   *
+   * @param mf the {@link MessageFactory} to add to; must not be
+   * {@code null}
+   *
+   * @param catalogs the {@link Catalog}s to merge, in priority order;
+   * must not be {@code null}
+   *
+   * @exception ParseException if {@link Pattern} source code could
+   * not be compiled
+   */
+  private final <T> void merge(final MessageFactory<T> mf, final List<Catalog<T>> catalogs) throws ParseException {
+    assert mf != null;
+    assert catalogs != null;
+    final Map<ResourceBundleKey, Set<String>> added = new HashMap<ResourceBundleKey, Set<String>>();
+    for (final Catalog<T> catalog : catalogs) {
+      for (final MessageCatalogEntry entry : catalog.entries) {
+        final ResourceBundleKey key = ResourceBundleKey.valueOf(this.classLoader, this.control, entry.getMessage());
+        assert key != null;
+        Set<String> sources = added.get(key);
+        if (sources == null) {
+          sources = new HashSet<String>();
+          added.put(key, sources);
+        }
+        for (final String source : entry.getPatterns().keySet()) {
+          if (sources.add(source)) {
+            final Pattern<T> pattern = catalog.patterns.get(source);
+            if (pattern == null) {
+              mf.addPattern(key, source);
+            } else {
+              mf.addPattern(key, source, pattern);
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  /*
+   * Inner and nested classes.
+   */
+
+
+  /**
+   * A parsed message catalog awaiting merging.
+   *
+   * @param <T> the type of objects its {@link Pattern}s work with
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class Catalog<T> {
+
+    /**
+     * The {@link URL} from which this {@link Catalog} was read.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final URL url;
+
+    /**
+     * The {@link MessageCatalogEntry} instances of this {@link
+     * Catalog}, in catalog order.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final List<MessageCatalogEntry> entries;
+
+    /**
+     * The compiled {@link Pattern}s of this {@link Catalog}, indexed
+     * by source code.  Empty if compilation was deferred.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Map<String, Pattern<T>> patterns;
+
+    /**
+     * Creates a new, empty {@link Catalog}.
+     *
+     * @param url the {@link URL} from which the new {@link Catalog}
+     * is read; must not be {@code null}
+     */
+    private Catalog(final URL url) {
+      super();
+      assert url != null;
+      this.url = url;
+      this.entries = new ArrayList<MessageCatalogEntry>();
+      this.patterns = new HashMap<String, Pattern<T>>();
+    }
+
+    /**
+     * Returns a non-{@code null} {@link String} representation of
+     * this {@link Catalog}.
+     *
+     * @return a non-{@code null} {@link String}
+     */
+    @Override
+    public final String toString() {
+      return this.url.toExternalForm();
+    }
+
+  }
+
+}
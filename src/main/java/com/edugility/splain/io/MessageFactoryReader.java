@@ -31,6 +31,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.BufferedReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
@@ -43,18 +44,24 @@ import java.sql.SQLException; // for javadoc only
 
 import java.text.ParseException;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.ResourceBundle.Control;
-import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.edugility.objexj.Pattern;
 
 import com.edugility.splain.MessageFactory;
+import com.edugility.splain.PatternCache;
 import com.edugility.splain.ResourceBundleKey;
 
 /**
@@ -115,6 +122,31 @@ public class MessageFactoryReader implements Closeable {
    */
   private final Control control;
 
+  /**
+   * Whether {@link MessageFactory} instances produced by the {@link
+   * #read(ExecutorService)} method defer {@linkplain
+   * Pattern#compile(String) compilation} of their {@link Pattern}s.
+   *
+   * @see #isLazyCompilation()
+   *
+   * @see #setLazyCompilation(boolean)
+   */
+  private boolean lazyCompilation;
+
+  /**
+   * The {@link PatternCache} used to compile {@link Pattern}s, and
+   * installed in {@link MessageFactory} instances produced by this
+   * {@link MessageFactoryReader}.
+   *
+   * <p>This field may be {@code null}, in which case each {@link
+   * Pattern} is compiled afresh.</p>
+   *
+   * @see #getPatternCache()
+   *
+   * @see #setPatternCache(PatternCache)
+   */
+  private PatternCache patternCache;
+
 
   /*
    * Constructors.
@@ -189,6 +221,7 @@ public class MessageFactoryReader implements Closeable {
     } else {
       this.control = rbControl;
     }
+    this.patternCache = new PatternCache();
   }
 
   /**
@@ -254,6 +287,7 @@ public class MessageFactoryReader implements Closeable {
     } else {
       this.control = rbControl;
     }
+    this.patternCache = new PatternCache();
   }
 
   /**
@@ -319,6 +353,7 @@ public class MessageFactoryReader implements Closeable {
     } else {
       this.control = rbControl;
     }
+    this.patternCache = new PatternCache();
   }
 
 
@@ -340,6 +375,83 @@ public class MessageFactoryReader implements Closeable {
     return this.control;
   }
 
+  /**
+   * Returns {@code true} if {@link MessageFactory} instances produced
+   * by this {@link MessageFactoryReader} {@linkplain
+   * MessageFactory#setLazyCompilation(boolean) compile their
+   * <code>Pattern</code>s lazily}.
+   *
+   * @return {@code true} if compilation is deferred; {@code false}
+   * otherwise
+   *
+   * @see #setLazyCompilation(boolean)
+   */
+  public boolean isLazyCompilation() {
+    return this.lazyCompilation;
+  }
+
+  /**
+   * Sets whether {@link MessageFactory} instances produced by this
+   * {@link MessageFactoryReader} {@linkplain
+   * MessageFactory#setLazyCompilation(boolean) compile their
+   * <code>Pattern</code>s lazily}.
+   *
+   * <p>When lazy compilation is enabled, the {@link
+   * #read(ExecutorService)} method does not compile any {@link
+   * Pattern}s, ignores its {@link ExecutorService}, and does not
+   * report errors in {@link Pattern} source code.  Such errors are
+   * instead reported when the offending {@link Pattern} is first
+   * evaluated.</p>
+   *
+   * @param lazyCompilation whether to defer compilation
+   *
+   * @see #isLazyCompilation()
+   */
+  public void setLazyCompilation(final boolean lazyCompilation) {
+    this.lazyCompilation = lazyCompilation;
+  }
+
+  /**
+   * Returns the {@link PatternCache} used to compile {@link
+   * Pattern}s, and installed in {@link MessageFactory} instances
+   * produced by this {@link MessageFactoryReader}, or {@code null} if there is
+   * none.
+   *
+   * <p>By default each {@link MessageFactoryReader} has a {@linkplain
+   * PatternCache#PatternCache() <code>PatternCache</code> of its own}.
+   * {@link MessageFactoryReader}s whose catalogs are loaded by the same {@link
+   * ClassLoader} may opt in to sharing {@link Pattern}s by {@linkplain
+   * #setPatternCache(PatternCache) installing} a common {@link
+   * PatternCache}, such as the {@linkplain PatternCache#getInstance()
+   * shared one}.</p>
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return a {@link PatternCache}, or {@code null}
+   *
+   * @see #setPatternCache(PatternCache)
+   */
+  public PatternCache getPatternCache() {
+    return this.patternCache;
+  }
+
+  /**
+   * Sets the {@link PatternCache} used to compile {@link Pattern}s,
+   * and installed in {@link MessageFactory} instances produced by
+   * this {@link MessageFactoryReader}.
+   *
+   * @param patternCache the {@link PatternCache} to use; may be
+   * {@code null} in which case each {@link Pattern} will be compiled
+   * afresh
+   *
+   * @see #getPatternCache()
+   *
+   * @see MessageFactory#setPatternCache(PatternCache)
+   */
+  public void setPatternCache(final PatternCache patternCache) {
+    this.patternCache = patternCache;
+  }
+
   /**
    * Reads from this {@link MessageFactoryReader}'s {@linkplain
    * #MessageFactoryReader(Reader, ClassLoader,
@@ -425,13 +537,138 @@ public class MessageFactoryReader implements Closeable {
    * @exception IllegalStateException if parsing could not be
    * completed
    *
-   * @exception ParseException if the source code could not be parsed
+   * @exception ParseException if the source code could not be parsed;
+   * its message will include the line number of the offending pattern
+   *
+   * @see #read(ExecutorService)
    */
   public <T> MessageFactory<T> read() throws IOException, ParseException {
-    assert this.reader != null;
+    return this.read(null);
+  }
+
+  /**
+   * Reads from this {@link MessageFactoryReader}'s {@linkplain
+   * #MessageFactoryReader(Reader, ClassLoader,
+   * ResourceBundle.Control) affiliated <code>Reader</code>} and
+   * builds a {@link MessageFactoryReader} from the results,
+   * {@linkplain Pattern#compile(String) compiling} {@link Pattern}s in
+   * parallel using the supplied {@link ExecutorService}.
+   *
+   * <p>The message catalog is first parsed in its entirety, and then
+   * each {@link Pattern} is compiled by a task submitted to the
+   * supplied {@link ExecutorService}.  The compiled {@link Pattern}s
+   * are added to the new {@link MessageFactory} in catalog order, so
+   * the result is the same as that of the {@link #read()} method.
+   * This method waits for all tasks to complete.  The supplied {@link
+   * ExecutorService} is not shut down.</p>
+   *
+   * <p>To avoid resource leaks, this {@link MessageFactoryReader}
+   * <strong>must</strong> be {@linkplain #close() closed} at some
+   * point after this method completes normally.  This method does not
+   * call the {@link #close()} method itself.</p>
+   *
+   * @param <T> the type of objects new {@link MessageFactory}
+   * instances produced from this method will work with
+   *
+   * @param executor the {@link ExecutorService} to which compilation
+   * tasks will be submitted; may be {@code null} in which case each
+   * {@link Pattern} will be compiled on the calling {@link Thread} as
+   * soon as it is parsed; ignored if {@linkplain
+   * #isLazyCompilation() lazy compilation} is enabled
+   *
+   * @return a new {@link MessageFactory}; never {@code null}
+   *
+   * @exception IOException if an input or output error occurs, or if
+   * the calling {@link Thread} was interrupted while waiting for
+   * compilation to complete
+   *
+   * @exception IllegalStateException if parsing could not be
+   * completed
+   *
+   * @exception ParseException if the source code could not be parsed;
+   * its message will include the line number of the offending pattern
+   *
+   * @see #read()
+   */
+  public <T> MessageFactory<T> read(final ExecutorService executor) throws IOException, ParseException {
     final MessageFactory<T> mf = new MessageFactory<T>();
+    mf.setLazyCompilation(this.isLazyCompilation());
+    mf.setPatternCache(this.getPatternCache());
+    final List<CatalogEntry> entries = executor == null || mf.isLazyCompilation() ? null : new ArrayList<CatalogEntry>();
+    this.parse(new MessageCatalogHandler() {
+        @Override
+        public final boolean handle(final MessageCatalogEntry entry) throws ParseException {
+          addPatterns(mf, entries, entry);
+          return true;
+        }
+      });
+    if (entries != null && !entries.isEmpty()) {
+      compile(mf, entries, executor);
+    }
+    return mf;
+  }
+
+  /**
+   * Reads from this {@link MessageFactoryReader}'s {@linkplain
+   * #MessageFactoryReader(Reader, ClassLoader,
+   * ResourceBundle.Control) affiliated <code>Reader</code>} and
+   * reports each message catalog entry to the supplied {@link
+   * MessageCatalogHandler} as soon as it has been read.
+   *
+   * <p>The format of the message catalog is described in the
+   * documentation for the {@link #read()} method.  Unlike that
+   * method, this method neither {@linkplain Pattern#compile(String)
+   * compiles} {@link Pattern}s nor resolves {@link
+   * ResourceBundleKey}s, and holds only one entry in memory at a
+   * time.  It is therefore suitable for validating, indexing or
+   * splitting catalogs too large to be loaded in their entirety.  The
+   * {@link #read(ExecutorService)} method is implemented in terms of
+   * this method.</p>
+   *
+   * <p>Parsing stops as soon as the supplied {@link
+   * MessageCatalogHandler} returns {@code false} or throws an
+   * exception, or as soon as the catalog is found to be malformed.
+   * Entries that precede a malformed portion of the catalog will
+   * already have been reported.</p>
+   *
+   * <p>To avoid resource leaks, this {@link MessageFactoryReader}
+   * <strong>must</strong> be {@linkplain #close() closed} at some
+   * point after this method completes normally.  This method does not
+   * call the {@link #close()} method itself.</p>
+   *
+   * @param handler the {@link MessageCatalogHandler} to which each
+   * {@link MessageCatalogEntry} will be reported, in catalog order;
+   * must not be {@code null}
+   *
+   * @return {@code true} if the entire catalog was read; {@code
+   * false} if the supplied {@link MessageCatalogHandler} stopped
+   * parsing early
+   *
+   * @exception IllegalArgumentException if {@code handler} is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs, or if
+   * the supplied {@link MessageCatalogHandler} throws an {@link
+   * IOException}
+   *
+   * @exception IllegalStateException if the catalog is malformed
+   *
+   * @exception ParseException if the supplied {@link
+   * MessageCatalogHandler} throws a {@link ParseException}
+   *
+   * @see MessageCatalogHandler
+   *
+   * @see #read()
+   */
+  public boolean parse(final MessageCatalogHandler handler) throws IOException, ParseException {
+    if (handler == null) {
+      throw new IllegalArgumentException("handler", new NullPointerException("handler"));
+    }
+    assert this.reader != null;
     State state = State.NORMAL;
-    final Set<Pattern<T>> patterns = new LinkedHashSet<Pattern<T>>();
+    final Map<String, Integer> patterns = new LinkedHashMap<String, Integer>();
+    int firstLineNumber = 0;
+    int lastLineNumber = 0;
     StringBuilder message = null;
     String line;
     while ((line = this.reader.readLine()) != null) {
@@ -452,7 +689,8 @@ public class MessageFactoryReader implements Closeable {
           state = State.MATCHERS;
           assert patterns.isEmpty();
           assert message == null;
-          patterns.add(Pattern.<T>compile(line));
+          firstLineNumber = reader.getLineNumber();
+          patterns.put(line, Integer.valueOf(firstLineNumber));
           break;
         }
         // end NORMAL
@@ -469,8 +707,8 @@ public class MessageFactoryReader implements Closeable {
           break;
         } else if (line.startsWith("--")) {
           state = State.MESSAGE;
-        } else {
-          patterns.add(Pattern.<T>compile(line));
+        } else if (!patterns.containsKey(line)) {
+          patterns.put(line, Integer.valueOf(reader.getLineNumber()));
         }
         break;
         // end MATCHERS
@@ -485,10 +723,13 @@ public class MessageFactoryReader implements Closeable {
           if (message != null) {
             assert message.length() > 0;
             assert !patterns.isEmpty();
-            addPatterns(mf, message.toString(), patterns);
-            patterns.clear();
+            final MessageCatalogEntry entry = new MessageCatalogEntry(patterns, message.toString(), firstLineNumber, lastLineNumber);
             message = null;
+            if (!handler.handle(entry)) {
+              return false;
+            }
           }
+          patterns.clear();
           state = State.NORMAL;
         } else {
           if (message == null) {
@@ -497,6 +738,7 @@ public class MessageFactoryReader implements Closeable {
             message.append(LS);
           }
           message.append(line);
+          lastLineNumber = reader.getLineNumber();
         }
         break;
         // end MESSAGE
@@ -508,12 +750,9 @@ public class MessageFactoryReader implements Closeable {
     }
 
     if (message != null && !patterns.isEmpty()) {
-      addPatterns(mf, message.toString(), patterns);
-      patterns.clear();
-      message = null;
+      return handler.handle(new MessageCatalogEntry(patterns, message.toString(), firstLineNumber, lastLineNumber));
     }
-
-    return mf;
+    return true;
   }
 
   private final ClassLoader getClassLoader() {
@@ -521,58 +760,64 @@ public class MessageFactoryReader implements Closeable {
   }
 
   /**
-   * {@linkplain MessageFactory#addPatterns(ResourceBundleKey, Set)
-   * Adds} the supplied {@link Collection} of {@link Pattern}s to the
-   * supplied {@link MessageFactory} under a new {@link
-   * ResourceBundleKey} {@linkplain
-   * ResourceBundleKey#valueOf(ResourceBundle, Locale,
-   * ResourceBundle.Control, String) constructed} from the supplied
-   * parameters.
+   * {@linkplain MessageFactory#addPattern(ResourceBundleKey, String)
+   * Adds} the {@link Pattern} source code of the supplied {@link
+   * MessageCatalogEntry} to the supplied {@link MessageFactory} under
+   * a new {@link ResourceBundleKey} {@linkplain
+   * ResourceBundleKey#valueOf(ClassLoader, ResourceBundle.Control,
+   * String) constructed} from its {@linkplain
+   * MessageCatalogEntry#getMessage() message}, or, if the supplied
+   * {@code entries} {@link List} is non-{@code null}, records them in
+   * it for {@linkplain #compile(MessageFactory, List, ExecutorService)
+   * later compilation}.
    *
    * @param mf the {@link MessageFactory} to which to add {@link
    * Pattern}s; must not be {@code null}
    *
-   * @param defaultResourceBundle the {@linkplain
-   * ResourceBundleKey#getResourceBundle() <code>ResourceBundle</code>
-   * component} of a {@link ResourceBundleKey}; may be {@code null}
-   *
-   * @param message the "key" component of a {@link
-   * ResourceBundleKey}; must not be {@code null}
+   * @param entries a {@link List} of {@link CatalogEntry} instances
+   * awaiting compilation; may be {@code null}
    *
-   * @param patterns a non-{@code null} {@link Collection} of {@link
-   * Pattern}s to add; must not be {@linkplain Collection#isEmpty()
-   * empty}
+   * @param entry the {@link MessageCatalogEntry} to add; must not be
+   * {@code null}
    *
-   * @exception IllegalArgumentException if {@code mf}, {@code
-   * message} or {@code patterns} is {@code null}, or if {@code
-   * patterns} is {@linkplain Collections#isEmpty() emtpy}
+   * @exception IllegalArgumentException if {@code mf} or {@code
+   * entry} is {@code null}
    *
    * @exception MissingResourceException if the {@link
-   * ResourceBundleKey#valueOf(ResourceBundle, Locale,
-   * ResourceBundle.Control, String)} method throws a {@link
-   * MissingResourceException}
+   * ResourceBundleKey#valueOf(ClassLoader, ResourceBundle.Control,
+   * String)} method throws a {@link MissingResourceException}
+   *
+   * @exception ParseException if any of the {@link Pattern}s could
+   * not be {@linkplain Pattern#compile(String) compiled}
    *
-   * @see ResourceBundleKey#valueOf(ResourceBundle, Locale,
+   * @see ResourceBundleKey#valueOf(ClassLoader,
    * ResourceBundle.Control, String)
    *
-   * @see MessageFactory#addPatterns(ResourceBundleKey, Collection)
+   * @see MessageFactory#addPattern(ResourceBundleKey, String)
    */
-  private final <T> void addPatterns(final MessageFactory<T> mf, final String message, final Collection<? extends Pattern<T>> patterns) {
+  private final <T> void addPatterns(final MessageFactory<T> mf, final List<CatalogEntry> entries, final MessageCatalogEntry entry) throws ParseException {
     if (mf == null) {
       throw new IllegalArgumentException("mf", new NullPointerException("mf"));
     }
-    if (message == null) {
-      throw new IllegalArgumentException("message", new NullPointerException("message"));
-    }
-    if (patterns == null) {
-      throw new IllegalArgumentException("patterns", new NullPointerException("patterns"));
+    if (entry == null) {
+      throw new IllegalArgumentException("entry", new NullPointerException("entry"));
     }
-    if (patterns.isEmpty()) {
-      throw new IllegalArgumentException("patterns", new IllegalStateException("patterns.isEmpty()"));
-    }
-    final ResourceBundleKey rbKey = ResourceBundleKey.valueOf(this.getClassLoader(), this.getControl(), message);
+    final ResourceBundleKey rbKey = ResourceBundleKey.valueOf(this.getClassLoader(), this.getControl(), entry.getMessage());
     assert rbKey != null;
-    mf.addPatterns(rbKey, patterns);
+    final Map<String, Integer> patterns = entry.getPatterns();
+    assert patterns != null;
+    if (entries == null) {
+      for (final Entry<String, Integer> pattern : patterns.entrySet()) {
+        final String source = pattern.getKey();
+        try {
+          mf.addPattern(rbKey, source);
+        } catch (final ParseException parseException) {
+          throw newParseException(parseException, source, pattern.getValue().intValue());
+        }
+      }
+    } else {
+      entries.add(new CatalogEntry(rbKey, patterns));
+    }
   }
 
   /**
@@ -643,6 +888,115 @@ public class MessageFactoryReader implements Closeable {
   }
 
 
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * {@linkplain Pattern#compile(String) Compiles} the {@link Pattern}
+   * source code held by the supplied {@link CatalogEntry} instances
+   * using tasks submitted to the supplied {@link ExecutorService}, and
+   * {@linkplain MessageFactory#addPattern(ResourceBundleKey, String,
+   * Pattern) adds} the results to the supplied {@link MessageFactory}
+   * in order.
+   *
+   * @param mf the {@link MessageFactory} to which to add {@link
+   * Pattern}s; must not be {@code null}
+   *
+   * @param entries the {@link CatalogEntry} instances to compile, in
+   * catalog order; must not be {@code null}
+   *
+   * @param executor the {@link ExecutorService} to use; must not be
+   * {@code null}
+   *
+   * @exception IOException if the calling {@link Thread} was
+   * interrupted while waiting for compilation to complete
+   *
+   * @exception ParseException if any {@link Pattern} could not be
+   * compiled; if several could not be, the one appearing first in the
+   * catalog is reported
+   */
+  private static final <T> void compile(final MessageFactory<T> mf, final List<CatalogEntry> entries, final ExecutorService executor) throws IOException, ParseException {
+    assert mf != null;
+    assert entries != null;
+    assert executor != null;
+    final PatternCache patternCache = mf.getPatternCache();
+    final List<Future<Pattern<T>>> futures = new ArrayList<Future<Pattern<T>>>();
+    try {
+      for (final CatalogEntry entry : entries) {
+        for (final String source : entry.patterns.keySet()) {
+          futures.add(executor.submit(new Callable<Pattern<T>>() {
+              @Override
+              public final Pattern<T> call() throws ParseException {
+                if (patternCache == null) {
+                  return Pattern.<T>compile(source);
+                } else {
+                  return patternCache.<T>getPattern(source);
+                }
+              }
+            }));
+        }
+      }
+      int i = 0;
+      for (final CatalogEntry entry : entries) {
+        for (final Entry<String, Integer> pattern : entry.patterns.entrySet()) {
+          final Pattern<T> compiledPattern;
+          try {
+            compiledPattern = futures.get(i++).get();
+          } catch (final InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            final IOException throwMe = new InterruptedIOException("Interrupted while compiling patterns");
+            throwMe.initCause(interruptedException);
+            throw throwMe;
+          } catch (final ExecutionException executionException) {
+            final Throwable cause = executionException.getCause();
+            if (cause instanceof ParseException) {
+              throw newParseException((ParseException)cause, pattern.getKey(), pattern.getValue().intValue());
+            } else if (cause instanceof RuntimeException) {
+              throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+              throw (Error)cause;
+            } else {
+              throw new IllegalStateException(cause);
+            }
+          }
+          mf.addPattern(entry.key, pattern.getKey(), compiledPattern);
+        }
+      }
+    } finally {
+      for (final Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Returns a new {@link ParseException} that reports the supplied
+   * {@link ParseException} along with the offending {@link Pattern}
+   * source code and the line number on which it appears.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param cause the {@link ParseException} thrown by the {@link
+   * Pattern#compile(String)} method; must not be {@code null}
+   *
+   * @param source the {@link Pattern} source code that could not be
+   * compiled; may be {@code null}
+   *
+   * @param lineNumber the line number on which the {@code source}
+   * appears
+   *
+   * @return a new, non-{@code null} {@link ParseException}
+   */
+  private static final ParseException newParseException(final ParseException cause, final String source, final int lineNumber) {
+    assert cause != null;
+    final ParseException returnValue = new ParseException("Could not compile pattern \"" + source + "\" at line " + lineNumber + ": " + cause.getMessage(), cause.getErrorOffset());
+    returnValue.initCause(cause);
+    return returnValue;
+  }
+
   /*
    * Inner and nested classes.
    */
@@ -675,4 +1029,47 @@ public class MessageFactoryReader implements Closeable {
     MESSAGE
   }
 
+  /**
+   * A parsed message catalog entry whose {@link Pattern}s have yet to
+   * be compiled.
+   *
+   * @author <a href="http://about.me/lairdnelson"
+   * target="_parent">Laird Nelson</a>
+   */
+  private static final class CatalogEntry {
+
+    /**
+     * The {@link ResourceBundleKey} the {@link Pattern}s select.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final ResourceBundleKey key;
+
+    /**
+     * The {@link Pattern} source code, in catalog order, mapped to
+     * the line numbers on which it appears.
+     *
+     * <p>This field is never {@code null}.</p>
+     */
+    private final Map<String, Integer> patterns;
+
+    /**
+     * Creates a new {@link CatalogEntry}.
+     *
+     * @param key the {@link ResourceBundleKey} the {@link Pattern}s
+     * select; must not be {@code null}
+     *
+     * @param patterns the {@link Pattern} source code, in catalog
+     * order, mapped to line numbers; must not be {@code null}
+     */
+    private CatalogEntry(final ResourceBundleKey key, final Map<String, Integer> patterns) {
+      super();
+      assert key != null;
+      assert patterns != null;
+      this.key = key;
+      this.patterns = patterns;
+    }
+
+  }
+
 }
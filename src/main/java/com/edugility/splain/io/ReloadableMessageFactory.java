@@ -0,0 +1,788 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+
+import java.text.ParseException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.ResourceBundle.Control;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.edugility.splain.MessageFactory;
+
+/**
+ * A holder of a {@linkplain MessageFactory#freeze() frozen} {@link
+ * MessageFactory} that is read from a message catalog identified by
+ * a {@link URI} and that may be {@linkplain #reload() reloaded},
+ * either on demand or {@linkplain #start(long, TimeUnit)
+ * periodically} when the catalog changes.
+ *
+ * <p>A reload reads and freezes an entirely new {@link
+ * MessageFactory} and only then atomically replaces the current one
+ * with it.  Callers of {@link #get()} and {@link #getMessage(List,
+ * Locale)} therefore never block, and never see a partially built
+ * catalog.  If a reload fails for any reason, the current {@link
+ * MessageFactory} remains in place and the failure is {@linkplain
+ * #getLastReloadFailure() recorded}.</p>
+ *
+ * <p>Settings that should apply to every version of the catalog are
+ * supplied by a {@link MessageFactoryConfigurer}, which is called
+ * each time the catalog is read, before the new {@link
+ * MessageFactory} is frozen.</p>
+ *
+ * <p>{@link ReloadableMessageFactory} instances that have been
+ * {@linkplain #start(long, TimeUnit) started} must be {@linkplain
+ * #close() closed} when they are no longer needed.</p>
+ *
+ * <p>This class is safe for concurrent use by multiple {@link
+ * Thread}s.</p>
+ *
+ * @param <T> the type of {@link Object} matched by the {@link
+ * MessageFactory} this {@link ReloadableMessageFactory} holds
+ *
+ * @author <a href="http://about.me/lairdnelson"
+ * target="_parent">Laird Nelson</a>
+ *
+ * @see MessageFactoryReader
+ *
+ * @see MessageFactoryConfigurer
+ *
+ * @see MessageFactory#freeze()
+ */
+public class ReloadableMessageFactory<T> implements Closeable {
+
+
+  /*
+   * Static fields.
+   */
+
+
+  /**
+   * The {@link Logger} used by instances of this class.  This field
+   * is never {@code null}.
+   */
+  private static final Logger logger = Logger.getLogger(ReloadableMessageFactory.class.getName());
+
+
+  /*
+   * Instance fields.
+   */
+
+
+  /**
+   * The {@link URI} identifying the message catalog to read.  This
+   * field is never {@code null}.
+   */
+  private final URI uri;
+
+  /**
+   * The {@link ClassLoader} supplied to {@link MessageFactoryReader}
+   * instances.  This field may be {@code null}.
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * The {@link Control} supplied to {@link MessageFactoryReader}
+   * instances.  This field may be {@code null}.
+   */
+  private final Control control;
+
+  /**
+   * The {@link MessageFactoryConfigurer} called each time the message
+   * catalog is read.  This field may be {@code null}.
+   */
+  private final MessageFactoryConfigurer<T> configurer;
+
+  /**
+   * The current {@link MessageFactory}.  This field is never {@code
+   * null} and never holds {@code null}.
+   */
+  private final AtomicReference<MessageFactory<T>> messageFactory;
+
+  /**
+   * The most recent reload failure, or {@code null} if the most
+   * recent reload succeeded.  This field is never {@code null}.
+   */
+  private final AtomicReference<Exception> lastReloadFailure;
+
+  /**
+   * A {@link Lock} ensuring that only one reload happens at a time.
+   * This field is never {@code null}.
+   */
+  private final Lock reloadLock;
+
+  /**
+   * The {@linkplain #getLastModified() last modification time} of
+   * the message catalog when it was last read.
+   *
+   * <p>Guarded by {@link #reloadLock}.</p>
+   */
+  private long lastModified;
+
+  /**
+   * The {@link ScheduledExecutorService} created by the {@link
+   * #start(long, TimeUnit)} method.  This field may be {@code
+   * null}.
+   *
+   * <p>Guarded by {@link #reloadLock}.</p>
+   */
+  private ScheduledExecutorService ownedExecutor;
+
+  /**
+   * The {@link ScheduledFuture} representing periodic reloading.
+   * This field may be {@code null}.
+   *
+   * <p>Guarded by {@link #reloadLock}.</p>
+   */
+  private ScheduledFuture<?> watch;
+
+
+  /*
+   * Constructors.
+   */
+
+
+  /**
+   * Creates a new {@link ReloadableMessageFactory} and reads the
+   * message catalog identified by the supplied {@link URI} for the
+   * first time.
+   *
+   * <p>This constructor calls the {@link
+   * #ReloadableMessageFactory(URI, ClassLoader,
+   * ResourceBundle.Control)} constructor, passing {@code uri} as the
+   * first argument and {@code null} for the remaining arguments.</p>
+   *
+   * @param uri the {@link URI} identifying the message catalog; must
+   * not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code uri} is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if the message catalog could not be
+   * parsed
+   */
+  public ReloadableMessageFactory(final URI uri) throws IOException, ParseException {
+    this(uri, null, null);
+  }
+
+  /**
+   * Creates a new {@link ReloadableMessageFactory} and reads the
+   * message catalog identified by the supplied {@link URI} for the
+   * first time.
+   *
+   * @param uri the {@link URI} identifying the message catalog; must
+   * not be {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} to pass to the {@link
+   * MessageFactoryReader#MessageFactoryReader(URI, ClassLoader,
+   * ResourceBundle.Control)} constructor; may be {@code null}
+   *
+   * @param rbControl the {@link Control} to pass to the {@link
+   * MessageFactoryReader#MessageFactoryReader(URI, ClassLoader,
+   * ResourceBundle.Control)} constructor; may be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code uri} is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if the message catalog could not be
+   * parsed
+   */
+  public ReloadableMessageFactory(final URI uri, final ClassLoader classLoader, final Control rbControl) throws IOException, ParseException {
+    this(uri, classLoader, rbControl, null);
+  }
+
+  /**
+   * Creates a new {@link ReloadableMessageFactory} and reads the
+   * message catalog identified by the supplied {@link URI} for the
+   * first time, configuring it with the supplied {@link
+   * MessageFactoryConfigurer}.
+   *
+   * @param uri the {@link URI} identifying the message catalog; must
+   * not be {@code null}
+   *
+   * @param classLoader the {@link ClassLoader} to pass to the {@link
+   * MessageFactoryReader#MessageFactoryReader(URI, ClassLoader,
+   * ResourceBundle.Control)} constructor; may be {@code null}
+   *
+   * @param rbControl the {@link Control} to pass to the {@link
+   * MessageFactoryReader#MessageFactoryReader(URI, ClassLoader,
+   * ResourceBundle.Control)} constructor; may be {@code null}
+   *
+   * @param configurer the {@link MessageFactoryConfigurer} to call
+   * each time the message catalog is read, including now; may be
+   * {@code null}
+   *
+   * @exception IllegalArgumentException if {@code uri} is {@code
+   * null}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if the message catalog could not be
+   * parsed
+   */
+  public ReloadableMessageFactory(final URI uri, final ClassLoader classLoader, final Control rbControl, final MessageFactoryConfigurer<T> configurer) throws IOException, ParseException {
+    super();
+    if (uri == null) {
+      throw new IllegalArgumentException("uri", new NullPointerException("uri"));
+    }
+    this.uri = uri;
+    this.classLoader = classLoader;
+    this.control = rbControl;
+    this.configurer = configurer;
+    this.reloadLock = new ReentrantLock();
+    this.lastReloadFailure = new AtomicReference<Exception>();
+    this.lastModified = this.getLastModified();
+    this.messageFactory = new AtomicReference<MessageFactory<T>>(this.read());
+  }
+
+
+  /*
+   * Instance methods.
+   */
+
+
+  /**
+   * Returns the {@link URI} identifying the message catalog this
+   * {@link ReloadableMessageFactory} reads.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a non-{@code null} {@link URI}
+   */
+  public final URI getURI() {
+    return this.uri;
+  }
+
+  /**
+   * Returns the current {@linkplain MessageFactory#freeze() frozen}
+   * {@link MessageFactory}.
+   *
+   * <p>This method never returns {@code null} and never blocks.</p>
+   *
+   * @return a non-{@code null}, frozen {@link MessageFactory}
+   */
+  public final MessageFactory<T> get() {
+    return this.messageFactory.get();
+  }
+
+  /**
+   * Calls the {@link MessageFactory#getMessage(List, Locale)} method
+   * on the {@linkplain #get() current <code>MessageFactory</code>}
+   * and returns its result.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s to match; may be
+   * {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @return a message, or {@code null}
+   *
+   * @see MessageFactory#getMessage(List, Locale)
+   */
+  public String getMessage(final List<? extends T> input, final Locale locale) {
+    return this.get().getMessage(input, locale);
+  }
+
+  /**
+   * Calls the {@link MessageFactory#getMessage(List, Locale, String)}
+   * method on the {@linkplain #get() current
+   * <code>MessageFactory</code>} and returns its result.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s to match; may be
+   * {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param defaultValue the value to return if no message could be
+   * found; may be {@code null}
+   *
+   * @return a message, or the supplied {@code defaultValue}
+   *
+   * @see MessageFactory#getMessage(List, Locale, String)
+   */
+  public String getMessage(final List<? extends T> input, final Locale locale, final String defaultValue) {
+    return this.get().getMessage(input, locale, defaultValue);
+  }
+
+  /**
+   * Calls the {@link MessageFactory#getMessageAsync(List, Locale,
+   * Executor)} method on the {@linkplain #get() current
+   * <code>MessageFactory</code>} and returns its result.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param input the {@link List} of {@link Object}s to match; may be
+   * {@code null}
+   *
+   * @param locale the {@link Locale} for which a message should be
+   * returned; may be {@code null}
+   *
+   * @param executor the {@link Executor} that will select and format
+   * the message; may be {@code null}
+   *
+   * @return a non-{@code null} {@link CompletableFuture}
+   *
+   * @see MessageFactory#getMessageAsync(List, Locale, Executor)
+   */
+  public CompletableFuture<String> getMessageAsync(final List<? extends T> input, final Locale locale, final Executor executor) {
+    return this.get().getMessageAsync(input, locale, executor);
+  }
+
+  /**
+   * Calls the {@link MessageFactory#getMessages(Iterable, Locale)}
+   * method on the {@linkplain #get() current
+   * <code>MessageFactory</code>} and returns its result.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param inputs an {@link Iterable} of {@link List}s of {@link
+   * Object}s to match; must not be {@code null}
+   *
+   * @param locale the {@link Locale} for which messages should be
+   * returned; may be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of messages
+   *
+   * @see MessageFactory#getMessages(Iterable, Locale)
+   */
+  public List<String> getMessages(final Iterable<? extends List<? extends T>> inputs, final Locale locale) {
+    return this.get().getMessages(inputs, locale);
+  }
+
+  /**
+   * Calls the {@link MessageFactory#getMessages(Iterable, Locale,
+   * ExecutorService)} method on the {@linkplain #get() current
+   * <code>MessageFactory</code>} and returns its result.
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @param inputs an {@link Iterable} of {@link List}s of {@link
+   * Object}s to match; must not be {@code null}
+   *
+   * @param locale the {@link Locale} for which messages should be
+   * returned; may be {@code null}
+   *
+   * @param executor the {@link ExecutorService}, which may be a
+   * {@link java.util.concurrent.ForkJoinPool}, to which tasks will be
+   * submitted; may be {@code null}
+   *
+   * @return a non-{@code null} {@link List} of messages
+   *
+   * @exception InterruptedException if the calling {@link Thread} was
+   * interrupted while waiting for tasks to complete
+   *
+   * @see MessageFactory#getMessages(Iterable, Locale, ExecutorService)
+   */
+  public List<String> getMessages(final Iterable<? extends List<? extends T>> inputs, final Locale locale, final ExecutorService executor) throws InterruptedException {
+    return this.get().getMessages(inputs, locale, executor);
+  }
+
+  /**
+   * Returns the {@link Exception} that caused the most recent reload
+   * to fail, or {@code null} if the most recent reload succeeded or
+   * no reload has been attempted.
+   *
+   * <p>This method may return {@code null}.</p>
+   *
+   * @return an {@link Exception}, or {@code null}
+   */
+  public final Exception getLastReloadFailure() {
+    return this.lastReloadFailure.get();
+  }
+
+  /**
+   * Reads the message catalog and, if it could be read and parsed,
+   * atomically replaces the {@linkplain #get() current
+   * <code>MessageFactory</code>} with the result.
+   *
+   * <p>If reading fails, the current {@link MessageFactory} remains
+   * in place, the failure is {@linkplain #getLastReloadFailure()
+   * recorded} and {@code false} is returned.</p>
+   *
+   * @return {@code true} if the current {@link MessageFactory} was
+   * replaced; {@code false} otherwise
+   *
+   * @see #reloadIfModified()
+   */
+  public final boolean reload() {
+    this.reloadLock.lock();
+    try {
+      return this.reload(this.getLastModified());
+    } finally {
+      this.reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Reloads the message catalog as the {@link #reload()} method does,
+   * but only if its {@linkplain #getLastModified() last modification
+   * time} has changed since it was last read.
+   *
+   * <p>If the last modification time of the message catalog cannot
+   * be determined, then it is treated as unchanged and the message
+   * catalog is not reloaded; use the {@link #reload()} method to
+   * reload it explicitly.</p>
+   *
+   * @return {@code true} if the current {@link MessageFactory} was
+   * replaced; {@code false} otherwise
+   *
+   * @see #reload()
+   */
+  public final boolean reloadIfModified() {
+    this.reloadLock.lock();
+    try {
+      final boolean returnValue;
+      final long lastModified = this.getLastModified();
+      if (lastModified != 0L && lastModified != this.lastModified) {
+        returnValue = this.reload(lastModified);
+      } else {
+        returnValue = false;
+      }
+      return returnValue;
+    } finally {
+      this.reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Reads the message catalog and installs the result.
+   *
+   * <p>The caller must hold the {@link #reloadLock}.</p>
+   *
+   * @param lastModified the last modification time of the message
+   * catalog to record upon success
+   *
+   * @return {@code true} if the current {@link MessageFactory} was
+   * replaced; {@code false} otherwise
+   */
+  private final boolean reload(final long lastModified) {
+    boolean returnValue = false;
+    try {
+      final MessageFactory<T> messageFactory = this.read();
+      assert messageFactory != null;
+      assert messageFactory.isFrozen();
+      this.messageFactory.set(messageFactory);
+      this.lastModified = lastModified;
+      this.lastReloadFailure.set(null);
+      returnValue = true;
+    } catch (final IOException e) {
+      this.reloadFailed(e);
+    } catch (final ParseException e) {
+      this.reloadFailed(e);
+    } catch (final RuntimeException e) {
+      this.reloadFailed(e);
+    }
+    return returnValue;
+  }
+
+  /**
+   * Records and logs a reload failure.
+   *
+   * @param failure the failure; must not be {@code null}
+   */
+  private final void reloadFailed(final Exception failure) {
+    assert failure != null;
+    this.lastReloadFailure.set(failure);
+    if (logger.isLoggable(Level.WARNING)) {
+      logger.log(Level.WARNING, "Could not reload message catalog " + this.uri + "; keeping the previous version", failure);
+    }
+  }
+
+  /**
+   * Reads and {@linkplain MessageFactory#freeze() freezes} a new
+   * {@link MessageFactory} from the message catalog identified by
+   * this {@link ReloadableMessageFactory}'s {@linkplain #getURI()
+   * <code>URI</code>}.
+   *
+   * <p>If there is a {@link MessageFactoryConfigurer}, it configures
+   * the {@link MessageFactoryReader} before the message catalog is
+   * read, and the new {@link MessageFactory} before it is
+   * frozen.</p>
+   *
+   * <p>This method never returns {@code null}.</p>
+   *
+   * @return a new, non-{@code null}, frozen {@link MessageFactory}
+   *
+   * @exception IOException if an input or output error occurs
+   *
+   * @exception ParseException if the message catalog could not be
+   * parsed
+   */
+  private final MessageFactory<T> read() throws IOException, ParseException {
+    final MessageFactoryReader reader = new MessageFactoryReader(this.uri, this.classLoader, this.control);
+    try {
+      final MessageFactoryConfigurer<T> configurer = this.configurer;
+      if (configurer != null) {
+        configurer.configureReader(reader);
+      }
+      final MessageFactory<T> returnValue = reader.read();
+      if (returnValue == null) {
+        throw new IllegalStateException("reader.read() == null");
+      }
+      if (configurer != null) {
+        configurer.configureMessageFactory(returnValue);
+      }
+      return returnValue.freeze();
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns the last modification time of the message catalog, or
+   * {@code 0L} if it cannot be determined.
+   *
+   * <p>Any {@link URLConnection} opened to determine the last
+   * modification time is {@linkplain #close(URLConnection) closed}
+   * before this method returns.</p>
+   *
+   * @return the last modification time of the message catalog, in
+   * milliseconds since the epoch, or {@code 0L}
+   */
+  private final long getLastModified() {
+    long returnValue = 0L;
+    if ("file".equalsIgnoreCase(this.uri.getScheme())) {
+      returnValue = new File(this.uri).lastModified();
+    } else {
+      try {
+        final URLConnection connection = this.uri.toURL().openConnection();
+        assert connection != null;
+        connection.setUseCaches(false);
+        try {
+          returnValue = connection.getLastModified();
+        } finally {
+          close(connection);
+        }
+      } catch (final IOException e) {
+        returnValue = 0L;
+      } catch (final IllegalArgumentException e) {
+        // Not an absolute URI
+        returnValue = 0L;
+      }
+    }
+    return returnValue;
+  }
+
+  /**
+   * Starts checking the message catalog for changes on a background
+   * daemon {@link Thread} every {@code period} {@code unit}s, and
+   * {@linkplain #reloadIfModified() reloading it} when it changes.
+   *
+   * <p>This method calls the {@link
+   * #start(ScheduledExecutorService, long, TimeUnit)} method with a
+   * new single-{@link Thread} {@link ScheduledExecutorService} that
+   * will be shut down when this {@link ReloadableMessageFactory} is
+   * {@linkplain #close() closed}.</p>
+   *
+   * @param period the period between checks; must be greater than
+   * {@code 0}
+   *
+   * @param unit the {@link TimeUnit} in which {@code period} is
+   * expressed; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code period} is less
+   * than or equal to {@code 0} or {@code unit} is {@code null}
+   *
+   * @exception IllegalStateException if this {@link
+   * ReloadableMessageFactory} has already been started
+   *
+   * @see #start(ScheduledExecutorService, long, TimeUnit)
+   */
+  public final void start(final long period, final TimeUnit unit) {
+    this.reloadLock.lock();
+    try {
+      if (this.watch != null) {
+        throw new IllegalStateException("already started");
+      }
+      final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          @Override
+          public final Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "splain catalog watcher: " + uri);
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      try {
+        this.start(executor, period, unit);
+      } catch (final RuntimeException e) {
+        executor.shutdownNow();
+        throw e;
+      }
+      this.ownedExecutor = executor;
+    } finally {
+      this.reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Starts checking the message catalog for changes using the
+   * supplied {@link ScheduledExecutorService} every {@code period}
+   * {@code unit}s, and {@linkplain #reloadIfModified() reloading it}
+   * when it changes.
+   *
+   * <p>The supplied {@link ScheduledExecutorService} is not shut down
+   * when this {@link ReloadableMessageFactory} is {@linkplain
+   * #close() closed}.</p>
+   *
+   * @param executor the {@link ScheduledExecutorService} on which to
+   * perform checks; must not be {@code null}
+   *
+   * @param period the period between checks; must be greater than
+   * {@code 0}
+   *
+   * @param unit the {@link TimeUnit} in which {@code period} is
+   * expressed; must not be {@code null}
+   *
+   * @exception IllegalArgumentException if {@code executor} or {@code
+   * unit} is {@code null}, or if {@code period} is less than or equal
+   * to {@code 0}
+   *
+   * @exception IllegalStateException if this {@link
+   * ReloadableMessageFactory} has already been started
+   */
+  public final void start(final ScheduledExecutorService executor, final long period, final TimeUnit unit) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor", new NullPointerException("executor"));
+    }
+    if (unit == null) {
+      throw new IllegalArgumentException("unit", new NullPointerException("unit"));
+    }
+    if (period <= 0L) {
+      throw new IllegalArgumentException("period <= 0: " + period);
+    }
+    this.reloadLock.lock();
+    try {
+      if (this.watch != null) {
+        throw new IllegalStateException("already started");
+      }
+      this.watch = executor.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public final void run() {
+            reloadIfModified();
+          }
+        }, period, period, unit);
+    } finally {
+      this.reloadLock.unlock();
+    }
+  }
+
+  /**
+   * Stops checking the message catalog for changes.  The {@linkplain
+   * #get() current <code>MessageFactory</code>} remains usable.
+   *
+   * <p>Calling this method on a {@link ReloadableMessageFactory} that
+   * was never {@linkplain #start(long, TimeUnit) started}, or that has
+   * already been closed, has no effect.</p>
+   */
+  @Override
+  public void close() {
+    this.reloadLock.lock();
+    try {
+      if (this.watch != null) {
+        this.watch.cancel(false);
+        this.watch = null;
+      }
+      if (this.ownedExecutor != null) {
+        this.ownedExecutor.shutdownNow();
+        this.ownedExecutor = null;
+      }
+    } finally {
+      this.reloadLock.unlock();
+    }
+  }
+
+
+  /*
+   * Static methods.
+   */
+
+
+  /**
+   * Releases the resources held by the supplied {@link URLConnection}.
+   *
+   * <p>An {@link HttpURLConnection} is {@linkplain
+   * HttpURLConnection#disconnect() disconnected}.  Otherwise the
+   * {@linkplain URLConnection#getInputStream() input stream} of the
+   * supplied {@link URLConnection}, which for an uncached {@code jar:}
+   * connection also closes the underlying jar file, is closed if it
+   * can be obtained.</p>
+   *
+   * @param connection the {@link URLConnection} to close; must not be
+   * {@code null}
+   */
+  private static final void close(final URLConnection connection) {
+    assert connection != null;
+    if (connection instanceof HttpURLConnection) {
+      ((HttpURLConnection)connection).disconnect();
+    } else {
+      try {
+        connection.getInputStream().close();
+      } catch (final IOException e) {
+        // The connection could not be established, so there is
+        // nothing to close.
+      }
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseBoundedCache {
+
+  public TestCaseBoundedCache() {
+    super();
+  }
+
+  @Test
+  public void testFirstValueWins() {
+    final BoundedCache<String, String> cache = new BoundedCache<String, String>(2);
+    assertNull(cache.get("a"));
+    final String first = new String("A");
+    assertSame(first, cache.putIfAbsent("a", first));
+    assertSame(first, cache.putIfAbsent("a", new String("A")));
+    assertSame(first, cache.get("a"));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    final BoundedCache<String, String> cache = new BoundedCache<String, String>(3);
+    cache.putIfAbsent("a", "A");
+    cache.putIfAbsent("b", "B");
+    cache.putIfAbsent("c", "C");
+    assertEquals("A", cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    cache.putIfAbsent("d", "D"); // evicts b
+    assertNull(cache.get("b"));
+    assertEquals("B", cache.putIfAbsent("b", "B")); // evicts a, the eldest of a and c
+    assertNull(cache.get("a"));
+    assertEquals("C", cache.get("c"));
+    assertEquals(3, cache.size());
+    assertEquals(2L, cache.getEvictionCount());
+  }
+
+  @Test
+  public void testConcurrentUse() throws Exception {
+    final BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(16);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public final Void call() {
+              for (int i = 0; i < 10000; i++) {
+                final Integer key = Integer.valueOf(i % 64);
+                final Integer value = cache.get(key);
+                if (value == null) {
+                  assertEquals(key, cache.putIfAbsent(key, key));
+                } else {
+                  assertEquals(key, value);
+                }
+              }
+              return null;
+            }
+          }));
+      }
+      for (final Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.size() <= 16);
+    assertEquals(40000L, cache.getHitCount() + cache.getMissCount());
+  }
+
+  @Test
+  public void testFillingPastCapacityEvictsInBatches() {
+    final BoundedCache<Integer, Integer> cache = new BoundedCache<Integer, Integer>(64);
+    for (int i = 0; i < 64; i++) {
+      cache.putIfAbsent(Integer.valueOf(i), Integer.valueOf(i));
+    }
+    assertEquals(64, cache.size());
+    assertEquals(0L, cache.getEvictionCount());
+    // Keep the first eight entries in use.
+    for (int i = 0; i < 8; i++) {
+      assertEquals(Integer.valueOf(i), cache.get(Integer.valueOf(i)));
+    }
+
+    // One more addition evicts a batch of the least recently used
+    // entries, down to an eighth below capacity.
+    cache.putIfAbsent(Integer.valueOf(64), Integer.valueOf(64));
+    assertEquals(56, cache.size());
+    assertEquals(9L, cache.getEvictionCount());
+    for (int i = 0; i < 8; i++) {
+      assertEquals(Integer.valueOf(i), cache.get(Integer.valueOf(i)));
+    }
+    for (int i = 8; i < 17; i++) {
+      assertNull(cache.get(Integer.valueOf(i)));
+    }
+
+    // The next eight additions evict nothing; the ninth evicts a batch.
+    for (int i = 65; i < 73; i++) {
+      cache.putIfAbsent(Integer.valueOf(i), Integer.valueOf(i));
+    }
+    assertEquals(64, cache.size());
+    assertEquals(9L, cache.getEvictionCount());
+    for (int i = 73; i < 1000; i++) {
+      cache.putIfAbsent(Integer.valueOf(i), Integer.valueOf(i));
+      assertTrue(cache.size() <= 64);
+    }
+    assertEquals(1000L, cache.getEvictionCount() + cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() {
+    new BoundedCache<String, String>(-1);
+  }
+
+}
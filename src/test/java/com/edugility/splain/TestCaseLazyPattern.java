@@ -0,0 +1,171 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.edugility.objexj.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TestCaseLazyPattern {
+
+  public TestCaseLazyPattern() {
+    super();
+  }
+
+  @Test
+  public void testCompilesOnFirstRequest() {
+    final LazyPattern<Object> pattern = new LazyPattern<Object>("java.sql.SQLException");
+    assertFalse(pattern.isCompiled());
+    assertNull(pattern.getIfCompiled());
+    assertEquals("java.sql.SQLException", pattern.toString());
+    final Pattern<Object> compiled = pattern.get();
+    assertNotNull(compiled);
+    assertTrue(pattern.isCompiled());
+    assertSame(compiled, pattern.get());
+    assertSame(compiled, pattern.getIfCompiled());
+  }
+
+  @Test
+  public void testConcurrentCompilationHappensOnce() throws Exception {
+    final LazyPattern<Object> pattern = new LazyPattern<Object>("java.lang.IllegalArgumentException/java.sql.SQLException");
+    final int threads = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Callable<Pattern<Object>>> tasks = new ArrayList<Callable<Pattern<Object>>>();
+      for (int i = 0; i < threads * 4; i++) {
+        tasks.add(new Callable<Pattern<Object>>() {
+            @Override
+            public final Pattern<Object> call() {
+              return pattern.get();
+            }
+          });
+      }
+      final Pattern<Object> compiled = pattern.getIfCompiled();
+      assertNull(compiled);
+      Pattern<Object> first = null;
+      for (final Future<Pattern<Object>> future : executor.invokeAll(tasks)) {
+        final Pattern<Object> p = future.get();
+        assertNotNull(p);
+        if (first == null) {
+          first = p;
+        } else {
+          assertSame(first, p);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCompilationFailureIsRemembered() {
+    final LazyPattern<Object> pattern = new LazyPattern<Object>("java.io.IOException)");
+    try {
+      pattern.get();
+      fail();
+    } catch (final IllegalStateException expected) {
+      assertTrue(expected.getCause() instanceof ParseException);
+      try {
+        pattern.get();
+        fail();
+      } catch (final IllegalStateException again) {
+        assertSame(expected.getCause(), again.getCause());
+      }
+    }
+    assertFalse(pattern.isCompiled());
+  }
+
+  @Test
+  public void testLazyMessageFactory() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    assertFalse(mf.isLazyCompilation());
+    mf.setLazyCompilation(true);
+    assertTrue(mf.isLazyCompilation());
+    mf.addPattern(new ResourceBundleKey("sql"), "java.lang.IllegalArgumentException/java.sql.SQLException");
+    mf.addPattern(new ResourceBundleKey("broken"), "java.io.IOException)");
+
+    final List<Object> sql = Arrays.<Object>asList(new IllegalArgumentException(), new SQLException());
+    assertEquals("sql", mf.getMessage(sql, Locale.US));
+    assertEquals("sql", mf.getMessage(sql, Locale.US));
+
+    try {
+      mf.getMessage(Collections.<Object>singletonList(new IOException()), Locale.US);
+      fail();
+    } catch (final IllegalStateException expected) {
+      assertTrue(expected.getCause() instanceof ParseException);
+    }
+  }
+
+  @Test
+  public void testLazyMessageFactoryMatchesEagerMessageFactory() throws ParseException {
+    final MessageFactory<Object> eager = new MessageFactory<Object>();
+    final MessageFactory<Object> lazy = new MessageFactory<Object>();
+    lazy.setLazyCompilation(true);
+    for (final MessageFactory<Object> mf : Arrays.asList(eager, lazy)) {
+      mf.addPattern(new ResourceBundleKey("sql"), "java.lang.IllegalArgumentException/java.sql.SQLException");
+      mf.addPattern(new ResourceBundleKey("io"), "java.io.IOException");
+      mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    }
+    final List<List<Object>> inputs = new ArrayList<List<Object>>();
+    inputs.add(Arrays.<Object>asList(new IllegalArgumentException(), new SQLException()));
+    inputs.add(Collections.<Object>singletonList(new IOException()));
+    inputs.add(Collections.<Object>singletonList(new IllegalStateException()));
+    for (final List<Object> input : inputs) {
+      assertEquals(eager.getMessage(input, Locale.US), lazy.getMessage(input, Locale.US));
+    }
+
+    final Set<Pattern<Object>> patterns = lazy.getPatterns(new ResourceBundleKey("io"));
+    assertNotNull(patterns);
+    assertEquals(1, patterns.size());
+    final Pattern<Object> pattern = patterns.iterator().next();
+    assertNotNull(pattern);
+    assertTrue(patterns.contains(pattern));
+    assertEquals("java.io.IOException", lazy.getPatternSource(new ResourceBundleKey("io"), pattern));
+  }
+
+}
@@ -0,0 +1,138 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseMatchMetrics {
+
+  public TestCaseMatchMetrics() {
+    super();
+  }
+
+  @Test
+  public void testCounts() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    final ResourceBundleKey sql = new ResourceBundleKey("sql");
+    final ResourceBundleKey fallback = new ResourceBundleKey("fallback");
+    mf.addPattern(sql, "java.sql.SQLException$");
+    mf.addPattern(sql, "java.sql.SQLException/java.io.IOException");
+    mf.addPattern(fallback, "java.lang.Throwable$");
+    final MatchMetrics metrics = new MatchMetrics();
+    mf.setMatchMetrics(metrics);
+    assertSame(metrics, mf.getMatchMetrics());
+
+    final List<Object> sqlInput = Arrays.<Object>asList(new IOException(), new SQLException());
+    final List<Object> ioInput = Arrays.<Object>asList(new IOException());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("sql", mf.getMessage(sqlInput, null));
+    }
+    assertEquals("fallback", mf.getMessage(ioInput, null));
+
+    final Map<String, MatchStatistics> sqlStatistics = metrics.getPatternStatistics(sql);
+    assertEquals(2, sqlStatistics.size());
+    final MatchStatistics anchored = sqlStatistics.get("java.sql.SQLException$");
+    assertNotNull(anchored);
+    assertEquals(3L, anchored.getEvaluationCount());
+    assertEquals(3L, anchored.getMatchCount());
+    assertEquals(0L, anchored.getMissCount());
+    assertEquals(3L, anchored.getSelectionCount());
+    assertTrue(anchored.get99thPercentileEvaluationNanos() >= anchored.getMedianEvaluationNanos());
+    assertTrue(anchored.getMedianEvaluationNanos() > 0L);
+
+    // Never a candidate, because no SQLException precedes an IOException.
+    final MatchStatistics sequence = sqlStatistics.get("java.sql.SQLException/java.io.IOException");
+    assertNotNull(sequence);
+    assertEquals(0L, sequence.getEvaluationCount());
+    assertEquals(0L, sequence.getSelectionCount());
+
+    final MatchStatistics fallbackStatistics = metrics.getPatternStatistics(fallback).get("java.lang.Throwable$");
+    assertEquals(1L, fallbackStatistics.getEvaluationCount());
+    assertEquals(1L, fallbackStatistics.getSelectionCount());
+
+    assertEquals(3, metrics.getPatternStatistics().size());
+    final List<MatchStatistics> keyStatistics = metrics.getKeyStatistics();
+    assertEquals(2, keyStatistics.size());
+    for (final MatchStatistics statistics : keyStatistics) {
+      assertNull(statistics.getPattern());
+      if (statistics.getKey().equals(sql.toString())) {
+        assertEquals(3L, statistics.getEvaluationCount());
+      }
+    }
+
+    // Statistics survive modification of the factory.
+    mf.addPattern(new ResourceBundleKey("other"), "java.lang.Error");
+    assertEquals("sql", mf.getMessage(sqlInput, null));
+    assertEquals(4L, metrics.getPatternStatistics(sql).get("java.sql.SQLException$").getSelectionCount());
+
+    metrics.reset();
+    assertEquals(0L, metrics.getPatternStatistics(sql).get("java.sql.SQLException$").getSelectionCount());
+    assertTrue(metrics.getPatternStatistics(new ResourceBundleKey("nonexistent")).isEmpty());
+  }
+
+  @Test
+  public void testRegister() throws Exception {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    final MatchMetrics metrics = new MatchMetrics();
+    mf.setMatchMetrics(metrics);
+    assertEquals("fallback", mf.getMessage(Arrays.<Object>asList(new IOException()), null));
+    final ObjectName name = metrics.register();
+    assertNotNull(name);
+    assertSame(name, metrics.register());
+    try {
+      assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+      final CompositeData[] statistics = (CompositeData[])ManagementFactory.getPlatformMBeanServer().getAttribute(name, "PatternStatistics");
+      assertEquals(1, statistics.length);
+      assertEquals("java.lang.Throwable$", statistics[0].get("pattern"));
+      assertEquals(Long.valueOf(1L), statistics[0].get("selectionCount"));
+    } finally {
+      metrics.unregister();
+    }
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+  }
+
+}
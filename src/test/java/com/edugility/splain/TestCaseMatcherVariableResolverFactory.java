@@ -0,0 +1,85 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.edugility.objexj.Matcher;
+import com.edugility.objexj.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mvel2.templates.TemplateCompiler;
+import org.mvel2.templates.TemplateRuntime;
+
+import static org.junit.Assert.*;
+
+public class TestCaseMatcherVariableResolverFactory {
+
+  private Matcher<Character> matcher;
+
+  public TestCaseMatcherVariableResolverFactory() {
+    super();
+  }
+
+  @Before
+  public void match() throws ParseException {
+    final List<Character> input = Arrays.asList('a');
+    this.matcher = Pattern.<Character>compile("java.lang.Character(farg = \"blah\"; return true;)").matcher(input);
+    assertTrue(this.matcher.lookingAt());
+  }
+
+  private final Object execute(final String template) {
+    return TemplateRuntime.execute(TemplateCompiler.compileTemplate(template), null, new MatcherVariableResolverFactory(this.matcher));
+  }
+
+  @Test
+  public void testGroupsAndVariables() {
+    assertEquals("Hi, a, your farg is blah", this.execute("Hi, @{$0[0]}, your farg is @{farg}"));
+  }
+
+  @Test
+  public void testTemplateVariablesDoNotLeakIntoMatcher() {
+    assertEquals("local", this.execute("@code{farg = 'local'}@{farg}"));
+    assertEquals("blah", this.matcher.getVariables().get("farg"));
+  }
+
+  @Test
+  public void testUnknownGroup() {
+    final MatcherVariableResolverFactory factory = new MatcherVariableResolverFactory(this.matcher);
+    assertTrue(factory.isResolveable("$0"));
+    assertFalse(factory.isResolveable("$" + this.matcher.groupCount()));
+    assertFalse(factory.isResolveable("$x"));
+    assertFalse(factory.isResolveable("nonexistent"));
+  }
+
+}
@@ -27,18 +27,49 @@
  */
 package com.edugility.splain;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import java.lang.management.ManagementFactory;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import java.sql.SQLException;
+
 import java.text.ParseException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.ListResourceBundle;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import org.junit.Test;
 
+import org.mvel2.MVEL;
+
+import com.edugility.objexj.Matcher;
 import com.edugility.objexj.Pattern;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class TestCaseMessageFactory {
 
@@ -58,6 +89,10 @@ public class TestCaseMessageFactory {
     assertEquals(Character.valueOf('a'), input.get(0));
     final String message = mf.getMessage(input, null);
     assertEquals("Hi, a, your farg is blah", message);
+    assertEquals(1L, mf.getTemplateCache().getMissCount());
+    assertEquals("Hi, a, your farg is blah", mf.getMessage(input, null));
+    assertEquals(1L, mf.getTemplateCache().getHitCount());
+    assertEquals(1L, mf.getTemplateCache().getMissCount());
   }
 
   @Test
@@ -73,4 +108,662 @@ public class TestCaseMessageFactory {
 
   }
 
+  @Test
+  public void testIndexedSelectionPreservesCatalogOrder() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException$");
+    mf.addPattern(new ResourceBundleKey("npe"), "java.lang.IllegalArgumentException/java.lang.NullPointerException");
+    mf.addPattern(new ResourceBundleKey("direct"), Pattern.<Object>compile("java.lang.IllegalStateException"));
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+
+    assertEquals("sql", mf.getMessage(Arrays.<Object>asList(new IllegalArgumentException(), new SQLException()), null));
+    assertEquals("npe", mf.getMessage(Arrays.<Object>asList(new IllegalArgumentException(), new NullPointerException()), null));
+    assertEquals("direct", mf.getMessage(Arrays.<Object>asList(new IllegalStateException(), new IOException()), null));
+    assertEquals("fallback", mf.getMessage(Arrays.<Object>asList(new IOException()), null));
+    assertNull(mf.getMessage(Arrays.<Object>asList("x"), null));
+
+    mf.removePatterns(new ResourceBundleKey("sql"));
+    assertEquals("fallback", mf.getMessage(Arrays.<Object>asList(new IllegalArgumentException(), new SQLException()), null));
+
+    mf.getPatterns(new ResourceBundleKey("fallback")).clear();
+    assertNull(mf.getMessage(Arrays.<Object>asList(new IOException()), null));
+  }
+
+  @Test
+  public void testFreeze() throws Exception {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException$");
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    final Collection<Pattern<Object>> fallbackPatterns = mf.getPatterns(new ResourceBundleKey("fallback"));
+    assertFalse(mf.isFrozen());
+    assertSame(mf, mf.freeze());
+    assertTrue(mf.isFrozen());
+    assertSame(mf, mf.freeze());
+
+    try {
+      mf.addPattern(new ResourceBundleKey("npe"), "java.lang.NullPointerException");
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+    try {
+      mf.removePatterns(new ResourceBundleKey("sql"));
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+    try {
+      fallbackPatterns.clear();
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+    try {
+      mf.getPatterns(new ResourceBundleKey("sql")).clear();
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<String>> futures = new ArrayList<Future<String>>();
+      for (int i = 0; i < 100; i++) {
+        final List<Object> input;
+        if (i % 2 == 0) {
+          input = Arrays.<Object>asList(new IllegalStateException(), new SQLException());
+        } else {
+          input = Collections.<Object>singletonList(new IOException());
+        }
+        futures.add(executor.submit(new Callable<String>() {
+            @Override
+            public final String call() {
+              return mf.getMessage(input, null);
+            }
+          }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        assertEquals(i % 2 == 0 ? "sql" : "fallback", futures.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testMissingMessage() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    final ResourceBundleKey missing = ResourceBundleKey.valueOf("a.b.c.d/nonexistent");
+    mf.addPattern(missing, "java.lang.IllegalStateException");
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    assertTrue(mf.getMissCounts().isEmpty());
+    final List<Object> input = Collections.<Object>singletonList(new IllegalStateException());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("default", mf.getMessage(input, Locale.ENGLISH, "default"));
+    }
+    assertEquals(Collections.singletonMap(missing, Long.valueOf(3L)), mf.getMissCounts());
+    try {
+      mf.getMessage(input, Locale.ENGLISH);
+      fail();
+    } catch (final MissingResourceException expected) {
+
+    }
+    assertEquals(Long.valueOf(4L), mf.getMissCounts().get(missing));
+  }
+
+  @Test
+  public void testCachedMissWithDefaultValueCreatesNoException() throws ParseException {
+    final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+    assumeTrue(allocations.isThreadAllocatedMemorySupported());
+    allocations.setThreadAllocatedMemoryEnabled(true);
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(ResourceBundleKey.valueOf("a.b.c.d/nonexistent"), "java.lang.IllegalStateException");
+    mf.addPattern(new ResourceBundleKey("present"), "java.lang.Throwable");
+    final List<Object> missing = Collections.<Object>singletonList(new IllegalStateException());
+    final List<Object> present = Collections.<Object>singletonList(new IOException());
+    final int iterations = 1000;
+    final long thread = Thread.currentThread().getId();
+    // Warm up, caching the missing message.
+    for (int i = 0; i < iterations; i++) {
+      assertEquals("default", mf.getMessage(missing, Locale.ENGLISH, "default"));
+      assertEquals("present", mf.getMessage(present, Locale.ENGLISH, "default"));
+    }
+    long start = allocations.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < iterations; i++) {
+      mf.getMessage(present, Locale.ENGLISH, "default");
+    }
+    final long presentBytes = allocations.getThreadAllocatedBytes(thread) - start;
+    start = allocations.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < iterations; i++) {
+      mf.getMessage(missing, Locale.ENGLISH, "default");
+    }
+    final long missingBytes = allocations.getThreadAllocatedBytes(thread) - start;
+    // An exception with a stack trace costs far more than 128 bytes.
+    assertTrue(missingBytes + " > " + presentBytes, missingBytes <= presentBytes + 128L * iterations);
+  }
+
+  @Test
+  public void testPlainTextIsNotEvaluated() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("Something went wrong."), "java.lang.Throwable$");
+    assertEquals("Something went wrong.", mf.getMessage(Collections.<Object>singletonList(new IllegalStateException()), null));
+    assertEquals(0L, mf.getTemplateCache().getMissCount());
+    assertEquals(0, mf.getTemplateCache().size());
+  }
+
+  @Test
+  public void testAnchoredSingleElementPatterns() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("@{$0[0].message}"), "java.sql.SQLException$");
+    mf.addPattern(new ResourceBundleKey("first @{m}"), "^java.lang.IllegalStateException(m = message; return true;)");
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+
+    final List<Object> chain = new ArrayList<Object>();
+    for (int i = 0; i < 15; i++) {
+      chain.add(new RuntimeException("frame " + i));
+    }
+    chain.add(new SQLException("root"));
+    assertEquals("root", mf.getMessage(chain, null));
+
+    chain.add(new IOException("after"));
+    assertEquals("fallback", mf.getMessage(chain, null));
+
+    chain.add(0, new IllegalStateException("top"));
+    assertEquals("first top", mf.getMessage(chain, null));
+
+    assertEquals("root", mf.getMessage(Collections.<Object>singletonList(new SQLException("root")), null));
+    assertNull(mf.getMessage(Collections.<Object>emptyList(), null));
+  }
+
+  @Test
+  public void testAutomatonSelectsSameMessages() throws ParseException {
+    final List<List<Object>> inputs = new ArrayList<List<Object>>();
+    inputs.add(Arrays.<Object>asList(new IllegalArgumentException(), new NullPointerException()));
+    inputs.add(Arrays.<Object>asList(new IllegalStateException("top"), new IOException()));
+    inputs.add(Arrays.<Object>asList(new RuntimeException(), new RuntimeException(), new IOException("root")));
+    inputs.add(Arrays.<Object>asList(new IOException(), new SQLException("root")));
+    inputs.add(Arrays.<Object>asList(new SQLException("first"), new IOException()));
+    inputs.add(Arrays.<Object>asList(new IllegalStateException("other"), new Error()));
+    inputs.add(Arrays.<Object>asList(new Error()));
+    inputs.add(Arrays.<Object>asList("x", new Error()));
+    inputs.add(Arrays.<Object>asList("x"));
+    inputs.add(Collections.<Object>emptyList());
+
+    final MessageFactory<Object> plain = new MessageFactory<Object>();
+    final MessageFactory<Object> automaton = new MessageFactory<Object>();
+    assertFalse(automaton.isAutomatonEnabled());
+    automaton.setAutomatonEnabled(true);
+    assertTrue(automaton.isAutomatonEnabled());
+    for (final MessageFactory<Object> mf : Arrays.asList(plain, automaton)) {
+      mf.addPattern(new ResourceBundleKey("npe"), "java.lang.IllegalArgumentException/java.lang.NullPointerException");
+      mf.addPattern(new ResourceBundleKey("top @{m}"), "^java.lang.IllegalStateException(m = message; return message == \"top\";)");
+      mf.addPattern(new ResourceBundleKey("runtime"), "java.lang.RuntimeException+/java.io.IOException$");
+      mf.addPattern(new ResourceBundleKey("sql @{$1[0].message}"), "java.io.IOException?/(java.sql.SQLException)$");
+      mf.addPattern(new ResourceBundleKey("direct"), Pattern.<Object>compile("java.lang.IllegalStateException/java.lang.Error"));
+      mf.addPattern(new ResourceBundleKey("error"), "^java.lang.Error$");
+      mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    }
+    for (final List<Object> input : inputs) {
+      assertEquals(String.valueOf(input), plain.getMessage(input, null), automaton.getMessage(input, null));
+    }
+    assertEquals("top top", automaton.getMessage(inputs.get(1), null));
+    assertEquals("runtime", automaton.getMessage(inputs.get(2), null));
+    assertEquals("sql root", automaton.getMessage(inputs.get(3), null));
+    assertEquals("direct", automaton.getMessage(inputs.get(5), null));
+    assertEquals("error", automaton.getMessage(inputs.get(6), null));
+    assertEquals("fallback", automaton.getMessage(inputs.get(7), null));
+    assertNull(automaton.getMessage(inputs.get(8), null));
+
+    automaton.freeze();
+    try {
+      automaton.setAutomatonEnabled(false);
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+  }
+
+  @Test
+  public void testGetMessages() throws Exception {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException$");
+    mf.addPattern(new ResourceBundleKey("state"), "java.lang.IllegalStateException");
+    mf.freeze();
+    final List<List<Object>> inputs = new ArrayList<List<Object>>();
+    for (int i = 0; i < 100; i++) {
+      switch (i % 4) {
+      case 0:
+        inputs.add(Arrays.<Object>asList(new IOException(), new SQLException(String.valueOf(i))));
+        break;
+      case 1:
+        inputs.add(Arrays.<Object>asList(new IllegalStateException()));
+        break;
+      case 2:
+        inputs.add(Arrays.<Object>asList("x"));
+        break;
+      default:
+        inputs.add(null);
+        break;
+      }
+    }
+    final List<String> expected = new ArrayList<String>();
+    for (final List<Object> input : inputs) {
+      expected.add(mf.getMessage(input, null));
+    }
+    assertEquals("sql", expected.get(0));
+    assertEquals("state", expected.get(1));
+    assertNull(expected.get(2));
+    assertNull(expected.get(3));
+
+    assertEquals(expected, mf.getMessages(inputs, null));
+    assertTrue(mf.getMessages(Collections.<List<Object>>emptyList(), null).isEmpty());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(expected, mf.getMessages(inputs, null, executor));
+      assertTrue(mf.getMessages(Collections.<List<Object>>emptyList(), null, executor).isEmpty());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(expected, mf.getMessages(inputs, null, ForkJoinPool.commonPool()));
+    assertEquals(expected, mf.getMessages(inputs, null, null));
+  }
+
+  @Test
+  public void testGetMessagesMissingResource() throws Exception {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(ResourceBundleKey.valueOf("TestCaseMessageFactoryBundle/nonexistent"), "java.lang.Throwable");
+    final List<List<Object>> inputs = Collections.singletonList(Arrays.<Object>asList(new IOException()));
+    try {
+      mf.getMessages(inputs, null);
+      fail();
+    } catch (final MissingResourceException expected) {
+
+    }
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      mf.getMessages(inputs, null, executor);
+      fail();
+    } catch (final MissingResourceException expected) {
+
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetMessageAsync() throws Exception {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException$");
+    mf.addPattern(ResourceBundleKey.valueOf("TestCaseMessageFactoryBundle/nonexistent"), "java.lang.IllegalStateException");
+    mf.freeze();
+    final List<Object> sql = Arrays.<Object>asList(new IOException(), new SQLException());
+    final List<Object> missing = Arrays.<Object>asList(new IllegalStateException());
+    assertEquals("sql", mf.getMessageAsync(sql, null).get());
+    assertNull(mf.getMessageAsync(Arrays.<Object>asList("x"), null).get());
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertEquals("sql", mf.getMessageAsync(sql, null, executor).get());
+      assertEquals("default", mf.getMessageAsync(missing, null, "default", executor).get());
+      final MessageFactory.Selector<Object> selector = mf.getSelectorAsync(sql, executor).get();
+      assertNotNull(selector);
+      assertEquals(new ResourceBundleKey("sql"), selector.getKey());
+      try {
+        mf.getMessageAsync(missing, null, executor).get();
+        fail();
+      } catch (final ExecutionException expected) {
+        assertTrue(expected.getCause() instanceof MissingResourceException);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrecomputeMessages() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    final ResourceBundleKey missingKey = ResourceBundleKey.valueOf("TestCaseMessageFactoryBundle/nonexistent");
+    mf.addPattern(new ResourceBundleKey("sql @{$0[0].message}"), "java.sql.SQLException$");
+    mf.addPattern(missingKey, "java.lang.IllegalStateException");
+    mf.freeze();
+    assertTrue(mf.getPrecomputedLocales().isEmpty());
+
+    final Map<Locale, Set<ResourceBundleKey>> missing = mf.precomputeMessages(Arrays.asList(Locale.US, Locale.FRANCE, null, Locale.US));
+    assertEquals(new LinkedHashSet<Locale>(Arrays.asList(Locale.US, Locale.FRANCE)), mf.getPrecomputedLocales());
+    assertEquals(2, missing.size());
+    assertEquals(Collections.singleton(missingKey), missing.get(Locale.US));
+    assertEquals(Collections.singleton(missingKey), missing.get(Locale.FRANCE));
+
+    final TemplateCache templateCache = mf.getTemplateCache();
+    final long hits = templateCache.getHitCount();
+    final long misses = templateCache.getMissCount();
+    final List<Object> sql = Arrays.<Object>asList(new SQLException("boom"));
+    assertEquals("sql boom", mf.getMessage(sql, Locale.US));
+    assertEquals("sql boom", mf.getMessage(sql, Locale.FRANCE, "default"));
+    assertEquals(hits, templateCache.getHitCount());
+    assertEquals(misses, templateCache.getMissCount());
+
+    // Locales outside the table are resolved as usual.
+    assertEquals("sql boom", mf.getMessage(sql, Locale.GERMANY));
+    assertEquals(hits + 1, templateCache.getHitCount());
+
+    // Missing messages behave as before.
+    final List<Object> ise = Arrays.<Object>asList(new IllegalStateException());
+    assertEquals("default", mf.getMessage(ise, Locale.US, "default"));
+    try {
+      mf.getMessage(ise, Locale.US);
+      fail();
+    } catch (final MissingResourceException expected) {
+      // expected
+    }
+
+    assertTrue(mf.precomputeMessages(Collections.<Locale>emptySet()).isEmpty());
+    assertTrue(mf.getPrecomputedLocales().isEmpty());
+  }
+
+  @Test
+  public void testPrecomputeMessagesAfterChanges() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("io"), "java.io.IOException");
+    assertTrue(mf.precomputeMessages(Collections.singleton(Locale.US)).isEmpty());
+    mf.removePatterns(new ResourceBundleKey("io"));
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException");
+    mf.addPattern(new ResourceBundleKey("io again"), "java.io.IOException");
+    assertEquals("sql", mf.getMessage(Arrays.<Object>asList(new SQLException()), Locale.US));
+    assertEquals("io again", mf.getMessage(Arrays.<Object>asList(new IOException()), Locale.US));
+  }
+
+  @Test
+  public void testPrecomputeMessagesWithOverriddenFormat() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected final Object format(final Object rawMessage, final Matcher<Object> matcher) {
+        return "formatted " + rawMessage;
+      }
+    };
+    mf.addPattern(new ResourceBundleKey("sql @{$0[0].message}"), "java.sql.SQLException");
+    mf.precomputeMessages(Collections.singleton(Locale.US));
+    assertEquals("formatted sql @{$0[0].message}", mf.getMessage(Arrays.<Object>asList(new SQLException()), Locale.US));
+  }
+
+  @Test
+  public void testWarmUp() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>(new TemplateCache());
+    final ResourceBundleKey missingKey = ResourceBundleKey.valueOf("TestCaseMessageFactoryBundle/nonexistent");
+    mf.addPattern(new ResourceBundleKey("sql @{$0[0].message}"), "java.sql.SQLException$");
+    mf.addPattern(missingKey, "java.lang.IllegalStateException");
+    mf.freeze();
+
+    final TemplateCache templateCache = mf.getTemplateCache();
+    assertEquals(0, templateCache.size());
+    final List<Object> sql = Arrays.<Object>asList(new SQLException("boom"));
+    final Map<Locale, Set<ResourceBundleKey>> missing = mf.warmUp(Arrays.asList(Locale.US, null, Locale.US), Collections.singleton(sql), 2);
+    assertEquals(Collections.singletonMap(Locale.US, Collections.singleton(missingKey)), missing);
+    assertEquals(1, templateCache.size());
+    assertEquals(1L, templateCache.getMissCount());
+    assertEquals(2L, templateCache.getHitCount());
+
+    assertEquals("sql boom", mf.getMessage(sql, Locale.US));
+    assertEquals(1L, templateCache.getMissCount());
+    assertTrue(mf.getPrecomputedLocales().isEmpty());
+  }
+
+  @Test
+  public void testWarmUpRecordsNothing() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    final MatchMetrics metrics = new MatchMetrics();
+    mf.setMatchMetrics(metrics);
+    mf.setAdaptiveOrdering(true);
+    final ResourceBundleKey missingKey = ResourceBundleKey.valueOf("TestCaseMessageFactoryBundle/nonexistent");
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException");
+    mf.addPattern(missingKey, "java.lang.IllegalStateException");
+    final List<Object> sql = Arrays.<Object>asList(new SQLException());
+    final List<Object> ise = Arrays.<Object>asList(new IllegalStateException());
+    mf.warmUp(Collections.singleton(Locale.US), Arrays.asList(sql, ise), 3);
+    assertEquals(0L, missingKey.getMissCount());
+    assertFalse(metrics.getPatternStatistics().isEmpty());
+    for (final MatchStatistics statistics : metrics.getPatternStatistics()) {
+      assertEquals(0L, statistics.getEvaluationCount());
+      assertEquals(0L, statistics.getSelectionCount());
+    }
+
+    assertEquals("sql", mf.getMessage(sql, Locale.US));
+    assertEquals(1L, metrics.getPatternStatistics(new ResourceBundleKey("sql")).get("java.sql.SQLException").getSelectionCount());
+  }
+
+  @Test
+  public void testPrecomputedMessagesExpire() throws Exception {
+    final String[] message = new String[] { "first" };
+    final ResourceBundle.Control control = new ResourceBundle.Control() {
+        @Override
+        public final List<String> getFormats(final String baseName) {
+          return ResourceBundle.Control.FORMAT_CLASS;
+        }
+
+        @Override
+        public final long getTimeToLive(final String baseName, final Locale locale) {
+          return 1L;
+        }
+
+        @Override
+        public final ResourceBundle newBundle(final String baseName, final Locale locale, final String format, final ClassLoader loader, final boolean reload) {
+          if (!Locale.ROOT.equals(locale)) {
+            return null;
+          }
+          final String contents = message[0];
+          return new ListResourceBundle() {
+            @Override
+            protected final Object[][] getContents() {
+              return new Object[][] { { "key", contents } };
+            }
+          };
+        }
+
+        @Override
+        public final boolean needsReload(final String baseName, final Locale locale, final String format, final ClassLoader loader, final ResourceBundle bundle, final long loadTime) {
+          return true;
+        }
+      };
+    final ResourceBundleKey key = new ResourceBundleKey("Expiring", null, control, "key");
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(key, "java.io.IOException");
+    assertTrue(mf.precomputeMessages(Collections.singleton(Locale.US)).isEmpty());
+    final List<Object> input = Arrays.<Object>asList(new IOException());
+    assertEquals("first", mf.getMessage(input, Locale.US));
+    message[0] = "second";
+    Thread.sleep(20L);
+    assertEquals("second", mf.getMessage(input, Locale.US));
+  }
+
+  @Test
+  public void testRemovePatternsReturnsUnmodifiableCopy() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.setLazyCompilation(true);
+    final ResourceBundleKey key = new ResourceBundleKey("sql");
+    mf.addPattern(key, "java.sql.SQLException$");
+    mf.addPattern(key, "(java.sql.SQLException");
+    final Set<Pattern<Object>> live = mf.getPatterns(key);
+
+    // Removing an uncompilable lazy Pattern does not compile it.
+    final Set<Pattern<Object>> removed = mf.removePatterns(key);
+    assertNotNull(removed);
+    assertEquals(2, removed.size());
+    assertNull(mf.getPatterns(key));
+    try {
+      removed.clear();
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+
+    }
+
+    live.clear();
+    assertEquals(2, removed.size());
+    assertNull(mf.removePatterns(key));
+  }
+
+  @Test
+  public void testWarmUpCompilesLazyPatterns() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.setLazyCompilation(true);
+    mf.addPattern(new ResourceBundleKey("io"), "java.io.IOException");
+    mf.addPattern(new ResourceBundleKey("broken"), "(java.io.IOException");
+    try {
+      mf.warmUp(Collections.singleton(Locale.US));
+      fail();
+    } catch (final IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testAnchoredCandidatesUseFirstAndLastItems() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("fnf"), "java.io.FileNotFoundException$");
+    mf.addPattern(new ResourceBundleKey("first io"), "^java.io.IOException");
+    mf.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException");
+    mf.addPattern(new ResourceBundleKey("throwable"), "java.lang.Throwable$");
+    final Throwable fnf = new FileNotFoundException();
+    final Throwable ise = new IllegalStateException();
+    assertEquals("fnf", mf.getMessage(Arrays.<Object>asList(ise, fnf), Locale.US));
+    assertEquals("first io", mf.getMessage(Arrays.<Object>asList(fnf, ise), Locale.US));
+    assertEquals("sql", mf.getMessage(Arrays.<Object>asList(ise, new SQLException(), ise), Locale.US));
+    assertEquals("throwable", mf.getMessage(Arrays.<Object>asList(ise, fnf, ise), Locale.US));
+    assertEquals("throwable", mf.getMessage(new LinkedList<Object>(Arrays.<Object>asList(ise, fnf, new Error())), Locale.US));
+    assertNull(mf.getMessage(Arrays.<Object>asList("not", "throwables"), Locale.US));
+  }
+
+  @Test
+  public void testAdaptiveOrdering() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    final MatchMetrics metrics = new MatchMetrics();
+    mf.setMatchMetrics(metrics);
+    final ResourceBundleKey exceptionKey = new ResourceBundleKey("exception");
+    final ResourceBundleKey ioKey = new ResourceBundleKey("io");
+    final String exceptionSource = "java.lang.Exception(return message == \"never\";)";
+    final String slowSource = "java.io.IOException(return message == \"never\";)";
+    final String fastSource = "java.io.IOException(return true;)";
+    mf.addPattern(exceptionKey, exceptionSource);
+    mf.addPattern(ioKey, slowSource);
+    mf.addPattern(ioKey, fastSource);
+    assertFalse(mf.isAdaptiveOrdering());
+    assertFalse(mf.reorderPatterns());
+    mf.setAdaptiveOrdering(true);
+    assertTrue(mf.isAdaptiveOrdering());
+    mf.freeze();
+    try {
+      mf.setAdaptiveOrdering(false);
+      fail();
+    } catch (final UnsupportedOperationException expected) {
+      // expected
+    }
+
+    final List<Object> io = Arrays.<Object>asList(new IOException());
+    assertEquals("io", mf.getMessage(io, Locale.US));
+    assertEquals(1L, metrics.getPatternStatistics(ioKey).get(slowSource).getEvaluationCount());
+    assertEquals(1L, metrics.getPatternStatistics(ioKey).get(fastSource).getEvaluationCount());
+
+    // Too few evaluations have been recorded to trust either cost.
+    assertFalse(mf.reorderPatterns());
+    for (int i = 1; i < 32; i++) {
+      assertEquals("io", mf.getMessage(io, Locale.US));
+    }
+    assertEquals(32L, metrics.getPatternStatistics(ioKey).get(slowSource).getEvaluationCount());
+    assertEquals(32L, metrics.getPatternStatistics(ioKey).get(fastSource).getEvaluationCount());
+
+    // The Pattern that never matches is moved behind the one that
+    // does, but only within its key.
+    assertTrue(mf.reorderPatterns());
+    assertFalse(mf.reorderPatterns());
+    assertEquals("io", mf.getMessage(io, Locale.US));
+    assertEquals(32L, metrics.getPatternStatistics(ioKey).get(slowSource).getEvaluationCount());
+    assertEquals(33L, metrics.getPatternStatistics(ioKey).get(fastSource).getEvaluationCount());
+    assertEquals(33L, metrics.getPatternStatistics(exceptionKey).get(exceptionSource).getEvaluationCount());
+
+    // The Patterns as added are unaffected.
+    final Iterator<Pattern<Object>> patterns = mf.getPatterns(ioKey).iterator();
+    assertEquals(slowSource, mf.getPatternSource(ioKey, patterns.next()));
+    assertEquals(fastSource, mf.getPatternSource(ioKey, patterns.next()));
+  }
+
+  @Test
+  public void testGetMessageWithDefaultValueDelegates() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public final String getMessage(final List<? extends Object> input, final Locale locale) {
+        final String message = super.getMessage(input, locale);
+        if ("overridden".equals(message)) {
+          return "override honored";
+        }
+        return message;
+      }
+
+      @Override
+      protected final Object format(final Object rawMessage, final Matcher<Object> matcher) {
+        if ("throws".equals(rawMessage)) {
+          throw new MissingResourceException("throws", "Bundle", "throws");
+        }
+        return super.format(rawMessage, matcher);
+      }
+    };
+    mf.addPattern(new ResourceBundleKey("overridden"), "java.io.IOException");
+    mf.addPattern(new ResourceBundleKey("throws"), "java.sql.SQLException");
+    assertEquals("override honored", mf.getMessage(Arrays.<Object>asList(new IOException()), Locale.US, "default"));
+    assertEquals("default", mf.getMessage(Arrays.<Object>asList(new SQLException()), Locale.US, "default"));
+  }
+
+  @Test
+  public void testSameNamedForeignTypeIsEvaluated() throws Exception {
+    final Set<URL> locations = new LinkedHashSet<URL>();
+    for (final Class<?> c : Arrays.<Class<?>>asList(TestCaseMessageFactory.class, MessageFactory.class, Pattern.class, Test.class, MVEL.class)) {
+      locations.add(c.getProtectionDomain().getCodeSource().getLocation());
+    }
+    final URLClassLoader foreignLoader = new URLClassLoader(locations.toArray(new URL[locations.size()]), null);
+    try {
+      final Class<?> foreignClass = foreignLoader.loadClass(TestCaseMessageFactory.class.getName());
+      assertNotSame(TestCaseMessageFactory.class, foreignClass);
+      final List<Object> foreign = Collections.<Object>singletonList(foreignClass.newInstance());
+      final List<Object> native_ = Collections.<Object>singletonList(new TestCaseMessageFactory());
+
+      final MessageFactory<Object> plain = new MessageFactory<Object>();
+      final MessageFactory<Object> automaton = new MessageFactory<Object>();
+      automaton.setAutomatonEnabled(true);
+      automaton.setSelectorCache(new SelectorCache());
+      for (final MessageFactory<Object> mf : Arrays.asList(plain, automaton)) {
+        mf.addPattern(new ResourceBundleKey("anchored"), "com.edugility.splain.TestCaseMessageFactory$");
+        mf.addPattern(new ResourceBundleKey("typeOnly"), "com.edugility.splain.TestCaseMessageFactory+");
+        mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Object");
+      }
+      // The automaton's type-only path is reached only if the
+      // anchored Pattern is not.
+      automaton.addPattern(new ResourceBundleKey("anchored"), "com.edugility.splain.TestCaseMessageFactory+");
+
+      for (int i = 0; i < 2; i++) {
+        assertEquals("anchored", plain.getMessage(native_, null));
+        assertEquals("fallback", plain.getMessage(foreign, null));
+        assertEquals("anchored", automaton.getMessage(native_, null));
+        assertEquals("fallback", automaton.getMessage(foreign, null));
+      }
+    } finally {
+      foreignLoader.close();
+    }
+  }
+
+  @Test
+  public void testLazySelectorThatDoesNotMatchFails() throws ParseException {
+    final MessageFactory.Selector<Object> selector =
+      new MessageFactory.Selector<Object>(new ResourceBundleKey("x"), Pattern.<Object>compile("java.io.IOException"), Collections.<Object>singletonList("y"));
+    try {
+      selector.getMatcher();
+      fail();
+    } catch (final IllegalStateException expected) {
+
+    }
+  }
+
 }
@@ -0,0 +1,94 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCasePatternAutomaton {
+
+  private static final String[] A = new String[] { "A", "java.lang.Object" };
+
+  private static final String[] B = new String[] { "B", "java.lang.Object" };
+
+  private static final String[] C = new String[] { "C", "java.lang.Object" };
+
+  public TestCasePatternAutomaton() {
+    super();
+  }
+
+  private static final PatternAutomaton automaton(final String... sources) {
+    final PatternSummary[] summaries = new PatternSummary[sources.length];
+    for (int i = 0; i < sources.length; i++) {
+      summaries[i] = PatternSummary.analyze(sources[i]);
+    }
+    return new PatternAutomaton(summaries);
+  }
+
+  private static final BitSet bits(final int... ordinals) {
+    final BitSet returnValue = new BitSet();
+    for (final int ordinal : ordinals) {
+      returnValue.set(ordinal);
+    }
+    return returnValue;
+  }
+
+  @Test
+  public void testSequences() {
+    final PatternAutomaton automaton = automaton("A/B", "^A/B", "B$", "A/B$", "C");
+    assertEquals(bits(0, 1, 2, 3), automaton.match(new String[][] { A, B }));
+    assertEquals(bits(0, 4), automaton.match(new String[][] { C, A, B, C }));
+    assertEquals(bits(0, 2, 3, 4), automaton.match(new String[][] { C, A, B }));
+    assertEquals(bits(), automaton.match(new String[][] { B, A, null }));
+    assertEquals(bits(), automaton.match(new String[0][]));
+  }
+
+  @Test
+  public void testQuantifiersAndGroups() {
+    final PatternAutomaton automaton = automaton("^A+/B$", "^A*$", "(A/B)+/C", "A?/C$", "./C");
+    assertEquals(bits(0), automaton.match(new String[][] { A, A, A, B }));
+    assertEquals(bits(1), automaton.match(new String[][] { A, A }));
+    assertEquals(bits(1), automaton.match(new String[0][]));
+    assertEquals(bits(2, 3, 4), automaton.match(new String[][] { A, B, A, B, C }));
+    assertEquals(bits(3, 4), automaton.match(new String[][] { null, C }));
+    assertEquals(bits(3), automaton.match(new String[][] { C }));
+  }
+
+  @Test
+  public void testUnsupported() {
+    final PatternAutomaton automaton = automaton("A|B", "A(foo == 1)");
+    assertFalse(automaton.isSupported(0));
+    assertTrue(automaton.isSupported(1));
+    assertEquals(bits(0), automaton.getUnsupported(2));
+    assertEquals(bits(1), automaton.match(new String[][] { A }));
+  }
+
+}
@@ -0,0 +1,173 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.text.ParseException;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.edugility.objexj.Pattern;
+
+import com.edugility.splain.io.MessageFactoryReader;
+
+import static org.junit.Assert.*;
+
+public class TestCasePatternCache {
+
+  public TestCasePatternCache() {
+    super();
+  }
+
+  @Test
+  public void testHitsAndMisses() throws ParseException {
+    final PatternCache cache = new PatternCache(2);
+    final Pattern<Object> first = cache.getPattern("java.sql.SQLException");
+    assertNotNull(first);
+    assertEquals(0L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    assertSame(first, cache.getPattern("java.sql.SQLException"));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+  }
+
+  @Test
+  public void testEviction() throws ParseException {
+    final PatternCache cache = new PatternCache(2);
+    final Pattern<Object> a = cache.getPattern("java.lang.Error");
+    cache.getPattern("java.lang.Exception");
+    assertSame(a, cache.getPattern("java.lang.Error")); // Exception is now least recently used
+    cache.getPattern("java.lang.Throwable");
+    assertEquals(2, cache.size());
+    assertEquals(1L, cache.getEvictionCount());
+    assertSame(a, cache.getPattern("java.lang.Error"));
+    cache.getPattern("java.lang.Exception");
+    assertEquals(4L, cache.getMissCount());
+  }
+
+  @Test
+  public void testZeroSize() throws ParseException {
+    final PatternCache cache = new PatternCache(0);
+    cache.getPattern("java.lang.Error");
+    cache.getPattern("java.lang.Error");
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHitCount());
+    assertEquals(2L, cache.getMissCount());
+  }
+
+  @Test
+  public void testFailuresAreNotCached() {
+    final PatternCache cache = new PatternCache(2);
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.getPattern("(java.lang.Error");
+        fail();
+      } catch (final ParseException expected) {
+        // expected
+      }
+    }
+    assertEquals(0, cache.size());
+    assertEquals(2L, cache.getMissCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() {
+    new PatternCache(-1);
+  }
+
+  @Test
+  public void testSharedAcrossMessageFactories() throws ParseException {
+    final PatternCache cache = new PatternCache();
+    final MessageFactory<Object> a = new MessageFactory<Object>();
+    final MessageFactory<Object> b = new MessageFactory<Object>();
+    assertNull(a.getPatternCache());
+    a.setPatternCache(cache);
+    b.setPatternCache(cache);
+    assertSame(cache, a.getPatternCache());
+    final Set<Pattern<Object>> patternsA = a.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException");
+    final Set<Pattern<Object>> patternsB = b.addPattern(new ResourceBundleKey("database"), "java.sql.SQLException");
+    assertSame(patternsA.iterator().next(), patternsB.iterator().next());
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(1L, cache.getHitCount());
+
+    final MessageFactory<Object> lazy = new MessageFactory<Object>();
+    lazy.setLazyCompilation(true);
+    lazy.setPatternCache(cache);
+    final Set<Pattern<Object>> patternsLazy = lazy.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException");
+    assertEquals(1L, cache.getHitCount());
+    assertSame(patternsA.iterator().next(), patternsLazy.iterator().next());
+    assertEquals(2L, cache.getHitCount());
+  }
+
+  @Test
+  public void testSharedAcrossReaders() throws IOException, ParseException {
+    final String catalog = "java.lang.IllegalStateException" + System.getProperty("line.separator", "\n") + "--" + System.getProperty("line.separator", "\n") + "state";
+    final PatternCache cache = new PatternCache();
+    Pattern<Object> previous = null;
+    for (int i = 0; i < 2; i++) {
+      final MessageFactoryReader reader = new MessageFactoryReader(new StringReader(catalog));
+      assertNotNull(reader.getPatternCache());
+      assertNotSame(PatternCache.getInstance(), reader.getPatternCache());
+      reader.setPatternCache(cache);
+      final MessageFactory<Object> mf;
+      try {
+        mf = reader.<Object>read();
+      } finally {
+        reader.close();
+      }
+      assertSame(cache, mf.getPatternCache());
+      final Pattern<Object> pattern = mf.getPatterns(new ResourceBundleKey("state")).iterator().next();
+      if (previous != null) {
+        assertSame(previous, pattern);
+      }
+      previous = pattern;
+    }
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testReadersDoNotShareByDefault() throws IOException, ParseException {
+    final MessageFactoryReader a = new MessageFactoryReader(new StringReader(""));
+    final MessageFactoryReader b = new MessageFactoryReader(new StringReader(""));
+    try {
+      assertNotNull(a.getPatternCache());
+      assertNotNull(b.getPatternCache());
+      assertNotSame(a.getPatternCache(), b.getPatternCache());
+      assertNotSame(PatternCache.getInstance(), a.getPatternCache());
+    } finally {
+      a.close();
+      b.close();
+    }
+  }
+
+}
@@ -0,0 +1,113 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCasePatternSummary {
+
+  public TestCasePatternSummary() {
+    super();
+  }
+
+  @Test
+  public void testSingleAnchoredType() {
+    final PatternSummary summary = PatternSummary.analyze("java.sql.SQLException$");
+    assertNotNull(summary);
+    assertTrue(summary.isAnalyzed());
+    assertEquals(1, summary.getRequiredTypeCount());
+    assertEquals("java.sql.SQLException", summary.getRequiredType(0));
+    assertTrue(summary.isEndAnchored());
+    assertFalse(summary.isStartAnchored());
+    assertEquals("java.sql.SQLException", summary.getSingleElementType());
+    assertFalse(summary.hasSingleElementPredicate());
+  }
+
+  @Test
+  public void testSingleStartAnchoredTypeWithPredicate() {
+    final PatternSummary summary = PatternSummary.analyze("^java.lang.String(toString() == \"c\")");
+    assertTrue(summary.isAnalyzed());
+    assertTrue(summary.isStartAnchored());
+    assertFalse(summary.isEndAnchored());
+    assertEquals("java.lang.String", summary.getSingleElementType());
+    assertTrue(summary.hasSingleElementPredicate());
+  }
+
+  @Test
+  public void testNoSingleElementType() {
+    assertNull(PatternSummary.analyze("java.sql.SQLException+$").getSingleElementType());
+    assertNull(PatternSummary.analyze("(java.sql.SQLException)$").getSingleElementType());
+    assertNull(PatternSummary.analyze("java.lang.Exception/java.sql.SQLException$").getSingleElementType());
+  }
+
+  @Test
+  public void testSequenceWithPredicatesAndGroups() {
+    final PatternSummary summary = PatternSummary.analyze("^(java.lang.String(toString() == \"a)\"))/java.lang.Integer(intValue() > 0)+$");
+    assertNotNull(summary);
+    assertTrue(summary.isAnalyzed());
+    assertEquals(2, summary.getRequiredTypeCount());
+    assertEquals("java.lang.String", summary.getRequiredType(0));
+    assertEquals("java.lang.Integer", summary.getRequiredType(1));
+  }
+
+  @Test
+  public void testOptionalElementsAreNotRequired() {
+    final PatternSummary summary = PatternSummary.analyze("java.lang.IllegalStateException*/(java.io.IOException)?/java.sql.SQLException");
+    assertNotNull(summary);
+    assertTrue(summary.isAnalyzed());
+    assertEquals(1, summary.getRequiredTypeCount());
+    assertEquals("java.sql.SQLException", summary.getRequiredType(0));
+  }
+
+  @Test
+  public void testOptionalElementsWithinGroupsAreNotRequired() {
+    final PatternSummary summary = PatternSummary.analyze("(java.lang.IllegalStateException?/java.io.IOException)+/(java.sql.SQLException/java.lang.Error)*");
+    assertNotNull(summary);
+    assertTrue(summary.isAnalyzed());
+    assertEquals(1, summary.getRequiredTypeCount());
+    assertEquals("java.io.IOException", summary.getRequiredType(0));
+  }
+
+  @Test
+  public void testUnrecognizedSyntax() {
+    final PatternSummary summary = PatternSummary.analyze("java.lang.String|java.lang.Integer");
+    assertNotNull(summary);
+    assertFalse(summary.isAnalyzed());
+    assertEquals(0, summary.getRequiredTypeCount());
+  }
+
+  @Test
+  public void testNullSource() {
+    final PatternSummary summary = PatternSummary.analyze(null);
+    assertSame(PatternSummary.UNKNOWN, summary);
+    assertEquals(0, summary.getRequiredTypeCount());
+  }
+
+}
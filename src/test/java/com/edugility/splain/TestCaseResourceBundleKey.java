@@ -27,8 +27,11 @@
  */
 package com.edugility.splain;
 
+import java.util.ListResourceBundle;
 import java.util.Locale;
 import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.ResourceBundle.Control;
 
 import org.junit.Test;
 
@@ -115,4 +118,104 @@ public class TestCaseResourceBundleKey {
     ResourceBundleKey.valueOf("    /key");
   }
 
+  @Test
+  public void testGetObjectWithDefaultValue() {
+    final ResourceBundleKey rbk = ResourceBundleKey.valueOf("a.b.c.d/nonexistent");
+    assertEquals(0L, rbk.getMissCount());
+    assertEquals("default", rbk.getObject(Locale.getDefault(), "default"));
+    assertNull(rbk.getObject(Locale.getDefault(), null));
+    assertEquals(2L, rbk.getMissCount());
+    assertEquals("value", ResourceBundleKey.valueOf("a.b.c.d/key").getObject(Locale.getDefault(), "default"));
+    final ResourceBundleKey noBundle = ResourceBundleKey.valueOf("no.such.Bundle/key");
+    assertEquals("default", noBundle.getObject(Locale.getDefault(), "default"));
+    assertEquals(1L, noBundle.getMissCount());
+  }
+
+  @Test
+  public void testCachedMissKeepsDiagnosis() {
+    final ResourceBundleKey noBundle = ResourceBundleKey.valueOf("no.such.Bundle/key");
+    MissingResourceException first = null;
+    MissingResourceException second = null;
+    try {
+      noBundle.getObject(Locale.ROOT);
+      fail();
+    } catch (final MissingResourceException expected) {
+      first = expected;
+    }
+    try {
+      noBundle.getObject(Locale.ROOT);
+      fail();
+    } catch (final MissingResourceException expected) {
+      second = expected;
+    }
+    assertNotSame(first, second);
+    assertEquals(first.getMessage(), second.getMessage());
+    assertTrue(first.getMessage().startsWith("Can't find bundle for base name no.such.Bundle"));
+    assertEquals(first.getClassName(), second.getClassName());
+    assertEquals(first.getKey(), second.getKey());
+    assertTrue(second.getCause() instanceof MissingResourceException);
+    assertEquals(2L, noBundle.getMissCount());
+  }
+
+  @Test
+  public void testCache() {
+    final CountingControl control = new CountingControl(Control.TTL_NO_EXPIRATION_CONTROL);
+    final ResourceBundleKey rbk = new ResourceBundleKey("counting", null, control, "count");
+    assertEquals(Integer.valueOf(1), rbk.getObject(Locale.ROOT));
+    ResourceBundle.clearCache(Thread.currentThread().getContextClassLoader());
+    assertEquals(Integer.valueOf(1), rbk.getObject(Locale.ROOT));
+    assertEquals(1, control.count);
+    rbk.clearCache();
+    assertEquals(Integer.valueOf(2), rbk.getObject(Locale.ROOT));
+    assertEquals(2, control.count);
+    ResourceBundle.clearCache(Thread.currentThread().getContextClassLoader());
+  }
+
+  @Test
+  public void testCacheExpiry() {
+    final CountingControl control = new CountingControl(0L);
+    final ResourceBundleKey rbk = new ResourceBundleKey("expiring", null, control, "count");
+    assertEquals(Integer.valueOf(1), rbk.getObject(Locale.ROOT));
+    assertEquals(Integer.valueOf(2), rbk.getObject(Locale.ROOT));
+    assertEquals(2, control.count);
+    ResourceBundle.clearCache(Thread.currentThread().getContextClassLoader());
+  }
+
+  private static final class CountingControl extends Control {
+
+    private final long timeToLive;
+
+    private volatile int count;
+
+    private CountingControl(final long timeToLive) {
+      super();
+      this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public final ResourceBundle newBundle(final String baseName, final Locale locale, final String format, final ClassLoader loader, final boolean reload) {
+      if (!Locale.ROOT.equals(locale)) {
+        return null;
+      }
+      final Integer value = Integer.valueOf(++this.count);
+      return new ListResourceBundle() {
+        @Override
+        protected final Object[][] getContents() {
+          return new Object[][] { { "count", value } };
+        }
+      };
+    }
+
+    @Override
+    public final long getTimeToLive(final String baseName, final Locale locale) {
+      return this.timeToLive;
+    }
+
+    @Override
+    public final boolean needsReload(final String baseName, final Locale locale, final String format, final ClassLoader loader, final ResourceBundle bundle, final long loadTime) {
+      return true;
+    }
+
+  }
+
 }
@@ -0,0 +1,204 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.junit.Test;
+
+import com.edugility.objexj.Matcher;
+import com.edugility.objexj.Pattern;
+
+import static org.junit.Assert.*;
+
+public class TestCaseSelectorCache {
+
+  public TestCaseSelectorCache() {
+    super();
+  }
+
+  @Test
+  public void testTypeOnlyResultsAreCached() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("sql"), "java.lang.IllegalArgumentException/java.sql.SQLException");
+    mf.addPattern(new ResourceBundleKey("fallback @{$0[0].message}"), "java.lang.Throwable$");
+    final SelectorCache cache = new SelectorCache(2);
+    assertNull(mf.getSelectorCache());
+    mf.setSelectorCache(cache);
+    assertSame(cache, mf.getSelectorCache());
+
+    assertEquals("sql", mf.getMessage(Arrays.<Object>asList(new IllegalArgumentException("a"), new SQLException("b")), null));
+    assertEquals(0L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(1, cache.size());
+
+    final int evaluations = Matcher.evaluations;
+    final MessageFactory.Selector<Object> selector = mf.getSelector(Arrays.<Object>asList(new IllegalArgumentException("c"), new SQLException("d")));
+    assertNotNull(selector);
+    assertEquals(new ResourceBundleKey("sql"), selector.getKey());
+    assertEquals(evaluations, Matcher.evaluations);
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(0.5, cache.getHitRatio(), 0.0);
+
+    // The cached result still yields a Matcher for the new input.
+    assertEquals("fallback e", mf.getMessage(Arrays.<Object>asList(new IOException("e")), null));
+    assertEquals("fallback f", mf.getMessage(Arrays.<Object>asList(new IOException("f")), null));
+    assertEquals(2L, cache.getHitCount());
+
+    assertNull(mf.getMessage(Arrays.<Object>asList("x"), null));
+    assertNull(mf.getMessage(Arrays.<Object>asList("y"), null));
+    assertEquals(3L, cache.getHitCount());
+    assertEquals(2, cache.size());
+    assertEquals(1L, cache.getEvictionCount());
+
+    // Modifying the factory invalidates what it recorded.
+    mf.removePatterns(new ResourceBundleKey("sql"));
+    assertEquals("fallback b", mf.getMessage(Arrays.<Object>asList(new IllegalArgumentException("a"), new SQLException("b")), null));
+
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPredicateResultsAreNotCached() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("special"), "java.lang.IllegalStateException(message == \"special\")");
+    mf.addPattern(new ResourceBundleKey("direct"), Pattern.<Object>compile("java.io.IOException"));
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    final SelectorCache cache = new SelectorCache();
+    mf.setSelectorCache(cache);
+
+    final List<Object> special = Arrays.<Object>asList(new IllegalStateException("special"));
+    final List<Object> ordinary = Arrays.<Object>asList(new IllegalStateException("ordinary"));
+    assertEquals("special", mf.getMessage(special, null));
+    assertEquals("fallback", mf.getMessage(ordinary, null));
+    assertEquals("special", mf.getMessage(special, null));
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHitCount());
+
+    assertEquals("direct", mf.getMessage(Arrays.<Object>asList(new IOException()), null));
+    assertEquals(0, cache.size());
+
+    // The directly added Pattern is a candidate for every input and
+    // might test properties, so nothing is recorded while it is present.
+    assertEquals("fallback", mf.getMessage(Arrays.<Object>asList(new Error()), null));
+    assertEquals(0, cache.size());
+
+    mf.removePatterns(new ResourceBundleKey("direct"));
+    assertEquals("fallback", mf.getMessage(Arrays.<Object>asList(new Error()), null));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testSharedCache() throws ParseException {
+    final SelectorCache cache = new SelectorCache();
+    final MessageFactory<Object> a = new MessageFactory<Object>();
+    a.addPattern(new ResourceBundleKey("a"), "java.lang.Throwable");
+    a.setSelectorCache(cache);
+    final MessageFactory<Object> b = new MessageFactory<Object>();
+    b.addPattern(new ResourceBundleKey("b"), "java.lang.Throwable");
+    b.setSelectorCache(cache);
+    b.setAutomatonEnabled(true);
+    final List<Object> input = Arrays.<Object>asList(new Error());
+    assertEquals("a", a.getMessage(input, null));
+    assertEquals("b", b.getMessage(input, null));
+    assertEquals("b", b.getMessage(input, null));
+    assertEquals(1L, cache.getHitCount());
+
+    // Each factory's result survives the other's.
+    assertEquals("a", a.getMessage(input, null));
+    assertEquals(2L, cache.getHitCount());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testRecordedSignatureEqualsLookupSignature() {
+    final SelectorCache.Signature lookup = new SelectorCache.Signature(new Class<?>[] { String.class, null, Integer.class });
+    final SelectorCache.Signature recorded = lookup.toRecorded();
+    assertNotSame(lookup, recorded);
+    assertSame(recorded, recorded.toRecorded());
+    assertEquals(lookup, recorded);
+    assertEquals(recorded, lookup);
+    assertEquals(lookup.hashCode(), recorded.hashCode());
+    assertFalse(recorded.equals(new SelectorCache.Signature(new Class<?>[] { String.class, Integer.class, null })));
+  }
+
+  @Test
+  public void testInputIsReadOnce() throws ParseException {
+    final MessageFactory<Object> mf = new MessageFactory<Object>();
+    mf.addPattern(new ResourceBundleKey("io"), "java.io.IOException");
+    mf.setSelectorCache(new SelectorCache());
+    final int[] reads = new int[1];
+    final List<Object> input = new CountingList(reads, "a", "b", "c");
+    assertNull(mf.getMessage(input, null));
+    assertEquals(3, reads[0]);
+    reads[0] = 0;
+    assertNull(mf.getMessage(input, null));
+    assertEquals(3, reads[0]);
+  }
+
+  private static final class CountingList extends AbstractList<Object> implements RandomAccess {
+
+    private final int[] reads;
+
+    private final Object[] items;
+
+    private CountingList(final int[] reads, final Object... items) {
+      super();
+      this.reads = reads;
+      this.items = items;
+    }
+
+    @Override
+    public final Object get(final int index) {
+      this.reads[0]++;
+      return this.items[index];
+    }
+
+    @Override
+    public final int size() {
+      return this.items.length;
+    }
+
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeMaximumSize() {
+    new SelectorCache(-1);
+  }
+
+}
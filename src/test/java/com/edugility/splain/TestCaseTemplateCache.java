@@ -0,0 +1,87 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateRuntime;
+
+import static org.junit.Assert.*;
+
+public class TestCaseTemplateCache {
+
+  public TestCaseTemplateCache() {
+    super();
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    final TemplateCache cache = new TemplateCache(2);
+    final CompiledTemplate first = cache.getCompiledTemplate("Hello, @{name}");
+    assertNotNull(first);
+    assertEquals(0L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    assertSame(first, cache.getCompiledTemplate("Hello, @{name}"));
+    assertEquals(1L, cache.getHitCount());
+    assertEquals(1L, cache.getMissCount());
+    assertEquals("Hello, Fred", TemplateRuntime.execute(first, Collections.singletonMap("name", "Fred")));
+  }
+
+  @Test
+  public void testEviction() {
+    final TemplateCache cache = new TemplateCache(2);
+    final CompiledTemplate a = cache.getCompiledTemplate("a");
+    cache.getCompiledTemplate("b");
+    assertSame(a, cache.getCompiledTemplate("a")); // b is now least recently used
+    cache.getCompiledTemplate("c");
+    assertEquals(2, cache.size());
+    assertEquals(1L, cache.getEvictionCount());
+    assertSame(a, cache.getCompiledTemplate("a"));
+    cache.getCompiledTemplate("b");
+    assertEquals(4L, cache.getMissCount());
+  }
+
+  @Test
+  public void testZeroSize() {
+    final TemplateCache cache = new TemplateCache(0);
+    cache.getCompiledTemplate("a");
+    cache.getCompiledTemplate("a");
+    assertEquals(0, cache.size());
+    assertEquals(0L, cache.getHitCount());
+    assertEquals(2L, cache.getMissCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() {
+    new TemplateCache(-1);
+  }
+
+}
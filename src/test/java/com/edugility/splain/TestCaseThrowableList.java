@@ -0,0 +1,142 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain;
+
+import java.io.IOException;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCaseThrowableList {
+
+  public TestCaseThrowableList() {
+    super();
+  }
+
+  @Test
+  public void testCauseChain() {
+    final NullPointerException npe = new NullPointerException();
+    final IllegalArgumentException iae = new IllegalArgumentException(npe);
+    final IllegalStateException ise = new IllegalStateException(iae);
+    final ThrowableList list = new ThrowableList(ise);
+    assertFalse(list.isEmpty());
+    assertFalse(list.isIncludeSuppressed());
+    assertEquals(ThrowableList.DEFAULT_MAXIMUM_SIZE, list.getMaximumSize());
+    assertSame(ise, list.get(0));
+    assertEquals(3, list.size());
+    assertEquals(Arrays.<Throwable>asList(ise, iae, npe), list);
+  }
+
+  @Test
+  public void testCausesAreDiscoveredLazily() {
+    final int[] calls = new int[1];
+    final IllegalStateException ise = new IllegalStateException() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public final Throwable getCause() {
+        calls[0]++;
+        return new IllegalArgumentException();
+      }
+    };
+    final ThrowableList list = new ThrowableList(ise);
+    assertSame(ise, list.get(0));
+    assertEquals(0, calls[0]);
+    assertTrue(list.get(1) instanceof IllegalArgumentException);
+    assertEquals(1, calls[0]);
+    assertEquals(2, list.size());
+  }
+
+  @Test
+  public void testCycle() {
+    final RuntimeException a = new RuntimeException();
+    final IllegalStateException b = new IllegalStateException(a);
+    a.initCause(b);
+    final ThrowableList list = new ThrowableList(a);
+    assertEquals(Arrays.<Throwable>asList(a, b), list);
+  }
+
+  @Test
+  public void testMaximumSize() {
+    Throwable t = new Error();
+    for (int i = 0; i < 10; i++) {
+      t = new RuntimeException(t);
+    }
+    final ThrowableList list = new ThrowableList(t, false, 4);
+    assertEquals(4, list.size());
+    try {
+      list.get(4);
+      fail();
+    } catch (final IndexOutOfBoundsException expected) {
+      // expected
+    }
+    assertEquals(1, new ThrowableList(t, false, 1).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroMaximumSize() {
+    new ThrowableList(new Error(), false, 0);
+  }
+
+  @Test
+  public void testSuppressed() {
+    final IOException io = new IOException();
+    final SQLException sql = new SQLException();
+    final IllegalArgumentException iae = new IllegalArgumentException();
+    final IllegalStateException ise = new IllegalStateException(iae);
+    ise.addSuppressed(io);
+    ise.addSuppressed(sql);
+    assertEquals(Arrays.<Throwable>asList(ise, iae), new ThrowableList(ise));
+    assertEquals(Arrays.<Throwable>asList(ise, io, sql, iae), new ThrowableList(ise, true, 10));
+    assertEquals(Arrays.<Throwable>asList(ise, io), new ThrowableList(ise, true, 2));
+  }
+
+  @Test
+  public void testGetMessage() throws ParseException {
+    final MessageFactory<Throwable> mf = new MessageFactory<Throwable>();
+    mf.addPattern(new ResourceBundleKey("npe"), "java.lang.IllegalArgumentException/java.lang.NullPointerException");
+    mf.addPattern(new ResourceBundleKey("fallback"), "java.lang.Throwable$");
+    final IllegalArgumentException iae = new IllegalArgumentException(new NullPointerException());
+    assertEquals("npe", MessageFactory.getMessage(mf, iae, Locale.US));
+    assertEquals("fallback", MessageFactory.getMessage(mf, new IllegalStateException(), Locale.US));
+
+    final MessageFactory<Object> objects = new MessageFactory<Object>();
+    objects.addPattern(new ResourceBundleKey("sql"), "java.sql.SQLException$");
+    assertEquals("sql", MessageFactory.getMessage(objects, new RuntimeException(new SQLException()), Locale.US));
+    assertEquals("default", MessageFactory.getMessage(objects, new RuntimeException(), Locale.US, "default"));
+  }
+
+}
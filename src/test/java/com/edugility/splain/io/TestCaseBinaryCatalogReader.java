@@ -0,0 +1,285 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import java.nio.ByteBuffer;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.edugility.objexj.Pattern;
+
+import com.edugility.splain.MessageFactory;
+import com.edugility.splain.ResourceBundleKey;
+
+import static org.junit.Assert.*;
+
+public class TestCaseBinaryCatalogReader {
+
+  private MessageFactory<Object> mf;
+
+  public TestCaseBinaryCatalogReader() {
+    super();
+  }
+
+  @Before
+  public void readTextCatalog() throws IOException, ParseException {
+    final MessageFactoryReader reader = new MessageFactoryReader(new InputStreamReader(this.getClass().getResourceAsStream("/Messages.mc"), "UTF-8"));
+    try {
+      this.mf = reader.read();
+    } finally {
+      reader.close();
+    }
+    assertNotNull(this.mf);
+  }
+
+  private final byte[] write() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new BinaryCatalogWriter().write(this.mf, out);
+    return out.toByteArray();
+  }
+
+  private static final void assertMessages(final MessageFactory<Object> mf) {
+    assertNotNull(mf);
+    final SQLException sqlException = new SQLException("Bottom");
+    List<Object> input = Arrays.<Object>asList(new IllegalArgumentException("Top", sqlException), sqlException);
+    assertEquals("There was a database exception.", mf.getMessage(input, Locale.getDefault()));
+    input = Arrays.<Object>asList(sqlException, new IOException("boom"));
+    assertEquals("An unknown error occurred", mf.getMessage(input, Locale.getDefault()));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final byte[] bytes = this.write();
+    final MessageFactory<Object> copy = new BinaryCatalogReader(ByteBuffer.wrap(bytes)).read();
+    assertEquals(this.mf.getKeys(), copy.getKeys());
+    assertMessages(copy);
+  }
+
+  @Test(expected = IOException.class)
+  public void testCorruptChecksum() throws IOException {
+    final byte[] bytes = this.write();
+    bytes[bytes.length / 2] ^= 0x55;
+    new BinaryCatalogReader(ByteBuffer.wrap(bytes)).read();
+  }
+
+  @Test
+  public void testFallback() throws IOException, ParseException {
+    final File binary = File.createTempFile("Messages", ".mcb");
+    try {
+      final byte[] bytes = this.write();
+      // Write only part of the catalog to simulate truncation.
+      final OutputStream out = new FileOutputStream(binary);
+      try {
+        out.write(bytes, 0, bytes.length - 3);
+      } finally {
+        out.close();
+      }
+      final MessageFactory<Object> fallback = BinaryCatalogReader.read(binary, this.getClass().getResource("/Messages.mc").toURI(), null, null);
+      assertMessages(fallback);
+
+      final OutputStream complete = new FileOutputStream(binary);
+      try {
+        complete.write(bytes);
+      } finally {
+        complete.close();
+      }
+      assertMessages(BinaryCatalogReader.open(binary, null, null).<Object>read());
+    } catch (final URISyntaxException e) {
+      fail(e.toString());
+    } finally {
+      binary.delete();
+    }
+  }
+
+  @Test
+  public void testRoundTripWithoutSource() throws IOException, ParseException {
+    final MessageFactory<Object> noSource = new MessageFactory<Object>();
+    final ResourceBundleKey key = new ResourceBundleKey("no source");
+    final Pattern<Object> pattern = Pattern.compile("java.lang.Throwable$");
+    noSource.addPattern(key, pattern);
+    assertNull(noSource.getPatternSource(key, pattern));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new BinaryCatalogWriter().write(noSource, out);
+    final MessageFactory<Object> copy = new BinaryCatalogReader(ByteBuffer.wrap(out.toByteArray())).read();
+    assertEquals(noSource.getKeys(), copy.getKeys());
+    assertEquals("no source", copy.getMessage(Collections.<Object>singletonList(new IOException()), Locale.getDefault()));
+  }
+
+  @Test
+  public void testOutOfDateFallsBack() throws IOException, ParseException {
+    final File text = File.createTempFile("Messages", ".mc");
+    final File binary = File.createTempFile("Messages", ".mcb");
+    try {
+      final ByteArrayOutputStream catalog = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      final InputStream in = this.getClass().getResourceAsStream("/Messages.mc");
+      try {
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+          catalog.write(buffer, 0, read);
+        }
+      } finally {
+        in.close();
+      }
+      OutputStream out = new FileOutputStream(text);
+      try {
+        out.write(catalog.toByteArray());
+      } finally {
+        out.close();
+      }
+      final URI textUri = text.toURI();
+
+      // A binary catalog distinguishable from the textual one.
+      final MessageFactory<Object> other = new MessageFactory<Object>();
+      other.addPattern(new ResourceBundleKey("binary"), "java.lang.Throwable$");
+      out = new FileOutputStream(binary);
+      try {
+        new BinaryCatalogWriter().write(other, textUri, out);
+      } finally {
+        out.close();
+      }
+      assertEquals(other.getKeys(), BinaryCatalogReader.read(binary, textUri, null, null).getKeys());
+
+      // Change the textual catalog.
+      out = new FileOutputStream(text, true);
+      try {
+        out.write("\n# Changed.\n".getBytes("UTF-8"));
+      } finally {
+        out.close();
+      }
+      final MessageFactory<Object> fallback = BinaryCatalogReader.read(binary, textUri, null, null);
+      assertEquals(this.mf.getKeys(), fallback.getKeys());
+      assertMessages(fallback);
+    } finally {
+      binary.delete();
+      text.delete();
+    }
+  }
+
+  private static final byte[] writeCatalogContaining(final Object object) throws IOException {
+    final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    final ObjectOutputStream objectOut = new ObjectOutputStream(serialized);
+    try {
+      objectOut.writeObject(object);
+    } finally {
+      objectOut.close();
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(BinaryCatalogReader.MAGIC);
+    out.writeInt(BinaryCatalogReader.VERSION);
+    out.writeLong(-1L); // no textual catalog checksum
+    out.writeInt(1); // entries
+    out.writeInt(-1); // no bundle name
+    final byte[] key = "key".getBytes("UTF-8");
+    out.writeInt(key.length);
+    out.write(key);
+    out.writeInt(1); // patterns
+    out.writeInt(-1); // no source
+    out.writeInt(serialized.size());
+    out.write(serialized.toByteArray());
+    out.flush();
+    final CRC32 crc = new CRC32();
+    crc.update(bytes.toByteArray());
+    out.writeLong(crc.getValue());
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  @Test
+  public void testIsPermitted() {
+    assertTrue(BinaryCatalogReader.isPermitted("com.edugility.objexj.Pattern"));
+    assertTrue(BinaryCatalogReader.isPermitted("java.util.ArrayList"));
+    assertTrue(BinaryCatalogReader.isPermitted("[Ljava.lang.String;"));
+    assertTrue(BinaryCatalogReader.isPermitted("[[I"));
+    assertFalse(BinaryCatalogReader.isPermitted("java.io.File"));
+    assertFalse(BinaryCatalogReader.isPermitted("java.lang.reflect.Proxy"));
+    assertFalse(BinaryCatalogReader.isPermitted("[Ljava.io.File;"));
+    assertFalse(BinaryCatalogReader.isPermitted("javax.management.BadAttributeValueExpException"));
+    assertFalse(BinaryCatalogReader.isPermitted(null));
+  }
+
+  @Test
+  public void testForbiddenClassFallsBack() throws IOException, ParseException, URISyntaxException {
+    final byte[] bytes = writeCatalogContaining(new File("forbidden"));
+    try {
+      new BinaryCatalogReader(ByteBuffer.wrap(bytes)).read();
+      fail();
+    } catch (final InvalidClassException expected) {
+
+    }
+    final File binary = File.createTempFile("Messages", ".mcb");
+    try {
+      final OutputStream out = new FileOutputStream(binary);
+      try {
+        out.write(bytes);
+      } finally {
+        out.close();
+      }
+      assertMessages(BinaryCatalogReader.read(binary, this.getClass().getResource("/Messages.mc").toURI(), null, null));
+    } finally {
+      binary.delete();
+    }
+  }
+
+  @Test
+  public void testNonPatternIsRejected() throws IOException {
+    try {
+      new BinaryCatalogReader(ByteBuffer.wrap(writeCatalogContaining("not a pattern"))).read();
+      fail();
+    } catch (final IOException expected) {
+
+    }
+  }
+
+}
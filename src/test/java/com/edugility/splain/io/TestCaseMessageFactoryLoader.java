@@ -0,0 +1,171 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.edugility.splain.MessageFactory;
+
+import static org.junit.Assert.*;
+
+public class TestCaseMessageFactoryLoader {
+
+  private static final String LS = System.getProperty("line.separator", "\n");
+
+  private File first;
+
+  private File second;
+
+  private URLClassLoader classLoader;
+
+  public TestCaseMessageFactoryLoader() {
+    super();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    this.first = createCatalogDirectory("java.io.IOException" + LS + "--" + LS + "first" + LS);
+    this.second = createCatalogDirectory("java.io.IOException" + LS + "--" + LS + "second" + LS + LS + "java.sql.SQLException" + LS + "--" + LS + "sql" + LS);
+    this.classLoader = new URLClassLoader(new URL[] { this.first.toURI().toURL(), this.second.toURI().toURL() }, null);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (this.classLoader != null) {
+      this.classLoader.close();
+    }
+    delete(this.first);
+    delete(this.second);
+  }
+
+  @Test
+  public void testClasspathOrder() throws IOException, ParseException {
+    final MessageFactoryLoader loader = new MessageFactoryLoader("catalog.mc", this.classLoader, null);
+    final List<URL> resources = loader.getResources();
+    assertEquals(2, resources.size());
+    assertTrue(resources.get(0).toExternalForm().startsWith(this.first.toURI().toURL().toExternalForm()));
+    assertMessages(loader.<Object>load(), "first");
+  }
+
+  @Test
+  public void testComparator() throws IOException, ParseException {
+    final MessageFactoryLoader loader = new MessageFactoryLoader("catalog.mc", this.classLoader, null);
+    final Comparator<URL> reverse = new Comparator<URL>() {
+      @Override
+      public final int compare(final URL a, final URL b) {
+        return b.toExternalForm().compareTo(a.toExternalForm());
+      }
+    };
+    final String expected;
+    if (reverse.compare(this.first.toURI().toURL(), this.second.toURI().toURL()) < 0) {
+      expected = "first";
+    } else {
+      expected = "second";
+    }
+    loader.setComparator(reverse);
+    assertSame(reverse, loader.getComparator());
+    assertMessages(loader.<Object>load(), expected);
+  }
+
+  @Test
+  public void testConcurrentLoad() throws IOException, ParseException {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final MessageFactoryLoader loader = new MessageFactoryLoader("catalog.mc", this.classLoader, null);
+      assertMessages(loader.<Object>load(executor), "first");
+      loader.setLazyCompilation(true);
+      final MessageFactory<Object> mf = loader.<Object>load(executor);
+      assertTrue(mf.isLazyCompilation());
+      assertMessages(mf, "first");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testNoResources() throws IOException, ParseException {
+    final MessageFactoryLoader loader = new MessageFactoryLoader("nonexistent.mc", this.classLoader, null);
+    assertTrue(loader.getResources().isEmpty());
+    assertTrue(loader.<Object>load().getKeys().isEmpty());
+  }
+
+  private static final void assertMessages(final MessageFactory<Object> mf, final String io) {
+    assertNotNull(mf);
+    assertEquals(io, mf.getMessage(Collections.<Object>singletonList(new IOException()), Locale.US));
+    assertEquals("sql", mf.getMessage(Collections.<Object>singletonList(new SQLException()), Locale.US));
+  }
+
+  private static final File createCatalogDirectory(final String catalog) throws IOException {
+    final File directory = File.createTempFile("catalogs", "");
+    assertTrue(directory.delete());
+    assertTrue(directory.mkdir());
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "catalog.mc")), "UTF-8");
+    try {
+      writer.write(catalog);
+    } finally {
+      writer.close();
+    }
+    return directory;
+  }
+
+  private static final void delete(final File directory) {
+    if (directory != null) {
+      final File[] files = directory.listFiles();
+      if (files != null) {
+        for (final File file : files) {
+          file.delete();
+        }
+      }
+      directory.delete();
+    }
+  }
+
+}
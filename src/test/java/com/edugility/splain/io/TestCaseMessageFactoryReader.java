@@ -35,6 +35,7 @@ import java.sql.SQLException;
 
 import java.text.ParseException;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -43,6 +44,9 @@ import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.ResourceBundle.Control;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.Test;
 
 import com.edugility.objexj.Pattern;
@@ -87,4 +91,121 @@ public class TestCaseMessageFactoryReader {
 
   }
 
+  @Test
+  public void testParallelCompilation() throws IOException, ParseException {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final InputStreamReader isr = new InputStreamReader(this.getClass().getResource("/Messages.mc").openStream());
+      final MessageFactoryReader r = new MessageFactoryReader(isr, Thread.currentThread().getContextClassLoader(), Control.getControl(Control.FORMAT_DEFAULT));
+      final MessageFactory<Object> mf = r.read(executor);
+      assertNotNull(mf);
+      r.close();
+
+      final InputStreamReader isr2 = new InputStreamReader(this.getClass().getResource("/Messages.mc").openStream());
+      final MessageFactoryReader r2 = new MessageFactoryReader(isr2, Thread.currentThread().getContextClassLoader(), Control.getControl(Control.FORMAT_DEFAULT));
+      final MessageFactory<Object> sequential = r2.read();
+      r2.close();
+      assertEquals(sequential.getKeys(), mf.getKeys());
+
+      final SQLException sqlException = new SQLException("Bottom");
+      final IllegalArgumentException illegalArgumentException = new IllegalArgumentException("Top", sqlException);
+      assertEquals("There was a database exception.", mf.getMessage(Arrays.<Object>asList(illegalArgumentException, sqlException), Locale.getDefault()));
+      assertEquals("An unknown error occurred", mf.getMessage(Arrays.<Object>asList(sqlException, new IOException("boom")), Locale.getDefault()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCompilationErrorReportsLineNumber() throws IOException {
+    final String catalog = "java.lang.IllegalStateException" + LS + "--" + LS + "state" + LS + LS + "# Broken" + LS + "java.lang.Error" + LS + "(java.lang.Exception" + LS + "--" + LS + "broken" + LS;
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (final ExecutorService e : Arrays.asList(null, executor)) {
+        final MessageFactoryReader r = new MessageFactoryReader(new StringReader(catalog));
+        try {
+          r.<Object>read(e);
+          fail();
+        } catch (final ParseException expected) {
+          assertTrue(expected.getMessage(), expected.getMessage().contains("at line 7"));
+          assertTrue(expected.getCause() instanceof ParseException);
+        } finally {
+          r.close();
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testLazyCompilationDefersErrors() throws IOException, ParseException {
+    final String catalog = "java.lang.IllegalStateException" + LS + "--" + LS + "state" + LS + LS + "# Broken" + LS + "java.lang.Error" + LS + "(java.lang.Exception" + LS + "--" + LS + "broken" + LS;
+    final MessageFactoryReader r = new MessageFactoryReader(new StringReader(catalog));
+    assertFalse(r.isLazyCompilation());
+    r.setLazyCompilation(true);
+    assertTrue(r.isLazyCompilation());
+    final MessageFactory<Object> mf;
+    try {
+      mf = r.<Object>read(null);
+    } finally {
+      r.close();
+    }
+    assertNotNull(mf);
+    assertTrue(mf.isLazyCompilation());
+    assertEquals("state", mf.getMessage(Collections.<Object>singletonList(new IllegalStateException()), Locale.US));
+  }
+
+  @Test
+  public void testParse() throws IOException, ParseException {
+    final String catalog = "# Comment" + LS + "java.lang.IllegalStateException" + LS + "# Another comment" + LS + "java.lang.IllegalArgumentException" + LS + "--" + LS + "state" + LS + LS + LS + "java.lang.Error" + LS + "--" + LS + "first" + LS + "second" + LS;
+    final List<MessageCatalogEntry> entries = new ArrayList<MessageCatalogEntry>();
+    final MessageFactoryReader r = new MessageFactoryReader(new StringReader(catalog));
+    try {
+      assertTrue(r.parse(new MessageCatalogHandler() {
+          @Override
+          public final boolean handle(final MessageCatalogEntry entry) {
+            entries.add(entry);
+            return true;
+          }
+        }));
+    } finally {
+      r.close();
+    }
+    assertEquals(2, entries.size());
+
+    MessageCatalogEntry entry = entries.get(0);
+    assertEquals(Arrays.asList("java.lang.IllegalStateException", "java.lang.IllegalArgumentException"), new ArrayList<String>(entry.getPatterns().keySet()));
+    assertEquals(Integer.valueOf(4), entry.getPatterns().get("java.lang.IllegalArgumentException"));
+    assertEquals("state", entry.getMessage());
+    assertEquals(2, entry.getFirstLineNumber());
+    assertEquals(6, entry.getLastLineNumber());
+
+    entry = entries.get(1);
+    assertEquals(Collections.singletonMap("java.lang.Error", Integer.valueOf(9)), entry.getPatterns());
+    assertEquals("first" + LS + "second", entry.getMessage());
+    assertEquals(9, entry.getFirstLineNumber());
+    assertEquals(12, entry.getLastLineNumber());
+  }
+
+  @Test
+  public void testParseStopsEarly() throws IOException, ParseException {
+    final String catalog = "java.lang.IllegalStateException" + LS + "--" + LS + "state" + LS + LS + "--" + LS + "malformed" + LS;
+    final List<MessageCatalogEntry> entries = new ArrayList<MessageCatalogEntry>();
+    final MessageFactoryReader r = new MessageFactoryReader(new StringReader(catalog));
+    try {
+      assertFalse(r.parse(new MessageCatalogHandler() {
+          @Override
+          public final boolean handle(final MessageCatalogEntry entry) {
+            entries.add(entry);
+            return false;
+          }
+        }));
+    } finally {
+      r.close();
+    }
+    assertEquals(1, entries.size());
+    assertEquals("state", entries.get(0).getMessage());
+  }
+
 }
@@ -0,0 +1,228 @@
+/* -*- mode: Java; c-basic-offset: 2; indent-tabs-mode: nil; coding: utf-8-unix -*-
+ *
+ * Copyright (c) 2013 Edugility LLC.
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use, copy,
+ * modify, merge, publish, distribute, sublicense and/or sell copies
+ * of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THIS SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT.  IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * The original copy of this license is available at
+ * http://www.opensource.org/license/mit-license.html.
+ */
+package com.edugility.splain.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.URI;
+
+import java.sql.SQLException;
+
+import java.text.ParseException;
+
+import java.util.Collections;
+import java.util.List;
+
+import java.util.jar.JarOutputStream;
+
+import java.util.zip.ZipEntry;
+
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.edugility.splain.MessageFactory;
+import com.edugility.splain.SelectorCache;
+
+import static org.junit.Assert.*;
+
+public class TestCaseReloadableMessageFactory {
+
+  private File catalog;
+
+  public TestCaseReloadableMessageFactory() {
+    super();
+  }
+
+  @Before
+  public void createCatalog() throws IOException {
+    this.catalog = File.createTempFile("Messages", ".mc");
+    this.write("java.sql.SQLException$" + TestCaseMessageFactoryReader.LS + "--" + TestCaseMessageFactoryReader.LS + "first", 1000L);
+  }
+
+  @After
+  public void deleteCatalog() {
+    if (this.catalog != null) {
+      this.catalog.delete();
+    }
+  }
+
+  private final void write(final String contents, final long lastModified) throws IOException {
+    final Writer writer = new OutputStreamWriter(new FileOutputStream(this.catalog), "UTF-8");
+    try {
+      writer.write(contents);
+    } finally {
+      writer.close();
+    }
+    assertTrue(this.catalog.setLastModified(lastModified));
+  }
+
+  @Test
+  public void testReload() throws IOException, ParseException {
+    final List<Object> input = Collections.<Object>singletonList(new SQLException());
+    final ReloadableMessageFactory<Object> rmf = new ReloadableMessageFactory<Object>(this.catalog.toURI());
+    try {
+      final MessageFactory<Object> first = rmf.get();
+      assertNotNull(first);
+      assertTrue(first.isFrozen());
+      assertEquals("first", rmf.getMessage(input, null));
+
+      assertFalse(rmf.reloadIfModified());
+      assertSame(first, rmf.get());
+
+      this.write("java.sql.SQLException$" + TestCaseMessageFactoryReader.LS + "--" + TestCaseMessageFactoryReader.LS + "second", 2000L);
+      assertTrue(rmf.reloadIfModified());
+      assertEquals("second", rmf.getMessage(input, null));
+      assertNull(rmf.getLastReloadFailure());
+
+      final MessageFactory<Object> second = rmf.get();
+      this.write("--" + TestCaseMessageFactoryReader.LS + "broken", 3000L);
+      assertFalse(rmf.reloadIfModified());
+      assertNotNull(rmf.getLastReloadFailure());
+      assertSame(second, rmf.get());
+      assertEquals("second", rmf.getMessage(input, null));
+    } finally {
+      rmf.close();
+    }
+  }
+
+  @Test
+  public void testConfigurerAppliedOnEveryReload() throws IOException, ParseException {
+    final List<Object> input = Collections.<Object>singletonList(new SQLException());
+    final SelectorCache selectorCache = new SelectorCache();
+    final AtomicInteger readers = new AtomicInteger();
+    final AtomicInteger messageFactories = new AtomicInteger();
+    final ReloadableMessageFactory<Object> rmf = new ReloadableMessageFactory<Object>(this.catalog.toURI(), null, null, new MessageFactoryConfigurer<Object>() {
+        @Override
+        public final void configureReader(final MessageFactoryReader reader) {
+          reader.setLazyCompilation(true);
+          readers.incrementAndGet();
+        }
+
+        @Override
+        public final void configureMessageFactory(final MessageFactory<Object> messageFactory) {
+          assertFalse(messageFactory.isFrozen());
+          messageFactory.setAdaptiveOrdering(true);
+          messageFactory.setSelectorCache(selectorCache);
+          messageFactories.incrementAndGet();
+        }
+      });
+    try {
+      assertEquals(1, readers.get());
+      assertEquals(1, messageFactories.get());
+      MessageFactory<Object> mf = rmf.get();
+      assertTrue(mf.isFrozen());
+      assertTrue(mf.isLazyCompilation());
+      assertTrue(mf.isAdaptiveOrdering());
+      assertSame(selectorCache, mf.getSelectorCache());
+
+      this.write("java.sql.SQLException$" + TestCaseMessageFactoryReader.LS + "--" + TestCaseMessageFactoryReader.LS + "second", 2000L);
+      assertTrue(rmf.reloadIfModified());
+      assertEquals(2, readers.get());
+      assertEquals(2, messageFactories.get());
+      mf = rmf.get();
+      assertTrue(mf.isFrozen());
+      assertTrue(mf.isLazyCompilation());
+      assertTrue(mf.isAdaptiveOrdering());
+      assertSame(selectorCache, mf.getSelectorCache());
+      assertEquals("second", rmf.getMessage(input, null));
+    } finally {
+      rmf.close();
+    }
+  }
+
+  @Test
+  public void testBackgroundReload() throws IOException, InterruptedException, ParseException {
+    final List<Object> input = Collections.<Object>singletonList(new SQLException());
+    final ReloadableMessageFactory<Object> rmf = new ReloadableMessageFactory<Object>(this.catalog.toURI());
+    try {
+      rmf.start(10L, TimeUnit.MILLISECONDS);
+      this.write("java.sql.SQLException$" + TestCaseMessageFactoryReader.LS + "--" + TestCaseMessageFactoryReader.LS + "second", 2000L);
+      for (int i = 0; i < 500 && !"second".equals(rmf.getMessage(input, null)); i++) {
+        Thread.sleep(10L);
+      }
+      assertEquals("second", rmf.getMessage(input, null));
+    } finally {
+      rmf.close();
+    }
+  }
+
+  @Test
+  public void testUnknownLastModifiedDoesNotReload() throws IOException, ParseException {
+    final List<Object> input = Collections.<Object>singletonList(new SQLException());
+    final ReloadableMessageFactory<Object> rmf = new ReloadableMessageFactory<Object>(this.catalog.toURI());
+    try {
+      final MessageFactory<Object> first = rmf.get();
+      assertTrue(this.catalog.delete());
+      assertFalse(rmf.reloadIfModified());
+      assertNull(rmf.getLastReloadFailure());
+      assertSame(first, rmf.get());
+
+      assertFalse(rmf.reload());
+      assertNotNull(rmf.getLastReloadFailure());
+      assertEquals("first", rmf.getMessage(input, null));
+    } finally {
+      rmf.close();
+    }
+  }
+
+  @Test
+  public void testReloadFromJar() throws IOException, ParseException {
+    final List<Object> input = Collections.<Object>singletonList(new SQLException());
+    final File jar = File.createTempFile("Messages", ".jar");
+    try {
+      final JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+      try {
+        out.putNextEntry(new ZipEntry("Messages.mc"));
+        out.write(("java.sql.SQLException$" + TestCaseMessageFactoryReader.LS + "--" + TestCaseMessageFactoryReader.LS + "first").getBytes("UTF-8"));
+        out.closeEntry();
+      } finally {
+        out.close();
+      }
+      final ReloadableMessageFactory<Object> rmf = new ReloadableMessageFactory<Object>(URI.create("jar:" + jar.toURI() + "!/Messages.mc"));
+      try {
+        assertEquals("first", rmf.getMessage(input, null));
+        assertFalse(rmf.reloadIfModified());
+        assertNull(rmf.getLastReloadFailure());
+      } finally {
+        rmf.close();
+      }
+    } finally {
+      jar.delete();
+    }
+  }
+
+}